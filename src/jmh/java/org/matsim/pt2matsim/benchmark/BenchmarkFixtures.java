@@ -0,0 +1,119 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.benchmark;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt2matsim.config.OsmConverterConfigGroup;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.mapping.PTMapperTest;
+import org.matsim.pt2matsim.osm.OsmMultimodalNetworkConverter;
+import org.matsim.pt2matsim.osm.lib.OsmData;
+import org.matsim.pt2matsim.osm.lib.OsmDataImpl;
+import org.matsim.pt2matsim.osm.lib.OsmFileReader;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Inputs shared by the benchmarks. All files are read from the fixtures in the
+ * test folder, benchmarks have to be run from the project directory.
+ */
+final class BenchmarkFixtures {
+
+	static final String OSM_FOLDER = "test/osm/";
+	static final String GTFS_FOLDER = "test/gtfs-feed/";
+	static final String GTFS_SERVICE_ID = "20181005";
+	static final String HAFAS_FOLDER = "test/FPLAN_HAFAS/";
+
+	/** OSM fixture used for network based benchmarks and its projected coordinate system */
+	static final String OSM_NETWORK_FILE = "Belgrade.osm";
+	static final String OSM_NETWORK_CRS = "EPSG:8682";
+
+	static final String SCHEDULE_MODE = "bus";
+
+	/** seed for all sampled inputs, runs of different commits get the same queries */
+	static final long SEED = 4711;
+
+	private BenchmarkFixtures() {
+	}
+
+	/**
+	 * The mapping components log on info level per route or query, which would be measured as well.
+	 */
+	static void setLogLevel() {
+		Configurator.setLevel("org.matsim", Level.WARN);
+	}
+
+	static OsmData readOsm(String osmFile) {
+		OsmData osmData = new OsmDataImpl();
+		new OsmFileReader(osmData).readFile(OSM_FOLDER + osmFile);
+		return osmData;
+	}
+
+	static Network createOsmNetwork() {
+		OsmConverterConfigGroup osmConfig = OsmConverterConfigGroup.createDefaultConfig();
+		osmConfig.setOutputCoordinateSystem(OSM_NETWORK_CRS);
+		OsmMultimodalNetworkConverter converter = new OsmMultimodalNetworkConverter(readOsm(OSM_NETWORK_FILE));
+		converter.convert(osmConfig);
+		return converter.getNetwork();
+	}
+
+	/**
+	 * The mapping config of the unit tests, without path cache (repeated queries would only measure the cache)
+	 * and with a single thread per router.
+	 */
+	static PublicTransitMappingConfigGroup createConfig() {
+		PublicTransitMappingConfigGroup config = PTMapperTest.initPTMConfig();
+		config.setNumOfThreads(1);
+		config.setPathCacheSize(0);
+		return config;
+	}
+
+	/**
+	 * Adds a transit line with a single route without stops to the schedule. Routers only
+	 * need the route's transport mode.
+	 */
+	static TransitRoute addEmptyRoute(TransitSchedule schedule) {
+		TransitScheduleFactory fac = schedule.getFactory();
+		TransitLine line = fac.createTransitLine(Id.create("benchmark", TransitLine.class));
+		TransitRoute route = fac.createTransitRoute(Id.create("benchmark", TransitRoute.class), null, new ArrayList<>(), SCHEDULE_MODE);
+		line.addRoute(route);
+		schedule.addTransitLine(line);
+		return route;
+	}
+
+	/**
+	 * @return the links of the network sorted by id, sampled inputs do not depend on the map order
+	 */
+	static List<Link> getSortedLinks(Network network) {
+		List<Link> links = new ArrayList<>(network.getLinks().values());
+		links.sort(Comparator.comparing(Link::getId));
+		return links;
+	}
+}
@@ -0,0 +1,86 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.benchmark;
+
+import org.matsim.core.utils.geometry.transformations.TransformationFactory;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt2matsim.gtfs.GtfsConverter;
+import org.matsim.pt2matsim.gtfs.GtfsFeed;
+import org.matsim.pt2matsim.gtfs.GtfsFeedImpl;
+import org.matsim.pt2matsim.hafas.HafasConverter;
+import org.matsim.pt2matsim.osm.lib.OsmData;
+import org.matsim.pt2matsim.tools.ScheduleTools;
+import org.matsim.vehicles.VehicleUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse throughput of the OSM, GTFS and HAFAS fixtures. The GTFS and HAFAS benchmarks
+ * include the conversion to a transit schedule.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InputParseBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class OsmInput {
+		@Param({"Belgrade.osm", "WaterlooCityCentre.osm"})
+		public String osmFile;
+	}
+
+	@Setup
+	public void setup() {
+		BenchmarkFixtures.setLogLevel();
+	}
+
+	@Benchmark
+	public OsmData readOsm(OsmInput input) {
+		return BenchmarkFixtures.readOsm(input.osmFile);
+	}
+
+	@Benchmark
+	public TransitSchedule readGtfs() {
+		GtfsFeed gtfsFeed = new GtfsFeedImpl(BenchmarkFixtures.GTFS_FOLDER);
+		return new GtfsConverter(gtfsFeed).convert(BenchmarkFixtures.GTFS_SERVICE_ID, TransformationFactory.CH1903_LV03_Plus);
+	}
+
+	@Benchmark
+	public TransitSchedule readHafas() throws IOException {
+		TransitSchedule schedule = ScheduleTools.createSchedule();
+		HafasConverter.run(BenchmarkFixtures.HAFAS_FOLDER, schedule, null, VehicleUtils.createVehiclesContainer());
+		return schedule;
+	}
+}
@@ -0,0 +1,139 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.benchmark;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidateCreator;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidateCreatorStandard;
+import org.matsim.pt2matsim.tools.NetworkTools;
+import org.matsim.pt2matsim.tools.NetworkToolsTest;
+import org.matsim.pt2matsim.tools.ScheduleToolsTest;
+import org.matsim.pt2matsim.tools.lib.LinkSegmentIndex;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Link candidate creation. {@link #createLinkCandidates} creates the candidates for all
+ * route stops of the unit test schedule, the secondary result <tt>routeStops</tt> gives
+ * the rate per stop. {@link #findClosestLinks} is the closest link search for a single
+ * stop on the network converted from an OSM fixture, {@link #linkSegmentIndex} the
+ * same search with the segment index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkCandidateBenchmark {
+
+	private static final int N_STOPS = 1024;
+	/** maximal distance of a sampled stop to the from node of a link */
+	private static final double STOP_OFFSET = 50;
+	private static final double NODE_SEARCH_RADIUS = 200;
+	private static final double MAX_LINK_DISTANCE = 90;
+
+	private Network network;
+	private TransitSchedule schedule;
+	private PublicTransitMappingConfigGroup config;
+	private int nRouteStops = 0;
+
+	private Network osmNetwork;
+	private Set<String> networkModes;
+	private LinkSegmentIndex linkSegmentIndex;
+	private Coord[] stopCoords;
+	private int stop = 0;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class RouteStops {
+		public long routeStops;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			routeStops = 0;
+		}
+	}
+
+	@Setup
+	public void setup() {
+		BenchmarkFixtures.setLogLevel();
+		network = NetworkToolsTest.initNetwork();
+		schedule = ScheduleToolsTest.initUnmappedSchedule();
+		config = BenchmarkFixtures.createConfig();
+		for(TransitLine transitLine : schedule.getTransitLines().values()) {
+			for(TransitRoute transitRoute : transitLine.getRoutes().values()) {
+				nRouteStops += transitRoute.getStops().size();
+			}
+		}
+
+		osmNetwork = BenchmarkFixtures.createOsmNetwork();
+		networkModes = config.getTransportModeAssignment().get(BenchmarkFixtures.SCHEDULE_MODE);
+		linkSegmentIndex = LinkSegmentIndex.create(osmNetwork, networkModes);
+		List<Link> links = BenchmarkFixtures.getSortedLinks(osmNetwork);
+		Random random = new Random(BenchmarkFixtures.SEED);
+		stopCoords = new Coord[N_STOPS];
+		for(int i = 0; i < N_STOPS; i++) {
+			Coord c = links.get(random.nextInt(links.size())).getFromNode().getCoord();
+			stopCoords[i] = new Coord(c.getX() + (2 * random.nextDouble() - 1) * STOP_OFFSET,
+					c.getY() + (2 * random.nextDouble() - 1) * STOP_OFFSET);
+		}
+	}
+
+	@Benchmark
+	public LinkCandidateCreator createLinkCandidates(RouteStops counter) {
+		counter.routeStops += nRouteStops;
+		return new LinkCandidateCreatorStandard(schedule, network, config);
+	}
+
+	@Benchmark
+	public Map<Double, Set<Link>> findClosestLinks() {
+		Coord coord = stopCoords[stop++ & (N_STOPS - 1)];
+		return NetworkTools.findClosestLinks(osmNetwork, coord, NODE_SEARCH_RADIUS, networkModes);
+	}
+
+	@Benchmark
+	public Map<Double, Set<Link>> linkSegmentIndex() {
+		Coord coord = stopCoords[stop++ & (N_STOPS - 1)];
+		return linkSegmentIndex.getLinksWithinDistance(coord, MAX_LINK_DISTANCE);
+	}
+}
@@ -0,0 +1,83 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.benchmark;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.mapping.PTMapper;
+import org.matsim.pt2matsim.tools.SyntheticScenarioGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Complete mapping of synthetic scenarios with a multiple of the base size, see
+ * {@link SyntheticScenarioGenerator#createScaled}. The mapper modifies network and
+ * schedule, each invocation maps a newly generated scenario.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PTMapperScalingBenchmark {
+
+	@Param({"10", "100"})
+	public double scale;
+
+	private PublicTransitMappingConfigGroup config;
+	private Network network;
+	private TransitSchedule schedule;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkFixtures.setLogLevel();
+		config = PublicTransitMappingConfigGroup.createDefaultConfig();
+		config.setNumOfThreads(Runtime.getRuntime().availableProcessors());
+	}
+
+	@Setup(Level.Iteration)
+	public void generate() {
+		SyntheticScenarioGenerator generator = SyntheticScenarioGenerator.createScaled(scale, BenchmarkFixtures.SEED);
+		generator.generate();
+		network = generator.getNetwork();
+		schedule = generator.getSchedule();
+	}
+
+	@Benchmark
+	public TransitSchedule mapSchedule() throws InterruptedException, ExecutionException {
+		new PTMapper(schedule, network).run(config);
+		return schedule;
+	}
+}
@@ -0,0 +1,107 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.benchmark;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.mapping.Progress;
+import org.matsim.pt2matsim.mapping.PseudoRoutingImpl;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidateCreator;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidateCreatorStandard;
+import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRoutersFactory;
+import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRoutersStandard;
+import org.matsim.pt2matsim.mapping.pseudoRouter.PseudoSchedule;
+import org.matsim.pt2matsim.tools.NetworkToolsTest;
+import org.matsim.pt2matsim.tools.ScheduleToolsTest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pseudo routing of a single transit route of the unit test schedule (link candidates,
+ * pseudo graph and the least cost paths between candidates). Each invocation uses a new
+ * worker, the link candidates and the router preprocessing are shared and not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 200)
+@Measurement(iterations = 500)
+@Fork(1)
+public class PseudoRoutingBenchmark {
+
+	@Param({"routeA1", "routeA2", "routeB"})
+	public String transitRouteId;
+
+	private PublicTransitMappingConfigGroup config;
+	private LinkCandidateCreator linkCandidates;
+	private ScheduleRoutersFactory scheduleRoutersFactory;
+	private TransitLine transitLine;
+	private TransitRoute transitRoute;
+
+	private PseudoRoutingImpl pseudoRouting;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkFixtures.setLogLevel();
+		Network network = NetworkToolsTest.initNetwork();
+		TransitSchedule schedule = ScheduleToolsTest.initUnmappedSchedule();
+		config = BenchmarkFixtures.createConfig();
+
+		Id<TransitRoute> routeId = Id.create(transitRouteId, TransitRoute.class);
+		for(TransitLine line : schedule.getTransitLines().values()) {
+			if(line.getRoutes().containsKey(routeId)) {
+				transitLine = line;
+				transitRoute = line.getRoutes().get(routeId);
+			}
+		}
+		linkCandidates = new LinkCandidateCreatorStandard(schedule, network, config);
+		scheduleRoutersFactory = new ScheduleRoutersStandard.Factory(schedule, network, config);
+	}
+
+	@Setup(Level.Iteration)
+	public void createWorker() {
+		pseudoRouting = new PseudoRoutingImpl(scheduleRoutersFactory, linkCandidates, config.getMaxTravelCostFactor(),
+				new Progress(1, "benchmark"), new ConcurrentLinkedQueue<>(), "benchmark", config.getBoundedSearch());
+		pseudoRouting.addTransitRouteToQueue(transitLine, transitRoute);
+	}
+
+	@Benchmark
+	public PseudoSchedule pseudoRoute() {
+		pseudoRouting.run();
+		return pseudoRouting.getPseudoSchedule();
+	}
+}
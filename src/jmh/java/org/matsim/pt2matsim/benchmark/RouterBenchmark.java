@@ -0,0 +1,185 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.benchmark;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.groups.ControllerConfigGroup.RoutingAlgorithmType;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidate;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidateImpl;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.PublicTransitStopImpl;
+import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRouters;
+import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRoutersStandard;
+import org.matsim.pt2matsim.tools.NetworkTools;
+import org.matsim.pt2matsim.tools.ScheduleTools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query rate of the schedule routers on the network converted from an OSM fixture,
+ * the router preprocessing is not measured.
+ * <p>
+ * {@link #leastCostPaths} measures the queries of pseudo routing: the paths from a
+ * random link candidate to the candidate set of a random stop (the links closest to
+ * a random link). {@link #leastCostPath} measures single paths between random links
+ * for each supported {@link RoutingAlgorithmType}, which are only used by tools
+ * outside of pseudo routing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouterBenchmark {
+
+	private static final int N_QUERIES = 1024;
+	private static final int N_CANDIDATES = 8;
+
+	@State(Scope.Benchmark)
+	public static class OneToMany {
+
+		private ScheduleRouters scheduleRouters;
+		private TransitLine transitLine;
+		private TransitRoute transitRoute;
+		private LinkCandidate[] fromCandidates;
+		private List<List<LinkCandidate>> toCandidates;
+		private int query = 0;
+
+		@Setup
+		public void setup() {
+			BenchmarkFixtures.setLogLevel();
+			Network network = BenchmarkFixtures.createOsmNetwork();
+			TransitSchedule schedule = ScheduleTools.createSchedule();
+			transitRoute = BenchmarkFixtures.addEmptyRoute(schedule);
+			transitLine = schedule.getTransitLines().values().iterator().next();
+
+			PublicTransitMappingConfigGroup config = BenchmarkFixtures.createConfig();
+			scheduleRouters = new ScheduleRoutersStandard.Factory(schedule, network, config).createInstance();
+
+			List<Link> links = getRoutingLinks(network, config);
+			TransitScheduleFactory fac = schedule.getFactory();
+			Random random = new Random(BenchmarkFixtures.SEED);
+			fromCandidates = new LinkCandidate[N_QUERIES];
+			toCandidates = new ArrayList<>(N_QUERIES);
+			for(int i = 0; i < N_QUERIES; i++) {
+				Link fromLink = links.get(random.nextInt(links.size()));
+				fromCandidates[i] = new LinkCandidateImpl(fromLink, createStop(fac, "from" + i, fromLink.getCoord()));
+
+				Coord stopCoord = links.get(random.nextInt(links.size())).getCoord();
+				PublicTransitStopImpl toStop = createStop(fac, "to" + i, stopCoord);
+				List<LinkCandidate> candidates = new ArrayList<>(N_CANDIDATES);
+				links.stream()
+						.sorted(Comparator.comparingDouble(l -> CoordUtils.calcEuclideanDistance(l.getCoord(), stopCoord)))
+						.limit(N_CANDIDATES)
+						.forEach(l -> candidates.add(new LinkCandidateImpl(l, toStop)));
+				toCandidates.add(candidates);
+			}
+		}
+
+		private PublicTransitStopImpl createStop(TransitScheduleFactory fac, String id, Coord coord) {
+			TransitStopFacility stopFacility = fac.createTransitStopFacility(Id.create(id, TransitStopFacility.class), coord, false);
+			TransitRouteStop routeStop = fac.createTransitRouteStop(stopFacility, 0.0, 0.0);
+			return new PublicTransitStopImpl(transitLine, transitRoute, routeStop);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class SinglePair {
+
+		@Param({"SpeedyALT", "AStarLandmarks", "CHRouter"})
+		public RoutingAlgorithmType networkRouter;
+
+		private ScheduleRouters scheduleRouters;
+		private TransitLine transitLine;
+		private TransitRoute transitRoute;
+		private Id<Link>[] fromLinks;
+		private Id<Link>[] toLinks;
+		private int query = 0;
+
+		@Setup
+		@SuppressWarnings("unchecked")
+		public void setup() {
+			BenchmarkFixtures.setLogLevel();
+			Network network = BenchmarkFixtures.createOsmNetwork();
+			TransitSchedule schedule = ScheduleTools.createSchedule();
+			transitRoute = BenchmarkFixtures.addEmptyRoute(schedule);
+			transitLine = schedule.getTransitLines().values().iterator().next();
+
+			PublicTransitMappingConfigGroup config = BenchmarkFixtures.createConfig();
+			config.setNetworkRouter(networkRouter);
+			scheduleRouters = new ScheduleRoutersStandard.Factory(schedule, network, config).createInstance();
+
+			List<Link> links = getRoutingLinks(network, config);
+			Random random = new Random(BenchmarkFixtures.SEED);
+			fromLinks = new Id[N_QUERIES];
+			toLinks = new Id[N_QUERIES];
+			for(int i = 0; i < N_QUERIES; i++) {
+				fromLinks[i] = links.get(random.nextInt(links.size())).getId();
+				toLinks[i] = links.get(random.nextInt(links.size())).getId();
+			}
+		}
+	}
+
+	private static List<Link> getRoutingLinks(Network network, PublicTransitMappingConfigGroup config) {
+		Network routingNetwork = NetworkTools.createFilteredNetworkByLinkMode(network,
+				config.getTransportModeAssignment().get(BenchmarkFixtures.SCHEDULE_MODE));
+		return BenchmarkFixtures.getSortedLinks(routingNetwork);
+	}
+
+	@Benchmark
+	public Map<LinkCandidate, LeastCostPathCalculator.Path> leastCostPaths(OneToMany state) {
+		int i = state.query++ & (N_QUERIES - 1);
+		return state.scheduleRouters.calcLeastCostPaths(state.fromCandidates[i], state.toCandidates.get(i),
+				state.transitLine, state.transitRoute, Double.POSITIVE_INFINITY);
+	}
+
+	@Benchmark
+	public LeastCostPathCalculator.Path leastCostPath(SinglePair state) {
+		int i = state.query++ & (N_QUERIES - 1);
+		return state.scheduleRouters.calcLeastCostPath(state.fromLinks[i], state.toLinks[i], state.transitLine, state.transitRoute);
+	}
+}
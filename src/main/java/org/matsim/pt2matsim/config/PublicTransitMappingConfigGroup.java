@@ -50,11 +50,17 @@ public class PublicTransitMappingConfigGroup extends ReflectiveConfigGroup {
 
 	public enum TravelCostType { linkLength, travelTime }
 
+	public enum ChildStopTransfers { allPairs, stopArea }
+
 	private static final String INPUT_NETWORK_FILE = "inputNetworkFile";
 	private static final String INPUT_SCHEDULE_FILE = "inputScheduleFile";
 	private static final String OUTPUT_NETWORK_FILE = "outputNetworkFile";
 	private static final String OUTPUT_SCHEDULE_FILE = "outputScheduleFile";
 	private static final String OUTPUT_STREET_NETWORK_FILE = "outputStreetNetworkFile";
+	private static final String PREVIOUS_SCHEDULE_FILE = "previousScheduleFile";
+	private static final String PREVIOUS_NETWORK_FILE = "previousNetworkFile";
+	private static final String CHECKPOINT_FILE = "checkpointFile";
+	private static final String CHILD_STOP_TRANSFERS = "childStopTransfers";
 
 	private static final String TRAVEL_COST_TYPE = "travelCostType";
 	private static final String MAX_TRAVEL_COST_FACTOR = "maxTravelCostFactor";
@@ -78,6 +84,15 @@ public class PublicTransitMappingConfigGroup extends ReflectiveConfigGroup {
 
 	private static final String BOUNDED_SEARCH = "boundedSearch";
 
+	private static final String PATH_CACHE_SIZE = "pathCacheSize";
+
+	private static final String ROUTE_COST_MODEL_FILE = "routeCostModelFile";
+
+	private static final String SPLIT_ROUTE_STOP_THRESHOLD = "splitRouteStopThreshold";
+	private static final String SPLIT_ROUTE_PREDICTED_SECONDS = "splitRoutePredictedSeconds";
+
+	private static final String LAZY_LINK_CANDIDATES = "lazyLinkCandidates";
+
 	// default values
 	private Map<String, Set<String>> transportModeAssignment = new HashMap<>();
 	private Map<String, TransportModeParameterSet> parameterSetsForMode = new HashMap<>();
@@ -109,12 +124,41 @@ public class PublicTransitMappingConfigGroup extends ReflectiveConfigGroup {
 	 */
 	private boolean boundedSearch = true;
 
+	/**
+	 * Maximal estimated memory [bytes] of the least cost path cache shared by all
+	 * pseudoRouting workers. 0 disables the cache.
+	 */
+	private long pathCacheSize = 200_000_000L;
+
+	/**
+	 * Csv file with the pseudoRouting time per link candidate pair and mode of previous
+	 * runs. Used to process long transit routes first, updated after each run.
+	 */
+	private String routeCostModelFile = null;
+
+	/**
+	 * Routes with at least this number of stops or at least this predicted pseudoRouting
+	 * time are routed in parallel segments of stop pairs. 0 disables the criterion.
+	 */
+	private int splitRouteStopThreshold = 0;
+	private double splitRoutePredictedSeconds = 0;
+
+	/**
+	 * If true, the link candidates of a transit route are created when the route is pseudo
+	 * routed and released afterwards instead of creating all link candidates beforehand.
+	 */
+	private boolean lazyLinkCandidates = false;
+
 	private String inputNetworkFile = null;
 	private String inputScheduleFile = null;
 	private String outputNetworkFile = null;
 	private String outputStreetNetworkFile = null;
 	private String outputScheduleFile = null;
+	private String previousScheduleFile = null;
+	private String previousNetworkFile = null;
+	private String checkpointFile = null;
 	private TravelCostType travelCostType = TravelCostType.linkLength;
+	private ChildStopTransfers childStopTransfers = ChildStopTransfers.allPairs;
 
 	private boolean routingWithCandidateDistance = true;
 	private int nLinkThreshold = 6;
@@ -174,6 +218,11 @@ public class PublicTransitMappingConfigGroup extends ReflectiveConfigGroup {
 		map.put(TRAVEL_COST_TYPE,
 				"Defines which link attribute should be used for routing. Possible values \"" + TravelCostType.linkLength + "\" (default) \n" +
 				"\t\tand \"" + travelTime + "\".");
+		map.put(CHILD_STOP_TRANSFERS,
+				"Defines how transfers between the child stop facilities of a parent stop are represented. \"" + ChildStopTransfers.allPairs + "\" (default)\n" +
+				"\t\tadds a minimal transfer time of 0 for every pair of child stop facilities (quadratic in the number of children).\n" +
+				"\t\t\"" + ChildStopTransfers.stopArea + "\" assigns the served child stop facilities to a stop area (the parent's stop area or the\n" +
+				"\t\tparent stop id) instead, for routers that allow transfers within a stop area.");
 		map.put(SCHEDULE_FREESPEED_MODES,
 				"After the schedule has been mapped, the free speed of links can be set according to the necessary travel \n" +
 				"\t\ttimes given by the transit schedule. The freespeed of a link is set to the minimal value needed by all \n" +
@@ -192,6 +241,15 @@ public class PublicTransitMappingConfigGroup extends ReflectiveConfigGroup {
 		map.put(OUTPUT_STREET_NETWORK_FILE, "Path to the output car only network file. The input multimodal map is filtered. \n" +
 				"\t\tNot needed if PTMapper is used within another class.");
 		map.put(OUTPUT_SCHEDULE_FILE, "Path to the output schedule file. Not needed if PTMapper is used within another class.");
+		map.put(PREVIOUS_SCHEDULE_FILE, "Path to a previously mapped schedule. If set together with [" + PREVIOUS_NETWORK_FILE + "], mapping is\n" +
+				"\t\tincremental: transit routes with unchanged mode, shape, stop facilities and stop coordinates keep\n" +
+				"\t\ttheir previous link sequence and child stop facilities if their links still exist. Only new or changed\n" +
+				"\t\troutes are pseudo routed. Optional.");
+		map.put(PREVIOUS_NETWORK_FILE, "Path to the network of the previous mapping, see [" + PREVIOUS_SCHEDULE_FILE + "]. Artificial links\n" +
+				"\t\tof reused routes are copied from this network. Optional.");
+		map.put(CHECKPOINT_FILE, "Completed pseudo routes are appended to this file while pseudoRouting is running. If the mapping\n" +
+				"\t\tis restarted with the same network, schedule and config, routes contained in the file are not routed\n" +
+				"\t\tagain. A file created with other inputs is overwritten. Optional.");
 		map.put(REMOVE_NOT_USED_STOP_FACILITIES,
 				"If true, stop facilities that are not used by any transit route are removed from the schedule. Default: true");
 		map.put(ROUTING_WITH_CANDIDATE_DISTANCE,
@@ -212,11 +270,11 @@ public class PublicTransitMappingConfigGroup extends ReflectiveConfigGroup {
 				"The maximal distance [meter] a link candidate is allowed to have from the stop facility.\n" +
 				"\t\tNo link candidates beyond this distance are added.");
 		map.put(NETWORK_ROUTER,
-				"The router that should be used. Possible options are: [SpeedyALT, AStarLandmarks, CHRouter].\n" +
-				"\t\tCHRouter (Contraction Hierarchies) is typically ~2-3x faster per query than SpeedyALT on\n" +
-				"\t\tlarger networks, at the cost of a one-time preprocessing step per mode-filtered network\n" +
-				"\t\t(seconds to minutes). Recommended for medium/large scenarios where the routing phase\n" +
-				"\t\tdominates total mapping time. Requires MATSim >= 2027.");
+				"The router used for single least cost paths between two links, e.g. when routing a schedule with\n" +
+				"\t\tScheduleTools or the schedule editor. Possible options are: [SpeedyALT, AStarLandmarks, CHRouter].\n" +
+				"\t\tPseudo routing does not use this router: it searches the paths from a link candidate to all\n" +
+				"\t\tcandidates of the next stop with one Dijkstra search. The router's preprocessing (ALT landmarks,\n" +
+				"\t\tCH contraction) is only done once a single path is requested. Requires MATSim >= 2027.");
 		map.put(USE_MODE_SPECIFIC_RULES, "Instead of using general number of links and maximum search distance rule, use the schedule mode specific rules "
 				+ "to be defined within the parameter sets. For those that no information is provided the general values will be used. Options: [false, true]. Default: false.");
 		map.put(THREAD_CHUNK_SIZE, "The size of the chunk that is sent to the pt mapper thread at the time to build"
@@ -229,6 +287,26 @@ public class PublicTransitMappingConfigGroup extends ReflectiveConfigGroup {
 				"\t\tequivalent to the unbounded variant because any path with cost >= maxAllowedTravelCost\n" +
 				"\t\tis already discarded downstream and replaced by an artificial link. Requires MATSim >=\n" +
 				"\t\t2027 to take effect.");
+		map.put(PATH_CACHE_SIZE,
+				"Least cost paths between link candidates are cached and shared between all pseudoRouting threads.\n" +
+				"\t\tThis value limits the estimated memory of the cache in bytes, a path takes about 170 bytes plus\n" +
+				"\t\t4 bytes per link. Paths are evicted once the limit is reached. 0 disables the cache. Default: " + pathCacheSize);
+		map.put(ROUTE_COST_MODEL_FILE,
+				"Transit routes are pseudo routed in descending order of their estimated routing time. The time per\n" +
+				"\t\tlink candidate pair is measured for each mode and stored in this csv file, later runs read it to\n" +
+				"\t\timprove the estimate. The file is created if it does not exist. Optional, without a file all\n" +
+				"\t\troutes are ordered by the number of link candidate pairs.");
+		map.put(SPLIT_ROUTE_STOP_THRESHOLD,
+				"The stop pairs of transit routes with at least this many stops are pseudo routed in parallel segments\n" +
+				"\t\tinstead of by a single thread. The segments share a pool of [" + NUM_OF_THREADS + "] threads. Useful if a\n" +
+				"\t\tfew very long routes dominate the pseudoRouting time. The mapping result does not change. 0 disables splitting by number of stops. Default: 0");
+		map.put(SPLIT_ROUTE_PREDICTED_SECONDS,
+				"Transit routes with a predicted pseudoRouting time of at least this many seconds are routed in parallel\n" +
+				"\t\tsegments as well, see [" + ROUTE_COST_MODEL_FILE + "]. 0 disables splitting by predicted time. Default: 0");
+		map.put(LAZY_LINK_CANDIDATES,
+				"If true, the link candidates of a transit route are created once the route is pseudo routed and\n" +
+				"\t\treleased afterwards. Reduces memory usage and the time until the first route is routed on large\n" +
+				"\t\tschedules. The mapping result does not change. Default: false");
 		return map;
 	}
 
@@ -344,6 +422,69 @@ public class PublicTransitMappingConfigGroup extends ReflectiveConfigGroup {
 		this.boundedSearch = v;
 	}
 
+	/**
+	 * Path cache size (see field doc).
+	 */
+	@StringGetter(PATH_CACHE_SIZE)
+	public long getPathCacheSize() {
+		return pathCacheSize;
+	}
+
+	@StringSetter(PATH_CACHE_SIZE)
+	public void setPathCacheSize(long pathCacheSize) {
+		this.pathCacheSize = pathCacheSize;
+	}
+
+	/**
+	 * Route cost model file (see field doc).
+	 */
+	@StringGetter(ROUTE_COST_MODEL_FILE)
+	public String getRouteCostModelFileStr() {
+		return this.routeCostModelFile == null ? "" : this.routeCostModelFile;
+	}
+
+	public String getRouteCostModelFile() {
+		return this.routeCostModelFile;
+	}
+
+	@StringSetter(ROUTE_COST_MODEL_FILE)
+	public void setRouteCostModelFile(String routeCostModelFile) {
+		this.routeCostModelFile = routeCostModelFile.equals("") ? null : routeCostModelFile;
+	}
+
+	/**
+	 * Intra-route parallelism (see field doc).
+	 */
+	@StringGetter(SPLIT_ROUTE_STOP_THRESHOLD)
+	public int getSplitRouteStopThreshold() {
+		return splitRouteStopThreshold;
+	}
+
+	@StringSetter(SPLIT_ROUTE_STOP_THRESHOLD)
+	public void setSplitRouteStopThreshold(int splitRouteStopThreshold) {
+		this.splitRouteStopThreshold = splitRouteStopThreshold;
+	}
+
+	@StringGetter(SPLIT_ROUTE_PREDICTED_SECONDS)
+	public double getSplitRoutePredictedSeconds() {
+		return splitRoutePredictedSeconds;
+	}
+
+	@StringSetter(SPLIT_ROUTE_PREDICTED_SECONDS)
+	public void setSplitRoutePredictedSeconds(double splitRoutePredictedSeconds) {
+		this.splitRoutePredictedSeconds = splitRoutePredictedSeconds;
+	}
+
+	@StringGetter(LAZY_LINK_CANDIDATES)
+	public boolean getLazyLinkCandidates() {
+		return lazyLinkCandidates;
+	}
+
+	@StringSetter(LAZY_LINK_CANDIDATES)
+	public void setLazyLinkCandidates(boolean lazyLinkCandidates) {
+		this.lazyLinkCandidates = lazyLinkCandidates;
+	}
+
 	/**
 	 * Threads
 	 */
@@ -370,6 +511,16 @@ public class PublicTransitMappingConfigGroup extends ReflectiveConfigGroup {
 		this.travelCostType = type;
 	}
 
+	@StringGetter(CHILD_STOP_TRANSFERS)
+	public ChildStopTransfers getChildStopTransfers() {
+		return childStopTransfers;
+	}
+
+	@StringSetter(CHILD_STOP_TRANSFERS)
+	public void setChildStopTransfers(ChildStopTransfers childStopTransfers) {
+		this.childStopTransfers = childStopTransfers;
+	}
+
 
 	/**
 	 * If all paths between two stops have a length > maxTravelCostFactor * beelineDistance,
@@ -471,6 +622,51 @@ public class PublicTransitMappingConfigGroup extends ReflectiveConfigGroup {
 		this.outputStreetNetworkFile = outputStreetNetworkFile.equals("") ? null : outputStreetNetworkFile;
 	}
 
+	/**
+	 * Incremental mapping
+	 */
+	@StringGetter(PREVIOUS_SCHEDULE_FILE)
+	public String getPreviousScheduleFileStr() {
+		return this.previousScheduleFile == null ? "" : this.previousScheduleFile;
+	}
+
+	public String getPreviousScheduleFile() {
+		return this.previousScheduleFile;
+	}
+
+	@StringSetter(PREVIOUS_SCHEDULE_FILE)
+	public void setPreviousScheduleFile(String previousScheduleFile) {
+		this.previousScheduleFile = previousScheduleFile.equals("") ? null : previousScheduleFile;
+	}
+
+	@StringGetter(PREVIOUS_NETWORK_FILE)
+	public String getPreviousNetworkFileStr() {
+		return this.previousNetworkFile == null ? "" : this.previousNetworkFile;
+	}
+
+	public String getPreviousNetworkFile() {
+		return this.previousNetworkFile;
+	}
+
+	@StringSetter(PREVIOUS_NETWORK_FILE)
+	public void setPreviousNetworkFile(String previousNetworkFile) {
+		this.previousNetworkFile = previousNetworkFile.equals("") ? null : previousNetworkFile;
+	}
+
+	@StringGetter(CHECKPOINT_FILE)
+	public String getCheckpointFileStr() {
+		return this.checkpointFile == null ? "" : this.checkpointFile;
+	}
+
+	public String getCheckpointFile() {
+		return this.checkpointFile;
+	}
+
+	@StringSetter(CHECKPOINT_FILE)
+	public void setCheckpointFile(String checkpointFile) {
+		this.checkpointFile = checkpointFile.equals("") ? null : checkpointFile;
+	}
+
 	public String getOutputScheduleFile() {
 		return this.outputScheduleFile;
 	}
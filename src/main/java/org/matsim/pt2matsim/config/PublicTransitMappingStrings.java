@@ -36,6 +36,10 @@ public final class PublicTransitMappingStrings {
 	public static final String STOP_FACILITY_LOOP_LINK = "stopFacilityLink";
 	public static final String ARTIFICIAL_LINK_MODE = "artificial";
 	public static final Set<String> ARTIFICIAL_LINK_MODE_AS_SET = CollectionUtils.stringToSet(ARTIFICIAL_LINK_MODE);
+	/**
+	 * Modes of the artificial loop links created for stop facilities without link candidates.
+	 */
+	public static final Set<String> STOP_FACILITY_LOOP_LINK_MODES = CollectionUtils.stringToSet(ARTIFICIAL_LINK_MODE + "," + STOP_FACILITY_LOOP_LINK);
 	public static final String PREFIX_ARTIFICIAL = "pt_";
 	static final public String SPACE_REPLACEMENT = ":::";
 	public static final String DESCR_SHAPE_ID_PREFIX = "shapeId:";
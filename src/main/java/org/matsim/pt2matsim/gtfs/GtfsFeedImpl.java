@@ -34,6 +34,7 @@ import org.matsim.core.utils.misc.Time;
 import org.matsim.pt2matsim.gtfs.lib.*;
 import org.matsim.pt2matsim.gtfs.lib.GtfsDefinitions.ExtendedRouteType;
 import org.matsim.pt2matsim.gtfs.lib.GtfsDefinitions.RouteType;
+import org.matsim.pt2matsim.jfr.InputReadEvent;
 import org.matsim.pt2matsim.tools.lib.RouteShape;
 
 import java.io.*;
@@ -138,6 +139,8 @@ public class GtfsFeedImpl implements GtfsFeed {
 		if(!inputPath.endsWith("/")) inputPath += "/";
 		this.root = inputPath;
 
+		InputReadEvent readEvent = new InputReadEvent();
+		readEvent.begin();
 		log.info("Loading GTFS files from " + root);
 		try {
 			loadAgencies();
@@ -173,6 +176,13 @@ public class GtfsFeedImpl implements GtfsFeed {
 		loadFrequencies();
 		loadTransfers();
 		log.info("All files loaded");
+		readEvent.end();
+		if(readEvent.shouldCommit()) {
+			readEvent.format = "gtfs";
+			readEvent.source = root;
+			readEvent.elements = trips.values().stream().mapToLong(t -> t.getStopTimes().size()).sum();
+			readEvent.commit();
+		}
 	}
 
 	/**
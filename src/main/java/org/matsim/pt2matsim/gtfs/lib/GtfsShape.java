@@ -24,6 +24,7 @@ import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
 import org.matsim.pt2matsim.tools.lib.RouteShape;
+import org.matsim.pt2matsim.tools.lib.ShapeSegmentIndex;
 
 import java.util.*;
 
@@ -44,6 +45,9 @@ public class GtfsShape implements RouteShape {
 	private double extentNEx = Double.MIN_VALUE;
 	private double extentNEy = Double.MIN_VALUE;
 
+	// created on first use, reset if points change
+	private volatile ShapeSegmentIndex segmentIndex;
+
 	public GtfsShape(String id) {
 		this.id = Id.create(id, RouteShape.class);
 	}
@@ -71,6 +75,7 @@ public class GtfsShape implements RouteShape {
 			Coord transformedCoord = transformation.transform(entry.getValue());
 			this.coordSorted.put(entry.getKey(), transformedCoord);
 		}
+		this.segmentIndex = null;
 	}
 
 	/**
@@ -83,6 +88,7 @@ public class GtfsShape implements RouteShape {
 		if(check != null && (check.getX() != point.getX() || check.getY() != point.getY())) {
 			throw new IllegalArgumentException("Sequence position " + pos + " already defined in shape " + id);
 		}
+		this.segmentIndex = null;
 
 		if(point.getX() < extentSWx) {
 			extentSWx = point.getX();
@@ -106,6 +112,20 @@ public class GtfsShape implements RouteShape {
 		return new Coord[]{new Coord(extentSWx, extentSWy), new Coord(extentNEx, extentNEy)};
 	}
 
+	/**
+	 * @return the cached segment index of the shape. Changes to the map returned by
+	 * {@link #getCoordsSorted()} are not detected.
+	 */
+	@Override
+	public ShapeSegmentIndex getSegmentIndex() {
+		ShapeSegmentIndex index = this.segmentIndex;
+		if(index == null) {
+			index = new ShapeSegmentIndex(coordSorted.values());
+			this.segmentIndex = index;
+		}
+		return index;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if(this == o) return true;
@@ -34,7 +34,9 @@ import java.util.Set;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.utils.collections.MapUtils;
+import org.matsim.core.utils.collections.QuadTree;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
 import org.matsim.core.utils.misc.Counter;
 import org.matsim.pt.transitSchedule.ChainedDepartureImpl;
@@ -69,6 +71,7 @@ import org.matsim.api.core.v01.network.Node;
 import org.matsim.pt2matsim.hafas.lib.StreckenptReader;
 import org.matsim.pt2matsim.hafas.lib.KantenReader;
 import org.matsim.pt2matsim.tools.NetworkTools;
+import org.matsim.pt2matsim.tools.lib.LinkSegmentIndex;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.core.utils.geometry.CoordUtils;
@@ -83,6 +86,8 @@ public final class HafasConverter {
 
 	static Logger log = LogManager.getLogger(HafasConverter.class);
 
+	private static final double NEAREST_LINK_SEARCH_RADIUS = 10000.0;
+
     private HafasConverter() {
     }
 
@@ -142,10 +147,15 @@ public final class HafasConverter {
 					isolatedNodes.add(node);
 				}
 			}
+			// isolated nodes have no links, the index only contains the links read from KANTEN
+			LinkSegmentIndex linkSegmentIndex = LinkSegmentIndex.create(network, null);
+			double[] bbox = NetworkUtils.getBoundingBox(network.getNodes().values());
+			QuadTree<Link> pseudoLinks = new QuadTree<>(bbox[0], bbox[1], bbox[2], bbox[3]);
+			double maxPseudoLinkLength = 0;
 			for (Node node : isolatedNodes) {
 				Id<TransitStopFacility> stopId = Id.create(node.getId().toString(), TransitStopFacility.class);
 				if (schedule.getFacilities().containsKey(stopId)) {
-					Link nearestLink = NetworkTools.getNearestLink(network, node.getCoord(), 10000.0);
+					Link nearestLink = getNearestLink(network, linkSegmentIndex, pseudoLinks, maxPseudoLinkLength, node.getCoord());
 					if (nearestLink != null) {
 						Node targetNode = nearestLink.getFromNode();
 						double distance = CoordUtils.calcEuclideanDistance(node.getCoord(), targetNode.getCoord());
@@ -168,6 +178,9 @@ public final class HafasConverter {
 						inLink.setCapacity(9999);
 						network.addLink(inLink);
 
+						pseudoLinks.put(node.getCoord().getX(), node.getCoord().getY(), outLink);
+						pseudoLinks.put(targetNode.getCoord().getX(), targetNode.getCoord().getY(), inLink);
+						maxPseudoLinkLength = Math.max(maxPseudoLinkLength, distance);
 						pseudoLinkCount++;
 					}
 				} else {
@@ -452,4 +465,39 @@ public final class HafasConverter {
 	private static Id<TransitRoute> createRouteId(FPLANRoute route, int routeNr) {
 		return Id.create(route.getFahrtNummer() + "_" + String.format("%03d", routeNr), TransitRoute.class);
 	}
+
+	/**
+	 * Returns the same link as {@link NetworkTools#getNearestLink(Network, Coord, double)} with a search
+	 * radius of {@value #NEAREST_LINK_SEARCH_RADIUS}: the closest of the links from or to nodes within
+	 * the radius. The segment index only contains the KANTEN links, the pseudo links added so far are
+	 * stored in a quad tree by their from node.
+	 */
+	private static Link getNearestLink(Network network, LinkSegmentIndex linkSegmentIndex, QuadTree<Link> pseudoLinks, double maxPseudoLinkLength, Coord coord) {
+		Link closestLink = linkSegmentIndex.getNearestLink(coord);
+		if (closestLink == null || !hasNodeWithinRadius(closestLink, coord)) {
+			// only long links are close to the coord, the node search decides
+			return NetworkTools.getNearestLink(network, coord, NEAREST_LINK_SEARCH_RADIUS);
+		}
+		double minDistance = CoordUtils.distancePointLinesegment(closestLink.getFromNode().getCoord(), closestLink.getToNode().getCoord(), coord);
+		// a closer pseudo link has its from node within minDistance plus its length
+		for (Link pseudoLink : pseudoLinks.getDisk(coord.getX(), coord.getY(), minDistance + maxPseudoLinkLength)) {
+			double distance = CoordUtils.distancePointLinesegment(pseudoLink.getFromNode().getCoord(), pseudoLink.getToNode().getCoord(), coord);
+			if (distance < minDistance && hasNodeWithinRadius(pseudoLink, coord)) {
+				minDistance = distance;
+				closestLink = pseudoLink;
+			}
+		}
+
+		Link oppositeLink = NetworkTools.getOppositeLink(closestLink);
+		if (oppositeLink != null && !NetworkTools.coordIsOnRightSideOfLink(coord, closestLink)) {
+			return oppositeLink;
+		} else {
+			return closestLink;
+		}
+	}
+
+	private static boolean hasNodeWithinRadius(Link link, Coord coord) {
+		return CoordUtils.calcEuclideanDistance(link.getFromNode().getCoord(), coord) <= NEAREST_LINK_SEARCH_RADIUS
+				|| CoordUtils.calcEuclideanDistance(link.getToNode().getCoord(), coord) <= NEAREST_LINK_SEARCH_RADIUS;
+	}
 }
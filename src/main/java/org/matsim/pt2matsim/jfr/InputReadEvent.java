@@ -0,0 +1,46 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event for reading an input data set (OSM file, GTFS feed).
+ */
+@Name("pt2matsim.InputRead")
+@Label("Input Read")
+@Category({"pt2matsim", "Input"})
+@Description("Reading of an OSM file or GTFS feed")
+public class InputReadEvent extends Event {
+
+	@Label("Format")
+	public String format;
+
+	@Label("Source")
+	public String source;
+
+	@Label("Elements")
+	@Description("Number of elements read (OSM nodes, ways and relations or GTFS stop times)")
+	public long elements;
+}
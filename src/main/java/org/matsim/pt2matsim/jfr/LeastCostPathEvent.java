@@ -0,0 +1,71 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event for a (one to many) least cost path calculation between
+ * link candidates. Only every {@link #SAMPLE_INTERVAL}th calculation is recorded.
+ */
+@Name("pt2matsim.LeastCostPath")
+@Label("Least Cost Path")
+@Category({"pt2matsim", "Routing"})
+@Description("Sampled least cost path calculation from a link candidate to the link candidates of the next stop")
+public class LeastCostPathEvent extends Event {
+
+	public static final int SAMPLE_INTERVAL = 64;
+
+	@Label("Transit Line")
+	public String transitLine;
+
+	@Label("Transit Route")
+	public String transitRoute;
+
+	@Label("Transport Mode")
+	public String transportMode;
+
+	@Label("From Link")
+	public String fromLink;
+
+	@Label("Targets")
+	public int targets;
+
+	@Label("Paths Found")
+	public int paths;
+
+	@Label("Min Path Cost")
+	public double minPathCost;
+
+	@Label("Cutoff")
+	@Description("Maximal allowed travel cost passed to the router, infinity if unbounded")
+	public double cutoff;
+
+	/**
+	 * @return whether the call with the given (per caller) index should be recorded
+	 */
+	public static boolean isSampled(long callIndex) {
+		return callIndex % SAMPLE_INTERVAL == 0;
+	}
+}
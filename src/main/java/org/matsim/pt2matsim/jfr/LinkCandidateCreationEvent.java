@@ -0,0 +1,53 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event for the creation of all link candidates.
+ */
+@Name("pt2matsim.LinkCandidateCreation")
+@Label("Link Candidate Creation")
+@Category({"pt2matsim", "Mapping"})
+@Description("Search and creation of the link candidates of all route stops")
+public class LinkCandidateCreationEvent extends Event {
+
+	@Label("Creator")
+	public String creator;
+
+	@Label("Transit Routes")
+	public long transitRoutes;
+
+	@Label("Stops")
+	@Description("Number of route stops with link candidates")
+	public int stops;
+
+	@Label("Link Candidates")
+	public int linkCandidates;
+
+	@Label("Loop Links")
+	@Description("Number of artificial loop links created for stops without link candidates")
+	public int loopLinks;
+}
@@ -0,0 +1,56 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event for a phase of the PTMapper. Recorded with
+ * <tt>-XX:StartFlightRecording</tt>, events are not created otherwise.
+ */
+@Name("pt2matsim.MappingPhase")
+@Label("Mapping Phase")
+@Category({"pt2matsim", "Mapping"})
+@Description("A phase of the public transit mapping")
+public class MappingPhaseEvent extends Event {
+
+	@Label("Phase")
+	public String phase;
+
+	/**
+	 * @return a new event whose timing has started
+	 */
+	public static MappingPhaseEvent start() {
+		MappingPhaseEvent event = new MappingPhaseEvent();
+		event.begin();
+		return event;
+	}
+
+	public void end(String phase) {
+		if(shouldCommit()) {
+			this.phase = phase;
+			commit();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder event for the pseudo routing of a single transit route.
+ */
+@Name("pt2matsim.PseudoRoute")
+@Label("Pseudo Route")
+@Category({"pt2matsim", "Mapping"})
+@Description("Pseudo routing of a transit route: link candidate lookup, network routing and pseudo graph")
+public class PseudoRouteEvent extends Event {
+
+	@Label("Transit Line")
+	public String transitLine;
+
+	@Label("Transit Route")
+	public String transitRoute;
+
+	@Label("Transport Mode")
+	public String transportMode;
+
+	@Label("Stops")
+	public int stops;
+
+	@Label("Candidate Pairs")
+	@Description("Number of link candidate pairs evaluated")
+	public long candidatePairs;
+
+	@Label("Predicted Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	public long predictedNanos;
+}
@@ -17,28 +17,44 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 import org.matsim.pt.utils.TransitScheduleValidator;
 import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
 import org.matsim.pt2matsim.config.PublicTransitMappingStrings;
+import org.matsim.pt2matsim.jfr.MappingPhaseEvent;
 import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidateCreator;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidateCreatorLazy;
 import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidateCreatorStandard;
 import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRouters;
 import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRoutersFactory;
 import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRoutersStandard;
 import org.matsim.pt2matsim.mapping.pseudoRouter.PseudoSchedule;
 import org.matsim.pt2matsim.mapping.pseudoRouter.PseudoScheduleImpl;
+import org.matsim.pt2matsim.mapping.pseudoRouter.PseudoTransitRoute;
 import org.matsim.pt2matsim.plausibility.StopFacilityHistogram;
 import org.matsim.pt2matsim.tools.NetworkTools;
 import org.matsim.pt2matsim.tools.PTMapperTools;
 import org.matsim.pt2matsim.tools.ScheduleTools;
 import org.matsim.pt2matsim.tools.debug.ScheduleCleaner;
+import org.matsim.pt2matsim.tools.lib.RouteShape;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * References an unmapped transit schedule to a network. Combines finding link sequences for TransitRoutes and
@@ -62,6 +78,15 @@ public class PTMapper {
 	private final PseudoSchedule pseudoSchedule = new PseudoScheduleImpl();
 	private Network network;
 	private TransitSchedule schedule;
+	private RouteCostModel routeCostModel = new RouteCostModel();
+	private PreviousMapping previousMapping = null;
+	private PseudoRoutingCheckpoint checkpoint = null;
+	private final List<PseudoRoutingCheckpoint> shards = new ArrayList<>();
+	private boolean pseudoRoutingOnly = false;
+	private boolean writeRouteCostModel = true;
+	private boolean pullChildStopFacilities = true;
+	private long routesSplit = 0;
+	private PublicTransitMappingConfigGroup.ChildStopTransfers childStopTransfers = PublicTransitMappingConfigGroup.ChildStopTransfers.allPairs;
 
 	public static void mapScheduleToNetwork(TransitSchedule schedule, Network network,
 			PublicTransitMappingConfigGroup config) throws InterruptedException, ExecutionException {
@@ -101,21 +126,123 @@ public class PTMapper {
 	public void run(PublicTransitMappingConfigGroup config, LinkCandidateCreator linkCandidateCreator,
 			ScheduleRoutersFactory scheduleRoutersFactory) throws InterruptedException, ExecutionException {
 		// use defaults
+		if (scheduleRoutersFactory == null) {
+			scheduleRoutersFactory = new ScheduleRoutersStandard.Factory(schedule, network, config);
+		}
+
+		// the fingerprint is calculated before the link candidate creator adds stop facility links to the network
+		if (this.checkpoint == null && config.getCheckpointFile() != null) {
+			this.checkpoint = new PseudoRoutingCheckpoint(config.getCheckpointFile(),
+					PseudoRoutingCheckpoint.createFingerprint(network, schedule, config, scheduleRoutersFactory));
+		}
+
 		if (linkCandidateCreator == null) {
-			linkCandidateCreator = new LinkCandidateCreatorStandard(schedule, network,
-					config);
+			long linkCandidateStart = System.nanoTime();
+			MappingPhaseEvent linkCandidateEvent = MappingPhaseEvent.start();
+			if (config.getLazyLinkCandidates()) {
+				linkCandidateCreator = new LinkCandidateCreatorLazy(schedule, network, config);
+			} else {
+				linkCandidateCreator = new LinkCandidateCreatorStandard(schedule, network,
+						config);
+			}
+			logPhase(linkCandidateEvent, "CreateLinkCandidates", System.nanoTime() - linkCandidateStart);
 		}
 
-		if (scheduleRoutersFactory == null) {
-			scheduleRoutersFactory = new ScheduleRoutersStandard.Factory(schedule, network, config);
+		if (config.getPreviousScheduleFile() != null && config.getPreviousNetworkFile() != null) {
+			this.previousMapping = PreviousMapping.read(config.getPreviousScheduleFile(),
+					config.getPreviousNetworkFile());
+		}
+
+		String routeCostModelFile = config.getRouteCostModelFile();
+		if (routeCostModelFile != null) {
+			this.routeCostModel = RouteCostModel.read(routeCostModelFile);
 		}
 
+		this.childStopTransfers = config.getChildStopTransfers();
+
 		run(linkCandidateCreator,
 				scheduleRoutersFactory,
 				config.getNumOfThreads(), config.getMaxTravelCostFactor(),
 				config.getScheduleFreespeedModes(), config.getModesToKeepOnCleanUp(),
 				config.getRemoveNotUsedStopFacilities(), config.getChunkSize(),
-				config.getBoundedSearch());
+				config.getBoundedSearch(), config.getSplitRouteStopThreshold(),
+				config.getSplitRoutePredictedSeconds());
+
+		if (routeCostModelFile != null && writeRouteCostModel) {
+			this.routeCostModel.write(routeCostModelFile);
+		}
+	}
+
+	/**
+	 * Sets the model used to order the pseudoRouting queue. The model is updated with the timings of this run.
+	 */
+	public void setRouteCostModel(RouteCostModel routeCostModel) {
+		this.routeCostModel = routeCostModel;
+	}
+
+	public RouteCostModel getRouteCostModel() {
+		return routeCostModel;
+	}
+
+	/**
+	 * Enables incremental mapping: transit routes that are unchanged compared to the previous mapping keep their
+	 * link sequence and child stop facilities, only new or changed routes are pseudo routed.
+	 */
+	public void setPreviousMapping(PreviousMapping previousMapping) {
+		this.previousMapping = previousMapping;
+	}
+
+	/**
+	 * Enables checkpointing of the pseudoRouting phase: completed pseudo routes are appended to the checkpoint file,
+	 * routes already contained in the file (from an interrupted run with the same inputs) are not routed again.
+	 * Takes precedence over the checkpoint file of the config.
+	 */
+	public void setCheckpoint(PseudoRoutingCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * Sets how transfers between child stop facilities of the same parent stop are added to the schedule.
+	 */
+	public void setChildStopTransfers(PublicTransitMappingConfigGroup.ChildStopTransfers childStopTransfers) {
+		this.childStopTransfers = childStopTransfers;
+	}
+
+	/**
+	 * Adds the pseudo routes of a shard that has been pseudo routed by another process (see {@link ShardedPTMapper}).
+	 * The transit routes of the shard are not pseudo routed again.
+	 */
+	public void addShard(PseudoRoutingCheckpoint shard) {
+		this.shards.add(shard);
+	}
+
+	/**
+	 * If true, the mapping stops after the pseudoRouting phase. Only useful together with a checkpoint, which then
+	 * contains the result.
+	 */
+	public void setPseudoRoutingOnly(boolean pseudoRoutingOnly) {
+		this.pseudoRoutingOnly = pseudoRoutingOnly;
+	}
+
+	/**
+	 * If false, the route cost model file of the config is read but not updated with the timings of this run.
+	 */
+	public void setWriteRouteCostModel(boolean writeRouteCostModel) {
+		this.writeRouteCostModel = writeRouteCostModel;
+	}
+
+	/**
+	 * If false, the child stop facilities are not pulled together after the link sequences have been created.
+	 */
+	void setPullChildStopFacilities(boolean pullChildStopFacilities) {
+		this.pullChildStopFacilities = pullChildStopFacilities;
+	}
+
+	/**
+	 * @return the number of transit routes whose stop pairs were routed in parallel segments
+	 */
+	long getRoutesSplit() {
+		return routesSplit;
 	}
 
 	/**
@@ -145,6 +272,24 @@ public class PTMapper {
 			double maxTravelCostFactor, Set<String> scheduleFreespeedModes, Set<String> modesToKeepOnCleanup,
 			boolean removeNotUsedStopFacilities, int chunkSize, boolean boundedSearch)
 			throws InterruptedException, ExecutionException {
+		run(linkCandidates, scheduleRoutersFactory, numThreads, maxTravelCostFactor, scheduleFreespeedModes,
+				modesToKeepOnCleanup, removeNotUsedStopFacilities, chunkSize, boundedSearch, 0, 0);
+	}
+
+	/**
+	 * Maps the schedule to the network.
+	 *
+	 * @param splitRouteStopThreshold    the stop pairs of routes with at least this many stops are routed in parallel
+	 *                                   segments, 0 disables splitting by number of stops
+	 * @param splitRoutePredictedSeconds routes with at least this predicted pseudoRouting time are split as well, 0
+	 *                                   disables splitting by predicted time
+	 * @throws ExecutionException
+	 * @throws InterruptedException
+	 */
+	public void run(LinkCandidateCreator linkCandidates, ScheduleRoutersFactory scheduleRoutersFactory, int numThreads,
+			double maxTravelCostFactor, Set<String> scheduleFreespeedModes, Set<String> modesToKeepOnCleanup,
+			boolean removeNotUsedStopFacilities, int chunkSize, boolean boundedSearch, int splitRouteStopThreshold,
+			double splitRoutePredictedSeconds) throws InterruptedException, ExecutionException {
 		if (schedule == null)
 			throw new RuntimeException("No schedule defined!");
 		if (network == null)
@@ -188,30 +333,86 @@ public class PTMapper {
 		log.info("Calculating pseudoTransitRoutes... (" + nTransitRoutes + " transit routes in "
 				+ schedule.getTransitLines().size() + " transit lines)");
 
-		Progress progress = new Progress(nTransitRoutes, "Calculating pseudoTransitRoutes ...");
+		// Routes with the same mode, stop sequence and shape are mapped identically. Only the
+		// first route of each group is pseudo routed, the others get a copy of its pseudo route.
+		Collection<List<PseudoRoutingImpl.QueuedRoute>> routeGroups = groupIdenticalRoutes(schedule);
+		log.info(String.format("PseudoRouting: %d transit routes have %d distinct stop sequences", nTransitRoutes,
+				routeGroups.size()));
 
 		// Shared route-level work queue. All workers poll from the same queue,
 		// so an idle worker will pick up routes still pending on a busy worker
-		// (dynamic load balancing). This eliminates the line-level pre-assignment
-		// long-tail problem ("stuck at 99 %").
-		ConcurrentLinkedQueue<PseudoRoutingImpl.QueuedRoute> sharedQueue = new ConcurrentLinkedQueue<>();
-		for (TransitLine transitLine : schedule.getTransitLines().values()) {
-			for (TransitRoute transitRoute : transitLine.getRoutes().values()) {
-				sharedQueue.add(new PseudoRoutingImpl.QueuedRoute(transitLine, transitRoute));
+		// (dynamic load balancing). Routes are queued longest first according to
+		// the route cost model, so no long route is left for the end of the run.
+		// Unchanged routes of a previous mapping and routes completed in a checkpoint or shard are not queued at all.
+		Set<TransitRoute> checkpointRoutes = checkpoint == null ? new HashSet<>()
+				: checkpoint.load(schedule, network, pseudoSchedule);
+		for (PseudoRoutingCheckpoint shard : shards) {
+			PseudoSchedule shardPseudoSchedule = new PseudoScheduleImpl();
+			checkpointRoutes.addAll(shard.loadShard(schedule, network, shardPseudoSchedule, routeCostModel));
+			pseudoSchedule.mergePseudoSchedule(shardPseudoSchedule);
+		}
+		List<PseudoRoutingImpl.QueuedRoute> queuedRoutes = new ArrayList<>(routeGroups.size());
+		int nReusedRoutes = 0;
+		int nCheckpointRoutes = 0;
+		for (List<PseudoRoutingImpl.QueuedRoute> routeGroup : routeGroups) {
+			// a completed route becomes the group's representative, its pseudo route is copied to the others
+			int completed = indexOfCompletedRoute(routeGroup, checkpointRoutes);
+			if (completed >= 0) {
+				Collections.swap(routeGroup, 0, completed);
+				nCheckpointRoutes += routeGroup.size();
+				continue;
+			}
+			PseudoRoutingImpl.QueuedRoute qr = routeGroup.get(0);
+			if (previousMapping != null
+					&& previousMapping.addPseudoRoute(qr.line(), qr.route(), network, pseudoSchedule)) {
+				nReusedRoutes += routeGroup.size();
+				continue;
+			}
+			queuedRoutes.add(new PseudoRoutingImpl.QueuedRoute(qr.line(), qr.route(),
+					routeCostModel.estimate(qr.line(), qr.route(), linkCandidates)));
+		}
+		queuedRoutes.sort(Comparator.comparingDouble(PseudoRoutingImpl.QueuedRoute::predictedNanos).reversed());
+		ConcurrentLinkedQueue<PseudoRoutingImpl.QueuedRoute> sharedQueue = new ConcurrentLinkedQueue<>(queuedRoutes);
+		if (previousMapping != null) {
+			log.info(String.format("Incremental mapping: %d transit routes reused from previous mapping, %d remapped",
+					nReusedRoutes, nTransitRoutes - nReusedRoutes));
+		}
+		if (checkpoint != null || !shards.isEmpty()) {
+			log.info(String.format("Checkpoint: %d transit routes resumed, %d left to pseudo route", nCheckpointRoutes,
+					nTransitRoutes - nCheckpointRoutes - nReusedRoutes));
+		}
+
+		Progress progress = new Progress(queuedRoutes.size(), "Calculating pseudoTransitRoutes ...");
+
+		// no routers are created if all routes are resumed or reused
+		int nWorkers = Math.min(numThreads, queuedRoutes.size());
+
+		// segments of split routes are routed in a pool of numThreads threads with a fixed set of routers
+		ForkJoinPool segmentPool = null;
+		BlockingQueue<ScheduleRouters> segmentRouters = null;
+		if (nWorkers > 0 && (splitRouteStopThreshold > 0 || splitRoutePredictedSeconds > 0)) {
+			segmentPool = new ForkJoinPool(numThreads);
+			segmentRouters = new ArrayBlockingQueue<>(numThreads);
+			for (int i = 0; i < numThreads; i++) {
+				segmentRouters.add(scheduleRoutersFactory.createInstance());
 			}
 		}
 
 		// initiate pseudoRouting workers (each owns its own ScheduleRouters instance)
-		PseudoRoutingImpl[] pseudoRoutingRunnables = new PseudoRoutingImpl[numThreads];
-		for (int i = 0; i < numThreads; i++) {
+		PseudoRoutingImpl[] pseudoRoutingRunnables = new PseudoRoutingImpl[nWorkers];
+		for (int i = 0; i < nWorkers; i++) {
 			pseudoRoutingRunnables[i] = new PseudoRoutingImpl(scheduleRoutersFactory, linkCandidates,
-					maxTravelCostFactor, progress, sharedQueue, "pseudoRouting-" + i, boundedSearch);
+					maxTravelCostFactor, progress, sharedQueue, "pseudoRouting-" + i, boundedSearch,
+					splitRouteStopThreshold, splitRoutePredictedSeconds);
+			pseudoRoutingRunnables[i].setCheckpoint(checkpoint);
+			pseudoRoutingRunnables[i].setSegmentPool(segmentPool, segmentRouters);
 		}
 
 		long phase1Start = System.nanoTime();
-		Thread[] threads = new Thread[numThreads];
+		MappingPhaseEvent phase1Event = MappingPhaseEvent.start();
+		Thread[] threads = new Thread[nWorkers];
 		// start pseudoRouting
-		for (int i = 0; i < numThreads; i++) {
+		for (int i = 0; i < nWorkers; i++) {
 			threads[i] = new Thread(pseudoRoutingRunnables[i], "pseudoRouting-" + i);
 			threads[i].start();
 		}
@@ -223,8 +424,49 @@ public class PTMapper {
 				throw new RuntimeException(e);
 			}
 		}
-		logPhase("PseudoRouting", System.nanoTime() - phase1Start);
+		if (segmentPool != null) {
+			segmentPool.shutdown();
+		}
+		if (checkpoint != null) {
+			if (pseudoRoutingOnly) {
+				// the timings are added to the route cost model of the coordinator, see PseudoRoutingCheckpoint.loadShard
+				RouteCostModel shardCosts = new RouteCostModel();
+				for (PseudoRoutingImpl prt : pseudoRoutingRunnables) {
+					prt.recordCosts(shardCosts);
+				}
+				checkpoint.writeCosts(shardCosts);
+			}
+			checkpoint.close();
+		}
+		logPhase(phase1Event, "PseudoRouting", System.nanoTime() - phase1Start);
+		if (pseudoRoutingOnly) {
+			log.info("PseudoRouting completed, remaining phases are skipped");
+			return;
+		}
+		String routerStatistics = scheduleRoutersFactory.getStatistics();
+		if (routerStatistics != null) {
+			log.info("PseudoRouting routers: " + routerStatistics);
+		}
 		logGlobalSlowestRoutes(pseudoRoutingRunnables, 10);
+		long candidatePairsRouted = 0;
+		long candidatePairsPruned = 0;
+		for (PseudoRoutingImpl prt : pseudoRoutingRunnables) {
+			candidatePairsRouted += prt.getCandidatePairsRouted();
+			candidatePairsPruned += prt.getCandidatePairsPruned();
+		}
+		for (PseudoRoutingImpl prt : pseudoRoutingRunnables) {
+			routesSplit += prt.getRoutesSplit();
+		}
+		if (segmentPool != null) {
+			log.info(String.format("PseudoRouting: %d transit routes routed in parallel segments", routesSplit));
+		}
+		log.info(String.format("PseudoRouting: %d of %d link candidate pairs skipped by beeline lower bound (%.1f%%)",
+				candidatePairsPruned, candidatePairsRouted,
+				candidatePairsRouted == 0 ? 0.0 : 100.0 * candidatePairsPruned / candidatePairsRouted));
+		for (PseudoRoutingImpl prt : pseudoRoutingRunnables) {
+			prt.recordCosts(routeCostModel);
+		}
+		log.info(routeCostModel.toString());
 
 		/*
 		 * [2] Collect artificial links from threads and add them to network. Collect pseudoSchedules from threads.
@@ -232,11 +474,13 @@ public class PTMapper {
 		log.info("=====================================");
 		log.info("Adding artificial links to network...");
 		long phase2Start = System.nanoTime();
+		MappingPhaseEvent phase2Event = MappingPhaseEvent.start();
 		for (PseudoRouting prt : pseudoRoutingRunnables) {
 			prt.addArtificialLinks(network);
 			pseudoSchedule.mergePseudoSchedule(prt.getPseudoSchedule());
 		}
-		logPhase("AddArtificialLinks+MergePseudoSchedule", System.nanoTime() - phase2Start);
+		copyPseudoRoutesWithinGroups(routeGroups);
+		logPhase(phase2Event, "AddArtificialLinks+MergePseudoSchedule", System.nanoTime() - phase2Start);
 
 		/*
 		 * [3] Replace the parent stop facilities in each transitRoute's routeProfile with child StopFacilities. Add the
@@ -245,8 +489,9 @@ public class PTMapper {
 		log.info("==========================================================================================");
 		log.info("Replacing parent StopFacilities in schedule, creating link sequences for transit routes...");
 		long phase3Start = System.nanoTime();
+		MappingPhaseEvent phase3Event = MappingPhaseEvent.start();
 		pseudoSchedule.createFacilitiesAndLinkSequences(schedule, numThreads, chunkSize);
-		logPhase("CreateFacilitiesAndLinkSequences", System.nanoTime() - phase3Start);
+		logPhase(phase3Event, "CreateFacilitiesAndLinkSequences", System.nanoTime() - phase3Start);
 
 		/*
 		 * [4] Now that all lines have been routed, it is possible that a route passes a link closer to a stop facility
@@ -255,21 +500,20 @@ public class PTMapper {
 		log.info("================================");
 		log.info("Pulling child stop facilities...");
 		long phase4Start = System.nanoTime();
-		int nPulled = 1;
-		int pullPasses = 0;
-		while (nPulled != 0) {
-			nPulled = PTMapperTools.pullChildStopFacilitiesTogether(this.schedule, this.network);
-			pullPasses++;
+		MappingPhaseEvent phase4Event = MappingPhaseEvent.start();
+		if (pullChildStopFacilities) {
+			int pullPasses = PTMapperTools.pullChildStopFacilitiesToFixpoint(this.schedule, this.network, numThreads);
+			log.info(String.format("PullChildStopFacilities: %d fixpoint passes", pullPasses));
 		}
-		log.info(String.format("PullChildStopFacilities: %d fixpoint passes", pullPasses));
-		logPhase("PullChildStopFacilities", System.nanoTime() - phase4Start);
+		logPhase(phase4Event, "PullChildStopFacilities", System.nanoTime() - phase4Start);
 
 		/* [5] */
 		log.info("==========================================");
 		log.info("Add transfers for child stop facilities...");
 		long phase5Start = System.nanoTime();
-		PTMapperTools.addTransfersForChildStopFacilities(this.schedule);
-		logPhase("AddTransfersForChildStopFacilities", System.nanoTime() - phase5Start);
+		MappingPhaseEvent phase5Event = MappingPhaseEvent.start();
+		PTMapperTools.addTransfersForChildStopFacilities(this.schedule, childStopTransfers);
+		logPhase(phase5Event, "AddTransfersForChildStopFacilities", System.nanoTime() - phase5Start);
 
 		/*
 		 * [6] After all lines are created, clean the schedule and network. Removing not used transit links includes
@@ -278,8 +522,9 @@ public class PTMapper {
 		log.info("=============================");
 		log.info("Clean schedule and network...");
 		long phase6Start = System.nanoTime();
+		MappingPhaseEvent phase6Event = MappingPhaseEvent.start();
 		cleanScheduleAndNetwork(scheduleFreespeedModes, modesToKeepOnCleanup, removeNotUsedStopFacilities);
-		logPhase("CleanScheduleAndNetwork", System.nanoTime() - phase6Start);
+		logPhase(phase6Event, "CleanScheduleAndNetwork", System.nanoTime() - phase6Start);
 
 		/*
 		 * [7] Validate the schedule
@@ -287,8 +532,9 @@ public class PTMapper {
 		log.info("======================");
 		log.info("Validating schedule...");
 		long phase7Start = System.nanoTime();
+		MappingPhaseEvent phase7Event = MappingPhaseEvent.start();
 		printValidateSchedule();
-		logPhase("ValidateSchedule", System.nanoTime() - phase7Start);
+		logPhase(phase7Event, "ValidateSchedule", System.nanoTime() - phase7Start);
 
 		log.info("==================================================");
 		log.info("= Mapping transit schedule to network completed! =");
@@ -300,7 +546,73 @@ public class PTMapper {
 		printStatistics(nStopFacilities);
 	}
 
-	private static void logPhase(String name, long elapsedNanos) {
+	/**
+	 * Groups all transit routes of the schedule by transport mode, shape id and stop sequence (stop facilities and
+	 * offsets). Routes within a group only differ in their departures and result in the same pseudo route.
+	 *
+	 * @return the groups in schedule order, the first route of each group is its representative
+	 */
+	private static Collection<List<PseudoRoutingImpl.QueuedRoute>> groupIdenticalRoutes(TransitSchedule schedule) {
+		Map<RouteGroupKey, List<PseudoRoutingImpl.QueuedRoute>> groups = new LinkedHashMap<>();
+		for (TransitLine transitLine : schedule.getTransitLines().values()) {
+			for (TransitRoute transitRoute : transitLine.getRoutes().values()) {
+				List<StopKey> stops = new ArrayList<>(transitRoute.getStops().size());
+				for (TransitRouteStop routeStop : transitRoute.getStops()) {
+					stops.add(new StopKey(routeStop.getStopFacility().getId(),
+							routeStop.getArrivalOffset().orElse(Double.NaN),
+							routeStop.getDepartureOffset().orElse(Double.NaN),
+							routeStop.isAwaitDepartureTime()));
+				}
+				RouteGroupKey key = new RouteGroupKey(transitRoute.getTransportMode(),
+						ScheduleTools.getShapeId(transitRoute), stops);
+				groups.computeIfAbsent(key, k -> new ArrayList<>())
+						.add(new PseudoRoutingImpl.QueuedRoute(transitLine, transitRoute));
+			}
+		}
+		return groups.values();
+	}
+
+	private static int indexOfCompletedRoute(List<PseudoRoutingImpl.QueuedRoute> routeGroup,
+			Set<TransitRoute> completedRoutes) {
+		for (int i = 0; i < routeGroup.size(); i++) {
+			if (completedRoutes.contains(routeGroup.get(i).route())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds a copy of the representative's pseudo route for all other routes of each group.
+	 */
+	private void copyPseudoRoutesWithinGroups(Collection<List<PseudoRoutingImpl.QueuedRoute>> routeGroups) {
+		Map<TransitRoute, PseudoTransitRoute> pseudoRoutes = new IdentityHashMap<>();
+		for (PseudoTransitRoute pseudoTransitRoute : pseudoSchedule.getPseudoRoutes()) {
+			pseudoRoutes.put(pseudoTransitRoute.getTransitRoute(), pseudoTransitRoute);
+		}
+		for (List<PseudoRoutingImpl.QueuedRoute> routeGroup : routeGroups) {
+			PseudoTransitRoute representative = pseudoRoutes.get(routeGroup.get(0).route());
+			for (int i = 1; i < routeGroup.size(); i++) {
+				PseudoRoutingImpl.QueuedRoute qr = routeGroup.get(i);
+				// routes of the group that have been pseudo routed by another shard keep their own pseudo route
+				if (pseudoRoutes.containsKey(qr.route())) {
+					continue;
+				}
+				pseudoSchedule.addPseudoRoute(qr.line(), qr.route(), representative.getPseudoStops(),
+						representative.getNetworkLinkIdList());
+			}
+		}
+	}
+
+	private record StopKey(Id<TransitStopFacility> stopFacilityId, double arrivalOffset, double departureOffset,
+			boolean awaitDepartureTime) {
+	}
+
+	private record RouteGroupKey(String transportMode, Id<RouteShape> shapeId, List<StopKey> stops) {
+	}
+
+	private static void logPhase(MappingPhaseEvent event, String name, long elapsedNanos) {
+		event.end(name);
 		log.info(String.format("PTMapper phase [%s] completed in %.2fs", name, elapsedNanos / 1e9));
 	}
 
@@ -327,8 +639,9 @@ public class PTMapper {
 		log.info(String.format("PseudoRouting global slowest %d routes:", limit));
 		for (int i = 0; i < limit; i++) {
 			PseudoRoutingImpl.RouteTiming rt = all.get(i);
-			log.info(String.format("    line=%s route=%s mode=%s stops=%d pairs=%d elapsed=%.2fs",
-					rt.lineId(), rt.routeId(), rt.mode(), rt.nStops(), rt.candidatePairs(), rt.elapsedNanos() / 1e9));
+			log.info(String.format("    line=%s route=%s mode=%s stops=%d pairs=%d predicted=%.2fs elapsed=%.2fs",
+					rt.lineId(), rt.routeId(), rt.mode(), rt.nStops(), rt.candidatePairs(), rt.predictedNanos() / 1e9,
+					rt.elapsedNanos() / 1e9));
 		}
 	}
 
@@ -0,0 +1,184 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.mapping;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.pt2matsim.config.PublicTransitMappingStrings;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidateImpl;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.PublicTransitStopImpl;
+import org.matsim.pt2matsim.mapping.pseudoRouter.ArtificialLinkImpl;
+import org.matsim.pt2matsim.mapping.pseudoRouter.PseudoRouteStop;
+import org.matsim.pt2matsim.mapping.pseudoRouter.PseudoRouteStopImpl;
+import org.matsim.pt2matsim.mapping.pseudoRouter.PseudoSchedule;
+import org.matsim.pt2matsim.tools.NetworkTools;
+import org.matsim.pt2matsim.tools.ScheduleTools;
+import org.matsim.pt2matsim.tools.lib.RouteShape;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A previously mapped schedule and network used for incremental mapping. Transit
+ * routes of a new (unmapped) schedule whose transport mode, shape, stop facility
+ * sequence and stop coordinates are unchanged keep the link sequence and child stop
+ * facilities of the previous mapping, if all of its links are still available.
+ * Only the remaining routes need to be pseudo routed.
+ * <p>
+ * Artificial links of the previous mapping that are missing in the network are
+ * copied from the previous network (together with their nodes).
+ */
+public class PreviousMapping {
+
+	protected static Logger log = LogManager.getLogger(PreviousMapping.class);
+
+	private final Network previousNetwork;
+	private final Map<RouteKey, TransitRoute> previousRoutes = new HashMap<>();
+
+	public PreviousMapping(TransitSchedule previousSchedule, Network previousNetwork) {
+		this.previousNetwork = previousNetwork;
+		for(TransitLine transitLine : previousSchedule.getTransitLines().values()) {
+			for(TransitRoute transitRoute : transitLine.getRoutes().values()) {
+				if(transitRoute.getRoute() != null) {
+					previousRoutes.putIfAbsent(createKey(transitRoute, true), transitRoute);
+				}
+			}
+		}
+		log.info("Previous mapping contains " + previousRoutes.size() + " distinct mapped transit routes");
+	}
+
+	public static PreviousMapping read(String scheduleFile, String networkFile) {
+		return new PreviousMapping(ScheduleTools.readTransitSchedule(scheduleFile), NetworkTools.readNetwork(networkFile));
+	}
+
+	/**
+	 * Adds a pseudo route based on the previous mapping of an unchanged transit route.
+	 * Missing artificial links are added to the network.
+	 *
+	 * @return <tt>false</tt> if the route has changed or its previous links are no longer available,
+	 * the route needs to be pseudo routed in that case.
+	 */
+	public boolean addPseudoRoute(TransitLine transitLine, TransitRoute transitRoute, Network network, PseudoSchedule pseudoSchedule) {
+		TransitRoute previousRoute = previousRoutes.get(createKey(transitRoute, false));
+		if(previousRoute == null) {
+			return false;
+		}
+
+		List<Id<Link>> linkIds = ScheduleTools.getTransitRouteLinkIds(previousRoute);
+		List<Link> missingLinks = new ArrayList<>();
+		for(Id<Link> linkId : linkIds) {
+			if(!network.getLinks().containsKey(linkId)) {
+				Link previousLink = previousNetwork.getLinks().get(linkId);
+				if(previousLink == null || !linkId.toString().startsWith(PublicTransitMappingStrings.PREFIX_ARTIFICIAL)) {
+					return false;
+				}
+				missingLinks.add(previousLink);
+			}
+		}
+		missingLinks.forEach(l -> copyLink(l, network));
+
+		List<Link> stopLinks = new ArrayList<>(previousRoute.getStops().size());
+		for(TransitRouteStop previousRouteStop : previousRoute.getStops()) {
+			Link stopLink = network.getLinks().get(previousRouteStop.getStopFacility().getLinkId());
+			if(stopLink == null) {
+				return false;
+			}
+			stopLinks.add(stopLink);
+		}
+		pseudoSchedule.addPseudoRoute(transitLine, transitRoute, createPseudoStops(transitLine, transitRoute, stopLinks), linkIds);
+		return true;
+	}
+
+	/**
+	 * @param stopLinks the link of each route stop
+	 * @return the pseudo route stops of a transit route whose stop links are already known
+	 */
+	public static List<PseudoRouteStop> createPseudoStops(TransitLine transitLine, TransitRoute transitRoute, List<Link> stopLinks) {
+		List<TransitRouteStop> routeStops = transitRoute.getStops();
+		List<PseudoRouteStop> pseudoStops = new ArrayList<>(routeStops.size());
+		for(int i = 0; i < routeStops.size(); i++) {
+			TransitRouteStop routeStop = routeStops.get(i);
+			pseudoStops.add(new PseudoRouteStopImpl(i, routeStop, new LinkCandidateImpl(stopLinks.get(i), new PublicTransitStopImpl(transitLine, transitRoute, routeStop))));
+		}
+		return pseudoStops;
+	}
+
+	/**
+	 * Copies an artificial link of the previous mapping. Links between two stops are
+	 * recreated as {@link ArtificialLinkImpl} like the ones added by pseudo routing, stop
+	 * facility loop links are plain network links.
+	 */
+	private static void copyLink(Link previousLink, Network network) {
+		Node fromNode = getOrCopyNode(previousLink.getFromNode(), network);
+		Node toNode = getOrCopyNode(previousLink.getToNode(), network);
+		Link link;
+		if(fromNode == toNode) {
+			link = network.getFactory().createLink(previousLink.getId(), fromNode, toNode);
+			link.setLength(previousLink.getLength());
+			link.setFreespeed(previousLink.getFreespeed());
+		} else {
+			link = new ArtificialLinkImpl(previousLink.getId(), fromNode, toNode, previousLink.getFreespeed(), previousLink.getLength());
+		}
+		link.setCapacity(previousLink.getCapacity());
+		link.setNumberOfLanes(previousLink.getNumberOfLanes());
+		link.setAllowedModes(previousLink.getAllowedModes());
+		network.addLink(link);
+	}
+
+	private static Node getOrCopyNode(Node previousNode, Network network) {
+		Node node = network.getNodes().get(previousNode.getId());
+		if(node == null) {
+			node = network.getFactory().createNode(previousNode.getId(), previousNode.getCoord());
+			network.addNode(node);
+		}
+		return node;
+	}
+
+	/**
+	 * @param mapped whether the route's stop facilities are child stop facilities
+	 */
+	private static RouteKey createKey(TransitRoute transitRoute, boolean mapped) {
+		List<StopKey> stops = new ArrayList<>(transitRoute.getStops().size());
+		for(TransitRouteStop routeStop : transitRoute.getStops()) {
+			TransitStopFacility stopFacility = routeStop.getStopFacility();
+			String parentId = mapped ? ScheduleTools.getParentStopFacilityId(stopFacility.getId().toString()) : stopFacility.getId().toString();
+			stops.add(new StopKey(parentId, stopFacility.getCoord()));
+		}
+		return new RouteKey(transitRoute.getTransportMode(), ScheduleTools.getShapeId(transitRoute), stops);
+	}
+
+	private record StopKey(String parentStopFacilityId, Coord coord) {
+	}
+
+	private record RouteKey(String transportMode, Id<RouteShape> shapeId, List<StopKey> stops) {
+	}
+}
@@ -0,0 +1,454 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.mapping;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.ConfigGroup;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.config.PublicTransitMappingStrings;
+import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRoutersFactory;
+import org.matsim.pt2matsim.mapping.pseudoRouter.ArtificialLink;
+import org.matsim.pt2matsim.mapping.pseudoRouter.ArtificialLinkImpl;
+import org.matsim.pt2matsim.mapping.pseudoRouter.PseudoRouteStop;
+import org.matsim.pt2matsim.mapping.pseudoRouter.PseudoSchedule;
+import org.matsim.pt2matsim.tools.PTMapperTools;
+import org.matsim.pt2matsim.tools.ScheduleTools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only checkpoint file of the pseudo routing phase. Completed pseudo routes
+ * (stop links and network link sequence) and the artificial links they need are
+ * written while pseudo routing is running. A restarted run with the same network,
+ * schedule, mapping config and routers loads the file and only pseudo routes the remaining
+ * transit routes.
+ * <p>
+ * The file is a tab separated text file. The first line contains a fingerprint of
+ * the inputs, a file with a different fingerprint is discarded. Records:
+ * <pre>
+ * L  stopFacilityId
+ * A  linkId  fromNodeId  toNodeId  length  freespeed
+ * R  lineId  routeId  nStops  nLinks  stopLinkId...  linkId...
+ * C  mode  candidatePairs  nanos
+ * </pre>
+ * L records recreate the artificial loop link of a stop facility, which might not exist yet
+ * if link candidates are created lazily. C records are only written to shard files, they pass
+ * the pseudo routing timings of a shard to the coordinator's {@link RouteCostModel}.
+ * Records with a different number of fields and an unterminated last line (e.g. after a
+ * crash) are ignored, the unterminated line is removed before appending. The same format is used for
+ * the shard files of {@link ShardedPTMapper}.
+ */
+public class PseudoRoutingCheckpoint {
+
+	protected static Logger log = LogManager.getLogger(PseudoRoutingCheckpoint.class);
+
+	private static final String HEADER = "#pt2matsim-checkpoint-v2";
+	private static final String LOOP_LINK = "L";
+	private static final String ARTIFICIAL_LINK = "A";
+	private static final String ROUTE = "R";
+	private static final String COSTS = "C";
+	private static final char SEP = '\t';
+	private static final long FLUSH_INTERVAL_NS = 10L * 1_000_000_000L;
+
+	/** Config params that do not affect the mapping result */
+	private static final Set<String> PARAMS_NOT_IN_FINGERPRINT = Set.of("numOfThreads", "threadChunkSize",
+			"pathCacheSize", "splitRouteStopThreshold", "splitRoutePredictedSeconds");
+
+	private final String fileName;
+	private final String fingerprint;
+	private final Set<Id<Link>> writtenArtificialLinks = new HashSet<>();
+	private final Set<Id<Link>> writtenLoopLinks = new HashSet<>();
+	private BufferedWriter writer;
+	private long lastFlush;
+
+	/**
+	 * @param fingerprint see {@link #createFingerprint(Network, TransitSchedule, PublicTransitMappingConfigGroup, ScheduleRoutersFactory)}
+	 */
+	public PseudoRoutingCheckpoint(String fileName, String fingerprint) {
+		this.fileName = fileName;
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Loads the completed pseudo routes of a previous run with the same fingerprint, adds
+	 * them to the pseudo schedule and their artificial links to the network. The file is
+	 * then opened for appending, a file with another fingerprint is overwritten.
+	 *
+	 * @return the completed transit routes
+	 */
+	public Set<TransitRoute> load(TransitSchedule schedule, Network network, PseudoSchedule pseudoSchedule) {
+		Set<TransitRoute> completed = new HashSet<>();
+		boolean append = false;
+		if(new File(fileName).exists()) {
+			append = read(schedule, network, pseudoSchedule, completed, null);
+			if(append) {
+				dropUnterminatedLine();
+				log.info("Checkpoint " + fileName + ": " + completed.size() + " completed transit routes loaded");
+			} else {
+				log.warn("Checkpoint " + fileName + " was created with different inputs or config and is discarded");
+			}
+		}
+
+		try {
+			writer = new BufferedWriter(new FileWriter(fileName, StandardCharsets.UTF_8, append));
+			if(!append) {
+				writer.write(HEADER + SEP + fingerprint);
+				writer.newLine();
+				writer.flush();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Checkpoint file " + fileName + " could not be opened", e);
+		}
+		lastFlush = System.nanoTime();
+		return completed;
+	}
+
+	/**
+	 * Loads the pseudo routes of a shard that has been pseudo routed by another process. Unlike
+	 * {@link #load}, the file is not modified and must have been created with the same fingerprint.
+	 * The pseudo routing timings of the shard are added to the route cost model.
+	 *
+	 * @return the transit routes contained in the shard
+	 */
+	public Set<TransitRoute> loadShard(TransitSchedule schedule, Network network, PseudoSchedule pseudoSchedule, RouteCostModel routeCostModel) {
+		Set<TransitRoute> completed = new HashSet<>();
+		if(!new File(fileName).exists()) {
+			throw new IllegalArgumentException("Shard file " + fileName + " does not exist");
+		}
+		if(!read(schedule, network, pseudoSchedule, completed, routeCostModel)) {
+			throw new IllegalArgumentException("Shard file " + fileName + " was created with different inputs or config");
+		}
+		log.info("Shard " + fileName + ": " + completed.size() + " pseudo routed transit routes loaded");
+		return completed;
+	}
+
+	/**
+	 * @param routeCostModel timings are added to this model, they are ignored if it is <tt>null</tt>
+	 * @return <tt>false</tt> if the file has a different fingerprint, nothing is loaded in that case
+	 */
+	private boolean read(TransitSchedule schedule, Network network, PseudoSchedule pseudoSchedule, Set<TransitRoute> completed,
+			RouteCostModel routeCostModel) {
+		boolean terminated = endsWithNewline();
+		try(BufferedReader reader = new BufferedReader(new FileReader(fileName, StandardCharsets.UTF_8))) {
+			String header = reader.readLine();
+			if(!(HEADER + SEP + fingerprint).equals(header)) {
+				return false;
+			}
+			String line = reader.readLine();
+			while(line != null) {
+				String nextLine = reader.readLine();
+				if(nextLine == null && !terminated) {
+					log.warn("Ignoring unterminated checkpoint record: " + line);
+					break;
+				}
+				String[] fields = line.split(String.valueOf(SEP), -1);
+				try {
+					if(fields[0].equals(LOOP_LINK)) {
+						addLoopLink(fields, schedule, network);
+					} else if(fields[0].equals(ARTIFICIAL_LINK)) {
+						addArtificialLink(fields, network);
+					} else if(fields[0].equals(ROUTE)) {
+						TransitRoute transitRoute = addPseudoRoute(fields, schedule, network, pseudoSchedule);
+						if(transitRoute != null) {
+							completed.add(transitRoute);
+						}
+					} else if(fields[0].equals(COSTS) && routeCostModel != null) {
+						addCosts(fields, routeCostModel);
+					}
+				} catch (RuntimeException e) {
+					log.warn("Ignoring incomplete checkpoint record: " + line);
+				}
+				line = nextLine;
+			}
+			return true;
+		} catch (IOException e) {
+			throw new RuntimeException("Checkpoint file " + fileName + " could not be read", e);
+		}
+	}
+
+	private boolean endsWithNewline() {
+		try(RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+			long length = file.length();
+			if(length == 0) {
+				return false;
+			}
+			file.seek(length - 1);
+			return file.read() == '\n';
+		} catch (IOException e) {
+			throw new RuntimeException("Checkpoint file " + fileName + " could not be read", e);
+		}
+	}
+
+	/**
+	 * Truncates the file after its last line break, otherwise the first appended
+	 * record would be glued to an unterminated last line.
+	 */
+	private void dropUnterminatedLine() {
+		try(RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+			long pos = file.length();
+			while(pos > 0) {
+				file.seek(pos - 1);
+				if(file.read() == '\n') {
+					break;
+				}
+				pos--;
+			}
+			if(pos < file.length()) {
+				log.warn("Checkpoint " + fileName + ": removing unterminated last line");
+				file.setLength(pos);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Checkpoint file " + fileName + " could not be truncated", e);
+		}
+	}
+
+	/**
+	 * Appends a completed pseudo route and its artificial links. Thread safe, the file
+	 * is flushed periodically.
+	 */
+	public synchronized void write(TransitLine transitLine, TransitRoute transitRoute, List<PseudoRouteStop> pseudoStops,
+			List<Id<Link>> networkLinkIds, Collection<ArtificialLink> artificialLinks) {
+		if(writer == null) {
+			return;
+		}
+		try {
+			// loop links first, artificial links might start or end at their nodes
+			for(PseudoRouteStop pseudoStop : pseudoStops) {
+				TransitStopFacility stopFacility = pseudoStop.getLinkCandidate().getStop().getStopFacility();
+				Id<Link> loopLinkId = PTMapperTools.createArtificialLinkId(stopFacility);
+				if(pseudoStop.getLinkId().equals(loopLinkId) && writtenLoopLinks.add(loopLinkId)) {
+					writer.write(LOOP_LINK + SEP + stopFacility.getId());
+					writer.newLine();
+				}
+			}
+			for(ArtificialLink a : artificialLinks) {
+				if(writtenArtificialLinks.add(a.getId())) {
+					writer.write(ARTIFICIAL_LINK + SEP + a.getId() + SEP + a.getFromNode().getId() + SEP + a.getToNode().getId()
+							+ SEP + a.getLength() + SEP + a.getFreespeed());
+					writer.newLine();
+				}
+			}
+			StringBuilder sb = new StringBuilder();
+			sb.append(ROUTE).append(SEP).append(transitLine.getId()).append(SEP).append(transitRoute.getId())
+					.append(SEP).append(pseudoStops.size()).append(SEP).append(networkLinkIds.size());
+			for(PseudoRouteStop pseudoStop : pseudoStops) {
+				sb.append(SEP).append(pseudoStop.getLinkId());
+			}
+			for(Id<Link> linkId : networkLinkIds) {
+				sb.append(SEP).append(linkId);
+			}
+			writer.write(sb.toString());
+			writer.newLine();
+
+			if(System.nanoTime() - lastFlush > FLUSH_INTERVAL_NS) {
+				writer.flush();
+				lastFlush = System.nanoTime();
+			}
+		} catch (IOException e) {
+			log.error("Checkpoint could not be written, checkpointing is disabled", e);
+			writer = null;
+		}
+	}
+
+	/**
+	 * Appends the timings of the pseudo routed transit routes, see {@link #loadShard}.
+	 */
+	public synchronized void writeCosts(RouteCostModel costs) {
+		if(writer == null) {
+			return;
+		}
+		try {
+			for(String mode : costs.getModes()) {
+				writer.write(COSTS + SEP + mode + SEP + costs.getRecordedCandidatePairs(mode) + SEP + costs.getRecordedNanos(mode));
+				writer.newLine();
+			}
+		} catch (IOException e) {
+			log.error("Checkpoint could not be written, checkpointing is disabled", e);
+			writer = null;
+		}
+	}
+
+	public synchronized void close() {
+		if(writer != null) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			writer = null;
+		}
+	}
+
+	private static void addLoopLink(String[] fields, TransitSchedule schedule, Network network) {
+		if(fields.length != 2) {
+			throw new IllegalArgumentException("Loop link record with " + fields.length + " fields");
+		}
+		TransitStopFacility stopFacility = schedule.getFacilities().get(Id.create(fields[1], TransitStopFacility.class));
+		if(stopFacility == null) {
+			throw new IllegalArgumentException("Stop facility " + fields[1] + " not in schedule");
+		}
+		// same loop link as the one created by the link candidate creators
+		PTMapperTools.createArtificialStopFacilityLink(stopFacility, network, PublicTransitMappingStrings.PREFIX_ARTIFICIAL, 20,
+				PublicTransitMappingStrings.STOP_FACILITY_LOOP_LINK_MODES);
+	}
+
+	private static void addArtificialLink(String[] fields, Network network) {
+		if(fields.length != 6) {
+			throw new IllegalArgumentException("Artificial link record with " + fields.length + " fields");
+		}
+		Id<Link> linkId = Id.createLinkId(fields[1]);
+		if(network.getLinks().containsKey(linkId)) {
+			return;
+		}
+		Node fromNode = network.getNodes().get(Id.createNodeId(fields[2]));
+		Node toNode = network.getNodes().get(Id.createNodeId(fields[3]));
+		// pulling child stop facilities treats ArtificialLinkImpl differently than other links
+		network.addLink(new ArtificialLinkImpl(linkId, fromNode, toNode, Double.parseDouble(fields[5]), Double.parseDouble(fields[4])));
+	}
+
+	private static void addCosts(String[] fields, RouteCostModel routeCostModel) {
+		if(fields.length != 4) {
+			throw new IllegalArgumentException("Costs record with " + fields.length + " fields");
+		}
+		routeCostModel.record(fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+	}
+
+	private static TransitRoute addPseudoRoute(String[] fields, TransitSchedule schedule, Network network, PseudoSchedule pseudoSchedule) {
+		TransitLine transitLine = schedule.getTransitLines().get(Id.create(fields[1], TransitLine.class));
+		TransitRoute transitRoute = transitLine == null ? null : transitLine.getRoutes().get(Id.create(fields[2], TransitRoute.class));
+		int nStops = Integer.parseInt(fields[3]);
+		int nLinks = Integer.parseInt(fields[4]);
+		if(fields.length != 5 + nStops + nLinks) {
+			throw new IllegalArgumentException("Route record with " + fields.length + " fields");
+		}
+		if(transitRoute == null || transitRoute.getStops().size() != nStops) {
+			return null;
+		}
+		List<Link> stopLinks = new ArrayList<>(nStops);
+		for(int i = 0; i < nStops; i++) {
+			stopLinks.add(getLink(network, fields[5 + i]));
+		}
+		List<Id<Link>> networkLinkIds = new ArrayList<>(nLinks);
+		for(int i = 5 + nStops; i < fields.length; i++) {
+			networkLinkIds.add(getLink(network, fields[i]).getId());
+		}
+		if(networkLinkIds.isEmpty()) {
+			throw new IllegalArgumentException("Route record without links");
+		}
+		pseudoSchedule.addPseudoRoute(transitLine, transitRoute, PreviousMapping.createPseudoStops(transitLine, transitRoute, stopLinks), networkLinkIds);
+		return transitRoute;
+	}
+
+	private static Link getLink(Network network, String linkId) {
+		Link link = network.getLinks().get(Id.createLinkId(linkId));
+		if(link == null) {
+			throw new IllegalArgumentException("Link " + linkId + " not in network");
+		}
+		return link;
+	}
+
+	/**
+	 * @return a fingerprint of all network, schedule, config and router values that affect pseudo routing. Elements
+	 * are hashed independent of their order.
+	 */
+	public static String createFingerprint(Network network, TransitSchedule schedule, PublicTransitMappingConfigGroup config,
+			ScheduleRoutersFactory scheduleRoutersFactory) {
+		long networkHash = 0;
+		for(Node node : network.getNodes().values()) {
+			networkHash += hash(node.getId() + "|" + node.getCoord());
+		}
+		for(Link link : network.getLinks().values()) {
+			networkHash += hash(link.getId() + "|" + link.getFromNode().getId() + "|" + link.getToNode().getId() + "|"
+					+ link.getLength() + "|" + link.getFreespeed() + "|" + link.getAllowedModes());
+		}
+
+		long scheduleHash = 0;
+		for(TransitStopFacility stopFacility : schedule.getFacilities().values()) {
+			scheduleHash += hash(stopFacility.getId() + "|" + stopFacility.getCoord() + "|" + stopFacility.getLinkId());
+		}
+		for(TransitLine transitLine : schedule.getTransitLines().values()) {
+			for(TransitRoute transitRoute : transitLine.getRoutes().values()) {
+				StringBuilder sb = new StringBuilder();
+				sb.append(transitLine.getId()).append('|').append(transitRoute.getId()).append('|').append(transitRoute.getTransportMode())
+						.append('|').append(ScheduleTools.getShapeId(transitRoute));
+				for(TransitRouteStop routeStop : transitRoute.getStops()) {
+					sb.append('|').append(routeStop.getStopFacility().getId()).append('|').append(routeStop.getArrivalOffset())
+							.append('|').append(routeStop.getDepartureOffset());
+				}
+				scheduleHash += hash(sb.toString());
+			}
+		}
+
+		long configHash = hash(config, "");
+		long routerHash = hash(scheduleRoutersFactory.getFingerprint());
+		return Long.toHexString(networkHash) + "-" + Long.toHexString(scheduleHash) + "-" + Long.toHexString(configHash)
+				+ "-" + Long.toHexString(routerHash);
+	}
+
+	private static long hash(ConfigGroup configGroup, String prefix) {
+		long h = 0;
+		for(Map.Entry<String, String> e : configGroup.getParams().entrySet()) {
+			if(!e.getKey().endsWith("File") && !PARAMS_NOT_IN_FINGERPRINT.contains(e.getKey())) {
+				h += hash(prefix + e.getKey() + "=" + e.getValue());
+			}
+		}
+		for(Map.Entry<String, ? extends Collection<? extends ConfigGroup>> e : configGroup.getParameterSets().entrySet()) {
+			for(ConfigGroup parameterSet : e.getValue()) {
+				h += hash(parameterSet, prefix + e.getKey() + "/");
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * 64 bit FNV-1a hash
+	 */
+	private static long hash(String s) {
+		long h = 0xcbf29ce484222325L;
+		for(int i = 0; i < s.length(); i++) {
+			h ^= s.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+}
@@ -18,6 +18,8 @@ import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitRoute;
 import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt2matsim.jfr.LeastCostPathEvent;
+import org.matsim.pt2matsim.jfr.PseudoRouteEvent;
 import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidate;
 import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidateCreator;
 import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRouters;
@@ -25,13 +27,20 @@ import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRoutersFactory;
 import org.matsim.pt2matsim.mapping.pseudoRouter.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Generates and calculates the pseudoRoutes for all the queued transit routes. If no route on the network can be found
@@ -51,37 +60,62 @@ public class PseudoRoutingImpl implements PseudoRouting {
 
 	private static boolean warnMinTravelCost = true;
 
-	/** Element of the work queue: the route to map plus its owning line. */
-	public record QueuedRoute(TransitLine line, TransitRoute route) {
+	/**
+	 * Element of the work queue: the route to map plus its owning line and the pseudo routing time predicted by the
+	 * {@link RouteCostModel} (NaN if not estimated).
+	 */
+	public record QueuedRoute(TransitLine line, TransitRoute route, double predictedNanos) {
+
+		public QueuedRoute(TransitLine line, TransitRoute route) {
+			this(line, route, Double.NaN);
+		}
 	}
 
 	/** Per-route timing snapshot used for the slowest-routes summary log. */
 	public record RouteTiming(String lineId, String routeId, String mode, int nStops, long candidatePairs,
-			long elapsedNanos) {
+			double predictedNanos, long elapsedNanos) {
 	}
 
 	/** Log routes that took longer than this in wall-clock as INFO while they happen. */
 	private static final long SLOW_ROUTE_LOG_NS = 30L * 1_000_000_000L; // 30 s
 	/** How many slowest routes to keep per worker. */
 	private static final int KEEP_TOP_N_SLOW = 5;
+	/** Maximal number of stop pairs routed by one segment of a split route. */
+	private static final int SEGMENT_STOP_PAIRS = 8;
+	/** Guards the lower bound pruning against rounding errors. */
+	private static final double LOWER_BOUND_TOLERANCE = 1 + 1e-9;
 
 	private final Queue<QueuedRoute> queue;
 	private final String workerName;
 
 	private final LinkCandidateCreator linkCandidates;
 	private final ScheduleRouters scheduleRouters;
+	// pool and routers used by the segments of split routes, shared by all workers
+	private ForkJoinPool segmentPool = null;
+	private BlockingQueue<ScheduleRouters> segmentRouters = null;
 
 	private final Set<ArtificialLink> necessaryArtificialLinks = new HashSet<>();
 
 	private final PseudoSchedule threadPseudoSchedule = new PseudoScheduleImpl();
+	/** per-worker pseudo graph, reset for every route */
+	private final PseudoGraphLayered pseudoGraph = new PseudoGraphLayered();
 	private final double maxTravelCostFactor;
 	private final boolean boundedSearch;
+	private final int splitRouteStopThreshold;
+	private final double splitRoutePredictedNanos;
 
 	// per-worker timing stats
 	private long routesProcessed = 0L;
 	private long totalRouteNanos = 0L;
 	private final PriorityQueue<RouteTiming> slowest = new PriorityQueue<>(
 			Comparator.comparingLong(RouteTiming::elapsedNanos));
+	// evaluated candidate pairs and elapsed nanos per transport mode, feeds the route cost model
+	private final Map<String, long[]> modeTotals = new HashMap<>();
+	// candidate pairs that needed network routing and the ones rejected by the lower bound (segments run in parallel)
+	private final LongAdder candidatePairsRouted = new LongAdder();
+	private final LongAdder candidatePairsPruned = new LongAdder();
+	private long routesSplit = 0L;
+	private PseudoRoutingCheckpoint checkpoint = null;
 
 	/**
 	 * Backward-compatible constructor: the runnable owns a private queue and bounded search is disabled. Prefer the
@@ -105,8 +139,26 @@ public class PseudoRoutingImpl implements PseudoRouting {
 	public PseudoRoutingImpl(ScheduleRoutersFactory scheduleRoutersFactory, LinkCandidateCreator linkCandidates,
 			double maxTravelCostFactor, Progress progress, Queue<QueuedRoute> sharedQueue, String workerName,
 			boolean boundedSearch) {
+		this(scheduleRoutersFactory, linkCandidates, maxTravelCostFactor, progress, sharedQueue, workerName,
+				boundedSearch, 0, 0);
+	}
+
+	/**
+	 * Shared-queue constructor with intra-route parallelism. The stop pairs of routes with at least
+	 * {@code splitRouteStopThreshold} stops or a predicted routing time of at least {@code splitRoutePredictedSeconds}
+	 * are split into segments that are routed in the pool set by {@link #setSegmentPool}. The resulting pseudo graph
+	 * is the same as for serial routing.
+	 *
+	 * @param splitRouteStopThreshold    0 disables splitting by number of stops
+	 * @param splitRoutePredictedSeconds 0 disables splitting by predicted routing time
+	 */
+	public PseudoRoutingImpl(ScheduleRoutersFactory scheduleRoutersFactory, LinkCandidateCreator linkCandidates,
+			double maxTravelCostFactor, Progress progress, Queue<QueuedRoute> sharedQueue, String workerName,
+			boolean boundedSearch, int splitRouteStopThreshold, double splitRoutePredictedSeconds) {
 		this.maxTravelCostFactor = maxTravelCostFactor;
 		this.scheduleRouters = scheduleRoutersFactory.createInstance();
+		this.splitRouteStopThreshold = splitRouteStopThreshold;
+		this.splitRoutePredictedNanos = splitRoutePredictedSeconds * 1e9;
 		this.linkCandidates = linkCandidates;
 		this.progress = progress;
 		this.queue = sharedQueue;
@@ -114,6 +166,22 @@ public class PseudoRoutingImpl implements PseudoRouting {
 		this.boundedSearch = boundedSearch;
 	}
 
+	/**
+	 * Completed pseudo routes are appended to the checkpoint.
+	 */
+	public void setCheckpoint(PseudoRoutingCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * Sets the pool the segments of split routes are routed in. Each segment takes one of the given routers
+	 * and waits if all of them are in use. Without a pool, split routes are routed serially.
+	 */
+	public void setSegmentPool(ForkJoinPool segmentPool, BlockingQueue<ScheduleRouters> segmentRouters) {
+		this.segmentPool = segmentPool;
+		this.segmentRouters = segmentRouters;
+	}
+
 	@Override
 	public void addTransitRouteToQueue(TransitLine line, TransitRoute route) {
 		queue.add(new QueuedRoute(line, route));
@@ -134,24 +202,68 @@ public class PseudoRoutingImpl implements PseudoRouting {
 		return totalRouteNanos;
 	}
 
+	/**
+	 * @return the number of candidate pairs (without loop links) that would have been routed on the network
+	 */
+	public long getCandidatePairsRouted() {
+		return candidatePairsRouted.sum();
+	}
+
+	/**
+	 * @return the number of candidate pairs that were not routed since their beeline lower bound exceeded the
+	 * maximal allowed travel cost
+	 */
+	public long getCandidatePairsPruned() {
+		return candidatePairsPruned.sum();
+	}
+
+	/**
+	 * @return the number of routes whose stop pairs were routed in parallel segments
+	 */
+	public long getRoutesSplit() {
+		return routesSplit;
+	}
+
+	/**
+	 * Adds the candidate pairs and elapsed time of all routes processed by this worker to the model.
+	 */
+	public void recordCosts(RouteCostModel routeCostModel) {
+		for (Map.Entry<String, long[]> e : modeTotals.entrySet()) {
+			routeCostModel.record(e.getKey(), e.getValue()[0], e.getValue()[1]);
+		}
+	}
+
 	@Override
 	public void run() {
 		long workerStart = System.nanoTime();
 		QueuedRoute qr;
 		while ((qr = queue.poll()) != null) {
+			PseudoRouteEvent event = new PseudoRouteEvent();
+			event.begin();
 			long t0 = System.nanoTime();
-			long pairs = processRoute(qr.line(), qr.route());
+			long pairs = processRoute(qr.line(), qr.route(), qr.predictedNanos());
 			long elapsed = System.nanoTime() - t0;
+			linkCandidates.releaseLinkCandidates(qr.line(), qr.route());
+			event.end();
+			if (event.shouldCommit()) {
+				event.transitLine = qr.line().getId().toString();
+				event.transitRoute = qr.route().getId().toString();
+				event.transportMode = qr.route().getTransportMode();
+				event.stops = qr.route().getStops().size();
+				event.candidatePairs = pairs;
+				event.predictedNanos = Double.isNaN(qr.predictedNanos()) ? 0 : (long) qr.predictedNanos();
+				event.commit();
+			}
 
 			routesProcessed++;
 			totalRouteNanos += elapsed;
-			recordTiming(qr.line(), qr.route(), pairs, elapsed);
+			recordTiming(qr, pairs, elapsed);
 
 			if (elapsed > SLOW_ROUTE_LOG_NS) {
 				log.info(String.format(
-						"[%s] slow route: line=%s route=%s mode=%s stops=%d candidatePairs=%d elapsed=%.1fs",
+						"[%s] slow route: line=%s route=%s mode=%s stops=%d candidatePairs=%d predicted=%.1fs elapsed=%.1fs",
 						workerName, qr.line().getId(), qr.route().getId(), qr.route().getTransportMode(),
-						qr.route().getStops().size(), pairs, elapsed / 1e9));
+						qr.route().getStops().size(), pairs, qr.predictedNanos() / 1e9, elapsed / 1e9));
 			}
 
 			progress.update();
@@ -166,16 +278,21 @@ public class PseudoRoutingImpl implements PseudoRouting {
 			log.info(String.format("[%s] slowest %d routes on this worker:", workerName, top.size()));
 			for (RouteTiming rt : top) {
 				log.info(String.format(
-						"    line=%s route=%s mode=%s stops=%d pairs=%d elapsed=%.2fs",
+						"    line=%s route=%s mode=%s stops=%d pairs=%d predicted=%.2fs elapsed=%.2fs",
 						rt.lineId(), rt.routeId(), rt.mode(), rt.nStops(), rt.candidatePairs(),
-						rt.elapsedNanos() / 1e9));
+						rt.predictedNanos() / 1e9, rt.elapsedNanos() / 1e9));
 			}
 		}
 	}
 
-	private void recordTiming(TransitLine line, TransitRoute route, long pairs, long elapsed) {
-		RouteTiming rt = new RouteTiming(line.getId().toString(), route.getId().toString(),
-				route.getTransportMode(), route.getStops().size(), pairs, elapsed);
+	private void recordTiming(QueuedRoute qr, long pairs, long elapsed) {
+		TransitRoute route = qr.route();
+		long[] totals = modeTotals.computeIfAbsent(route.getTransportMode(), k -> new long[2]);
+		totals[0] += pairs;
+		totals[1] += elapsed;
+
+		RouteTiming rt = new RouteTiming(qr.line().getId().toString(), route.getId().toString(),
+				route.getTransportMode(), route.getStops().size(), pairs, qr.predictedNanos(), elapsed);
 		if (slowest.size() < KEEP_TOP_N_SLOW) {
 			slowest.add(rt);
 		} else if (slowest.peek().elapsedNanos() < elapsed) {
@@ -186,35 +303,94 @@ public class PseudoRoutingImpl implements PseudoRouting {
 
 	/**
 	 * Per-route processing.
-	 * <p>
-	 * The body below is intentionally identical to the previous in-line implementation; only the surrounding
-	 * {@code for (TransitRoute ...)} loop has moved out.
-	 * </p>
 	 *
 	 * @return the number of (currentCandidate, nextCandidate) pairs evaluated for this route, used by the
 	 *         slowest-routes log to indicate the search work performed.
 	 */
-	private long processRoute(TransitLine transitLine, TransitRoute transitRoute) {
+	private long processRoute(TransitLine transitLine, TransitRoute transitRoute, double predictedNanos) {
 		long pairsEvaluated = 0L;
 		/*
-		 * [1] Initiate pseudoGraph and Dijkstra algorithm for the current transitRoute. In the pseudoGraph, all link
-		 * candidates are represented as nodes and the network paths between link candidates are reduced to a
-		 * representation edge only storing the travel cost. With the pseudoGraph, the best linkCandidate sequence can
-		 * be calculated (using Dijkstra). From this sequence, the actual path on the network can be routed later on.
+		 * [1] Initiate pseudoGraph for the current transitRoute. In the pseudoGraph, all link candidates are
+		 * represented as nodes and the network paths between link candidates are reduced to a representation edge
+		 * only storing the travel cost. With the pseudoGraph, the best linkCandidate sequence can be calculated (the
+		 * graph is layered by stop, a single forward pass suffices). From this sequence, the actual path on the
+		 * network can be routed later on. Link candidates are identified by their index within the stop's candidate
+		 * list, the graph is reused for all routes of this worker.
+		 */
+		pseudoGraph.reset();
+		List<TransitRouteStop> routeStops = transitRoute.getStops();
+		List<List<LinkCandidate>> routeStopCandidates = new ArrayList<>(routeStops.size());
+		for (int i = 0; i < routeStops.size(); i++) {
+			List<LinkCandidate> stopCandidates = new ArrayList<>(
+					linkCandidates.getLinkCandidates(routeStops.get(i), transitLine, transitRoute));
+			routeStopCandidates.add(stopCandidates);
+			pseudoGraph.setLinkCandidates(i, routeStops.get(i), stopCandidates);
+		}
+
+		/*
+		 * [2] Calculate the shortest paths between each pair of routeStops/ParentStopFacility. Each stop pair only
+		 * adds edges to the layer of its first stop, long routes are therefore split into segments of stop pairs
+		 * that are routed in parallel.
+		 */
+		int nStopPairs = routeStops.size() - 1;
+		if (segmentPool != null && isSplit(transitRoute, predictedNanos)) {
+			routesSplit++;
+			pairsEvaluated = segmentPool.invoke(
+					new StopPairSegment(transitLine, transitRoute, routeStopCandidates, 0, nStopPairs));
+		} else {
+			pairsEvaluated = routeStopPairs(scheduleRouters, transitLine, transitRoute, routeStopCandidates, 0,
+					nStopPairs);
+		}
+
+		/*
+		 * [4] Finish the pseudoGraph by adding dummy nodes.
 		 */
-		PseudoGraph pseudoGraph = new PseudoGraphImpl();
+		pseudoGraph.addDummyEdges(routeStops, routeStopCandidates.get(0),
+				routeStopCandidates.get(routeStops.size() - 1));
 
 		/*
-		 * [2] Calculate the shortest paths between each pair of routeStops/ParentStopFacility
+		 * [5] Find the least cost path i.e. the PseudoRouteStop sequence
 		 */
+		List<PseudoRouteStop> pseudoPath = pseudoGraph.getLeastCostStopSequence();
+
+		if (pseudoPath == null) {
+			throw new RuntimeException("PseudoGraph has no path from SOURCE to DESTINATION for transit route "
+					+ transitRoute.getId() + " " +
+					"on line " + transitLine.getId() + " from \"" + routeStops.get(0).getStopFacility().getName()
+					+ "\" " +
+					"to \"" + routeStops.get(routeStops.size() - 1).getStopFacility().getName() + "\"");
+		} else {
+			necessaryArtificialLinks.addAll(pseudoGraph.getArtificialNetworkLinks());
+			threadPseudoSchedule.addPseudoRoute(transitLine, transitRoute, pseudoPath, pseudoGraph.getNetworkLinkIds());
+			if (checkpoint != null) {
+				checkpoint.write(transitLine, transitRoute, pseudoPath, pseudoGraph.getNetworkLinkIds(),
+						pseudoGraph.getArtificialNetworkLinks());
+			}
+		}
+		return pairsEvaluated;
+	}
+
+	private boolean isSplit(TransitRoute transitRoute, double predictedNanos) {
+		return (splitRouteStopThreshold > 0 && transitRoute.getStops().size() >= splitRouteStopThreshold)
+				|| (splitRoutePredictedNanos > 0 && predictedNanos >= splitRoutePredictedNanos);
+	}
+
+	/**
+	 * Calculates the least cost paths between link candidates of the stop pairs [fromPair, toPair) and adds the
+	 * edges to the pseudo graph.
+	 *
+	 * @return the number of (currentCandidate, nextCandidate) pairs evaluated
+	 */
+	private long routeStopPairs(ScheduleRouters routers, TransitLine transitLine, TransitRoute transitRoute,
+			List<List<LinkCandidate>> routeStopCandidates, int fromPair, int toPair) {
+		long pairsEvaluated = 0L;
+		long pathCalls = 0L;
 		List<TransitRouteStop> routeStops = transitRoute.getStops();
-		for (int i = 0; i < routeStops.size() - 1; i++) {
-			Set<LinkCandidate> linkCandidatesCurrent = linkCandidates.getLinkCandidates(routeStops.get(i), transitLine,
-					transitRoute);
-			Set<LinkCandidate> linkCandidatesNext = linkCandidates.getLinkCandidates(routeStops.get(i + 1), transitLine,
-					transitRoute);
+		for (int i = fromPair; i < toPair; i++) {
+			List<LinkCandidate> linkCandidatesCurrent = routeStopCandidates.get(i);
+			List<LinkCandidate> linkCandidatesNext = routeStopCandidates.get(i + 1);
 
-			double minTravelCost = scheduleRouters.getMinimalTravelCost(routeStops.get(i), routeStops.get(i + 1),
+			double minTravelCost = routers.getMinimalTravelCost(routeStops.get(i), routeStops.get(i + 1),
 					transitLine, transitRoute);
 			double maxAllowedTravelCost = minTravelCost * maxTravelCostFactor;
 
@@ -224,11 +400,60 @@ public class PseudoRoutingImpl implements PseudoRouting {
 				warnMinTravelCost = false;
 			}
 
+			/*
+			 * When boundedSearch is enabled and minTravelCost > 0, pass maxAllowedTravelCost as a cutoff so the
+			 * underlying search can abort as soon as no path <= cutoff is provably reachable. This is equivalent to
+			 * the unbounded search for downstream purposes because any returned path with cost >=
+			 * maxAllowedTravelCost is discarded below and replaced with an artificial link.
+			 */
+			double cutoff = (boundedSearch && minTravelCost > 0.0)
+					? maxAllowedTravelCost
+					: Double.POSITIVE_INFINITY;
+
 			/*
 			 * [3] Calculate the shortest path between all link candidates.
 			 */
-			for (LinkCandidate linkCandidateCurrent : linkCandidatesCurrent) {
-				for (LinkCandidate linkCandidateNext : linkCandidatesNext) {
+			for (int c = 0; c < linkCandidatesCurrent.size(); c++) {
+				LinkCandidate linkCandidateCurrent = linkCandidatesCurrent.get(c);
+				/*
+				 * Route from the current candidate to all next candidates in one search. If one or both link
+				 * candidates are loop links we don't have to search a least cost path on the network. With a cutoff,
+				 * pairs whose beeline lower bound already reaches maxAllowedTravelCost are not routed either, they
+				 * get an artificial edge like any other pair without a path below the cutoff.
+				 */
+				Map<LinkCandidate, LeastCostPathCalculator.Path> leastCostPaths = Collections.emptyMap();
+				if (!linkCandidateCurrent.isLoopLink()) {
+					List<LinkCandidate> routedCandidatesNext = new ArrayList<>(linkCandidatesNext.size());
+					for (LinkCandidate linkCandidateNext : linkCandidatesNext) {
+						if (!linkCandidateNext.isLoopLink()) {
+							candidatePairsRouted.increment();
+							if (cutoff < Double.POSITIVE_INFINITY && routers.getLowerBoundTravelCost(linkCandidateCurrent,
+									linkCandidateNext, transitLine, transitRoute) >= cutoff * LOWER_BOUND_TOLERANCE) {
+								candidatePairsPruned.increment();
+							} else {
+								routedCandidatesNext.add(linkCandidateNext);
+							}
+						}
+					}
+					if (!routedCandidatesNext.isEmpty()) {
+						LeastCostPathEvent event = LeastCostPathEvent.isSampled(pathCalls++) ? new LeastCostPathEvent() : null;
+						if (event != null) {
+							event.begin();
+						}
+						leastCostPaths = routers.calcLeastCostPaths(linkCandidateCurrent, routedCandidatesNext,
+								transitLine, transitRoute, cutoff);
+						if (event != null) {
+							event.end();
+							if (event.shouldCommit()) {
+								commitLeastCostPathEvent(event, transitLine, transitRoute, linkCandidateCurrent,
+										routedCandidatesNext.size(), leastCostPaths, cutoff);
+							}
+						}
+					}
+				}
+
+				for (int n = 0; n < linkCandidatesNext.size(); n++) {
+					LinkCandidate linkCandidateNext = linkCandidatesNext.get(n);
 					pairsEvaluated++;
 
 					boolean useExistingNetworkLinks = false;
@@ -240,18 +465,7 @@ public class PseudoRoutingImpl implements PseudoRouting {
 					 * the network.
 					 */
 					if (!linkCandidateCurrent.isLoopLink() && !linkCandidateNext.isLoopLink()) {
-						/*
-						 * Calculate the least cost path on the network. When boundedSearch is enabled and minTravelCost
-						 * > 0, pass maxAllowedTravelCost as a cutoff so the underlying Dijkstra/ALT can abort as soon
-						 * as no path <= cutoff is provably reachable. This is equivalent to the unbounded search for
-						 * downstream purposes because the caller below already discards any returned path with cost >=
-						 * maxAllowedTravelCost and replaces it with an artificial link.
-						 */
-						double cutoff = (boundedSearch && minTravelCost > 0.0)
-								? maxAllowedTravelCost
-								: Double.POSITIVE_INFINITY;
-						LeastCostPathCalculator.Path leastCostPath = scheduleRouters.calcLeastCostPath(
-								linkCandidateCurrent, linkCandidateNext, transitLine, transitRoute, cutoff);
+						LeastCostPathCalculator.Path leastCostPath = leastCostPaths.get(linkCandidateNext);
 
 						if (leastCostPath != null) {
 							pathCost = leastCostPath.travelCost;
@@ -269,13 +483,12 @@ public class PseudoRoutingImpl implements PseudoRouting {
 					 * a normal edge is added to the pseudoGraph
 					 */
 					if (useExistingNetworkLinks) {
-						double currentCandidateTravelCost = scheduleRouters
+						double currentCandidateTravelCost = routers
 								.getLinkCandidateTravelCost(linkCandidateCurrent);
-						double nextCandidateTravelCost = scheduleRouters.getLinkCandidateTravelCost(linkCandidateNext);
+						double nextCandidateTravelCost = routers.getLinkCandidateTravelCost(linkCandidateNext);
 						double edgeWeight = pathCost + 0.5 * currentCandidateTravelCost + 0.5 * nextCandidateTravelCost;
 
-						pseudoGraph.addEdge(i, routeStops.get(i), linkCandidateCurrent, routeStops.get(i + 1),
-								linkCandidateNext, edgeWeight, pathLinks);
+						pseudoGraph.addEdge(i, c, n, edgeWeight, pathLinks);
 					}
 					/*
 					 * [3.2] Create artificial links between two routeStops if: - no path on the network could be found
@@ -284,42 +497,87 @@ public class PseudoRoutingImpl implements PseudoRouting {
 					 * the other linkCandidates).
 					 */
 					else {
-						double currentCandidateTravelCost = scheduleRouters
+						double currentCandidateTravelCost = routers
 								.getLinkCandidateTravelCost(linkCandidateCurrent);
-						double nextCandidateTravelCost = scheduleRouters.getLinkCandidateTravelCost(linkCandidateNext);
+						double nextCandidateTravelCost = routers.getLinkCandidateTravelCost(linkCandidateNext);
 						double artificialEdgeWeight = maxAllowedTravelCost - 0.5 * currentCandidateTravelCost
 								- 0.5 * nextCandidateTravelCost;
 
-						pseudoGraph.addEdge(i, routeStops.get(i), linkCandidateCurrent, routeStops.get(i + 1),
-								linkCandidateNext, artificialEdgeWeight, null);
+						pseudoGraph.addEdge(i, c, n, artificialEdgeWeight, null);
 					}
 				}
 			}
 		} // - routeStop loop
+		return pairsEvaluated;
+	}
 
-		/*
-		 * [4] Finish the pseudoGraph by adding dummy nodes.
-		 */
-		pseudoGraph.addDummyEdges(routeStops,
-				linkCandidates.getLinkCandidates(routeStops.get(0), transitLine, transitRoute),
-				linkCandidates.getLinkCandidates(routeStops.get(routeStops.size() - 1), transitLine, transitRoute));
+	private static void commitLeastCostPathEvent(LeastCostPathEvent event, TransitLine transitLine,
+			TransitRoute transitRoute, LinkCandidate fromCandidate, int targets,
+			Map<LinkCandidate, LeastCostPathCalculator.Path> paths, double cutoff) {
+		double minPathCost = Double.POSITIVE_INFINITY;
+		int nPaths = 0;
+		for (LeastCostPathCalculator.Path path : paths.values()) {
+			if (path != null) {
+				nPaths++;
+				minPathCost = Math.min(minPathCost, path.travelCost);
+			}
+		}
+		event.transitLine = transitLine.getId().toString();
+		event.transitRoute = transitRoute.getId().toString();
+		event.transportMode = transitRoute.getTransportMode();
+		event.fromLink = fromCandidate.getLink().getId().toString();
+		event.targets = targets;
+		event.paths = nPaths;
+		event.minPathCost = minPathCost;
+		event.cutoff = cutoff;
+		event.commit();
+	}
 
-		/*
-		 * [5] Find the least cost path i.e. the PseudoRouteStop sequence
-		 */
-		List<PseudoRouteStop> pseudoPath = pseudoGraph.getLeastCostStopSequence();
+	/**
+	 * Fork/join task for a range of stop pairs of a route. Ranges are halved until they contain at most
+	 * {@link #SEGMENT_STOP_PAIRS} stop pairs. Each segment borrows one of the shared {@link ScheduleRouters} instances
+	 * since routers are not thread safe.
+	 */
+	private class StopPairSegment extends RecursiveTask<Long> {
+
+		private final TransitLine transitLine;
+		private final TransitRoute transitRoute;
+		private final List<List<LinkCandidate>> routeStopCandidates;
+		private final int fromPair;
+		private final int toPair;
+
+		StopPairSegment(TransitLine transitLine, TransitRoute transitRoute,
+				List<List<LinkCandidate>> routeStopCandidates, int fromPair, int toPair) {
+			this.transitLine = transitLine;
+			this.transitRoute = transitRoute;
+			this.routeStopCandidates = routeStopCandidates;
+			this.fromPair = fromPair;
+			this.toPair = toPair;
+		}
 
-		if (pseudoPath == null) {
-			throw new RuntimeException("PseudoGraph has no path from SOURCE to DESTINATION for transit route "
-					+ transitRoute.getId() + " " +
-					"on line " + transitLine.getId() + " from \"" + routeStops.get(0).getStopFacility().getName()
-					+ "\" " +
-					"to \"" + routeStops.get(routeStops.size() - 1).getStopFacility().getName() + "\"");
-		} else {
-			necessaryArtificialLinks.addAll(pseudoGraph.getArtificialNetworkLinks());
-			threadPseudoSchedule.addPseudoRoute(transitLine, transitRoute, pseudoPath, pseudoGraph.getNetworkLinkIds());
+		@Override
+		protected Long compute() {
+			if (toPair - fromPair > SEGMENT_STOP_PAIRS) {
+				int mid = (fromPair + toPair) >>> 1;
+				StopPairSegment left = new StopPairSegment(transitLine, transitRoute, routeStopCandidates, fromPair, mid);
+				StopPairSegment right = new StopPairSegment(transitLine, transitRoute, routeStopCandidates, mid, toPair);
+				left.fork();
+				long rightPairs = right.compute();
+				return left.join() + rightPairs;
+			}
+			ScheduleRouters routers;
+			try {
+				routers = segmentRouters.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			try {
+				return routeStopPairs(routers, transitLine, transitRoute, routeStopCandidates, fromPair, toPair);
+			} finally {
+				segmentRouters.add(routers);
+			}
 		}
-		return pairsEvaluated;
 	}
 
 	/**
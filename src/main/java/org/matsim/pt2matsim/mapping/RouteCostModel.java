@@ -0,0 +1,184 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.mapping;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidateCreator;
+import org.matsim.pt2matsim.tools.CsvTools;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Estimates the pseudo routing time of a transit route. The work of a route is
+ * the number of link candidate pairs that have to be evaluated (the sum of
+ * #candidates(stop i) * #candidates(stop i+1) over all stop pairs), the time per
+ * candidate pair is learned per transport mode from the timings of previous runs.
+ * <p>
+ * The model can be stored as csv file (mode, candidatePairs, nanos) and read
+ * again on the next run. Without any recorded timings, all modes use the same
+ * default time per pair, i.e. routes are ordered by candidate pairs only.
+ */
+public class RouteCostModel {
+
+	protected static Logger log = LogManager.getLogger(RouteCostModel.class);
+
+	private static final double DEFAULT_NANOS_PER_PAIR = 100_000;
+	private static final String[] HEADER = {"mode", "candidatePairs", "nanos"};
+
+	// recorded totals per transport mode
+	private final Map<String, long[]> totals = new TreeMap<>();
+
+	/**
+	 * @return the model stored in the file, an empty model if the file does not exist.
+	 */
+	public static RouteCostModel read(String fileName) {
+		RouteCostModel model = new RouteCostModel();
+		if(!new File(fileName).exists()) {
+			log.info("Route cost model file " + fileName + " does not exist yet, using default estimates");
+			return model;
+		}
+		try(CSVReader reader = new CSVReader(new FileReader(fileName))) {
+			String[] header = reader.readNext();
+			if(header == null) {
+				return model;
+			}
+			Map<String, Integer> col = CsvTools.getIndices(header, HEADER);
+			String[] line = reader.readNext();
+			while(line != null) {
+				model.record(line[col.get("mode")], Long.parseLong(line[col.get("candidatePairs")]), Long.parseLong(line[col.get("nanos")]));
+				line = reader.readNext();
+			}
+		} catch (IOException | CsvValidationException e) {
+			throw new RuntimeException("Route cost model file " + fileName + " could not be read", e);
+		}
+		return model;
+	}
+
+	public void write(String fileName) {
+		List<String> lines = new ArrayList<>();
+		lines.add(String.join(",", HEADER));
+		for(Map.Entry<String, long[]> e : totals.entrySet()) {
+			lines.add(e.getKey() + "," + e.getValue()[0] + "," + e.getValue()[1]);
+		}
+		try {
+			CsvTools.writeToFile(lines, fileName);
+		} catch (IOException e) {
+			throw new RuntimeException("Route cost model file " + fileName + " could not be written", e);
+		}
+	}
+
+	/**
+	 * Adds the measured pseudo routing time of routes with the given mode.
+	 */
+	public synchronized void record(String mode, long candidatePairs, long nanos) {
+		long[] t = totals.computeIfAbsent(mode, k -> new long[2]);
+		t[0] += candidatePairs;
+		t[1] += nanos;
+	}
+
+	/**
+	 * @return the estimated pseudo routing time of the transit route in nanoseconds
+	 */
+	public double estimate(TransitLine transitLine, TransitRoute transitRoute, LinkCandidateCreator linkCandidates) {
+		return getCandidatePairs(transitLine, transitRoute, linkCandidates) * getNanosPerPair(transitRoute.getTransportMode());
+	}
+
+	/**
+	 * @return the number of link candidate pairs the pseudo router evaluates for the transit route
+	 */
+	public static long getCandidatePairs(TransitLine transitLine, TransitRoute transitRoute, LinkCandidateCreator linkCandidates) {
+		List<TransitRouteStop> routeStops = transitRoute.getStops();
+		long pairs = 0;
+		int previous = -1;
+		for(TransitRouteStop routeStop : routeStops) {
+			int current = linkCandidates.getNumberOfLinkCandidates(routeStop, transitLine, transitRoute);
+			if(previous >= 0) {
+				pairs += (long) previous * current;
+			}
+			previous = current;
+		}
+		return pairs;
+	}
+
+	/**
+	 * @return the total number of candidate pairs recorded for the mode
+	 */
+	synchronized long getRecordedCandidatePairs(String mode) {
+		long[] t = totals.get(mode);
+		return t == null ? 0 : t[0];
+	}
+
+	/**
+	 * @return the total pseudo routing time recorded for the mode
+	 */
+	synchronized long getRecordedNanos(String mode) {
+		long[] t = totals.get(mode);
+		return t == null ? 0 : t[1];
+	}
+
+	/**
+	 * @return the modes with recorded timings
+	 */
+	synchronized Set<String> getModes() {
+		return new TreeSet<>(totals.keySet());
+	}
+
+	/**
+	 * @return the average time per candidate pair of the mode. The average over all
+	 * modes is used for modes without recorded timings.
+	 */
+	public synchronized double getNanosPerPair(String mode) {
+		long[] t = totals.get(mode);
+		if(t != null && t[0] > 0) {
+			return (double) t[1] / t[0];
+		}
+		long pairs = 0;
+		long nanos = 0;
+		for(long[] v : totals.values()) {
+			pairs += v[0];
+			nanos += v[1];
+		}
+		return pairs > 0 ? (double) nanos / pairs : DEFAULT_NANOS_PER_PAIR;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder("RouteCostModel:");
+		for(Map.Entry<String, long[]> e : totals.entrySet()) {
+			sb.append(String.format(Locale.ROOT, " %s=%.1fus/pair", e.getKey(), getNanosPerPair(e.getKey()) / 1e3));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,166 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.mapping;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidateCreatorLazy;
+import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRoutersFactory;
+import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRoutersStandard;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Partitioned mapping: the transit lines of a schedule are split into shards that
+ * are pseudo routed independently (e.g. by separate processes, each holding its own
+ * router state). Each worker writes its pseudo routes and artificial links to a shard
+ * file (format of {@link PseudoRoutingCheckpoint}). The coordinator merges the shards
+ * into its pseudo schedule and runs the remaining mapping phases. The pseudo routing
+ * timings of the workers are added to the coordinator's {@link RouteCostModel}.
+ * <p>
+ * Workers and coordinator only communicate through files, they need the same network,
+ * schedule and config. Identical routes of different lines in different shards are
+ * pseudo routed by each of these shards.
+ *
+ * @see org.matsim.pt2matsim.run.PublicTransitMapperSharded
+ */
+public final class ShardedPTMapper {
+
+	protected static Logger log = LogManager.getLogger(ShardedPTMapper.class);
+
+	private ShardedPTMapper() {
+	}
+
+	/**
+	 * Splits the transit lines into at most nShards shards with a similar number of route stops.
+	 */
+	public static List<List<Id<TransitLine>>> createShards(TransitSchedule schedule, int nShards) {
+		List<TransitLine> lines = new ArrayList<>(schedule.getTransitLines().values());
+		lines.sort(Comparator.comparingLong(ShardedPTMapper::getNumberOfRouteStops).reversed()
+				.thenComparing(TransitLine::getId));
+
+		int n = Math.max(1, Math.min(nShards, lines.size()));
+		List<List<Id<TransitLine>>> shards = new ArrayList<>(n);
+		long[] load = new long[n];
+		PriorityQueue<Integer> leastLoaded = new PriorityQueue<>(Comparator.<Integer>comparingLong(i -> load[i]).thenComparingInt(i -> i));
+		for(int i = 0; i < n; i++) {
+			shards.add(new ArrayList<>());
+			leastLoaded.add(i);
+		}
+		// longest line first to the least loaded shard
+		for(TransitLine transitLine : lines) {
+			int shard = leastLoaded.poll();
+			shards.get(shard).add(transitLine.getId());
+			load[shard] += getNumberOfRouteStops(transitLine);
+			leastLoaded.add(shard);
+		}
+		return shards;
+	}
+
+	private static long getNumberOfRouteStops(TransitLine transitLine) {
+		long n = 0;
+		for(TransitRoute transitRoute : transitLine.getRoutes().values()) {
+			n += transitRoute.getStops().size();
+		}
+		return n;
+	}
+
+	public static void writeLineIds(Collection<Id<TransitLine>> lineIds, Path file) {
+		try {
+			Files.write(file, lineIds.stream().map(Id::toString).collect(Collectors.toList()), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new RuntimeException("Shard line file " + file + " could not be written", e);
+		}
+	}
+
+	public static Set<Id<TransitLine>> readLineIds(Path file) {
+		try {
+			return Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+					.filter(l -> !l.isEmpty())
+					.map(l -> Id.create(l, TransitLine.class))
+					.collect(Collectors.toSet());
+		} catch (IOException e) {
+			throw new RuntimeException("Shard line file " + file + " could not be read", e);
+		}
+	}
+
+	/**
+	 * Pseudo routes the given transit lines and writes the result to the shard file. All other
+	 * lines are removed from the schedule, the network is modified.
+	 */
+	public static void runWorker(PublicTransitMappingConfigGroup config, TransitSchedule schedule, Network network,
+			Collection<Id<TransitLine>> lineIds, String shardFile) throws InterruptedException, ExecutionException {
+		// the fingerprint refers to the complete inputs, the same as the coordinator's
+		ScheduleRoutersFactory scheduleRoutersFactory = new ScheduleRoutersStandard.Factory(schedule, network, config);
+		String fingerprint = PseudoRoutingCheckpoint.createFingerprint(network, schedule, config, scheduleRoutersFactory);
+
+		Set<Id<TransitLine>> shardLines = new HashSet<>(lineIds);
+		for(TransitLine transitLine : new ArrayList<>(schedule.getTransitLines().values())) {
+			if(!shardLines.contains(transitLine.getId())) {
+				schedule.removeTransitLine(transitLine);
+			}
+		}
+		log.info("Shard " + shardFile + ": pseudo routing " + schedule.getTransitLines().size() + " transit lines");
+
+		PTMapper ptMapper = new PTMapper(schedule, network);
+		ptMapper.setCheckpoint(new PseudoRoutingCheckpoint(shardFile, fingerprint));
+		ptMapper.setPseudoRoutingOnly(true);
+		// the shard file replaces the checkpoint, the route cost model is only updated by the coordinator
+		ptMapper.setWriteRouteCostModel(false);
+		ptMapper.run(config, null, scheduleRoutersFactory);
+	}
+
+	/**
+	 * Merges the shard files created by {@link #runWorker} and maps the schedule to the network. Transit
+	 * routes missing in the shards are pseudo routed by the coordinator, their link candidates are created
+	 * lazily since usually all routes are contained in the shards.
+	 *
+	 * @return the mapper of the coordinator
+	 */
+	public static PTMapper mapShards(PublicTransitMappingConfigGroup config, TransitSchedule schedule, Network network,
+			List<String> shardFiles) throws InterruptedException, ExecutionException {
+		ScheduleRoutersFactory scheduleRoutersFactory = new ScheduleRoutersStandard.Factory(schedule, network, config);
+		String fingerprint = PseudoRoutingCheckpoint.createFingerprint(network, schedule, config, scheduleRoutersFactory);
+		PTMapper ptMapper = new PTMapper(schedule, network);
+		for(String shardFile : shardFiles) {
+			ptMapper.addShard(new PseudoRoutingCheckpoint(shardFile, fingerprint));
+		}
+		ptMapper.run(config, new LinkCandidateCreatorLazy(schedule, network, config), scheduleRoutersFactory);
+		return ptMapper;
+	}
+}
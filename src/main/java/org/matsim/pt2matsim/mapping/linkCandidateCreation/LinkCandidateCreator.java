@@ -38,4 +38,18 @@ public interface LinkCandidateCreator extends MapperModule {
 	 */
 	SortedSet<LinkCandidate> getLinkCandidates(TransitRouteStop transitRouteStop, TransitLine transitLine, TransitRoute transitRoute);
 
+	/**
+	 * @return the number of link candidates for the given stop facility. Used to estimate the pseudo routing
+	 * effort of a transit route, implementations creating link candidates on demand may return an estimate.
+	 */
+	default int getNumberOfLinkCandidates(TransitRouteStop transitRouteStop, TransitLine transitLine, TransitRoute transitRoute) {
+		return getLinkCandidates(transitRouteStop, transitLine, transitRoute).size();
+	}
+
+	/**
+	 * Called once the transit route has been pseudo routed, its link candidates are not requested again.
+	 */
+	default void releaseLinkCandidates(TransitLine transitLine, TransitRoute transitRoute) {
+	}
+
 }
\ No newline at end of file
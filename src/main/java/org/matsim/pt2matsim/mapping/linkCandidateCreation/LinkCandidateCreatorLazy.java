@@ -0,0 +1,127 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.mapping.linkCandidateCreation;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.tools.NetworkTools;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Creates the link candidates of a transit route the first time they are requested and
+ * releases them once the route has been pseudo routed (see {@link #releaseLinkCandidates}).
+ * Only the {@link LinkCandidatePool}s shared by all routes are kept for the whole mapping.
+ * The link candidates are the same as the ones created by {@link LinkCandidateCreatorStandard}.
+ * <p/>
+ * Thread safe, pseudo routing workers can request link candidates of different routes concurrently.
+ * Artificial loop links for stops without link candidates are added to the network during pseudo
+ * routing, schedule routers must therefore not read the network once pseudo routing has started.
+ */
+public class LinkCandidateCreatorLazy implements LinkCandidateCreator {
+
+	protected static Logger log = LogManager.getLogger(LinkCandidateCreatorLazy.class);
+
+	private final LinkCandidateSearch search;
+
+	private final Map<TransitRoute, Future<Map<Id<PublicTransitStop>, StopLinkCandidates>>> routeCandidates = new ConcurrentHashMap<>();
+
+	public LinkCandidateCreatorLazy(TransitSchedule schedule, Network network, PublicTransitMappingConfigGroup config) {
+		this.search = new LinkCandidateSearch(schedule, network, config);
+		log.info("Link candidates are created on demand for each transit route.");
+	}
+
+	@Override
+	public SortedSet<LinkCandidate> getLinkCandidates(TransitRouteStop transitRouteStop, TransitLine transitLine, TransitRoute transitRoute) {
+		Future<Map<Id<PublicTransitStop>, StopLinkCandidates>> future = routeCandidates.get(transitRoute);
+		if(future == null) {
+			FutureTask<Map<Id<PublicTransitStop>, StopLinkCandidates>> task = new FutureTask<>(() -> createLinkCandidates(transitLine, transitRoute));
+			future = routeCandidates.putIfAbsent(transitRoute, task);
+			// other threads requesting the same route wait for the result
+			if(future == null) {
+				future = task;
+				task.run();
+			}
+		}
+		try {
+			StopLinkCandidates stopCandidates = future.get().get(PublicTransitStop.createId(transitLine, transitRoute, transitRouteStop));
+			return stopCandidates == null ? null : stopCandidates.createLinkCandidates();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException("Link candidates for transit route " + transitRoute.getId() + " could not be created", e);
+		}
+	}
+
+	/**
+	 * Returns the number of link candidates if they have already been created for the transit route. Otherwise,
+	 * the maximal number of link candidates for the schedule mode is returned as estimate.
+	 */
+	@Override
+	public int getNumberOfLinkCandidates(TransitRouteStop transitRouteStop, TransitLine transitLine, TransitRoute transitRoute) {
+		Future<Map<Id<PublicTransitStop>, StopLinkCandidates>> future = routeCandidates.get(transitRoute);
+		// the route might be released concurrently, only the completed future is read
+		if(future != null && future.isDone()) {
+			try {
+				StopLinkCandidates stopCandidates = future.get().get(PublicTransitStop.createId(transitLine, transitRoute, transitRouteStop));
+				if(stopCandidates != null) {
+					return stopCandidates.size();
+				}
+			} catch (InterruptedException | ExecutionException e) {
+				throw new RuntimeException("Link candidates for transit route " + transitRoute.getId() + " could not be created", e);
+			}
+		}
+		return search.getMaximumLinks(transitRoute.getTransportMode());
+	}
+
+	@Override
+	public void releaseLinkCandidates(TransitLine transitLine, TransitRoute transitRoute) {
+		routeCandidates.remove(transitRoute);
+	}
+
+	private Map<Id<PublicTransitStop>, StopLinkCandidates> createLinkCandidates(TransitLine transitLine, TransitRoute transitRoute) {
+		LinkCandidateSearch.RouteLinks routeLinks = search.getRouteLinks(transitLine, transitRoute);
+
+		Map<Id<PublicTransitStop>, StopLinkCandidates> candidates = new HashMap<>();
+		for(Map.Entry<Id<PublicTransitStop>, Set<Link>> c : routeLinks.candidates().entrySet()) {
+			PublicTransitStop stop = routeLinks.stops().get(c.getKey());
+			Set<Link> links = c.getValue();
+
+			if(links.size() > 0) {
+				NetworkTools.reduceSequencedLinks(links, stop.getStopFacility().getCoord());
+			}
+			// an artificial loop link is created if there are no links for this stop
+			candidates.put(c.getKey(), search.createStopLinkCandidates(stop, links));
+		}
+		return candidates;
+	}
+}
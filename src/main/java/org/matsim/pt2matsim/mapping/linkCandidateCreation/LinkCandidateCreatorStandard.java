@@ -20,24 +20,20 @@ package org.matsim.pt2matsim.mapping.linkCandidateCreation;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
-import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
-import org.matsim.core.network.NetworkUtils;
-import org.matsim.core.utils.collections.CollectionUtils;
-import org.matsim.core.utils.collections.MapUtils;
-import org.matsim.core.utils.geometry.CoordUtils;
 import org.matsim.pt.transitSchedule.api.*;
 import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
-import org.matsim.pt2matsim.config.PublicTransitMappingStrings;
-import org.matsim.pt2matsim.config.TransportModeParameterSet;
+import org.matsim.pt2matsim.jfr.LinkCandidateCreationEvent;
 import org.matsim.pt2matsim.mapping.Progress;
-import org.matsim.pt2matsim.tools.MiscUtils;
 import org.matsim.pt2matsim.tools.NetworkTools;
-import org.matsim.pt2matsim.tools.PTMapperTools;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Creates link candidates without mode separated config. Uses more "heuristics".
@@ -46,283 +42,129 @@ import java.util.*;
  */
 public class LinkCandidateCreatorStandard implements LinkCandidateCreator {
 
-	private static final Set<String> loopLinkModes = CollectionUtils.stringToSet(PublicTransitMappingStrings.ARTIFICIAL_LINK_MODE + "," + PublicTransitMappingStrings.STOP_FACILITY_LOOP_LINK);
 	protected static Logger log = LogManager.getLogger(LinkCandidateCreatorStandard.class);
 
 	private final TransitSchedule schedule;
-	private final Network network;
+	private final LinkCandidateSearch search;
 
-	private final Map<Id<PublicTransitStop>, SortedSet<LinkCandidate>> linkCandidates = new HashMap<>();
-	private final Map<Id<PublicTransitStop>, PublicTransitStop> stops = new HashMap<>();
-
-	private final int nLinks;
-	private final double distanceMultiplier;
-	private final double maxDistance;
-	private final Map<String, Set<String>> transportModeAssignments;
-	private double nodeSearchRadius;
-	private PublicTransitMappingConfigGroup mapperConfig;
-	
-	private final double searchRadiusMultiplier = 15;
+	private final Map<Id<PublicTransitStop>, StopLinkCandidates> linkCandidates = new HashMap<>();
 
+	private final int numThreads;
 
 	public LinkCandidateCreatorStandard(TransitSchedule schedule, Network network, PublicTransitMappingConfigGroup config) {
 		this.schedule = schedule;
-		this.network = network;
-		this.nLinks = config.getNLinkThreshold();
-		this.distanceMultiplier = config.getCandidateDistanceMultiplier();
-		this.maxDistance = config.getMaxLinkCandidateDistance();
-		this.transportModeAssignments = config.getTransportModeAssignment();
-		this.mapperConfig = config;
-		
+		this.search = new LinkCandidateSearch(schedule, network, config);
+		this.numThreads = config.getNumOfThreads();
+
 		load();
 	}
 
 	private void load() {
+		LinkCandidateCreationEvent event = new LinkCandidateCreationEvent();
+		event.begin();
 
 		log.info("===========================");
 		log.info("Creating link candidates...");
-		// log.info("   search radius: " + nodeSearchRadius);
 		log.info("   Note: loop links for stop facilities are created if no link candidate can be found.");
 
-		Map<String, Set<Link>> closeLinksMap = new HashMap<>();
-
-		Map<Id<PublicTransitStop>, Set<Link>> candidates = new HashMap<>();
-		
-		long totalNumberOfRoutes = 0;
-		
-		for(TransitLine transitLine : schedule.getTransitLines().values()) {
-			totalNumberOfRoutes += transitLine.getRoutes().size();
-		}
-		
-		Progress progress = new Progress(totalNumberOfRoutes, "Getting closest links ...");
-
-		/*
-		  get closest links for each stop facility (separated by mode)
-		 */
+		List<TransitLine> transitLines = new ArrayList<>();
+		List<TransitRoute> transitRoutes = new ArrayList<>();
 		for(TransitLine transitLine : schedule.getTransitLines().values()) {
 			for(TransitRoute transitRoute : transitLine.getRoutes().values()) {
-				String scheduleTransportMode = transitRoute.getTransportMode();
-				Set<String> networkModes = transportModeAssignments.get(scheduleTransportMode);
-
-				// If no transportModes have been defined in the config, no links should be found by findClosestLink (which requires an empty set)
-				if(networkModes == null) {
-					log.warn("No transportModeAssignment found for schedule mode " + scheduleTransportMode);
-					networkModes = new HashSet<>();
-					transportModeAssignments.put(scheduleTransportMode, networkModes);
-				}
-
-				TransitRouteStop previousRouteStop = transitRoute.getStops().get(0);
-
-				stops.put(PublicTransitStop.createId(transitLine, transitRoute, previousRouteStop), new PublicTransitStopImpl(transitLine, transitRoute, previousRouteStop));
-
-				Set<Link> tmpCloseLinks = MapUtils.getSet(getCloseLinksKey(transitRoute, previousRouteStop), closeLinksMap);
-				if(tmpCloseLinks.size() == 0) {
-					tmpCloseLinks.addAll(findClosestLinks(previousRouteStop.getStopFacility().getCoord(), networkModes, scheduleTransportMode));
-				}
-
-				Set<Link> previousLinks = new HashSet<>(tmpCloseLinks);
-
-				for(int i = 1; i < transitRoute.getStops().size(); i++) {
-					TransitStopFacility previousStopFacility = previousRouteStop.getStopFacility();
-					TransitRouteStop currentRouteStop = transitRoute.getStops().get(i);
-					TransitStopFacility currentStopFacility = currentRouteStop.getStopFacility();
-					stops.put(PublicTransitStop.createId(transitLine, transitRoute, currentRouteStop), new PublicTransitStopImpl(transitLine, transitRoute, currentRouteStop));
-
-					Set<Link> currentLinks = new HashSet<>();
-
-					/*
-					  if stop facility already has a referenced link
-					 */
-					if(currentStopFacility.getLinkId() != null) {
-						currentLinks.add(network.getLinks().get(currentStopFacility.getLinkId()));
-						if(previousLinks.contains(network.getLinks().get(currentStopFacility.getLinkId()))) {
-							previousLinks.remove(network.getLinks().get(currentStopFacility.getLinkId()));
-						}
-					}
-					/*
-					  look for links close to stop facility
-					 */
-					else {
-						Set<Link> closeLinks = MapUtils.getSet(getCloseLinksKey(transitRoute, currentRouteStop), closeLinksMap);
-
-						// look for closes links in network
-						if(closeLinks.size() == 0) {
-							closeLinks.addAll(findClosestLinks(currentRouteStop.getStopFacility().getCoord(), networkModes, scheduleTransportMode));
-						}
-
-						currentLinks.addAll(closeLinks);
-					}
-
-					/*
-					  Separate links that belong to two subsequent stops
-					 */
-					PTMapperTools.separateLinks(currentStopFacility.getCoord(), currentLinks, previousStopFacility.getCoord(), previousLinks);
-
-					candidates.put(PublicTransitStop.createId(transitLine, transitRoute, previousRouteStop), previousLinks);
-					candidates.put(PublicTransitStop.createId(transitLine, transitRoute, currentRouteStop), currentLinks);
-
-					previousLinks = currentLinks;
-					previousRouteStop = currentRouteStop;
-				}
-				
-				progress.update();
+				transitLines.add(transitLine);
+				transitRoutes.add(transitRoute);
 			}
 		}
+		long totalNumberOfRoutes = transitRoutes.size();
 
-		Map<Id<PublicTransitStop>, Double> maxStopDist = new HashMap<>();
-		Map<Id<PublicTransitStop>, Double> minStopDist = new HashMap<>();
-		
-		progress = new Progress(candidates.size(), "Creating link candidates ...");
-
-		/*
-		  create and store link candidates
-		 */
-		for(Map.Entry<Id<PublicTransitStop>, Set<Link>> c : candidates.entrySet()) {
-			PublicTransitStop stop = stops.get(c.getKey());
-			Set<Link> links = c.getValue();
+		Map<Id<PublicTransitStop>, PublicTransitStop> stops = new HashMap<>();
+		Map<Id<PublicTransitStop>, Set<Link>> candidates = new HashMap<>();
+		int nLoopLinks = 0;
+		int nLC = 0;
 
-			if(links.size() > 0) {
-				NetworkTools.reduceSequencedLinks(links, stop.getStopFacility().getCoord());
-			} else {
-				// no links for this stop, create artificial loop link
-				links = new HashSet<>();
-				links.add(createLoopLink(stop.getStopFacility()));
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			/*
+			  get closest links for each stop facility (separated by mode), routes are processed in parallel
+			 */
+			Progress routeProgress = new Progress(totalNumberOfRoutes, "Getting closest links ...");
+			List<Future<LinkCandidateSearch.RouteLinks>> routeFutures = new ArrayList<>(transitRoutes.size());
+			for(int r = 0; r < transitRoutes.size(); r++) {
+				TransitLine transitLine = transitLines.get(r);
+				TransitRoute transitRoute = transitRoutes.get(r);
+				routeFutures.add(executor.submit(() -> {
+					LinkCandidateSearch.RouteLinks routeLinks = search.getRouteLinks(transitLine, transitRoute);
+					routeProgress.update();
+					return routeLinks;
+				}));
 			}
-
-			double minDist = Double.MAX_VALUE;
-			double maxDist = 0.0;
-
-			for(Link link : links) {
-				LinkCandidate linkCandidate = new LinkCandidateImpl(link, stop);
-				MiscUtils.getSortedSet(stop.getId(), linkCandidates).add(linkCandidate);
-
-				if(linkCandidate.getStopFacilityDistance() > maxDist) maxDist = linkCandidate.getStopFacilityDistance();
-				if(linkCandidate.getStopFacilityDistance() < minDist) minDist = linkCandidate.getStopFacilityDistance();
+			// merged in route order, the same as a sequential pass
+			for(Future<LinkCandidateSearch.RouteLinks> future : routeFutures) {
+				LinkCandidateSearch.RouteLinks routeLinks = future.get();
+				stops.putAll(routeLinks.stops());
+				candidates.putAll(routeLinks.candidates());
 			}
 
-			maxStopDist.put(stop.getId(), maxDist);
-			minStopDist.put(stop.getId(), minDist);
-			
-			progress.update();
-		}
+			List<Map.Entry<Id<PublicTransitStop>, Set<Link>>> entries = new ArrayList<>(candidates.entrySet());
+			Progress candidateProgress = new Progress(entries.size(), "Creating link candidates ...");
 
-		/*
-		Set priorities
-		 */
-		int nLC = 0;
-		progress = new Progress(linkCandidates.size(), "Setting candidate priorities ...");
-		
-		for(Map.Entry<Id<PublicTransitStop>, SortedSet<LinkCandidate>> entry : linkCandidates.entrySet()) {
-			double minDist = minStopDist.get(entry.getKey());
-			double maxDist = maxStopDist.get(entry.getKey());
-			double delta = maxDist - minDist;
+			// reduce sequenced links, only reads the network
+			List<Future<?>> futures = new ArrayList<>(entries.size());
+			for(Map.Entry<Id<PublicTransitStop>, Set<Link>> c : entries) {
+				if(c.getValue().size() > 0) {
+					futures.add(executor.submit(() -> NetworkTools.reduceSequencedLinks(c.getValue(), stops.get(c.getKey()).getStopFacility().getCoord())));
+				}
+			}
+			for(Future<?> future : futures) {
+				future.get();
+			}
 
-			for(LinkCandidate candidate : entry.getValue()) {
-				double d = candidate.getStopFacilityDistance();
-				if(delta > 0) {
-					candidate.setPriority(1 - ((d - minDist) / (maxDist - minDist)));
-				} else {
-					candidate.setPriority(1);
+			/*
+			  store link candidates as indices of the stop facility's link candidate pool
+			 */
+			for(Map.Entry<Id<PublicTransitStop>, Set<Link>> c : entries) {
+				// no links for this stop, an artificial loop link is created (modifies the network)
+				if(c.getValue().size() == 0) {
+					nLoopLinks++;
 				}
+				StopLinkCandidates stopCandidates = search.createStopLinkCandidates(stops.get(c.getKey()), c.getValue());
+				linkCandidates.put(c.getKey(), stopCandidates);
+				nLC += stopCandidates.size();
+				candidateProgress.update();
 			}
-			nLC += entry.getValue().size();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException("Link candidates could not be created", e);
+		} finally {
+			executor.shutdown();
 		}
+
 		if(linkCandidates.size() == 0) {
 			log.warn("No link candidates created!");
 		} else {
 			log.info("Average number of link candidates: " + nLC / linkCandidates.size());
+			log.info("Link candidate pools (network modes and stop facility): " + search.getNumberOfPools());
 		}
-	}
-
-	private String getCloseLinksKey(TransitRoute transitRoute, TransitRouteStop routeStop) {
-		return transitRoute.getTransportMode() + ":" + routeStop.getStopFacility().getId();
-	}
 
-	private Link createLoopLink(TransitStopFacility stopFacility) {
-		return PTMapperTools.createArtificialStopFacilityLink(stopFacility, network, PublicTransitMappingStrings.PREFIX_ARTIFICIAL, 20, loopLinkModes);
-	}
-
-	/**
-	 * Looks for nodes within search radius of <tt>coord</tt> (using {@link NetworkUtils#getNearestNodes},
-	 * fetches all in- and outlinks and sorts them ascending by their
-	 * distance to the coordinates given.
-	 * <p/>
-	 * The method then returns all links within <tt>maxLinkDistance</tt> or <tt>maxNLinks</tt>*
-	 * whichever is reached earlier. Links with the same distance (i.e. opposite links) are always returned.
-	 * <p/>
-	 * * Note: maxNLinks is not a hard constraint. This method returns more than maxNLinks links if two links
-	 * have the same distance to the facility. It also returns more than maxNLinks if toleranceFactor is > 1.
-	 * <p/>
-	 * Distance Link to Coordinate is calculated using {@link CoordUtils#distancePointLinesegment}).
-	 *
-	 * The abort conditions are ordered as follows:
-	 * <ol>
-	 *     <li>distance > maxLinkCandidateDistance</li>
-	 *     <li>distance > (distance of the maxNLinks-th link * toleranceFactor)</li>
-	 * </ol>
-	 *
-	 * @return list of the closest links from coordinate <tt>coord</tt>.
-	 */
-	private List<Link> findClosestLinks(Coord coord, Set<String> networkModes, String scheduleMode) {
-		
-		// searching
-		int maximumLinks = this.nLinks;
-		double nodeSearchRadiusLocal = this.searchRadiusMultiplier * this.maxDistance;
-		double distanceThreshold = this.maxDistance;
-		double maximumDistance = this.maxDistance;
-		boolean strictLinkNumRule = false;
-		if (mapperConfig.getModeSpecificRules()) {
-			TransportModeParameterSet parameterSetForMode = mapperConfig.getParameterSetForMode(scheduleMode);
-			if (parameterSetForMode != null) {
-				nodeSearchRadiusLocal = this.searchRadiusMultiplier * parameterSetForMode.getMaximumSearchDistance();
-				maximumLinks = parameterSetForMode.getNumberOfLinkCandidates();
-				distanceThreshold = parameterSetForMode.getMaximumSearchDistance();
-				maximumDistance = parameterSetForMode.getMaximumSearchDistance();
-				strictLinkNumRule = parameterSetForMode.getImposeStrictLinksRule();
-			}
-			else {
-				// continue using the default ones
-			}
-			
+		event.end();
+		if(event.shouldCommit()) {
+			event.creator = getClass().getSimpleName();
+			event.transitRoutes = totalNumberOfRoutes;
+			event.stops = linkCandidates.size();
+			event.linkCandidates = nLC;
+			event.loopLinks = nLoopLinks;
+			event.commit();
 		}
-		
-		List<Link> closestLinks = new ArrayList<>();
-		Map<Double, Set<Link>> sortedLinks = NetworkTools.findClosestLinks(network, coord, nodeSearchRadiusLocal, networkModes);
-
-		
-		int nLink = 0;
-
-		for(Map.Entry<Double, Set<Link>> entry : sortedLinks.entrySet()) {
-			double currentDistance = entry.getKey();
-			double currentNLinks = entry.getValue().size();
-
-			// if the distance is greater than the maximum distance
-			if(currentDistance > maximumDistance) {
-				break;
-			}
-
-			// when the link count limit is reached, set the soft constraint distance
-			if(nLink < this.nLinks && nLink + currentNLinks >= maximumLinks) {
-				distanceThreshold = currentDistance * this.distanceMultiplier;
-				if (strictLinkNumRule)
-					break;
-			}
-
-			// check if distance is greater than soft constraint distance
-			if(nLink + currentNLinks > maximumLinks && currentDistance > distanceThreshold) {
-				break;
-			}
-
-			// if no loop break has been reached, add link to list
-			closestLinks.addAll(entry.getValue());
-			nLink += entry.getValue().size();
-		}
-		return closestLinks;
 	}
 
 	@Override
 	public SortedSet<LinkCandidate> getLinkCandidates(TransitRouteStop transitRouteStop, TransitLine transitLine, TransitRoute transitRoute) {
-		return linkCandidates.get(PublicTransitStop.createId(transitLine, transitRoute, transitRouteStop));
+		StopLinkCandidates stopCandidates = linkCandidates.get(PublicTransitStop.createId(transitLine, transitRoute, transitRouteStop));
+		return stopCandidates == null ? null : stopCandidates.createLinkCandidates();
+	}
+
+	@Override
+	public int getNumberOfLinkCandidates(TransitRouteStop transitRouteStop, TransitLine transitLine, TransitRoute transitRoute) {
+		return linkCandidates.get(PublicTransitStop.createId(transitLine, transitRoute, transitRouteStop)).size();
 	}
 
-}
\ No newline at end of file
+}
@@ -49,6 +49,21 @@ public class LinkCandidateImpl implements LinkCandidate {
 		this.priority = 1;
 	}
 
+	/**
+	 * Creates a link candidate with a distance and loop link flag that have already been
+	 * calculated (see {@link LinkCandidatePool}).
+	 */
+	LinkCandidateImpl(Link link, PublicTransitStop publicTransitStop, double stopFacilityDistance, boolean isLoopLink) {
+		this.link = link;
+		this.stop = publicTransitStop;
+
+		this.fromNodeCoord = link.getFromNode().getCoord();
+		this.toNodeCoord = link.getToNode().getCoord();
+		this.stopFacilityDistance = stopFacilityDistance;
+		this.isLoopLink = isLoopLink;
+		this.priority = 1;
+	}
+
 	@Override
 	public double getStopFacilityDistance() {
 		return stopFacilityDistance;
@@ -0,0 +1,100 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.mapping.linkCandidateCreation;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The links close to a stop facility for a set of network modes, shared by all transit routes
+ * serving the stop facility. Distances to the stop facility are calculated once. Immutable.
+ * <p/>
+ * The link candidates of a route stop are stored as indices into the pool, see {@link StopLinkCandidates}.
+ */
+final class LinkCandidatePool {
+
+	private final Link[] links;
+	private final double[] distances;
+	private final boolean[] loopLinks;
+	private final int nClosestLinks;
+
+	/**
+	 * @param closestLinks the links found by the search, ordered by distance
+	 * @param additionalLinks links that are not a result of the search (e.g. the link referenced
+	 *                        by the stop facility), added if they are not contained already
+	 */
+	LinkCandidatePool(TransitStopFacility stopFacility, List<Link> closestLinks, List<Link> additionalLinks) {
+		Link[] poolLinks = closestLinks.toArray(new Link[closestLinks.size() + additionalLinks.size()]);
+		int n = closestLinks.size();
+		for(Link link : additionalLinks) {
+			if(!closestLinks.contains(link)) {
+				poolLinks[n++] = link;
+			}
+		}
+		this.links = Arrays.copyOf(poolLinks, n);
+		this.nClosestLinks = closestLinks.size();
+		this.distances = new double[n];
+		this.loopLinks = new boolean[n];
+		for(int i = 0; i < n; i++) {
+			Link link = links[i];
+			distances[i] = CoordUtils.distancePointLinesegment(link.getFromNode().getCoord(), link.getToNode().getCoord(), stopFacility.getCoord());
+			loopLinks[i] = link.getFromNode().getId().toString().equals(link.getToNode().getId().toString());
+		}
+	}
+
+	/**
+	 * @return the closest links found by the search, without additional links
+	 */
+	List<Link> getClosestLinks() {
+		return Collections.unmodifiableList(Arrays.asList(links).subList(0, nClosestLinks));
+	}
+
+	/**
+	 * @return the index of the link in the pool or -1 if the pool does not contain the link
+	 */
+	int indexOf(Link link) {
+		for(int i = 0; i < links.length; i++) {
+			if(links[i] == link) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	Link getLink(int index) {
+		return links[index];
+	}
+
+	double getStopFacilityDistance(int index) {
+		return distances[index];
+	}
+
+	boolean isLoopLink(int index) {
+		return loopLinks[index];
+	}
+
+	int size() {
+		return links.length;
+	}
+}
@@ -0,0 +1,316 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.mapping.linkCandidateCreation;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.pt.transitSchedule.api.*;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.config.PublicTransitMappingStrings;
+import org.matsim.pt2matsim.config.TransportModeParameterSet;
+import org.matsim.pt2matsim.tools.PTMapperTools;
+import org.matsim.pt2matsim.tools.lib.LinkSegmentIndex;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the links close to the stops of transit routes, used by the link candidate creators.
+ * The closest links are stored in a {@link LinkCandidatePool} per network mode set and stop
+ * facility which is shared by all routes. All methods can be called concurrently.
+ */
+final class LinkCandidateSearch {
+
+	protected static Logger log = LogManager.getLogger(LinkCandidateSearch.class);
+
+	private final Network network;
+
+	private final int nLinks;
+	private final double distanceMultiplier;
+	private final double maxDistance;
+	private final Map<String, Set<String>> transportModeAssignments;
+	private final PublicTransitMappingConfigGroup mapperConfig;
+
+	// one segment index per set of network modes, shared by all routes using these modes
+	private final Map<Set<String>, LinkSegmentIndex> linkSegmentIndices = new HashMap<>();
+	private final Map<PoolKey, LinkCandidatePool> pools = new ConcurrentHashMap<>();
+	private final Map<Id<TransitStopFacility>, LinkCandidatePool> loopLinkPools = new ConcurrentHashMap<>();
+
+	/**
+	 * The schedule mode is only part of the key if it has mode specific search rules.
+	 */
+	private record PoolKey(Set<String> networkModes, String scheduleMode, Id<TransitStopFacility> stopFacilityId) {
+	}
+
+	LinkCandidateSearch(TransitSchedule schedule, Network network, PublicTransitMappingConfigGroup config) {
+		this.network = network;
+		this.nLinks = config.getNLinkThreshold();
+		this.distanceMultiplier = config.getCandidateDistanceMultiplier();
+		this.maxDistance = config.getMaxLinkCandidateDistance();
+		this.transportModeAssignments = config.getTransportModeAssignment();
+		this.mapperConfig = config;
+
+		// the indices are created beforehand, loop links might be added to the network during the search
+		for(TransitLine transitLine : schedule.getTransitLines().values()) {
+			for(TransitRoute transitRoute : transitLine.getRoutes().values()) {
+				// If no transportModes have been defined in the config, no links should be found by findClosestLink (which requires an empty set)
+				String scheduleTransportMode = transitRoute.getTransportMode();
+				if(!transportModeAssignments.containsKey(scheduleTransportMode)) {
+					log.warn("No transportModeAssignment found for schedule mode " + scheduleTransportMode);
+					transportModeAssignments.put(scheduleTransportMode, new HashSet<>());
+				}
+				linkSegmentIndices.computeIfAbsent(transportModeAssignments.get(scheduleTransportMode), modes -> LinkSegmentIndex.create(network, modes));
+			}
+		}
+	}
+
+	/**
+	 * Links close to the stops of a transit route and the candidate link sets of its stops, in the order the
+	 * stops are visited.
+	 */
+	record RouteLinks(Map<Id<PublicTransitStop>, PublicTransitStop> stops, Map<Id<PublicTransitStop>, Set<Link>> candidates) {
+	}
+
+	/**
+	 * Finds the closest links for each stop of the transit route and separates links that belong to
+	 * two subsequent stops. Thread safe.
+	 */
+	RouteLinks getRouteLinks(TransitLine transitLine, TransitRoute transitRoute) {
+		Map<Id<PublicTransitStop>, PublicTransitStop> routeStops = new LinkedHashMap<>();
+		Map<Id<PublicTransitStop>, Set<Link>> routeCandidates = new LinkedHashMap<>();
+
+		String scheduleTransportMode = transitRoute.getTransportMode();
+		TransitRouteStop previousRouteStop = transitRoute.getStops().get(0);
+
+		routeStops.put(PublicTransitStop.createId(transitLine, transitRoute, previousRouteStop), new PublicTransitStopImpl(transitLine, transitRoute, previousRouteStop));
+
+		Set<Link> previousLinks = new HashSet<>(getPool(scheduleTransportMode, previousRouteStop.getStopFacility()).getClosestLinks());
+
+		for(int i = 1; i < transitRoute.getStops().size(); i++) {
+			TransitStopFacility previousStopFacility = previousRouteStop.getStopFacility();
+			TransitRouteStop currentRouteStop = transitRoute.getStops().get(i);
+			TransitStopFacility currentStopFacility = currentRouteStop.getStopFacility();
+			routeStops.put(PublicTransitStop.createId(transitLine, transitRoute, currentRouteStop), new PublicTransitStopImpl(transitLine, transitRoute, currentRouteStop));
+
+			Set<Link> currentLinks = new HashSet<>();
+
+			/*
+			  if stop facility already has a referenced link
+			 */
+			if(currentStopFacility.getLinkId() != null) {
+				Link stopFacilityLink = getLink(currentStopFacility.getLinkId());
+				currentLinks.add(stopFacilityLink);
+				previousLinks.remove(stopFacilityLink);
+			}
+			/*
+			  look for links close to stop facility
+			 */
+			else {
+				currentLinks.addAll(getPool(scheduleTransportMode, currentStopFacility).getClosestLinks());
+			}
+
+			/*
+			  Separate links that belong to two subsequent stops
+			 */
+			PTMapperTools.separateLinks(currentStopFacility.getCoord(), currentLinks, previousStopFacility.getCoord(), previousLinks);
+
+			routeCandidates.put(PublicTransitStop.createId(transitLine, transitRoute, previousRouteStop), previousLinks);
+			routeCandidates.put(PublicTransitStop.createId(transitLine, transitRoute, currentRouteStop), currentLinks);
+
+			previousLinks = currentLinks;
+			previousRouteStop = currentRouteStop;
+		}
+		return new RouteLinks(routeStops, routeCandidates);
+	}
+
+	/**
+	 * @return the link candidate pool of the stop facility for the schedule mode, created on the
+	 * first request. The pool contains the closest links and the link referenced by the stop facility.
+	 */
+	private LinkCandidatePool getPool(String scheduleMode, TransitStopFacility stopFacility) {
+		Set<String> networkModes = transportModeAssignments.get(scheduleMode);
+		PoolKey key = new PoolKey(networkModes, getModeSpecificParameters(scheduleMode) != null ? scheduleMode : null, stopFacility.getId());
+		LinkCandidatePool pool = pools.get(key);
+		if(pool == null) {
+			// the search runs outside of the map, a pool created concurrently for the same key is discarded
+			List<Link> closestLinks = findClosestLinks(stopFacility.getCoord(), networkModes, scheduleMode);
+			Link stopFacilityLink = stopFacility.getLinkId() != null ? getLink(stopFacility.getLinkId()) : null;
+			LinkCandidatePool newPool = new LinkCandidatePool(stopFacility, closestLinks, stopFacilityLink != null ? List.of(stopFacilityLink) : List.of());
+			pool = pools.putIfAbsent(key, newPool);
+			if(pool == null) {
+				pool = newPool;
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * Stores the links of a route stop as indices of the stop facility's link candidate pool. If
+	 * no links are given, an artificial loop link is created for the stop facility.
+	 *
+	 * @param links the links of the route stop, a subset of the pool's links
+	 */
+	StopLinkCandidates createStopLinkCandidates(PublicTransitStop stop, Set<Link> links) {
+		TransitStopFacility stopFacility = stop.getStopFacility();
+		if(links.isEmpty()) {
+			LinkCandidatePool loopLinkPool = loopLinkPools.get(stopFacility.getId());
+			if(loopLinkPool == null) {
+				// createLoopLink returns the existing loop link if the stop facility already has one
+				LinkCandidatePool newPool = new LinkCandidatePool(stopFacility, List.of(createLoopLink(stopFacility)), List.of());
+				loopLinkPool = loopLinkPools.putIfAbsent(stopFacility.getId(), newPool);
+				if(loopLinkPool == null) {
+					loopLinkPool = newPool;
+				}
+			}
+			return new StopLinkCandidates(stop, loopLinkPool, new int[]{0});
+		}
+
+		LinkCandidatePool pool = getPool(stop.getTransitRoute().getTransportMode(), stopFacility);
+		int[] indices = new int[links.size()];
+		int i = 0;
+		for(Link link : links) {
+			indices[i] = pool.indexOf(link);
+			if(indices[i] < 0) {
+				throw new IllegalArgumentException("Link " + link.getId() + " is not a link candidate of stop facility " + stopFacility.getId());
+			}
+			i++;
+		}
+		return new StopLinkCandidates(stop, pool, indices);
+	}
+
+	/**
+	 * @return the number of link candidate pools created so far
+	 */
+	int getNumberOfPools() {
+		return pools.size() + loopLinkPools.size();
+	}
+
+	private Link getLink(Id<Link> linkId) {
+		synchronized(network) {
+			return network.getLinks().get(linkId);
+		}
+	}
+
+	/**
+	 * Creates an artificial loop link for a stop facility without link candidates. Loop links of
+	 * different routes may be created concurrently, the network is locked while adding them.
+	 */
+	Link createLoopLink(TransitStopFacility stopFacility) {
+		synchronized(network) {
+			return PTMapperTools.createArtificialStopFacilityLink(stopFacility, network, PublicTransitMappingStrings.PREFIX_ARTIFICIAL, 20, PublicTransitMappingStrings.STOP_FACILITY_LOOP_LINK_MODES);
+		}
+	}
+
+	/**
+	 * @return the number of link candidates at which the search for a stop of the given schedule
+	 * mode stops (not a hard limit, see {@link #findClosestLinks}).
+	 */
+	int getMaximumLinks(String scheduleMode) {
+		TransportModeParameterSet parameterSetForMode = getModeSpecificParameters(scheduleMode);
+		return parameterSetForMode != null ? parameterSetForMode.getNumberOfLinkCandidates() : nLinks;
+	}
+
+	/**
+	 * @return the parameters of the schedule mode if mode specific rules are used, <tt>null</tt> otherwise
+	 */
+	private TransportModeParameterSet getModeSpecificParameters(String scheduleMode) {
+		return mapperConfig.getModeSpecificRules() ? mapperConfig.getParameterSetForMode(scheduleMode) : null;
+	}
+
+	/**
+	 * Looks for links within the maximal link candidate distance of <tt>coord</tt> (using the
+	 * {@link LinkSegmentIndex} of the network modes) and sorts them ascending by their
+	 * distance to the coordinates given.
+	 * <p/>
+	 * The method then returns all links within <tt>maxLinkDistance</tt> or <tt>maxNLinks</tt>*
+	 * whichever is reached earlier. Links with the same distance (i.e. opposite links) are always returned.
+	 * <p/>
+	 * * Note: maxNLinks is not a hard constraint. This method returns more than maxNLinks links if two links
+	 * have the same distance to the facility. It also returns more than maxNLinks if toleranceFactor is > 1.
+	 * <p/>
+	 * Distance Link to Coordinate is calculated using {@link CoordUtils#distancePointLinesegment}).
+	 *
+	 * The abort conditions are ordered as follows:
+	 * <ol>
+	 *     <li>distance > maxLinkCandidateDistance</li>
+	 *     <li>distance > (distance of the maxNLinks-th link * toleranceFactor)</li>
+	 * </ol>
+	 *
+	 * @return list of the closest links from coordinate <tt>coord</tt>.
+	 */
+	private List<Link> findClosestLinks(Coord coord, Set<String> networkModes, String scheduleMode) {
+		
+		// searching
+		int maximumLinks = this.nLinks;
+		double distanceThreshold = this.maxDistance;
+		double maximumDistance = this.maxDistance;
+		boolean strictLinkNumRule = false;
+		if (mapperConfig.getModeSpecificRules()) {
+			TransportModeParameterSet parameterSetForMode = mapperConfig.getParameterSetForMode(scheduleMode);
+			if (parameterSetForMode != null) {
+				maximumLinks = parameterSetForMode.getNumberOfLinkCandidates();
+				distanceThreshold = parameterSetForMode.getMaximumSearchDistance();
+				maximumDistance = parameterSetForMode.getMaximumSearchDistance();
+				strictLinkNumRule = parameterSetForMode.getImposeStrictLinksRule();
+			}
+			else {
+				// continue using the default ones
+			}
+			
+		}
+		
+		List<Link> closestLinks = new ArrayList<>();
+		Map<Double, Set<Link>> sortedLinks = linkSegmentIndices.get(networkModes).getLinksWithinDistance(coord, maximumDistance);
+
+		
+		int nLink = 0;
+
+		for(Map.Entry<Double, Set<Link>> entry : sortedLinks.entrySet()) {
+			double currentDistance = entry.getKey();
+			double currentNLinks = entry.getValue().size();
+
+			// if the distance is greater than the maximum distance
+			if(currentDistance > maximumDistance) {
+				break;
+			}
+
+			// when the link count limit is reached, set the soft constraint distance
+			if(nLink < this.nLinks && nLink + currentNLinks >= maximumLinks) {
+				distanceThreshold = currentDistance * this.distanceMultiplier;
+				if (strictLinkNumRule)
+					break;
+			}
+
+			// check if distance is greater than soft constraint distance
+			if(nLink + currentNLinks > maximumLinks && currentDistance > distanceThreshold) {
+				break;
+			}
+
+			// if no loop break has been reached, add link to list
+			closestLinks.addAll(entry.getValue());
+			nLink += entry.getValue().size();
+		}
+		return closestLinks;
+	}
+}
@@ -0,0 +1,68 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.mapping.linkCandidateCreation;
+
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * The link candidates of a route stop, stored as indices into the {@link LinkCandidatePool} of
+ * the stop facility. The {@link LinkCandidate} objects are only created when requested.
+ *
+ * @param indices pool indices of the link candidates, in the order they are added to the candidate set
+ */
+record StopLinkCandidates(PublicTransitStop stop, LinkCandidatePool pool, int[] indices) {
+
+	int size() {
+		return indices.length;
+	}
+
+	/**
+	 * Creates the link candidates of the stop. Priorities are set relative to the closest and
+	 * farthest candidate of the stop.
+	 */
+	SortedSet<LinkCandidate> createLinkCandidates() {
+		SortedSet<LinkCandidate> stopCandidates = new TreeSet<>();
+		double minDist = Double.MAX_VALUE;
+		double maxDist = 0.0;
+
+		LinkCandidate[] linkCandidates = new LinkCandidate[indices.length];
+		for(int i = 0; i < indices.length; i++) {
+			int index = indices[i];
+			linkCandidates[i] = new LinkCandidateImpl(pool.getLink(index), stop, pool.getStopFacilityDistance(index), pool.isLoopLink(index));
+			stopCandidates.add(linkCandidates[i]);
+
+			double distance = pool.getStopFacilityDistance(index);
+			if(distance > maxDist) maxDist = distance;
+			if(distance < minDist) minDist = distance;
+		}
+
+		// priorities are set after all candidates have been added, the set's order is not changed
+		double delta = maxDist - minDist;
+		for(LinkCandidate candidate : linkCandidates) {
+			double d = candidate.getStopFacilityDistance();
+			if(delta > 0) {
+				candidate.setPriority(1 - ((d - minDist) / (maxDist - minDist)));
+			} else {
+				candidate.setPriority(1);
+			}
+		}
+		return stopCandidates;
+	}
+}
@@ -0,0 +1,268 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2014 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.mapping.networkRouter;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Link-to-link least cost path search from one link to a set of target links
+ * on a (filtered) network. A single Dijkstra search is run from the from-link's
+ * to-node and stops as soon as the from-nodes of all target links are settled
+ * or the settled cost exceeds the given maximum cost.
+ * <p>
+ * Paths follow the same convention as the {@link LeastCostPathCalculator}s used
+ * by the schedule routers: neither the from- nor the to-link are part of the
+ * path and their cost is not included.
+ * <p>
+ * Search state is kept between queries and indexed by node id index, instances
+ * should therefore not be shared between workers.
+ */
+public class OneToManyPathCalculator {
+
+	private final Network network;
+	private final TravelDisutility travelDisutility;
+	private final TravelTime travelTime;
+
+	// search state, indexed by Id<Node>.index()
+	private double[] cost = new double[0];
+	private Link[] comingFrom = new Link[0];
+	private Node[] nodes = new Node[0];
+	private int[] visitedStamp = new int[0];
+	private int[] settledStamp = new int[0];
+	private int[] targetStamp = new int[0];
+	private int[] heapPos = new int[0];
+	private int[] heap = new int[0];
+	private int heapSize;
+	private int stamp = 0;
+
+	public OneToManyPathCalculator(Network network, TravelDisutility travelDisutility, TravelTime travelTime) {
+		this.network = network;
+		this.travelDisutility = travelDisutility;
+		this.travelTime = travelTime;
+	}
+
+	/**
+	 * Calculates the least cost paths from one link candidate to all given target candidates.
+	 *
+	 * @param maxCost the search is aborted once no further path with cost <= maxCost can be found.
+	 *                {@link Double#POSITIVE_INFINITY} disables the cutoff.
+	 * @return a path for every target candidate that could be reached within maxCost. Candidates whose
+	 * links are not part of the network or that could not be reached are not contained in the map.
+	 */
+	public synchronized Map<LinkCandidate, LeastCostPathCalculator.Path> calcPaths(LinkCandidate fromLinkCandidate, Collection<LinkCandidate> toLinkCandidates, double maxCost) {
+		Link fromLink = network.getLinks().get(fromLinkCandidate.getLink().getId());
+		if(fromLink == null || toLinkCandidates.isEmpty()) {
+			return Collections.emptyMap();
+		}
+
+		ensureCapacity();
+		if(++stamp == Integer.MAX_VALUE) {
+			resetStamps();
+		}
+
+		// mark target nodes
+		Map<LinkCandidate, Link> targetLinks = new HashMap<>();
+		int remainingTargets = 0;
+		for(LinkCandidate toLinkCandidate : toLinkCandidates) {
+			Link toLink = network.getLinks().get(toLinkCandidate.getLink().getId());
+			if(toLink != null) {
+				targetLinks.put(toLinkCandidate, toLink);
+				int targetIndex = toLink.getFromNode().getId().index();
+				if(targetStamp[targetIndex] != stamp) {
+					targetStamp[targetIndex] = stamp;
+					remainingTargets++;
+				}
+			}
+		}
+		if(remainingTargets == 0) {
+			return Collections.emptyMap();
+		}
+
+		// dijkstra
+		heapSize = 0;
+		Node startNode = fromLink.getToNode();
+		visit(startNode, 0.0, null);
+
+		while(heapSize > 0 && remainingTargets > 0) {
+			int nodeIndex = poll();
+			double nodeCost = cost[nodeIndex];
+			if(nodeCost > maxCost) {
+				break;
+			}
+			settledStamp[nodeIndex] = stamp;
+			if(targetStamp[nodeIndex] == stamp) {
+				remainingTargets--;
+			}
+
+			for(Link outLink : nodes[nodeIndex].getOutLinks().values()) {
+				Node toNode = outLink.getToNode();
+				int toIndex = toNode.getId().index();
+				if(settledStamp[toIndex] == stamp) {
+					continue;
+				}
+				double linkCost = travelDisutility.getLinkTravelDisutility(outLink, 0, null, null);
+				if(Double.isInfinite(linkCost)) {
+					continue;
+				}
+				double newCost = nodeCost + linkCost;
+				if(visitedStamp[toIndex] != stamp) {
+					visit(toNode, newCost, outLink);
+				} else if(newCost < cost[toIndex]) {
+					cost[toIndex] = newCost;
+					comingFrom[toIndex] = outLink;
+					siftUp(heapPos[toIndex]);
+				}
+			}
+		}
+
+		// collect paths
+		Map<LinkCandidate, LeastCostPathCalculator.Path> paths = new HashMap<>();
+		for(Map.Entry<LinkCandidate, Link> e : targetLinks.entrySet()) {
+			Node targetNode = e.getValue().getFromNode();
+			int targetIndex = targetNode.getId().index();
+			if(settledStamp[targetIndex] == stamp) {
+				paths.put(e.getKey(), buildPath(targetNode));
+			}
+		}
+		return paths;
+	}
+
+	private LeastCostPathCalculator.Path buildPath(Node targetNode) {
+		List<Node> pathNodes = new ArrayList<>();
+		List<Link> pathLinks = new ArrayList<>();
+		double pathTravelTime = 0;
+
+		int nodeIndex = targetNode.getId().index();
+		pathNodes.add(targetNode);
+		Link link = comingFrom[nodeIndex];
+		while(link != null) {
+			pathLinks.add(link);
+			pathTravelTime += travelTime.getLinkTravelTime(link, 0, null, null);
+			Node node = link.getFromNode();
+			pathNodes.add(node);
+			link = comingFrom[node.getId().index()];
+		}
+		Collections.reverse(pathNodes);
+		Collections.reverse(pathLinks);
+
+		return new LeastCostPathCalculator.Path(pathNodes, pathLinks, pathTravelTime, cost[nodeIndex]);
+	}
+
+	private void visit(Node node, double nodeCost, Link fromLink) {
+		int nodeIndex = node.getId().index();
+		visitedStamp[nodeIndex] = stamp;
+		cost[nodeIndex] = nodeCost;
+		comingFrom[nodeIndex] = fromLink;
+		nodes[nodeIndex] = node;
+		heap[heapSize] = nodeIndex;
+		heapPos[nodeIndex] = heapSize;
+		siftUp(heapSize++);
+	}
+
+	/*
+	 * binary min heap on cost
+	 */
+	private int poll() {
+		int top = heap[0];
+		heapSize--;
+		if(heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapPos[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	private void siftUp(int pos) {
+		int nodeIndex = heap[pos];
+		double nodeCost = cost[nodeIndex];
+		while(pos > 0) {
+			int parentPos = (pos - 1) >>> 1;
+			int parent = heap[parentPos];
+			if(cost[parent] <= nodeCost) {
+				break;
+			}
+			heap[pos] = parent;
+			heapPos[parent] = pos;
+			pos = parentPos;
+		}
+		heap[pos] = nodeIndex;
+		heapPos[nodeIndex] = pos;
+	}
+
+	private void siftDown(int pos) {
+		int nodeIndex = heap[pos];
+		double nodeCost = cost[nodeIndex];
+		int half = heapSize >>> 1;
+		while(pos < half) {
+			int childPos = 2 * pos + 1;
+			int rightPos = childPos + 1;
+			if(rightPos < heapSize && cost[heap[rightPos]] < cost[heap[childPos]]) {
+				childPos = rightPos;
+			}
+			int child = heap[childPos];
+			if(nodeCost <= cost[child]) {
+				break;
+			}
+			heap[pos] = child;
+			heapPos[child] = pos;
+			pos = childPos;
+		}
+		heap[pos] = nodeIndex;
+		heapPos[nodeIndex] = pos;
+	}
+
+	private void ensureCapacity() {
+		int n = Id.getNumberOfIds(Node.class);
+		if(cost.length < n) {
+			cost = new double[n];
+			comingFrom = new Link[n];
+			nodes = new Node[n];
+			visitedStamp = new int[n];
+			settledStamp = new int[n];
+			targetStamp = new int[n];
+			heapPos = new int[n];
+			heap = new int[n];
+			stamp = 0;
+		}
+	}
+
+	private void resetStamps() {
+		Arrays.fill(visitedStamp, 0);
+		Arrays.fill(settledStamp, 0);
+		Arrays.fill(targetStamp, 0);
+		stamp = 1;
+	}
+}
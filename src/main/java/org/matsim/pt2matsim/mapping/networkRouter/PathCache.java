@@ -0,0 +1,203 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2014 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.mapping.networkRouter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent least cost path cache shared by all {@link ScheduleRouters} instances
+ * created by one factory. Paths are keyed by the filtered network they were
+ * calculated on, the travel cost type and the from/to link. Only the link id
+ * indices of a path are stored, the path is rebuilt from the network on lookup.
+ * <p>
+ * Searches that did not find a path within a cost bound are stored as well, they
+ * answer any later query with a bound that is not larger.
+ * <p>
+ * The cache is bounded by the estimated memory of its entries in bytes, entries
+ * are evicted once that size is exceeded.
+ */
+public class PathCache {
+
+	/**
+	 * Estimated memory [bytes] of a cache entry without its link indices, from the object
+	 * layout on a 64-bit JVM with compressed oops: Guava's access ordered entry (48) and
+	 * weighted value reference (24), {@link Key} (32), {@link Entry} (40), the header of
+	 * the link index array (16) and the segment table slot (~6).
+	 */
+	static final int ENTRY_BYTES = 166;
+
+	/**
+	 * Memory [bytes] of a stored link index.
+	 */
+	static final int LINK_BYTES = 4;
+
+	private final Cache<Key, Entry> cache;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param maxSize maximal estimated memory [bytes] of the cached entries
+	 */
+	public PathCache(long maxSize) {
+		this.cache = CacheBuilder.newBuilder()
+				.maximumWeight(maxSize)
+				.weigher((Key k, Entry e) -> e.linkIndices == null ? ENTRY_BYTES - 16 : ENTRY_BYTES + LINK_BYTES * e.linkIndices.length)
+				.build();
+	}
+
+	/**
+	 * @return the cached entry if it can answer a query with the given cost bound, <tt>null</tt> otherwise.
+	 */
+	public Entry get(Key key, double maxCost) {
+		Entry entry = cache.getIfPresent(key);
+		if(entry != null && entry.answers(maxCost)) {
+			hits.increment();
+			return entry;
+		}
+		misses.increment();
+		return null;
+	}
+
+	/**
+	 * Stores a calculated path.
+	 */
+	public void putPath(Key key, LeastCostPathCalculator.Path path) {
+		int[] linkIndices = new int[path.links.size()];
+		for(int i = 0; i < linkIndices.length; i++) {
+			linkIndices[i] = path.links.get(i).getId().index();
+		}
+		cache.put(key, new Entry(linkIndices, path.travelTime, path.travelCost, Double.POSITIVE_INFINITY));
+	}
+
+	/**
+	 * Stores that no path with cost <= maxCost exists. An already stored entry
+	 * answering a larger bound is kept.
+	 */
+	public void putNoPath(Key key, double maxCost) {
+		cache.asMap().merge(key, new Entry(null, 0, 0, maxCost),
+				(oldEntry, newEntry) -> oldEntry.answers(maxCost) ? oldEntry : newEntry);
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long size() {
+		return cache.size();
+	}
+
+	@Override
+	public String toString() {
+		long h = getHits();
+		long m = getMisses();
+		return String.format("PathCache: hits=%d misses=%d hitRate=%.1f%% entries=%d", h, m,
+				(h + m) == 0 ? 0.0 : 100.0 * h / (h + m), size());
+	}
+
+	/**
+	 * Cache key. Networks are compared by identity.
+	 */
+	public record Key(Network network, PublicTransitMappingConfigGroup.TravelCostType costType, int fromLinkIndex, int toLinkIndex) {
+
+		public Key(Network network, PublicTransitMappingConfigGroup.TravelCostType costType, Link fromLink, Link toLink) {
+			this(network, costType, fromLink.getId().index(), toLink.getId().index());
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(this == o) return true;
+			if(!(o instanceof Key other)) return false;
+			return network == other.network && costType == other.costType
+					&& fromLinkIndex == other.fromLinkIndex && toLinkIndex == other.toLinkIndex;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = System.identityHashCode(network);
+			result = 31 * result + costType.hashCode();
+			result = 31 * result + fromLinkIndex;
+			result = 31 * result + toLinkIndex;
+			return result;
+		}
+	}
+
+	/**
+	 * A cached search result. If {@link #hasPath()} is false, no path with
+	 * cost <= {@code searchBound} exists.
+	 */
+	public static final class Entry {
+
+		private final int[] linkIndices;
+		private final double travelTime;
+		private final double travelCost;
+		private final double searchBound;
+
+		private Entry(int[] linkIndices, double travelTime, double travelCost, double searchBound) {
+			this.linkIndices = linkIndices;
+			this.travelTime = travelTime;
+			this.travelCost = travelCost;
+			this.searchBound = searchBound;
+		}
+
+		private boolean answers(double maxCost) {
+			return linkIndices != null || maxCost <= searchBound;
+		}
+
+		public boolean hasPath() {
+			return linkIndices != null;
+		}
+
+		public double getTravelCost() {
+			return travelCost;
+		}
+
+		/**
+		 * Rebuilds the path on the network it was calculated on.
+		 *
+		 * @param fromLink the from link of the query, its to-node is the first node of the path
+		 */
+		public LeastCostPathCalculator.Path toPath(Network network, Link fromLink) {
+			List<Node> nodes = new ArrayList<>(linkIndices.length + 1);
+			List<Link> links = new ArrayList<>(linkIndices.length);
+			nodes.add(fromLink.getToNode());
+			for(int linkIndex : linkIndices) {
+				Link link = network.getLinks().get(Id.get(linkIndex, Link.class));
+				links.add(link);
+				nodes.add(link.getToNode());
+			}
+			return new LeastCostPathCalculator.Path(nodes, links, travelTime, travelCost);
+		}
+	}
+}
@@ -28,6 +28,11 @@ import org.matsim.pt.transitSchedule.api.TransitRouteStop;
 import org.matsim.pt2matsim.mapping.MapperModule;
 import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidate;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
 /**
  * All Routers (i.e. LeastCostPathCalculators) for the transit routes are stored within
  * an implementation of this interface. That way, the implementation can use different
@@ -57,6 +62,38 @@ public interface ScheduleRouters extends MapperModule {
 		return calcLeastCostPath(fromLinkCandidate, toLinkCandidate, transitLine, transitRoute);
 	}
 
+	/**
+	 * One-to-many variant of {@link #calcLeastCostPath(LinkCandidate, LinkCandidate, TransitLine, TransitRoute, double)}.
+	 * Calculates the least cost paths from one link candidate to all given target candidates. Implementations
+	 * should answer all targets with a single search that stops once every target is settled or no path with
+	 * cost {@code <= maxCost} can be found anymore.
+	 *
+	 * <p>The default implementation runs one bounded query per target candidate.</p>
+	 *
+	 * @return a map containing the path for every target candidate that could be reached. Unreachable
+	 * candidates are not contained in the map.
+	 */
+	default Map<LinkCandidate, LeastCostPathCalculator.Path> calcLeastCostPaths(LinkCandidate fromLinkCandidate, Collection<LinkCandidate> toLinkCandidates,
+			TransitLine transitLine, TransitRoute transitRoute, double maxCost) {
+		Map<LinkCandidate, LeastCostPathCalculator.Path> paths = new HashMap<>();
+		for(LinkCandidate toLinkCandidate : toLinkCandidates) {
+			LeastCostPathCalculator.Path path = calcLeastCostPath(fromLinkCandidate, toLinkCandidate, transitLine, transitRoute, maxCost);
+			if(path != null) {
+				paths.put(toLinkCandidate, path);
+			}
+		}
+		return paths;
+	}
+
+	/**
+	 * A lower bound of the travel cost of any path between two link candidates (from the
+	 * from-candidate's to-node to the to-candidate's from-node). Used to reject candidate
+	 * pairs before routing. The default implementation returns 0, i.e. no pair is rejected.
+	 */
+	default double getLowerBoundTravelCost(LinkCandidate fromLinkCandidate, LinkCandidate toLinkCandidate, TransitLine transitLine, TransitRoute transitRoute) {
+		return 0.0;
+	}
+
 	double getMinimalTravelCost(TransitRouteStop fromTransitRouteStop, TransitRouteStop toTransitRouteStop, TransitLine transitLine, TransitRoute transitRoute);
 
 	double getLinkCandidateTravelCost(LinkCandidate linkCandidateCurrent);
@@ -66,14 +103,32 @@ public interface ScheduleRouters extends MapperModule {
 	 */
 	class PathCalculator {
 
-		private final LeastCostPathCalculator leastCostPathCalculator;
+		private final Supplier<LeastCostPathCalculator> calculatorFactory;
+		private LeastCostPathCalculator leastCostPathCalculator;
 
 		PathCalculator(LeastCostPathCalculator leastCostPathCalculator) {
+			this.calculatorFactory = null;
 			this.leastCostPathCalculator = leastCostPathCalculator;
 		}
 
+		/**
+		 * The path calculator (and thus the preprocessing of its factory) is only created
+		 * once the first path is calculated. Pseudo routing uses {@link #calcLeastCostPaths},
+		 * single paths are only needed by some tools.
+		 */
+		PathCalculator(Supplier<LeastCostPathCalculator> calculatorFactory) {
+			this.calculatorFactory = calculatorFactory;
+		}
+
+		private LeastCostPathCalculator getCalculator() {
+			if(leastCostPathCalculator == null) {
+				leastCostPathCalculator = calculatorFactory.get();
+			}
+			return leastCostPathCalculator;
+		}
+
 		synchronized LeastCostPathCalculator.Path calcPath(Link fromLink, Link toLink) {
-			return leastCostPathCalculator.calcLeastCostPath(fromLink, toLink, 0, null, null);
+			return getCalculator().calcLeastCostPath(fromLink, toLink, 0, null, null);
 		}
 
 		/**
@@ -82,7 +137,7 @@ public interface ScheduleRouters extends MapperModule {
 		 * cutoff will fall back to the unbounded search via the default method on the MATSim interface.
 		 */
 		synchronized LeastCostPathCalculator.Path calcPath(Link fromLink, Link toLink, double maxCost) {
-			return leastCostPathCalculator.calcLeastCostPath(fromLink, toLink, 0, null, null, maxCost);
+			return getCalculator().calcLeastCostPath(fromLink, toLink, 0, null, null, maxCost);
 		}
 
 	}
@@ -2,4 +2,20 @@ package org.matsim.pt2matsim.mapping.networkRouter;
 
 public interface ScheduleRoutersFactory {
 	ScheduleRouters createInstance();
+
+	/**
+	 * @return a summary of statistics collected by the created instances (e.g. cache hit rates)
+	 * to be logged after pseudo routing, <tt>null</tt> if there is nothing to report.
+	 */
+	default String getStatistics() {
+		return null;
+	}
+
+	/**
+	 * @return a description of the router type and of all inputs besides network, schedule and mapping
+	 * config that affect the routing result. Checkpoints of runs with a different fingerprint are discarded.
+	 */
+	default String getFingerprint() {
+		return getClass().getName();
+	}
 }
@@ -1,23 +1,25 @@
 package org.matsim.pt2matsim.mapping.networkRouter;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
+import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
-import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.router.speedy.SpeedyALTFactory;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.core.router.util.TravelDisutility;
 import org.matsim.core.router.util.TravelTime;
-import org.matsim.core.utils.collections.MapUtils;
-import org.matsim.core.utils.misc.Counter;
 import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitRoute;
 import org.matsim.pt.transitSchedule.api.TransitRouteStop;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
 import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.tools.lib.NetworkNodeIndex;
 import org.matsim.pt2matsim.tools.lib.RouteShape;
 import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidate;
 import org.matsim.pt2matsim.tools.NetworkTools;
@@ -26,14 +28,26 @@ import org.matsim.pt2matsim.tools.ScheduleTools;
 import org.matsim.pt2matsim.tools.ShapeTools;
 import org.matsim.vehicles.Vehicle;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 /**
- * Creates a Router for each shape (given by gtfs). Multiple transit routes
+ * Routes transit routes along their shape (given by gtfs). Multiple transit routes
  * might use the same shape.
+ * <p>
+ * All instances share one filtered network and one preprocessed routing graph per
+ * network mode set (see {@link Factory}). A shape is applied as a {@link Corridor}:
+ * a mask of the links within the cut buffer around the shape and a cost factor for
+ * each of these links. Links outside the corridor are never expanded.
  *
  * @author polettif
  */
@@ -41,84 +55,45 @@ public class ScheduleRoutersGtfsShapes implements ScheduleRouters {
 
 	protected static Logger log = LogManager.getLogger(ScheduleRoutersGtfsShapes.class);
 
-	// standard fields
-	private final TransitSchedule schedule;
-	private final Network network;
-	private final Map<String, Set<String>> transportModeAssignment;
-	private final PublicTransitMappingConfigGroup.TravelCostType travelCostType;
-
-
-	// path calculators
-	private final Map<Id<RouteShape>, PathCalculator> pathCalculatorsByShape = new HashMap<>();
-	private final Map<Id<RouteShape>, ShapeRouter> shapeRoutersByShape = new HashMap<>();
-	private final Map<Id<RouteShape>, Network> networksByShape = new HashMap<>();
-	// shape fields
-	private final Map<Id<RouteShape>, RouteShape> shapes;
-	private final double maxWeightDistance;
-	private final double cutBuffer;
-	private final Map<TransitLine, Map<TransitRoute, PathCalculator>> pathCalculators = new HashMap<>();
-	private final Map<TransitLine, Map<TransitRoute, Boolean>> mapArtificial = new HashMap<>();
-	private final Map<TransitLine, Map<TransitRoute, Network>> networks = new HashMap<>();
-	private final Map<TransitLine, Map<TransitRoute, ShapeRouter>> shapeRouters = new HashMap<>();
-
-
-	private ScheduleRoutersGtfsShapes(TransitSchedule schedule, Network network, Map<Id<RouteShape>, RouteShape> shapes, Map<String, Set<String>> transportModeAssignment, PublicTransitMappingConfigGroup.TravelCostType travelCostType, double maxWeightDistance, double cutBuffer) {
-		this.schedule = schedule;
-		this.network = network;
-		this.transportModeAssignment = transportModeAssignment;
-		this.travelCostType = travelCostType;
-		this.shapes = shapes;
-		this.maxWeightDistance = maxWeightDistance;
-		this.cutBuffer = cutBuffer;
-
-		load();
-	}
-
-
 	/**
-	 * Load path calculators for all transit routes
+	 * Lowest possible factor of {@link #calcCostFactor}, used as shape independent
+	 * lower bound for the landmark preprocessing.
 	 */
-	private void load() {
-		Counter c = new Counter(" route # ");
+	private static final double MIN_COST_FACTOR = 0.1;
 
-		for(TransitLine transitLine : this.schedule.getTransitLines().values()) {
-			for(TransitRoute transitRoute : transitLine.getRoutes().values()) {
-				c.incCounter();
-				Id<RouteShape> shapeId = ScheduleTools.getShapeId(transitRoute);
-				RouteShape shape = shapes.get(shapeId);
+	private final Factory factory;
+	private final Map<Network, CorridorRouter> routersByNetwork = new HashMap<>();
+	// corridor of the last queried transit route, all queries of a route use the same corridor
+	private volatile RouteCorridor lastCorridor;
 
-				PathCalculator pathCalculator;
-				Network cutNetwork;
+	private ScheduleRoutersGtfsShapes(Factory factory) {
+		this.factory = factory;
 
-				if(shape == null) {
-					MapUtils.getMap(transitLine, mapArtificial).put(transitRoute, true);
-					log.warn("No shape available. Transit Route will be mapped artificially! Consider removing routes without shapes beforehand.");
-				}
-				else {
-					MapUtils.getMap(transitLine, mapArtificial).put(transitRoute, false);
-					pathCalculator = pathCalculatorsByShape.get(shapeId);
-					if(pathCalculator == null) {
-						Set<String> networkTransportModes = transportModeAssignment.get(transitRoute.getTransportMode());
-
-						// todo this setup could be improved (i.e. don't recreate/filter networks all over again)
-						cutNetwork = NetworkTools.createFilteredNetworkByLinkMode(network, networkTransportModes);
-						Collection<Node> nodesWithinBuffer = ShapeTools.getNodesWithinBuffer(cutNetwork, shape, cutBuffer);
-						NetworkTools.cutNetwork(cutNetwork, nodesWithinBuffer);
-
-						ShapeRouter r = new ShapeRouter(shape);
-						pathCalculator = new PathCalculator(
-								new SpeedyALTFactory().createPathCalculator(cutNetwork, r, r));
-
-						pathCalculatorsByShape.put(shapeId, pathCalculator);
-						networksByShape.put(shapeId, cutNetwork);
-						shapeRoutersByShape.put(shapeId, r);
-					}
-				}
-				MapUtils.getMap(transitLine, networks).put(transitRoute, networksByShape.get(shapeId));
-				MapUtils.getMap(transitLine, pathCalculators).put(transitRoute, pathCalculatorsByShape.get(shapeId));
-				MapUtils.getMap(transitLine, shapeRouters).put(transitRoute, shapeRoutersByShape.get(shapeId));
-			}
+		for(Network filteredNetwork : new HashSet<>(factory.networksByMode.values())) {
+			routersByNetwork.put(filteredNetwork, new CorridorRouter(filteredNetwork, factory.lcpFactory, factory.travelCostType));
+		}
+	}
+
+	private record RouteCorridor(TransitRoute transitRoute, Corridor corridor) {
+	}
+
+	/**
+	 * @return the corridor of the transit route, see {@link Factory#getCorridor}
+	 */
+	private Corridor getCorridor(TransitRoute transitRoute) {
+		RouteCorridor last = lastCorridor;
+		if(last == null || last.transitRoute != transitRoute) {
+			last = new RouteCorridor(transitRoute, factory.getCorridor(transitRoute));
+			lastCorridor = last;
 		}
+		return last.corridor;
+	}
+
+	/**
+	 * @return the router of the route's filtered network, <tt>null</tt> if the corridor is <tt>null</tt>
+	 */
+	private CorridorRouter getRouter(Corridor corridor) {
+		return corridor == null ? null : routersByNetwork.get(corridor.network);
 	}
 
 	@Override
@@ -128,77 +103,162 @@ public class ScheduleRoutersGtfsShapes implements ScheduleRouters {
 
 	@Override
 	public LeastCostPathCalculator.Path calcLeastCostPath(LinkCandidate fromLinkCandidate, LinkCandidate toLinkCandidate, TransitLine transitLine, TransitRoute transitRoute, double maxCost) {
-		Network n = networks.get(transitLine).get(transitRoute);
-		if (n == null) {
-			return null;
+		return this.calcLeastCostPath(fromLinkCandidate.getLink().getId(), toLinkCandidate.getLink().getId(), transitRoute, maxCost);
+	}
+
+	@Override
+	public Map<LinkCandidate, LeastCostPathCalculator.Path> calcLeastCostPaths(LinkCandidate fromLinkCandidate, Collection<LinkCandidate> toLinkCandidates, TransitLine transitLine, TransitRoute transitRoute, double maxCost) {
+		Corridor corridor = getCorridor(transitRoute);
+		CorridorRouter router = getRouter(corridor);
+		if(router == null) {
+			return Collections.emptyMap();
 		}
-		Link fromLink = n.getLinks().get(fromLinkCandidate.getLink().getId());
-		Link toLink = n.getLinks().get(toLinkCandidate.getLink().getId());
-		if (fromLink == null || toLink == null) {
-			return null;
+		synchronized(router) {
+			router.corridor = corridor;
+			if(!corridor.contains(fromLinkCandidate.getLink())) {
+				return Collections.emptyMap();
+			}
+			List<LinkCandidate> targets = new ArrayList<>(toLinkCandidates.size());
+			for(LinkCandidate toLinkCandidate : toLinkCandidates) {
+				if(corridor.contains(toLinkCandidate.getLink())) {
+					targets.add(toLinkCandidate);
+				}
+			}
+			return router.oneToManyCalculator.calcPaths(fromLinkCandidate, targets, maxCost);
 		}
-		return pathCalculators.get(transitLine).get(transitRoute).calcPath(fromLink, toLink, maxCost);
 	}
 
 	@Override
 	public LeastCostPathCalculator.Path calcLeastCostPath(Id<Link> fromLinkId, Id<Link> toLinkId, TransitLine transitLine, TransitRoute transitRoute) {
-		Network n = networks.get(transitLine).get(transitRoute);
-		if (n == null) {
-			return null;
-		}
+		// links outside the corridor have infinite cost and are never expanded with a finite bound
+		return this.calcLeastCostPath(fromLinkId, toLinkId, transitRoute, Double.MAX_VALUE);
+	}
 
-		Link fromLink = n.getLinks().get(fromLinkId);
-		Link toLink = n.getLinks().get(toLinkId);
-		if (fromLink == null || toLink == null) {
+	private LeastCostPathCalculator.Path calcLeastCostPath(Id<Link> fromLinkId, Id<Link> toLinkId, TransitRoute transitRoute, double maxCost) {
+		Corridor corridor = getCorridor(transitRoute);
+		CorridorRouter router = getRouter(corridor);
+		if(router == null) {
 			return null;
 		}
-		return pathCalculators.get(transitLine).get(transitRoute).calcPath(fromLink, toLink);
+		synchronized(router) {
+			router.corridor = corridor;
+			Link fromLink = router.network.getLinks().get(fromLinkId);
+			Link toLink = router.network.getLinks().get(toLinkId);
+			if(fromLink == null || toLink == null || !corridor.contains(fromLink) || !corridor.contains(toLink)) {
+				return null;
+			}
+			LeastCostPathCalculator.Path path = router.pathCalculator.calcPath(fromLink, toLink, maxCost);
+			return path == null || Double.isInfinite(path.travelCost) ? null : path;
+		}
 	}
 
 	@Override
 	public double getMinimalTravelCost(TransitRouteStop fromTransitRouteStop, TransitRouteStop toTransitRouteStop, TransitLine transitLine, TransitRoute transitRoute) {
-		return PTMapperTools.calcMinTravelCost(fromTransitRouteStop, toTransitRouteStop, travelCostType);
+		return PTMapperTools.calcMinTravelCost(fromTransitRouteStop, toTransitRouteStop, factory.travelCostType);
 	}
 
 	@Override
 	public double getLinkCandidateTravelCost(LinkCandidate candidate) {
-		return shapeRouters.get(candidate.getStop().getTransitLine()).get(candidate.getStop().getTransitRoute()).calcLinkTravelCost(candidate.getLink());
+		Link link = candidate.getLink();
+		double travelCost = PTMapperTools.calcTravelCost(link, factory.travelCostType);
+		Corridor corridor = getCorridor(candidate.getStop().getTransitRoute());
+		if(corridor == null) {
+			return travelCost;
+		}
+		double factor = corridor.getCostFactor(link);
+		return travelCost * (Double.isNaN(factor) ? calcCostFactor(link, corridor.shape, factory.maxWeightDistance) : factor);
 	}
 
 	/**
-	 * Class is sent to path calculator factory
+	 * Calculates the factor the travel cost of a link is multiplied with, based on
+	 * the link's distance to the shape.
 	 */
-	private class ShapeRouter implements TravelDisutility, TravelTime {
+	private static double calcCostFactor(Link link, RouteShape shape, double maxWeightDistance) {
+		double dist = ShapeTools.calcMinDistanceToShape(link, shape);
+		double factor = dist / maxWeightDistance + MIN_COST_FACTOR;
+		if(factor > 1) factor = 3;
+		return factor;
+	}
+
+	/**
+	 * The links of a filtered network within the cut buffer of a shape, with
+	 * their precomputed cost factors. Immutable and shared by all instances.
+	 */
+	private static final class Corridor {
 
+		private final Network network;
 		private final RouteShape shape;
+		private final BitSet mask = new BitSet();
+		// sorted link id indices and their cost factors
+		private final int[] linkIndices;
+		private final double[] costFactors;
 
-		ShapeRouter(RouteShape shape) {
+		Corridor(Network network, RouteShape shape, NetworkNodeIndex nodeIndex, double cutBuffer, double maxWeightDistance) {
+			this.network = network;
 			this.shape = shape;
+
+			BitSet nodes = nodeIndex.getNodesWithinBuffer(shape.getCoords(), cutBuffer);
+			Map<Integer, Link> links = new HashMap<>();
+			for(int n = nodes.nextSetBit(0); n >= 0; n = nodes.nextSetBit(n + 1)) {
+				for(Link link : nodeIndex.getNode(n).getOutLinks().values()) {
+					if(nodes.get(link.getToNode().getId().index())) {
+						links.put(link.getId().index(), link);
+					}
+				}
+			}
+
+			this.linkIndices = links.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+			this.costFactors = new double[linkIndices.length];
+			for(int i = 0; i < linkIndices.length; i++) {
+				mask.set(linkIndices[i]);
+				costFactors[i] = calcCostFactor(links.get(linkIndices[i]), shape, maxWeightDistance);
+			}
+		}
+
+		boolean contains(Link link) {
+			return mask.get(link.getId().index());
 		}
 
 		/**
-		 * Calculates the travel cost and change it based on distance to path
+		 * @return the cost factor of the link or NaN if the link is not part of the corridor
 		 */
-		private double calcLinkTravelCost(Link link) {
-			double travelCost = PTMapperTools.calcTravelCost(link, travelCostType);
-
-			if(shape != null) {
-				double dist = ShapeTools.calcMinDistanceToShape(link, shape);
-				double factor = dist / maxWeightDistance + 0.1;
-				if(factor > 1) factor = 3;
-				travelCost *= factor;
-			}
-			return travelCost;
+		double getCostFactor(Link link) {
+			int i = Arrays.binarySearch(linkIndices, link.getId().index());
+			return i < 0 ? Double.NaN : costFactors[i];
+		}
+	}
+
+	/**
+	 * Path calculators of one instance on a shared filtered network. The corridor of the
+	 * current transit route is set before each query while holding the router's lock.
+	 */
+	private static final class CorridorRouter implements TravelDisutility, TravelTime {
+
+		private final Network network;
+		private final PublicTransitMappingConfigGroup.TravelCostType travelCostType;
+		private final PathCalculator pathCalculator;
+		private final OneToManyPathCalculator oneToManyCalculator;
+		private Corridor corridor;
+
+		CorridorRouter(Network network, SpeedyALTFactory lcpFactory, PublicTransitMappingConfigGroup.TravelCostType travelCostType) {
+			this.network = network;
+			this.travelCostType = travelCostType;
+			this.pathCalculator = new PathCalculator(() -> ScheduleRoutersStandard.createPathCalculator(lcpFactory, network, this, this));
+			this.oneToManyCalculator = new OneToManyPathCalculator(network, this, this);
 		}
 
 		@Override
 		public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
-			return this.calcLinkTravelCost(link);
+			double factor = corridor.getCostFactor(link);
+			return Double.isNaN(factor) ? Double.POSITIVE_INFINITY : PTMapperTools.calcTravelCost(link, travelCostType) * factor;
 		}
 
+		/**
+		 * Shape independent, used for the landmarks which are shared by all corridors
+		 */
 		@Override
 		public double getLinkMinimumTravelDisutility(Link link) {
-			return this.calcLinkTravelCost(link);
+			return PTMapperTools.calcTravelCost(link, travelCostType) * MIN_COST_FACTOR;
 		}
 
 		@Override
@@ -207,7 +267,20 @@ public class ScheduleRoutersGtfsShapes implements ScheduleRouters {
 		}
 	}
 
+	/**
+	 * Factory for {@link ScheduleRoutersGtfsShapes} instances.
+	 * <p>
+	 * Pre-computes one filtered network per network mode set and a shared
+	 * {@link SpeedyALTFactory} on first use. Corridors are created lazily when a
+	 * shape is first routed on and are shared by all instances. Each corridor is
+	 * created once, other threads requesting it wait for the result. At most about
+	 * <tt>maxCorridors</tt> corridors are kept, the least recently used ones are
+	 * dropped first.
+	 */
 	static public class Factory implements ScheduleRoutersFactory {
+
+		public static final int DEFAULT_MAX_CORRIDORS = 1000;
+
 		final private TransitSchedule schedule;
 		final private Network network;
 		final private Map<Id<RouteShape>, RouteShape> shapes;
@@ -215,8 +288,24 @@ public class ScheduleRoutersGtfsShapes implements ScheduleRouters {
 		final private PublicTransitMappingConfigGroup.TravelCostType travelCostType;
 		final private double maxWeightDistance;
 		final private double cutBuffer;
-		
+		final private Cache<CorridorKey, Corridor> corridors;
+
+		// lazily initialized by ensureInitialized()
+		private Map<String, Network> networksByMode;
+		private Map<Network, NetworkNodeIndex> nodeIndices;
+		private SpeedyALTFactory lcpFactory;
+
 		public Factory(TransitSchedule schedule, Network network, Map<Id<RouteShape>, RouteShape> shapes, Map<String, Set<String>> transportModeAssignment, PublicTransitMappingConfigGroup.TravelCostType travelCostType, double maxWeightDistance, double cutBuffer) {
+			this(schedule, network, shapes, transportModeAssignment, travelCostType, maxWeightDistance, cutBuffer, DEFAULT_MAX_CORRIDORS);
+		}
+
+		/**
+		 * @param maxCorridors number of shape corridors kept in memory
+		 */
+		public Factory(TransitSchedule schedule, Network network, Map<Id<RouteShape>, RouteShape> shapes, Map<String, Set<String>> transportModeAssignment, PublicTransitMappingConfigGroup.TravelCostType travelCostType, double maxWeightDistance, double cutBuffer, int maxCorridors) {
+			if(maxCorridors < 1) {
+				throw new IllegalArgumentException("maxCorridors must be at least 1");
+			}
 			this.schedule = schedule;
 			this.network = network;
 			this.shapes = shapes;
@@ -224,12 +313,103 @@ public class ScheduleRoutersGtfsShapes implements ScheduleRouters {
 			this.travelCostType = travelCostType;
 			this.maxWeightDistance = maxWeightDistance;
 			this.cutBuffer = cutBuffer;
+			this.corridors = CacheBuilder.newBuilder()
+					.maximumSize(maxCorridors)
+					.recordStats()
+					.build();
+		}
+
+		private synchronized void ensureInitialized() {
+			if(this.networksByMode != null) {
+				return;
+			}
+			log.info("Pre-computing filtered networks for shape routing...");
+
+			this.networksByMode = new HashMap<>();
+			Map<Set<String>, Network> byModeSet = new HashMap<>();
+			for(Map.Entry<String, Set<String>> entry : this.transportModeAssignment.entrySet()) {
+				Network filtered = byModeSet.computeIfAbsent(entry.getValue(),
+						modes -> NetworkTools.createFilteredNetworkByLinkMode(this.network, modes));
+				this.networksByMode.put(entry.getKey(), filtered);
+			}
+			this.nodeIndices = new HashMap<>();
+			for(Network filtered : byModeSet.values()) {
+				this.nodeIndices.put(filtered, new NetworkNodeIndex(filtered));
+			}
+			this.lcpFactory = new SpeedyALTFactory();
+
+			int routesWithoutShape = 0;
+			for(TransitLine transitLine : this.schedule.getTransitLines().values()) {
+				for(TransitRoute transitRoute : transitLine.getRoutes().values()) {
+					if(shapes.get(ScheduleTools.getShapeId(transitRoute)) == null) {
+						routesWithoutShape++;
+					}
+				}
+			}
+			if(routesWithoutShape > 0) {
+				log.warn("No shape available for {} transit routes. They will be mapped artificially! Consider removing routes without shapes beforehand.", routesWithoutShape);
+			}
+			log.info("Pre-computed {} filtered network(s).", byModeSet.size());
+		}
+
+		/**
+		 * @return the corridor of the transit route's shape on the route's filtered network,
+		 * <tt>null</tt> if the route has no shape.
+		 */
+		private Corridor getCorridor(TransitRoute transitRoute) {
+			RouteShape shape = shapes.get(ScheduleTools.getShapeId(transitRoute));
+			Network filteredNetwork = networksByMode.get(transitRoute.getTransportMode());
+			if(shape == null || filteredNetwork == null) {
+				return null;
+			}
+
+			try {
+				return corridors.get(new CorridorKey(shape.getId(), filteredNetwork),
+						() -> new Corridor(filteredNetwork, shape, nodeIndices.get(filteredNetwork), cutBuffer, maxWeightDistance));
+			} catch (ExecutionException e) {
+				throw new RuntimeException("Corridor of shape " + shape.getId() + " could not be created", e);
+			}
 		}
 
 		@Override
 		public ScheduleRouters createInstance() {
-			return new ScheduleRoutersGtfsShapes(schedule, network, shapes, transportModeAssignment, travelCostType, maxWeightDistance, cutBuffer);
+			this.ensureInitialized();
+			return new ScheduleRoutersGtfsShapes(this);
+		}
+
+		/**
+		 * @return statistics of the corridor cache, corridors dropped from the cache are created again on demand
+		 */
+		public CacheStats getCorridorStats() {
+			return corridors.stats();
+		}
+
+		@Override
+		public String getStatistics() {
+			CacheStats stats = corridors.stats();
+			return String.format("shape corridors: %d created, %d evicted, %.1f%% hit rate", stats.loadCount(),
+					stats.evictionCount(), 100 * stats.hitRate());
+		}
+
+		/**
+		 * The shapes and the corridor parameters are part of the fingerprint.
+		 */
+		@Override
+		public String getFingerprint() {
+			long shapesHash = 0;
+			for(RouteShape shape : shapes.values()) {
+				long h = shape.getId().hashCode();
+				for(Coord coord : shape.getCoords()) {
+					h = 31 * h + Double.hashCode(coord.getX());
+					h = 31 * h + Double.hashCode(coord.getY());
+				}
+				shapesHash += h;
+			}
+			return getClass().getName() + "|" + transportModeAssignment + "|" + travelCostType + "|" + maxWeightDistance
+					+ "|" + cutBuffer + "|" + Long.toHexString(shapesHash);
+		}
+
+		private record CorridorKey(Id<RouteShape> shapeId, Network network) {
 		}
-		
 	}
 }
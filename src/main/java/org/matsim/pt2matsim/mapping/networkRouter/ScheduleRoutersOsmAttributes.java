@@ -23,9 +23,9 @@ import org.apache.logging.log4j.LogManager;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
-import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Person;
-import org.matsim.core.router.speedy.SpeedyALTFactory;
+import org.matsim.core.config.groups.ControllerConfigGroup.RoutingAlgorithmType;
+import org.matsim.core.config.groups.RoutingConfigGroup;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
 import org.matsim.core.router.util.TravelDisutility;
@@ -43,26 +43,26 @@ import org.matsim.pt2matsim.tools.PTMapperTools;
 import org.matsim.utils.objectattributes.attributable.Attributes;
 import org.matsim.vehicles.Vehicle;
 
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 /**
+ * Creates a Router for each transportMode of a schedule. Links that are part of an
+ * osm route (or route master) relation with the same transport mode as the transit
+ * route are preferred, their travel cost is multiplied with <tt>osmPtLinkTravelCostFactor</tt>.
+ *
  * @author polettif
  */
 public class ScheduleRoutersOsmAttributes implements ScheduleRouters {
 
 
-    protected static Logger log = LogManager.getLogger(ScheduleRoutersGtfsShapes.class);
-    /**
-     * If a link has a route with the same transport mode as the transit route,
-     * the link's travel cost is multiplied by this factor.
-     */
-    private final double osmPtLinkTravelCostFactor;
+    protected static Logger log = LogManager.getLogger(ScheduleRoutersOsmAttributes.class);
     // standard fields
-    private final TransitSchedule schedule;
-    private final Network network;
-    private final Map<String, Set<String>> transportModeAssignment;
     private final PublicTransitMappingConfigGroup.TravelCostType travelCostType;
 
 
@@ -70,56 +70,43 @@ public class ScheduleRoutersOsmAttributes implements ScheduleRouters {
     private final Map<String, PathCalculator> pathCalculatorsByMode = new HashMap<>();
     private final Map<String, Network> networksByMode = new HashMap<>();
     private final Map<String, OsmRouter> osmRouters = new HashMap<>();
-    private final int nThreads;
+    private final Map<String, OneToManyPathCalculator> oneToManyCalculatorsByMode = new HashMap<>();
 
+    /**
+     * Use {@link Factory} if more than one instance is needed, the filtered networks are then only created once.
+     */
     public ScheduleRoutersOsmAttributes(TransitSchedule schedule, Network network, Map<String, Set<String>> transportModeAssignment, PublicTransitMappingConfigGroup.TravelCostType travelCostType, double osmPtLinkTravelCostFactor) {
-        this.transportModeAssignment = transportModeAssignment;
-        this.travelCostType = travelCostType;
-        this.schedule = schedule;
-        this.network = network;
-        this.osmPtLinkTravelCostFactor = osmPtLinkTravelCostFactor;
-        this.nThreads = 8;
-
-        load();
+        this(new Factory(schedule, network, transportModeAssignment, travelCostType, osmPtLinkTravelCostFactor));
     }
 
 
+    /**
+     * @param nThreads number of threads used by the network router's preprocessing
+     */
     public ScheduleRoutersOsmAttributes(TransitSchedule schedule, Network network, Map<String, Set<String>> transportModeAssignment, PublicTransitMappingConfigGroup.TravelCostType travelCostType, double osmPtLinkTravelCostFactor, int nThreads) {
-        this.transportModeAssignment = transportModeAssignment;
-        this.travelCostType = travelCostType;
-        this.schedule = schedule;
-        this.network = network;
-        this.osmPtLinkTravelCostFactor = osmPtLinkTravelCostFactor;
-        this.nThreads = nThreads;
-
-        load();
+        this(new Factory(schedule, network, transportModeAssignment, travelCostType, osmPtLinkTravelCostFactor,
+                new PublicTransitMappingConfigGroup().getNetworkRouter(), nThreads));
     }
 
     /**
-     * Load path calculators for all transit routes
+     * Load path calculators for all schedule modes. The single path calculators are only
+     * created (and the network router's preprocessing done) once a single path is requested.
      */
-    private void load() {
-        log.info("Initiating network and router for transit routes...");
-		LeastCostPathCalculatorFactory factory = new SpeedyALTFactory();
-        for (TransitLine transitLine : schedule.getTransitLines().values()) {
-            for (TransitRoute transitRoute : transitLine.getRoutes().values()) {
-                String scheduleMode = transitRoute.getTransportMode();
-                PathCalculator tmpRouter = pathCalculatorsByMode.get(scheduleMode);
-                if (tmpRouter == null) {
-                    log.info("New router for schedule mode " + scheduleMode);
-                    Set<String> networkTransportModes = transportModeAssignment.get(scheduleMode);
-
-                    Network filteredNetwork = NetworkTools.createFilteredNetworkByLinkMode(this.network, networkTransportModes);
-
-                    OsmRouter r = new OsmRouter(scheduleMode);
-
-                    tmpRouter = new PathCalculator(factory.createPathCalculator(filteredNetwork, r, r));
-
-                    pathCalculatorsByMode.put(scheduleMode, tmpRouter);
-                    networksByMode.put(scheduleMode, filteredNetwork);
-                    osmRouters.put(scheduleMode, r);
-                }
-            }
+    private ScheduleRoutersOsmAttributes(Factory factory) {
+        factory.ensureInitialized();
+        this.travelCostType = factory.travelCostType;
+
+        for (Map.Entry<String, Network> e : factory.networksByMode.entrySet()) {
+            String scheduleMode = e.getKey();
+            Network filteredNetwork = e.getValue();
+            LeastCostPathCalculatorFactory lcpFactory = factory.lcpFactoriesByMode.get(scheduleMode);
+
+            OsmRouter r = new OsmRouter(factory.osmRouteLinksByMode.get(scheduleMode), factory.osmPtLinkTravelCostFactor, factory.sharedPreprocessing);
+
+            pathCalculatorsByMode.put(scheduleMode, new PathCalculator(() -> ScheduleRoutersStandard.createPathCalculator(lcpFactory, filteredNetwork, r, r)));
+            networksByMode.put(scheduleMode, filteredNetwork);
+            osmRouters.put(scheduleMode, r);
+            oneToManyCalculatorsByMode.put(scheduleMode, new OneToManyPathCalculator(filteredNetwork, r, r));
         }
     }
 
@@ -143,6 +130,15 @@ public class ScheduleRoutersOsmAttributes implements ScheduleRouters {
         return pathCalculatorsByMode.get(transitRoute.getTransportMode()).calcPath(fromLink, toLink, maxCost);
     }
 
+    @Override
+    public Map<LinkCandidate, LeastCostPathCalculator.Path> calcLeastCostPaths(LinkCandidate fromLinkCandidate, Collection<LinkCandidate> toLinkCandidates, TransitLine transitLine, TransitRoute transitRoute, double maxCost) {
+        OneToManyPathCalculator calculator = oneToManyCalculatorsByMode.get(transitRoute.getTransportMode());
+        if (calculator == null) {
+            return Collections.emptyMap();
+        }
+        return calculator.calcPaths(fromLinkCandidate, toLinkCandidates, maxCost);
+    }
+
     @Override
     public LeastCostPathCalculator.Path calcLeastCostPath(Id<Link> fromLinkId, Id<Link> toLinkId, TransitLine transitLine, TransitRoute transitRoute) {
         Network n = networksByMode.get(transitRoute.getTransportMode());
@@ -173,20 +169,21 @@ public class ScheduleRoutersOsmAttributes implements ScheduleRouters {
      */
     private class OsmRouter implements TravelDisutility, TravelTime {
 
-        private final String scheduleMode;
+        // links with an osm route of the schedule mode, by link id index
+        private final BitSet osmRouteLinks;
+        private final double osmPtLinkTravelCostFactor;
+        private final boolean sharedPreprocessing;
 
-        public OsmRouter(String scheduleMode) {
-            this.scheduleMode = scheduleMode;
+        public OsmRouter(BitSet osmRouteLinks, double osmPtLinkTravelCostFactor, boolean sharedPreprocessing) {
+            this.osmRouteLinks = osmRouteLinks;
+            this.osmPtLinkTravelCostFactor = osmPtLinkTravelCostFactor;
+            this.sharedPreprocessing = sharedPreprocessing;
         }
 
         private double calcLinkTravelCost(Link link) {
             double travelCost = PTMapperTools.calcTravelCost(link, travelCostType);
 
-            Attributes attributes = network.getLinks().get(link.getId()).getAttributes();
-            Set<String> routeMaster = CollectionUtils.stringToSet((String) attributes.getAttribute(OsmConverterConfigGroup.LINK_ATTRIBUTE_RELATION_ROUTE_MASTER));
-            Set<String> route = CollectionUtils.stringToSet((String) attributes.getAttribute(OsmConverterConfigGroup.LINK_ATTRIBUTE_RELATION_ROUTE));
-
-            if (route.contains(scheduleMode) || routeMaster.contains(scheduleMode)) {
+            if (osmRouteLinks.get(link.getId().index())) {
                 travelCost *= osmPtLinkTravelCostFactor;
             }
 
@@ -198,8 +195,14 @@ public class ScheduleRoutersOsmAttributes implements ScheduleRouters {
             return calcLinkTravelCost(link);
         }
 
+        /**
+         * Independent of the schedule mode if the router's preprocessing is shared by several schedule modes.
+         */
         @Override
         public double getLinkMinimumTravelDisutility(Link link) {
+            if (sharedPreprocessing) {
+                return PTMapperTools.calcTravelCost(link, travelCostType) * Math.min(1.0, osmPtLinkTravelCostFactor);
+            }
             return calcLinkTravelCost(link);
         }
 
@@ -209,24 +212,103 @@ public class ScheduleRoutersOsmAttributes implements ScheduleRouters {
         }
     }
 
+    /**
+     * Shares the expensive parts between the instances of the pseudo routing threads: the
+     * filtered network of each network mode set and the links on an osm route of each
+     * schedule mode are created once, by the first {@link #createInstance()}. The network
+     * router is only prepared if single paths are requested. Its preprocessing is shared by
+     * all schedule modes, except for {@link RoutingAlgorithmType#CHRouter} whose contraction
+     * depends on the travel costs and is therefore done per schedule mode.
+     */
     public static class Factory implements ScheduleRoutersFactory {
     	final private TransitSchedule schedule;
     	final private Network network;
     	final private Map<String, Set<String>> transportModeAssignment;
     	final private PublicTransitMappingConfigGroup.TravelCostType travelCostType;
     	final private double osmPtLinkTravelCostFactor;
-    	
+    	final private RoutingAlgorithmType networkRouter;
+    	final private int nThreads;
+
+    	// lazily initialized by ensureInitialized()
+    	private Map<String, Network> networksByMode;
+    	private Map<String, BitSet> osmRouteLinksByMode;
+    	private Map<String, LeastCostPathCalculatorFactory> lcpFactoriesByMode;
+    	private boolean sharedPreprocessing;
+
     	public Factory(TransitSchedule schedule, Network network, Map<String, Set<String>> transportModeAssignment, PublicTransitMappingConfigGroup.TravelCostType travelCostType, double osmPtLinkTravelCostFactor) {
+    		this(schedule, network, transportModeAssignment, travelCostType, osmPtLinkTravelCostFactor,
+    				new PublicTransitMappingConfigGroup().getNetworkRouter(), new PublicTransitMappingConfigGroup().getNumOfThreads());
+    	}
+
+    	public Factory(TransitSchedule schedule, Network network, Map<String, Set<String>> transportModeAssignment, PublicTransitMappingConfigGroup.TravelCostType travelCostType, double osmPtLinkTravelCostFactor,
+    			RoutingAlgorithmType networkRouter, int nThreads) {
     		this.schedule = schedule;
     		this.network = network;
     		this.transportModeAssignment = transportModeAssignment;
     		this.travelCostType = travelCostType;
     		this.osmPtLinkTravelCostFactor = osmPtLinkTravelCostFactor;
+    		this.networkRouter = networkRouter;
+    		this.nThreads = nThreads;
+    	}
+
+    	public Factory(TransitSchedule schedule, Network network, PublicTransitMappingConfigGroup config, double osmPtLinkTravelCostFactor) {
+    		this(schedule, network, config.getTransportModeAssignment(), config.getTravelCostType(), osmPtLinkTravelCostFactor,
+    				config.getNetworkRouter(), config.getNumOfThreads());
+    	}
+
+    	private synchronized void ensureInitialized() {
+    		if (this.networksByMode != null) {
+    			return;
+    		}
+    		log.info("Initiating networks for the schedule modes...");
+
+    		Set<String> scheduleModes = new HashSet<>();
+    		for (TransitLine transitLine : schedule.getTransitLines().values()) {
+    			for (TransitRoute transitRoute : transitLine.getRoutes().values()) {
+    				if (transportModeAssignment.containsKey(transitRoute.getTransportMode())) {
+    					scheduleModes.add(transitRoute.getTransportMode());
+    				}
+    			}
+    		}
+
+    		// creating a router factory is cheap, the preprocessing is done on the first single path
+    		this.sharedPreprocessing = !this.networkRouter.equals(RoutingAlgorithmType.CHRouter);
+    		int landmarks = new RoutingConfigGroup().getNetworkRoutingLandmarks();
+    		LeastCostPathCalculatorFactory sharedLcpFactory = ScheduleRoutersStandard.Factory.createLcpFactory(this.networkRouter, this.nThreads, landmarks);
+
+    		this.networksByMode = new HashMap<>();
+    		this.lcpFactoriesByMode = new HashMap<>();
+    		Map<Set<String>, Network> byModeSet = new HashMap<>();
+    		for (String scheduleMode : scheduleModes) {
+    			this.networksByMode.put(scheduleMode, byModeSet.computeIfAbsent(transportModeAssignment.get(scheduleMode),
+    					modes -> NetworkTools.createFilteredNetworkByLinkMode(this.network, modes)));
+    			this.lcpFactoriesByMode.put(scheduleMode, sharedPreprocessing ? sharedLcpFactory :
+    					ScheduleRoutersStandard.Factory.createLcpFactory(this.networkRouter, this.nThreads, landmarks));
+    		}
+
+    		// links with an osm route (master) relation of the schedule mode
+    		this.osmRouteLinksByMode = new HashMap<>();
+    		for (String scheduleMode : scheduleModes) {
+    			this.osmRouteLinksByMode.put(scheduleMode, new BitSet());
+    		}
+    		for (Link link : this.network.getLinks().values()) {
+    			Attributes attributes = link.getAttributes();
+    			Set<String> osmModes = new HashSet<>(CollectionUtils.stringToSet((String) attributes.getAttribute(OsmConverterConfigGroup.LINK_ATTRIBUTE_RELATION_ROUTE)));
+    			osmModes.addAll(CollectionUtils.stringToSet((String) attributes.getAttribute(OsmConverterConfigGroup.LINK_ATTRIBUTE_RELATION_ROUTE_MASTER)));
+    			for (String osmMode : osmModes) {
+    				BitSet osmRouteLinks = this.osmRouteLinksByMode.get(osmMode);
+    				if (osmRouteLinks != null) {
+    					osmRouteLinks.set(link.getId().index());
+    				}
+    			}
+    		}
+
+    		log.info("Initiated {} filtered network(s) for {} schedule mode(s).", byModeSet.size(), scheduleModes.size());
     	}
 
 		@Override
 		public ScheduleRouters createInstance() {
-			return new ScheduleRoutersOsmAttributes(schedule, network, transportModeAssignment, travelCostType, osmPtLinkTravelCostFactor);
+			return new ScheduleRoutersOsmAttributes(this);
 		}
     }
 }
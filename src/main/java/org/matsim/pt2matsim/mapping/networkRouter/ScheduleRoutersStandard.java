@@ -27,7 +27,11 @@ import org.matsim.pt2matsim.tools.NetworkTools;
 import org.matsim.pt2matsim.tools.PTMapperTools;
 import org.matsim.vehicles.Vehicle;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -47,22 +51,34 @@ public class ScheduleRoutersStandard implements ScheduleRouters {
 	private final boolean considerCandidateDist;
 	private final Map<String, PathCalculator> pathCalculatorsByMode = new HashMap<>();
 	private final Map<String, Network> networksByMode = new HashMap<>();
+	private final Map<String, OneToManyPathCalculator> oneToManyCalculatorsByMode = new HashMap<>();
+	private final PathCache pathCache;
+	private final Map<String, Double> minCostPerMeterByMode = new HashMap<>();
 
 	/**
 	 * Constructor used by {@link Factory} with pre-computed filtered networks and a
 	 * shared {@link LeastCostPathCalculatorFactory}. This avoids redundant network
 	 * filtering and router preprocessing (ALT landmarks / CH contraction) across
 	 * parallel instances.
+	 *
+	 * @param sharedPathCache path cache shared by all instances of the factory, <tt>null</tt> disables caching
+	 * @param sharedMinCostPerMeter minimal travel cost per meter of beeline distance for each filtered network
 	 */
 	private ScheduleRoutersStandard(TransitSchedule schedule,
 			Map<String, Set<String>> transportModeAssignment,
 			PublicTransitMappingConfigGroup.TravelCostType costType,
 			boolean routingWithCandidateDistance,
 			Map<String, Network> sharedFilteredNetworks,
-			LeastCostPathCalculatorFactory sharedLcpFactory) {
+			LeastCostPathCalculatorFactory sharedLcpFactory,
+			PathCache sharedPathCache,
+			Map<Network, Double> sharedMinCostPerMeter) {
 		this.travelCostType = costType;
 		this.considerCandidateDist = routingWithCandidateDistance;
+		this.pathCache = sharedPathCache;
 		this.initRouters(schedule, transportModeAssignment, sharedFilteredNetworks, sharedLcpFactory);
+		for (Map.Entry<String, Network> e : this.networksByMode.entrySet()) {
+			this.minCostPerMeterByMode.put(e.getKey(), sharedMinCostPerMeter.get(e.getValue()));
+		}
 	}
 
 	/**
@@ -89,11 +105,21 @@ public class ScheduleRoutersStandard implements ScheduleRouters {
 
 			Network filteredNetwork = sharedFilteredNetworks.get(scheduleMode);
 			LocalRouter r = new LocalRouter();
-			PathCalculator pathCalculator = new PathCalculator(
-					factory.createPathCalculator(filteredNetwork, r, r));
+			PathCalculator pathCalculator = new PathCalculator(() -> createPathCalculator(factory, filteredNetwork, r, r));
 
 			this.pathCalculatorsByMode.put(scheduleMode, pathCalculator);
 			this.networksByMode.put(scheduleMode, filteredNetwork);
+			this.oneToManyCalculatorsByMode.put(scheduleMode, new OneToManyPathCalculator(filteredNetwork, r, r));
+		}
+	}
+
+	/**
+	 * Creates a path calculator with the factory shared by all instances. Instances create their
+	 * path calculators lazily in different threads, the factory's preprocessing is therefore synchronized.
+	 */
+	static LeastCostPathCalculator createPathCalculator(LeastCostPathCalculatorFactory factory, Network network, TravelDisutility travelDisutility, TravelTime travelTime) {
+		synchronized(factory) {
+			return factory.createPathCalculator(network, travelDisutility, travelTime);
 		}
 	}
 
@@ -116,6 +142,49 @@ public class ScheduleRoutersStandard implements ScheduleRouters {
 		return this.pathCalculatorsByMode.get(transitRoute.getTransportMode()).calcPath(fromLink, toLink, maxCost);
 	}
 
+	@Override
+	public Map<LinkCandidate, LeastCostPathCalculator.Path> calcLeastCostPaths(LinkCandidate fromLinkCandidate, Collection<LinkCandidate> toLinkCandidates, TransitLine transitLine, TransitRoute transitRoute, double maxCost) {
+		OneToManyPathCalculator calculator = this.oneToManyCalculatorsByMode.get(transitRoute.getTransportMode());
+		if (calculator == null) {
+			return Collections.emptyMap();
+		}
+		if (this.pathCache == null) {
+			return calculator.calcPaths(fromLinkCandidate, toLinkCandidates, maxCost);
+		}
+
+		Network n = this.networksByMode.get(transitRoute.getTransportMode());
+		Link fromLink = n.getLinks().get(fromLinkCandidate.getLink().getId());
+		if (fromLink == null) {
+			return Collections.emptyMap();
+		}
+
+		// answer as many targets as possible from the cache, route the rest in one search
+		Map<LinkCandidate, LeastCostPathCalculator.Path> paths = new HashMap<>();
+		List<LinkCandidate> uncached = new ArrayList<>();
+		for (LinkCandidate toLinkCandidate : toLinkCandidates) {
+			PathCache.Entry entry = this.pathCache.get(new PathCache.Key(n, this.travelCostType, fromLink, toLinkCandidate.getLink()), maxCost);
+			if (entry == null) {
+				uncached.add(toLinkCandidate);
+			} else if (entry.hasPath() && entry.getTravelCost() <= maxCost) {
+				paths.put(toLinkCandidate, entry.toPath(n, fromLink));
+			}
+		}
+		if (!uncached.isEmpty()) {
+			Map<LinkCandidate, LeastCostPathCalculator.Path> calculated = calculator.calcPaths(fromLinkCandidate, uncached, maxCost);
+			for (LinkCandidate toLinkCandidate : uncached) {
+				PathCache.Key key = new PathCache.Key(n, this.travelCostType, fromLink, toLinkCandidate.getLink());
+				LeastCostPathCalculator.Path path = calculated.get(toLinkCandidate);
+				if (path != null) {
+					this.pathCache.putPath(key, path);
+					paths.put(toLinkCandidate, path);
+				} else {
+					this.pathCache.putNoPath(key, maxCost);
+				}
+			}
+		}
+		return paths;
+	}
+
 	@Override
 	public LeastCostPathCalculator.Path calcLeastCostPath(Id<Link> fromLinkId, Id<Link> toLinkId, TransitLine transitLine, TransitRoute transitRoute) {
 		Network n = this.networksByMode.get(transitRoute.getTransportMode());
@@ -139,6 +208,20 @@ public class ScheduleRoutersStandard implements ScheduleRouters {
 		return minTC;
 	}
 
+	/**
+	 * Beeline distance between the candidates times the minimal travel cost per meter of
+	 * the mode's network (i.e. the beeline distance divided by the maximal speed for
+	 * travel time costs).
+	 */
+	@Override
+	public double getLowerBoundTravelCost(LinkCandidate fromLinkCandidate, LinkCandidate toLinkCandidate, TransitLine transitLine, TransitRoute transitRoute) {
+		Double minCostPerMeter = this.minCostPerMeterByMode.get(transitRoute.getTransportMode());
+		if (minCostPerMeter == null) {
+			return 0.0;
+		}
+		return CoordUtils.calcEuclideanDistance(fromLinkCandidate.getToCoord(), toLinkCandidate.getFromCoord()) * minCostPerMeter;
+	}
+
 	@Override
 	public double getLinkCandidateTravelCost(LinkCandidate linkCandidateCurrent) {
 		double dist = 0;
@@ -191,13 +274,26 @@ public class ScheduleRoutersStandard implements ScheduleRouters {
 		private final int networkRoutingLandmarks;
 		private final RoutingAlgorithmType networkRouter;
 		private final int nThreads;
+		private final long pathCacheSize;
 
 		// Cached infrastructure, lazily initialized by ensureInitialized()
 		private Map<String, Network> filteredNetworkCache;
 		private LeastCostPathCalculatorFactory lcpFactoryCache;
+		private PathCache pathCache;
+		private Map<Network, Double> minCostPerMeterCache;
 
 		public Factory(TransitSchedule schedule, Network network, Map<String, Set<String>> transportModeAssignment, PublicTransitMappingConfigGroup.TravelCostType costType, boolean routingWithCandidateDistance,
 				RoutingAlgorithmType networkRouter, int nThreads) {
+			this(schedule, network, transportModeAssignment, costType, routingWithCandidateDistance, networkRouter, nThreads,
+					new PublicTransitMappingConfigGroup().getPathCacheSize());
+		}
+
+		/**
+		 * @param pathCacheSize size of the least cost path cache shared by all created instances, 0 disables the cache.
+		 *                      See {@link PathCache}.
+		 */
+		public Factory(TransitSchedule schedule, Network network, Map<String, Set<String>> transportModeAssignment, PublicTransitMappingConfigGroup.TravelCostType costType, boolean routingWithCandidateDistance,
+				RoutingAlgorithmType networkRouter, int nThreads, long pathCacheSize) {
 			this.schedule = schedule;
 			this.network = network;
 			this.transportModeAssignment = transportModeAssignment;
@@ -206,11 +302,13 @@ public class ScheduleRoutersStandard implements ScheduleRouters {
 			this.networkRoutingLandmarks = new RoutingConfigGroup().getNetworkRoutingLandmarks();
 			this.networkRouter = networkRouter;
 			this.nThreads = nThreads;
+			this.pathCacheSize = pathCacheSize;
 		}
 
 		public Factory(TransitSchedule schedule, Network network, PublicTransitMappingConfigGroup config) {
 			this(schedule, network, config.getTransportModeAssignment(), config.getTravelCostType(),
-					config.getRoutingWithCandidateDistance(), config.getNetworkRouter(), config.getNumOfThreads());
+					config.getRoutingWithCandidateDistance(), config.getNetworkRouter(), config.getNumOfThreads(),
+					config.getPathCacheSize());
 		}
 
 		/**
@@ -234,7 +332,13 @@ public class ScheduleRoutersStandard implements ScheduleRouters {
 				this.filteredNetworkCache.put(entry.getKey(), filtered);
 			}
 
+			this.minCostPerMeterCache = new HashMap<>();
+			for (Network filtered : byModeSet.values()) {
+				this.minCostPerMeterCache.put(filtered, calcMinCostPerMeter(filtered, this.costType));
+			}
+
 			this.lcpFactoryCache = createLcpFactory(this.networkRouter, this.nThreads, this.networkRoutingLandmarks);
+			this.pathCache = this.pathCacheSize > 0 ? new PathCache(this.pathCacheSize) : null;
 
 			log.info("Pre-computed {} filtered network(s) and shared router factory.", byModeSet.size());
 		}
@@ -244,14 +348,36 @@ public class ScheduleRoutersStandard implements ScheduleRouters {
 			this.ensureInitialized();
 			return new ScheduleRoutersStandard(this.schedule, this.transportModeAssignment,
 					this.costType, this.routingWithCandidateDistance,
-					this.filteredNetworkCache, this.lcpFactoryCache);
+					this.filteredNetworkCache, this.lcpFactoryCache, this.pathCache, this.minCostPerMeterCache);
+		}
+
+		/**
+		 * @return the minimal travel cost per meter of beeline distance over all links of the network. Since the
+		 * beeline distance of a path is at most the sum of the beeline lengths of its links, the beeline distance
+		 * between two nodes multiplied by this value is a lower bound of the path's travel cost. For travel time costs
+		 * on networks with link length = beeline length this is 1 / maximal freespeed.
+		 */
+		private static double calcMinCostPerMeter(Network network, PublicTransitMappingConfigGroup.TravelCostType costType) {
+			double min = Double.POSITIVE_INFINITY;
+			for (Link link : network.getLinks().values()) {
+				double beeline = CoordUtils.calcEuclideanDistance(link.getFromNode().getCoord(), link.getToNode().getCoord());
+				if (beeline > 0) {
+					min = Math.min(min, PTMapperTools.calcTravelCost(link, costType) / beeline);
+				}
+			}
+			return min == Double.POSITIVE_INFINITY ? 0.0 : Math.max(min, 0.0);
+		}
+
+		@Override
+		public String getStatistics() {
+			return this.pathCache == null ? null : this.pathCache.toString();
 		}
 
 		/**
 		 * Creates a {@link LeastCostPathCalculatorFactory} for the given routing
 		 * algorithm type.
 		 */
-		private static LeastCostPathCalculatorFactory createLcpFactory(RoutingAlgorithmType routerType,
+		static LeastCostPathCalculatorFactory createLcpFactory(RoutingAlgorithmType routerType,
 				int nThreads, int networkRoutingLandmarks) {
 			if (routerType.equals(RoutingAlgorithmType.SpeedyALT)) {
 				return new SpeedyALTFactory();
@@ -50,14 +50,22 @@ public class ArtificialLinkImpl implements ArtificialLink {
 	private Attributes attributes = new AttributesImpl();
 
 	public ArtificialLinkImpl(LinkCandidate fromLinkCandidate, LinkCandidate toLinkCandidate, double freespeed, double linkLength) {
-		this.id = PTMapperTools.createArtificialLinkId(fromLinkCandidate, toLinkCandidate);
-		this.fromNodeId = fromLinkCandidate.getLink().getToNode().getId();
-		this.toNodeId = toLinkCandidate.getLink().getFromNode().getId();
+		this(PTMapperTools.createArtificialLinkId(fromLinkCandidate, toLinkCandidate), fromLinkCandidate.getLink().getToNode(), toLinkCandidate.getLink().getFromNode(), freespeed, linkLength);
+	}
+
+	/**
+	 * Recreates an artificial link between two network nodes, e.g. when
+	 * loading a previous mapping.
+	 */
+	public ArtificialLinkImpl(Id<Link> id, Node fromNode, Node toNode, double freespeed, double linkLength) {
+		this.id = id;
+		this.fromNodeId = fromNode.getId();
+		this.toNodeId = toNode.getId();
 		this.freespeed = freespeed;
 		this.linkLength = Math.max(1, linkLength);
 
-		this.fromNode = fromLinkCandidate.getLink().getToNode();
-		this.toNode = toLinkCandidate.getLink().getFromNode();
+		this.fromNode = fromNode;
+		this.toNode = toNode;
 
 		this.numberOfLanes = 1.0;
 
@@ -37,16 +37,15 @@ public class PseudoGraphImpl implements PseudoGraph {
 	/*package*/ static final String SOURCE = "SOURCE";
 	/*package*/ static final String DESTINATION = "DESTINATION";
 	protected static Logger log = LogManager.getLogger(PseudoGraphImpl.class);
-	private final Id<PseudoRouteStop> SOURCE_ID = Id.create(SOURCE, PseudoRouteStop.class);
 	private final PseudoRouteStop SOURCE_PSEUDO_STOP = new PseudoRouteStopImpl(SOURCE);
-	private final Id<PseudoRouteStop> DESTINATION_ID = Id.create(DESTINATION, PseudoRouteStop.class);
 	private final PseudoRouteStop DESTINATION_PSEUDO_STOP = new PseudoRouteStopImpl(DESTINATION);
 
-	private final Map<Id<PseudoRouteStop>, PseudoRouteStop> graph;
+	// pseudo route stops are used as their own keys, no ids are created
+	private final Map<PseudoRouteStop, PseudoRouteStop> graph;
 	private boolean dijkstraComplete = false;
 	private LinkedList<PseudoRouteStop> leastCostPath = null;
 	private List<Id<Link>> networkLinkIds = new ArrayList<>();
-	private Map<String, List<Link>> stopPairLinks = new HashMap<>();
+	private Map<PseudoRouteStop, Map<PseudoRouteStop, List<Link>>> stopPairLinks = new HashMap<>();
 	private Collection<ArtificialLink> artificialNetworkLinks = new HashSet<>();
 
 	public PseudoGraphImpl() {
@@ -57,14 +56,14 @@ public class PseudoGraphImpl implements PseudoGraph {
 	 * Runs dijkstra using a specified source vertex
 	 */
 	private void runDijkstra() {
-		if(!graph.containsKey(SOURCE_ID)) {
-			System.err.printf("Graph doesn't contain dummy PseudoRouteStop \"%s\"\n", SOURCE_ID);
+		if(!graph.containsKey(SOURCE_PSEUDO_STOP)) {
+			System.err.printf("Graph doesn't contain dummy PseudoRouteStop \"%s\"\n", SOURCE);
 			return;
 		}
 
 		NavigableSet<PseudoRouteStop> queue = new TreeSet<>();
 
-		queue.add(graph.get(SOURCE_ID));
+		queue.add(graph.get(SOURCE_PSEUDO_STOP));
 
 		PseudoRouteStop currentStop, neighbour;
 		while(!queue.isEmpty()) {
@@ -88,11 +87,11 @@ public class PseudoGraphImpl implements PseudoGraph {
 		/*
 		  returns a leastCostPath from the source to the destination
 		 */
-		if(!graph.containsKey(DESTINATION_ID)) {
-			System.err.printf("Graph doesn't contain end PseudoRouteStop \"%s\"\n", DESTINATION_ID);
+		if(!graph.containsKey(DESTINATION_PSEUDO_STOP)) {
+			System.err.printf("Graph doesn't contain end PseudoRouteStop \"%s\"\n", DESTINATION);
 		}
 
-		PseudoRouteStop step = graph.get(DESTINATION_ID);
+		PseudoRouteStop step = graph.get(DESTINATION_PSEUDO_STOP);
 		leastCostPath = new LinkedList<>();
 
 		// check if a leastCostPath exists
@@ -100,7 +99,7 @@ public class PseudoGraphImpl implements PseudoGraph {
 			leastCostPath = null;
 		}
 		leastCostPath.add(step);
-		while(!step.getId().equals(SOURCE_ID)) {
+		while(!step.equals(SOURCE_PSEUDO_STOP)) {
 			step = step.getClosestPrecedingRouteStop();
 			leastCostPath.add(step);
 		}
@@ -119,7 +118,7 @@ public class PseudoGraphImpl implements PseudoGraph {
 			PseudoRouteStop stopA = leastCostPath.get(i);
 			PseudoRouteStop stopB = leastCostPath.get(i + 1);
 
-			for(Link l : stopPairLinks.get(getKey(stopA, stopB))) {
+			for(Link l : stopPairLinks.get(stopA).get(stopB)) {
 				networkLinkIds.add(l.getId());
 				if (l instanceof ArtificialLink al) {
 					artificialNetworkLinks.add(al);
@@ -166,13 +165,9 @@ public class PseudoGraphImpl implements PseudoGraph {
 	}
 
 	private void addEdge(PseudoRouteStop from, PseudoRouteStop to, double edgeWeight, List<Link> networkLinks, boolean dummy) {
-		if(!graph.containsKey(from.getId())) {
-			graph.put(from.getId(), from);
-		}
-		if(!graph.containsKey(to.getId())) {
-			graph.put(to.getId(), to);
-		}
-		graph.get(from.getId()).getNeighbours().put(graph.get(to.getId()), edgeWeight);
+		PseudoRouteStop fromStop = graph.computeIfAbsent(from, k -> from);
+		PseudoRouteStop toStop = graph.computeIfAbsent(to, k -> to);
+		fromStop.getNeighbours().put(toStop, edgeWeight);
 
 		// store links
 		if(!dummy) {
@@ -183,16 +178,9 @@ public class PseudoGraphImpl implements PseudoGraph {
 			} else {
 				links.addAll(networkLinks);
 			}
-			stopPairLinks.put(getKey(from, to), links);
+			stopPairLinks.computeIfAbsent(fromStop, k -> new HashMap<>()).put(toStop, links);
 		}
 	}
-
-	/**
-	 * @return String key to store links between stops
-	 */
-	private String getKey(PseudoRouteStop stopA, PseudoRouteStop stopB) {
-		return stopA.getId() + "->" + stopB.getId();
-	}
 }
 
 
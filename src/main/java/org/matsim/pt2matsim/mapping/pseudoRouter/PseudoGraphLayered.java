@@ -0,0 +1,309 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.mapping.pseudoRouter;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * A {@link PseudoGraph} that makes use of the graph being layered by stop
+ * index: edges only connect link candidates of a stop with the link candidates
+ * of the next stop. Link candidates are stored per layer and numbered in the
+ * order they are first added, costs and edges are held in primitive arrays.
+ * <p>
+ * The least cost stop sequence is calculated with a single forward pass over
+ * the layers (dynamic programming). Like the Dijkstra in {@link PseudoGraphImpl},
+ * the source and destination are connected to the first and last stop's link
+ * candidates with an edge of cost 1.0. If multiple predecessors lead to the same
+ * least cost, the predecessor with the lower cost to the source is chosen (i.e.
+ * the one Dijkstra would have settled first), remaining ties are resolved in
+ * favour of the edge that was added first.
+ * <p>
+ * {@link PseudoRouteStop}s and {@link ArtificialLink}s are only created for the
+ * least cost path, pseudo stops are identified by (layer index, candidate index)
+ * while the graph is built. An instance can be reused for several transit routes
+ * by calling {@link #reset()}, which keeps the allocated arrays.
+ */
+public class PseudoGraphLayered implements PseudoGraph {
+
+	private static final double DUMMY_EDGE_COST = 1.0;
+
+	private final List<Layer> layers = new ArrayList<>();
+	private int nLayers = 0;
+	private final Layer destination = new Layer();
+
+	private boolean solved = false;
+	private List<PseudoRouteStop> leastCostPath = null;
+	private List<Id<Link>> networkLinkIds = new ArrayList<>();
+	private Collection<ArtificialLink> artificialNetworkLinks = new HashSet<>();
+
+	/**
+	 * Clears the graph so it can be used for the next transit route. Results of
+	 * the previous route (stop sequence, link ids) are not modified.
+	 */
+	public void reset() {
+		for(int i = 0; i < nLayers; i++) {
+			layers.get(i).clear();
+		}
+		destination.clear();
+		nLayers = 0;
+		solved = false;
+		leastCostPath = null;
+		networkLinkIds = new ArrayList<>();
+		artificialNetworkLinks = new HashSet<>();
+	}
+
+	/**
+	 * Sets the link candidates of a stop. Candidates are numbered in iteration
+	 * order, these indices are used by {@link #addEdge(int, int, int, double, List)}.
+	 */
+	public void setLinkCandidates(int order, TransitRouteStop transitRouteStop, Collection<LinkCandidate> linkCandidates) {
+		Layer layer = getLayer(order, transitRouteStop);
+		layer.candidates.clear();
+		layer.candidates.addAll(linkCandidates);
+	}
+
+	/**
+	 * Adds an edge between the link candidate with index fromCandidateIndex of stop
+	 * orderOfFromStop and the candidate toCandidateIndex of the next stop.
+	 *
+	 * @param links the network links between the candidates, <tt>null</tt> if an artificial link is needed
+	 */
+	public void addEdge(int orderOfFromStop, int fromCandidateIndex, int toCandidateIndex, double pathTravelCost, List<Link> links) {
+		layers.get(orderOfFromStop).addEdge(fromCandidateIndex, toCandidateIndex, pathTravelCost, links);
+	}
+
+	@Override
+	public void addEdge(int orderOfFromStop, TransitRouteStop fromTransitRouteStop, LinkCandidate fromLinkCandidate, TransitRouteStop toTransitRouteStop, LinkCandidate toLinkCandidate, double pathTravelCost, List<Link> links) {
+		Layer fromLayer = getLayer(orderOfFromStop, fromTransitRouteStop);
+		Layer toLayer = getLayer(orderOfFromStop + 1, toTransitRouteStop);
+		fromLayer.addEdge(fromLayer.getCandidateIndex(fromLinkCandidate), toLayer.getCandidateIndex(toLinkCandidate), pathTravelCost, links);
+	}
+
+	@Override
+	public void addDummyEdges(List<TransitRouteStop> transitRouteStops, Collection<LinkCandidate> firstStopLinkCandidates, Collection<LinkCandidate> lastStopLinkCandidates) {
+		Layer first = getLayer(0, transitRouteStops.get(0));
+		first.sourceCandidates = ensureSize(first.sourceCandidates, Math.max(first.candidates.size(), 1));
+		Arrays.fill(first.sourceCandidates, false);
+		for(LinkCandidate lc : firstStopLinkCandidates) {
+			int index = first.getCandidateIndex(lc);
+			first.sourceCandidates = ensureSize(first.sourceCandidates, index + 1);
+			first.sourceCandidates[index] = true;
+		}
+		int lastOrder = transitRouteStops.size() - 1;
+		Layer last = getLayer(lastOrder, transitRouteStops.get(lastOrder));
+		for(LinkCandidate lc : lastStopLinkCandidates) {
+			last.addEdge(last.getCandidateIndex(lc), 0, DUMMY_EDGE_COST, null);
+		}
+	}
+
+	@Override
+	public List<PseudoRouteStop> getLeastCostStopSequence() {
+		if(!solved) solve();
+		return this.leastCostPath;
+	}
+
+	@Override
+	public List<Id<Link>> getNetworkLinkIds() {
+		if(!solved) solve();
+		return this.networkLinkIds;
+	}
+
+	@Override
+	public Collection<ArtificialLink> getArtificialNetworkLinks() {
+		if(!solved) solve();
+		return this.artificialNetworkLinks;
+	}
+
+	private Layer getLayer(int order, TransitRouteStop transitRouteStop) {
+		while(layers.size() <= order) {
+			layers.add(new Layer());
+		}
+		nLayers = Math.max(nLayers, order + 1);
+		Layer layer = layers.get(order);
+		layer.transitRouteStop = transitRouteStop;
+		return layer;
+	}
+
+	/**
+	 * Forward pass over all layers, then backtracking from the destination.
+	 */
+	private void solve() {
+		solved = true;
+		if(nLayers == 0) {
+			return;
+		}
+
+		// the destination is a layer with a single node
+		destination.candidates.add(null);
+
+		// source edges
+		Layer first = layers.get(0);
+		first.initCosts();
+		for(int c = 0; c < first.candidates.size(); c++) {
+			if(c < first.sourceCandidates.length && first.sourceCandidates[c]) {
+				first.cost[c] = DUMMY_EDGE_COST;
+			}
+		}
+
+		// relax edges layer by layer, the last layer's edges lead to the destination
+		for(int i = 0; i < nLayers; i++) {
+			Layer layer = layers.get(i);
+			Layer next = (i == nLayers - 1) ? destination : layers.get(i + 1);
+			next.initCosts();
+			for(int e = 0; e < layer.nEdges; e++) {
+				int from = layer.edgeFrom[e];
+				double fromCost = layer.cost[from];
+				if(fromCost == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				int to = layer.edgeTo[e];
+				double newCost = fromCost + layer.edgeCost[e];
+				int pred = next.predecessorEdge[to];
+				if(newCost < next.cost[to] || (newCost == next.cost[to] && pred >= 0 && fromCost < layer.cost[layer.edgeFrom[pred]])) {
+					next.cost[to] = newCost;
+					next.predecessorEdge[to] = e;
+				}
+			}
+		}
+
+		if(destination.predecessorEdge[0] < 0) {
+			leastCostPath = null;
+			return;
+		}
+
+		// backtrack
+		int[] chosen = new int[nLayers];
+		chosen[nLayers - 1] = layers.get(nLayers - 1).edgeFrom[destination.predecessorEdge[0]];
+		for(int i = nLayers - 1; i > 0; i--) {
+			Layer prev = layers.get(i - 1);
+			int edge = layers.get(i).predecessorEdge[chosen[i]];
+			chosen[i - 1] = prev.edgeFrom[edge];
+		}
+
+		leastCostPath = new ArrayList<>(nLayers);
+		for(int i = 0; i < nLayers; i++) {
+			Layer layer = layers.get(i);
+			leastCostPath.add(new PseudoRouteStopImpl(i, layer.transitRouteStop, layer.candidates.get(chosen[i])));
+		}
+
+		// fetch network links for least cost path
+		networkLinkIds.add(leastCostPath.get(0).getLinkId());
+		for(int i = 0; i < nLayers - 1; i++) {
+			Layer layer = layers.get(i);
+			int edge = layers.get(i + 1).predecessorEdge[chosen[i + 1]];
+			List<Link> links = layer.edgeLinks[edge];
+			if(links == null) {
+				LinkCandidate fromCandidate = layer.candidates.get(chosen[i]);
+				LinkCandidate toCandidate = layers.get(i + 1).candidates.get(chosen[i + 1]);
+				ArtificialLink artificialLink = new ArtificialLinkImpl(fromCandidate, toCandidate, 1, CoordUtils.calcEuclideanDistance(fromCandidate.getFromCoord(), toCandidate.getToCoord()));
+				networkLinkIds.add(artificialLink.getId());
+				artificialNetworkLinks.add(artificialLink);
+			} else {
+				for(Link l : links) {
+					networkLinkIds.add(l.getId());
+					if(l instanceof ArtificialLink al) {
+						artificialNetworkLinks.add(al);
+					}
+				}
+			}
+			networkLinkIds.add(leastCostPath.get(i + 1).getLinkId());
+		}
+	}
+
+	private static boolean[] ensureSize(boolean[] array, int size) {
+		return array.length >= size ? array : Arrays.copyOf(array, Math.max(size, 2 * array.length));
+	}
+
+	/**
+	 * Link candidates of one stop and the edges to the next stop.
+	 */
+	private static class Layer {
+
+		private TransitRouteStop transitRouteStop;
+		private final List<LinkCandidate> candidates = new ArrayList<>();
+		private boolean[] sourceCandidates = new boolean[16];
+
+		// edges to the next layer
+		private int nEdges = 0;
+		private int[] edgeFrom = new int[16];
+		private int[] edgeTo = new int[16];
+		private double[] edgeCost = new double[16];
+		@SuppressWarnings("unchecked")
+		private List<Link>[] edgeLinks = new List[16];
+
+		// forward pass
+		private double[] cost;
+		private int[] predecessorEdge;
+
+		/**
+		 * Stops only have a handful of link candidates, a linear scan is cheaper
+		 * than maintaining a map.
+		 */
+		private int getCandidateIndex(LinkCandidate linkCandidate) {
+			int index = candidates.indexOf(linkCandidate);
+			if(index < 0) {
+				index = candidates.size();
+				candidates.add(linkCandidate);
+			}
+			return index;
+		}
+
+		private void addEdge(int from, int to, double cost, List<Link> links) {
+			if(nEdges == edgeFrom.length) {
+				int newLength = 2 * nEdges;
+				edgeFrom = Arrays.copyOf(edgeFrom, newLength);
+				edgeTo = Arrays.copyOf(edgeTo, newLength);
+				edgeCost = Arrays.copyOf(edgeCost, newLength);
+				edgeLinks = Arrays.copyOf(edgeLinks, newLength);
+			}
+			edgeFrom[nEdges] = from;
+			edgeTo[nEdges] = to;
+			edgeCost[nEdges] = cost;
+			edgeLinks[nEdges] = links;
+			nEdges++;
+		}
+
+		private void initCosts() {
+			int n = candidates.size();
+			if(cost == null || cost.length < n) {
+				cost = new double[n];
+				predecessorEdge = new int[n];
+			}
+			Arrays.fill(cost, 0, n, Double.POSITIVE_INFINITY);
+			Arrays.fill(predecessorEdge, 0, n, -1);
+		}
+
+		private void clear() {
+			transitRouteStop = null;
+			candidates.clear();
+			Arrays.fill(edgeLinks, 0, nEdges, null);
+			nEdges = 0;
+		}
+	}
+}
@@ -29,6 +29,7 @@ import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidate;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * @author polettif
@@ -37,8 +38,9 @@ public class PseudoRouteStopImpl implements PseudoRouteStop {
 
 	// dijkstra
 	public final Map<PseudoRouteStop, Double> neighbours = new HashMap<>();
-	// schedule values
-	public final Id<PseudoRouteStop> id;
+	// identification: order of the stop within the route and link candidate (or dummy name)
+	private final int order;
+	private final String dummyName;
 	private final LinkCandidate linkCandidate;
 
 	private final Id<Link> linkId;
@@ -57,8 +59,9 @@ public class PseudoRouteStopImpl implements PseudoRouteStop {
 	 * Constructor. All primitive attribute values of the transitRouteStop are stored
 	 * to make access easier during stop facility replacement.
 	 */
-	/*package*/ PseudoRouteStopImpl(int order, TransitRouteStop routeStop, LinkCandidate linkCandidate) {
-		this.id = Id.create("[" + order + "]" + linkCandidate.toString(), PseudoRouteStop.class);
+	public PseudoRouteStopImpl(int order, TransitRouteStop routeStop, LinkCandidate linkCandidate) {
+		this.order = order;
+		this.dummyName = null;
 		this.linkId = linkCandidate.getLink().getId();
 
 		// stop facility values
@@ -81,11 +84,12 @@ public class PseudoRouteStopImpl implements PseudoRouteStop {
 	 * This constructor is only used to set dummy stops
 	 */
 	public PseudoRouteStopImpl(String id) {
+		this.order = -1;
 		if(id.equals(PseudoGraphImpl.SOURCE)) {
-			this.id = Id.create(PseudoGraphImpl.SOURCE, PseudoRouteStop.class);
+			this.dummyName = PseudoGraphImpl.SOURCE;
 			this.travelCostToSource = 0;
 		} else {
-			this.id = Id.create(PseudoGraphImpl.DESTINATION, PseudoRouteStop.class);
+			this.dummyName = PseudoGraphImpl.DESTINATION;
 		}
 
 		previous = null;
@@ -132,9 +136,13 @@ public class PseudoRouteStopImpl implements PseudoRouteStop {
 	}
 
 
+	/**
+	 * Pseudo route stops are identified by their order and link candidate. The id is
+	 * only created on demand since ids are kept in the global id pool.
+	 */
 	@Override
 	public Id<PseudoRouteStop> getId() {
-		return id;
+		return Id.create(dummyName != null ? dummyName : "[" + order + "]" + linkCandidate.toString(), PseudoRouteStop.class);
 	}
 
 	@Override
@@ -198,7 +206,7 @@ public class PseudoRouteStopImpl implements PseudoRouteStop {
 
 	@Override
 	public String toString() {
-		return facilityName + " " + id;
+		return facilityName + " " + (dummyName != null ? dummyName : "[" + order + "]" + linkCandidate);
 	}
 
 	@Override
@@ -207,11 +215,19 @@ public class PseudoRouteStopImpl implements PseudoRouteStop {
 		if(o == null || getClass() != o.getClass()) return false;
 
 		PseudoRouteStopImpl that = (PseudoRouteStopImpl) o;
-		return getId().equals(that.getId());
+		if(order != that.order) return false;
+		if(dummyName != null || that.dummyName != null) return Objects.equals(dummyName, that.dummyName);
+		return linkId.equals(that.linkId) && linkCandidate.getStop().equals(that.linkCandidate.getStop());
 	}
 
 	@Override
 	public int hashCode() {
-		return getId().hashCode();
+		if(dummyName != null) {
+			return dummyName.hashCode();
+		}
+		int result = order;
+		result = 31 * result + linkId.hashCode();
+		result = 31 * result + linkCandidate.getStop().hashCode();
+		return result;
 	}
 }
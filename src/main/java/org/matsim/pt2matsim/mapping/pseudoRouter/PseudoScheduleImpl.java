@@ -30,8 +30,6 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.lang3.tuple.ImmutableTriple;
-import org.apache.commons.lang3.tuple.Triple;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -85,9 +83,6 @@ public class PseudoScheduleImpl implements PseudoSchedule {
 	        Map<Id<TransitLine>, List<TransitRoute>>    newRoutes     = new HashMap<>();
 	        Map<Id<TransitStopFacility>, Set<Id<TransitStopFacility>>> parentsToChildren
 	            = new HashMap<>();
-	        // Transfer‐time records: (parentFrom, parentTo, seconds)
-	        List<Triple<Id<TransitStopFacility>,Id<TransitStopFacility>,Double>> transfers
-	            = new ArrayList<>();
 	    }
 
 	    // 3) Submit Callable tasks
@@ -149,29 +144,12 @@ public class PseudoScheduleImpl implements PseudoSchedule {
 	                result.newRoutes
 	                      .computeIfAbsent(ptr.getTransitLineId(), id -> new ArrayList<>())
 	                      .add(newRoute);
-
-	                // capture transfer‐time updates for this route’s parent stops
-	                MinimalTransferTimes mtt = schedule.getMinimalTransferTimes();
-	                for (MinimalTransferTimesIterator it = mtt.iterator(); it.hasNext(); ) {
-	                    it.next();
-	                    Id<TransitStopFacility> fromP = it.getFromStopId();
-	                    Id<TransitStopFacility> toP   = it.getToStopId();
-	                    if (result.parentsToChildren.containsKey(fromP) &&
-	                        result.parentsToChildren.containsKey(toP)) {
-	                        double secs = it.getSeconds();
-	                        result.transfers.add(new ImmutableTriple<>(fromP, toP, secs));
-	                    }
-	                }
 	            }
 	            return result;
 	        }));
 	    }
 
-	    exec.shutdown();
-	    exec.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-
 	    Map<Id<TransitStopFacility>, Set<Id<TransitStopFacility>>> globalParentsToChildren = new HashMap<>();
-	    List<Triple<Id<TransitStopFacility>,Id<TransitStopFacility>,Double>> allTransfers = new ArrayList<>();
 
 	    // 4) Merge everything on the main thread
 	    for (Future<ChunkResult> f : futures) {
@@ -196,39 +174,91 @@ public class PseudoScheduleImpl implements PseudoSchedule {
 	            }
 	        }
 
-	     // 4c) Accumulate parents→children and transfer records
-	        // Merge this chunk's parentsToChildren into the global map:
+	        // 4c) Merge this chunk's parentsToChildren into the global map
 	        r.parentsToChildren.forEach((parent, childSet) ->
 	            globalParentsToChildren
 	                .computeIfAbsent(parent, k -> new HashSet<>())
 	                .addAll(childSet)
 	        );
-	        
-	        // Collect all transfer triples:
-	        allTransfers.addAll(r.transfers);
+	    }
+
+	    // 5) Expand the transfer times between parent stops to their child stops. The transfer times
+	    // are scanned once, the child pairs are expanded in parallel batches and written by this thread.
+	    MinimalTransferTimes mtt = schedule.getMinimalTransferTimes();
+	    List<ParentTransfer> parentTransfers = new ArrayList<>();
+	    for (MinimalTransferTimesIterator it = mtt.iterator(); it.hasNext(); ) {
+	        it.next();
+	        Set<Id<TransitStopFacility>> fromChildren = globalParentsToChildren.get(it.getFromStopId());
+	        Set<Id<TransitStopFacility>> toChildren = globalParentsToChildren.get(it.getToStopId());
+	        if (fromChildren != null && toChildren != null) {
+	            parentTransfers.add(new ParentTransfer(fromChildren, toChildren, it.getSeconds()));
+	        }
+	    }
+
+	    List<Future<ChildTransferBatch>> batches = new ArrayList<>();
+	    for (int i = 0; i < parentTransfers.size(); i += chunkSize) {
+	        List<ParentTransfer> batch = parentTransfers.subList(i, Math.min(i + chunkSize, parentTransfers.size()));
+	        batches.add(exec.submit(() -> ChildTransferBatch.expand(batch)));
+	    }
+	    exec.shutdown();
+	    exec.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
 
+	    int nChildTransfers = 0;
+	    for (Future<ChildTransferBatch> f : batches) {
+	        ChildTransferBatch batch = f.get();
+	        for (int i = 0; i < batch.size; i++) {
+	            mtt.set(batch.fromIds[i], batch.toIds[i], batch.seconds[i]);
+	        }
+	        nChildTransfers += batch.size;
 	    }
-	    
-	    MinimalTransferTimesIterator iterator = schedule.getMinimalTransferTimes().iterator();
+	    logger.info("Expanded " + parentTransfers.size() + " parent stop transfer times to " + nChildTransfers + " child stop transfer times");
 
-		while (iterator.hasNext()) {
-			iterator.next();
+	    logger.info("createFacilitiesAndLinkSequences done.");
+	}
 
-			Id<TransitStopFacility> fromId = iterator.getFromStopId();
-			Id<TransitStopFacility> toId = iterator.getToStopId();
+	/**
+	 * A transfer time between two parent stops and the child stops of both.
+	 */
+	private record ParentTransfer(Set<Id<TransitStopFacility>> fromChildren, Set<Id<TransitStopFacility>> toChildren, double seconds) {
+	}
 
-			if (globalParentsToChildren.containsKey(fromId) && globalParentsToChildren.containsKey(toId)) {
-				for (Id<TransitStopFacility> childFromId : globalParentsToChildren.get(fromId)) {
-					for (Id<TransitStopFacility> childToId : globalParentsToChildren.get(toId)) {
-						schedule.getMinimalTransferTimes().set(childFromId, childToId, iterator.getSeconds());
+	/**
+	 * Child stop transfer times of a batch of parent transfers, stored in arrays.
+	 */
+	private static final class ChildTransferBatch {
+
+		private final int size;
+		private final Id<TransitStopFacility>[] fromIds;
+		private final Id<TransitStopFacility>[] toIds;
+		private final double[] seconds;
+
+		@SuppressWarnings("unchecked")
+		private ChildTransferBatch(int size) {
+			this.size = size;
+			this.fromIds = new Id[size];
+			this.toIds = new Id[size];
+			this.seconds = new double[size];
+		}
+
+		private static ChildTransferBatch expand(List<ParentTransfer> parentTransfers) {
+			int size = 0;
+			for (ParentTransfer t : parentTransfers) {
+				size += t.fromChildren().size() * t.toChildren().size();
+			}
+			ChildTransferBatch batch = new ChildTransferBatch(size);
+			int i = 0;
+			for (ParentTransfer t : parentTransfers) {
+				for (Id<TransitStopFacility> childFromId : t.fromChildren()) {
+					for (Id<TransitStopFacility> childToId : t.toChildren()) {
+						batch.fromIds[i] = childFromId;
+						batch.toIds[i] = childToId;
+						batch.seconds[i] = t.seconds();
+						i++;
 					}
 				}
 			}
+			return batch;
 		}
-	    
-
-	    // 5) Finally, log progress or do any single‑threaded cleanup/validation
-	    logger.info("createFacilitiesAndLinkSequences done.");
 	}
 
 }
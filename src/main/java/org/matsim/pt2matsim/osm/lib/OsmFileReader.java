@@ -22,6 +22,7 @@ package org.matsim.pt2matsim.osm.lib;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.core.utils.io.MatsimXmlParser;
 import org.matsim.core.utils.misc.Counter;
+import org.matsim.pt2matsim.jfr.InputReadEvent;
 import org.xml.sax.Attributes;
 
 import java.util.*;
@@ -38,6 +39,7 @@ public class OsmFileReader extends MatsimXmlParser {
 	private ParsedNode currentNode = null;
 	private ParsedWay currentWay = null;
 	private ParsedRelation currentRelation = null;
+	private InputReadEvent readEvent = null;
 
 	public OsmFileReader(OsmData osmData) {
 		super(ValidationType.DTD_OR_XSD);
@@ -82,6 +84,9 @@ public class OsmFileReader extends MatsimXmlParser {
 				}
 				this.currentRelation.members.add(new ParsedRelationMember(type, Long.parseLong(atts.getValue("ref")), StringCache.get(atts.getValue("role"))));
 			}
+		} else if ("osm".equals(name)) {
+			this.readEvent = new InputReadEvent();
+			this.readEvent.begin();
 		}
 	}
 
@@ -104,6 +109,15 @@ public class OsmFileReader extends MatsimXmlParser {
 			this.nodeCounter.printCounter();
 			this.wayCounter.printCounter();
 			this.relationCounter.printCounter();
+			if (this.readEvent != null) {
+				this.readEvent.end();
+				if (this.readEvent.shouldCommit()) {
+					this.readEvent.format = "osm";
+					this.readEvent.elements = this.nodeCounter.getCounter() + this.wayCounter.getCounter() + this.relationCounter.getCounter();
+					this.readEvent.commit();
+				}
+				this.readEvent = null;
+			}
 		}
 	}
 
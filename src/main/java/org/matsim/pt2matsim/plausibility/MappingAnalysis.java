@@ -31,6 +31,7 @@ import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitRoute;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
 import org.matsim.pt2matsim.tools.lib.RouteShape;
+import org.matsim.pt2matsim.tools.lib.ShapeSegmentIndex;
 import org.matsim.pt2matsim.tools.*;
 
 import java.io.FileNotFoundException;
@@ -297,6 +298,7 @@ public class MappingAnalysis {
 		 */
 		private void calcRouteShapeDistances(TransitLine transitLine, TransitRoute transitRoute, RouteShape shape) {
 			List<Link> links = NetworkTools.getLinksFromIds(network, ScheduleTools.getTransitRouteLinkIds(transitRoute));
+			ShapeSegmentIndex shapeIndex = shape.getSegmentIndex();
 			// we need an equivalent number of measurements for the whole transitRoute
 			double lengthOnLink = 0;
 			for(Link link : links) {
@@ -307,7 +309,7 @@ public class MappingAnalysis {
 					Coord currentPoint = CoordTools.calcNewPoint(link.getFromNode().getCoord(), azimuth, lengthOnLink);
 
 					// look for shortest distance to shape
-					double minDistanceToShape = ShapeTools.calcMinDistanceToShape(currentPoint, shape);
+					double minDistanceToShape = shapeIndex.getMinDistance(currentPoint);
 					addMinDistance(transitLine.getId(), transitRoute.getId(), minDistanceToShape);
 					lengthOnLink += MEASURE_INTERVAL;
 				}
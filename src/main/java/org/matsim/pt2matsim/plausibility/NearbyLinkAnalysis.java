@@ -27,6 +27,7 @@ import org.matsim.pt2matsim.tools.CsvTools;
 import org.matsim.pt2matsim.tools.MiscUtils;
 import org.matsim.pt2matsim.tools.NetworkTools;
 import org.matsim.pt2matsim.tools.ScheduleTools;
+import org.matsim.pt2matsim.tools.lib.LinkSegmentIndex;
 
 import java.io.FileNotFoundException;
 import java.io.UnsupportedEncodingException;
@@ -67,8 +68,11 @@ public class NearbyLinkAnalysis {
 
 		PublicTransitMappingConfigGroup config = PublicTransitMappingConfigGroup.createDefaultConfig();
 
+		Map<Set<String>, LinkSegmentIndex> linkSegmentIndices = new HashMap<>();
 		for(PublicTransitStop stop : stops) {
-			Map<Double, Set<Link>> sortedLinks = NetworkTools.findClosestLinks(network, stop.getStopFacility().getCoord(), 500, config.getTransportModeAssignment().get(stop.getMode()));
+			LinkSegmentIndex linkSegmentIndex = linkSegmentIndices.computeIfAbsent(config.getTransportModeAssignment().get(stop.getMode()),
+					modes -> LinkSegmentIndex.create(network, modes));
+			Map<Double, Set<Link>> sortedLinks = linkSegmentIndex.getLinksWithinDistance(stop.getStopFacility().getCoord(), 500);
 			stop.addLinks(sortedLinks);
 		}
 	}
@@ -90,7 +90,13 @@ public final class PublicTransitMapper {
 		PTMapper.mapScheduleToNetwork(schedule, network, config);
 		// or: new PTMapper(schedule, network).run(config);
 
-		// Write the schedule and network to output files (if defined in config)
+		writeOutput(config, schedule, network);
+	}
+
+	/**
+	 * Writes the schedule and network to the output files defined in config (if any).
+	 */
+	static void writeOutput(PublicTransitMappingConfigGroup config, TransitSchedule schedule, Network network) {
 		if(config.getOutputNetworkFile() != null && config.getOutputScheduleFile() != null) {
 			log.info("Writing schedule and network to file...");
 			try {
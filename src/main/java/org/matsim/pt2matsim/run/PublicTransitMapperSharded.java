@@ -0,0 +1,143 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.run;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.mapping.ShardedPTMapper;
+import org.matsim.pt2matsim.tools.NetworkTools;
+import org.matsim.pt2matsim.tools.ScheduleTools;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs the public transit mapping with the pseudo routing phase split over several
+ * local worker processes, see {@link ShardedPTMapper}. The coordinator writes the
+ * transit line ids of each shard to the work directory, starts one worker process
+ * per shard and merges the resulting shard files once all workers have finished.
+ * <p>
+ * The workers are started with the same java executable, class path and JVM
+ * arguments as the coordinator.
+ */
+public final class PublicTransitMapperSharded {
+
+	protected static Logger log = LogManager.getLogger(PublicTransitMapperSharded.class);
+
+	private static final String WORKER = "worker";
+
+	private PublicTransitMapperSharded() {
+	}
+
+	/**
+	 * @param args <br/>[0] PublicTransitMapping config file<br/>
+	 *             [1] number of shards (worker processes)<br/>
+	 *             [2] work directory for the shard files (optional, a temporary directory is used otherwise)<br/>
+	 *             <br/>
+	 *             Worker processes are started with: worker [config file] [line ids file] [shard file]
+	 */
+	public static void main(String[] args) throws InterruptedException, ExecutionException, IOException {
+		if(args.length == 4 && args[0].equals(WORKER)) {
+			runWorker(args[1], Paths.get(args[2]), args[3]);
+		} else if(args.length == 2) {
+			run(args[0], Integer.parseInt(args[1]), Files.createTempDirectory("pt2matsim-shards"));
+		} else if(args.length == 3) {
+			run(args[0], Integer.parseInt(args[1]), Paths.get(args[2]));
+		} else {
+			throw new IllegalArgumentException("Public Transit Mapping config file and number of shards as arguments needed");
+		}
+	}
+
+	/**
+	 * Maps the schedule to the network using nShards worker processes and writes the
+	 * resulting schedule and network to the output files defined in the config.
+	 */
+	public static void run(String configFile, int nShards, Path workDir) throws InterruptedException, ExecutionException, IOException {
+		PublicTransitMappingConfigGroup config = PublicTransitMappingConfigGroup.loadConfig(configFile);
+		TransitSchedule schedule = ScheduleTools.readTransitSchedule(config.getInputScheduleFile());
+		Network network = NetworkTools.readNetwork(config.getInputNetworkFile());
+
+		Files.createDirectories(workDir);
+		List<List<Id<TransitLine>>> shards = ShardedPTMapper.createShards(schedule, nShards);
+		List<String> shardFiles = new ArrayList<>();
+		List<Process> workers = new ArrayList<>();
+		try {
+			startWorkers(configFile, workDir, shards, shardFiles, workers);
+			for(int i = 0; i < workers.size(); i++) {
+				int exitCode = workers.get(i).waitFor();
+				if(exitCode != 0) {
+					throw new RuntimeException("Worker " + i + " failed with exit code " + exitCode);
+				}
+			}
+		} finally {
+			// a failed or interrupted coordinator must not leave workers running
+			for(Process worker : workers) {
+				worker.destroy();
+			}
+		}
+
+		ShardedPTMapper.mapShards(config, schedule, network, shardFiles);
+		PublicTransitMapper.writeOutput(config, schedule, network);
+	}
+
+	private static void startWorkers(String configFile, Path workDir, List<List<Id<TransitLine>>> shards,
+			List<String> shardFiles, List<Process> workers) throws IOException {
+		for(int i = 0; i < shards.size(); i++) {
+			Path linesFile = workDir.resolve("shard-" + i + ".lines");
+			Path shardFile = workDir.resolve("shard-" + i + ".pseudo");
+			ShardedPTMapper.writeLineIds(shards.get(i), linesFile);
+			Files.deleteIfExists(shardFile);
+			shardFiles.add(shardFile.toString());
+
+			List<String> command = new ArrayList<>();
+			command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+			command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(PublicTransitMapperSharded.class.getName());
+			command.add(WORKER);
+			command.add(new File(configFile).getAbsolutePath());
+			command.add(linesFile.toAbsolutePath().toString());
+			command.add(shardFile.toAbsolutePath().toString());
+
+			log.info("Starting worker " + i + " for " + shards.get(i).size() + " transit lines");
+			workers.add(new ProcessBuilder(command).inheritIO().start());
+		}
+	}
+
+	private static void runWorker(String configFile, Path linesFile, String shardFile) throws InterruptedException, ExecutionException {
+		PublicTransitMappingConfigGroup config = PublicTransitMappingConfigGroup.loadConfig(configFile);
+		TransitSchedule schedule = ScheduleTools.readTransitSchedule(config.getInputScheduleFile());
+		Network network = NetworkTools.readNetwork(config.getInputNetworkFile());
+		ShardedPTMapper.runWorker(config, schedule, network, ShardedPTMapper.readLineIds(linesFile), shardFile);
+	}
+}
@@ -59,6 +59,7 @@ import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
 import org.matsim.pt2matsim.config.TransportModeParameterSet;
 import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRoutersFactory;
 import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRoutersStandard;
+import org.matsim.pt2matsim.tools.lib.LinkSegmentIndex;
 import org.matsim.utils.objectattributes.attributable.AttributesUtils;
 
 /**
@@ -153,6 +154,26 @@ public final class NetworkTools {
 	}
 
 
+	/**
+	 * Returns the nearest link for the given coordinate using a {@link LinkSegmentIndex}. If there
+	 * are two opposite links, the link with the coordinate on its right side is returned.
+	 *
+	 * @return <tt>null</tt> if the index contains no links
+	 */
+	public static Link getNearestLink(LinkSegmentIndex linkSegmentIndex, Coord coord) {
+		Link closestLink = linkSegmentIndex.getNearestLink(coord);
+		if(closestLink == null) {
+			return null;
+		}
+		Link oppositeLink = getOppositeLink(closestLink);
+		if(oppositeLink != null && !coordIsOnRightSideOfLink(coord, closestLink)) {
+			return oppositeLink;
+		} else {
+			return closestLink;
+		}
+	}
+
+
 	/**
 	 * Looks for nodes within search radius of <tt>coord</tt> (using {@link NetworkUtils#getNearestNodes},
 	 * fetches all in- and outlinks and sorts them ascending by their
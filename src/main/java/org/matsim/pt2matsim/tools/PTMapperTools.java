@@ -38,6 +38,12 @@ import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidate;
 import org.matsim.pt2matsim.mapping.pseudoRouter.ArtificialLinkImpl;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 /**
@@ -105,65 +111,139 @@ public final class PTMapperTools {
 		int nPulled = 0;
 		for(TransitLine line : schedule.getTransitLines().values()) {
 			for(TransitRoute transitRoute : line.getRoutes().values()) {
-				boolean hasStopLoop = ScheduleTools.routeHasStopSequenceLoop(transitRoute);
-				if(transitRoute.getRoute() != null && !hasStopLoop) {
-					TransitRouteStop currentStop;
-					List<TransitRouteStop> routeStops = transitRoute.getStops();
-
-					Iterator<TransitRouteStop> stopsIterator = routeStops.iterator();
+				nPulled += pullChildStopFacilitiesTogether(transitRoute, network, (stopFacility, link) -> getOrCreateChildStopFacility(schedule, stopFacility, link));
+			}
+		}
+		return nPulled;
+	}
 
-					List<Id<Link>> linkIdList = ScheduleTools.getTransitRouteLinkIds(transitRoute);
-					List<Link> linkList = NetworkTools.getLinksFromIds(network, linkIdList);
+	/**
+	 * Repeats {@link #pullChildStopFacilitiesTogether(TransitSchedule, Network)} until no child stop
+	 * facility is pulled anymore. A route's pulls only depend on its own stops and links, so a route
+	 * without pulls stays unchanged: after the first pass, only routes that changed in the previous
+	 * pass are examined again. The routes of a pass are processed in parallel. New child stop facilities
+	 * are added to the schedule after each pass, in the order a sequential pass would have created them.
+	 *
+	 * @return the number of passes
+	 */
+	public static int pullChildStopFacilitiesToFixpoint(TransitSchedule schedule, Network network, int numThreads) throws InterruptedException, ExecutionException {
+		List<TransitRoute> worklist = new ArrayList<>();
+		for(TransitLine line : schedule.getTransitLines().values()) {
+			worklist.addAll(line.getRoutes().values());
+		}
 
-					currentStop = stopsIterator.next();
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		int nPasses = 0;
+		try {
+			while(!worklist.isEmpty()) {
+				nPasses++;
+				// the schedule's facilities are only read during a pass, facilities created by the pass are shared here
+				Map<Id<TransitStopFacility>, TransitStopFacility> newFacilities = new ConcurrentHashMap<>();
+				List<Future<List<TransitStopFacility>>> futures = new ArrayList<>(worklist.size());
+				for(TransitRoute transitRoute : worklist) {
+					futures.add(executor.submit(() -> {
+						List<TransitStopFacility> pulledTo = new ArrayList<>();
+						pullChildStopFacilitiesTogether(transitRoute, network, (stopFacility, link) -> {
+							Id<TransitStopFacility> childId = ScheduleTools.createChildStopFacilityId(ScheduleTools.createParentStopFacilityId(stopFacility), link.getId());
+							TransitStopFacility child = schedule.getFacilities().get(childId);
+							if(child == null) {
+								child = newFacilities.computeIfAbsent(childId, id -> createChildStopFacility(schedule, id, stopFacility, link));
+							}
+							pulledTo.add(child);
+							return child;
+						});
+						return pulledTo;
+					}));
+				}
 
-					// look for a closer link before the route's start
-					// only use links with closer fromNodes
-					Set<Link> inlinksWithSameMode = NetworkTools.filterLinkSetExactlyByModes(linkList.get(0).getFromNode().getInLinks().values(), linkList.get(0).getAllowedModes());
-					double firstDist = CoordUtils.calcEuclideanDistance(currentStop.getStopFacility().getCoord(), linkList.get(0).getFromNode().getCoord());
-					for(Link l : new HashSet<>(inlinksWithSameMode)) {
-						if(CoordUtils.calcEuclideanDistance(l.getFromNode().getCoord(), currentStop.getStopFacility().getCoord()) > firstDist) {
-							inlinksWithSameMode.remove(l);
+				List<TransitRoute> changed = new ArrayList<>();
+				int nPulled = 0;
+				for(int i = 0; i < worklist.size(); i++) {
+					List<TransitStopFacility> pulledTo = futures.get(i).get();
+					if(!pulledTo.isEmpty()) {
+						changed.add(worklist.get(i));
+						nPulled += pulledTo.size();
+						for(TransitStopFacility child : pulledTo) {
+							if(!schedule.getFacilities().containsKey(child.getId())) {
+								schedule.addStopFacility(child);
+							}
 						}
 					}
-					Id<Link> closerLinkBefore = useCloserRefLinkForChildStopFacility(schedule, network, transitRoute, currentStop.getStopFacility(), inlinksWithSameMode);
-					if(closerLinkBefore != null) {
-						linkIdList.add(0, closerLinkBefore);
-						nPulled++;
-					}
-					currentStop = stopsIterator.next();
+				}
+				log.info(String.format("PullChildStopFacilities pass %d: %d routes examined, %d child stop facilities pulled", nPasses, worklist.size(), nPulled));
+				worklist = changed;
+			}
+		} finally {
+			executor.shutdown();
+		}
+		return nPasses;
+	}
 
-					// optimize referenced links between start and end
-					for(int i = 1; i < linkList.size() - 1; i++) {
-						if(linkList.get(i).getId().equals(currentStop.getStopFacility().getLinkId())) {
-							Set<Link> testSet = new HashSet<>();
-							if(!(linkList.get(i) instanceof ArtificialLinkImpl)) testSet.add(linkList.get(i));
-							if(!(linkList.get(i - 1) instanceof ArtificialLinkImpl)) testSet.add(linkList.get(i - 1));
-							if(!(linkList.get(i + 1) instanceof ArtificialLinkImpl)) testSet.add(linkList.get(i + 1));
+	/**
+	 * Pulls the child stop facilities of a single transit route.
+	 *
+	 * @param childStopFacilities returns the child stop facility of the (parent of the) given facility with the given link
+	 * @return the number of child stop facilities pulled
+	 */
+	private static int pullChildStopFacilitiesTogether(TransitRoute transitRoute, Network network, BiFunction<TransitStopFacility, Link, TransitStopFacility> childStopFacilities) {
+		int nPulled = 0;
+		boolean hasStopLoop = ScheduleTools.routeHasStopSequenceLoop(transitRoute);
+		if(transitRoute.getRoute() != null && !hasStopLoop) {
+			TransitRouteStop currentStop;
+			List<TransitRouteStop> routeStops = transitRoute.getStops();
 
-							Id<Link> check = useCloserRefLinkForChildStopFacility(schedule, network, transitRoute, currentStop.getStopFacility(), testSet);
+			Iterator<TransitRouteStop> stopsIterator = routeStops.iterator();
 
-							if(check != null) nPulled++;
+			List<Id<Link>> linkIdList = ScheduleTools.getTransitRouteLinkIds(transitRoute);
+			List<Link> linkList = NetworkTools.getLinksFromIds(network, linkIdList);
 
-							if(stopsIterator.hasNext()) {
-								currentStop = stopsIterator.next();
-							}
-						}
-					}
+			currentStop = stopsIterator.next();
 
-					// look for a closer link after the route's end
-					currentStop = routeStops.get(routeStops.size() - 1);
-					Set<Link> outlinksWithSameMode = NetworkTools.filterLinkSetExactlyByModes(linkList.get(linkList.size() - 1).getToNode().getOutLinks().values(), linkList.get(linkList.size() - 1).getAllowedModes());
-					Id<Link> closerLinkAfter = useCloserRefLinkForChildStopFacility(schedule, network, transitRoute, currentStop.getStopFacility(), outlinksWithSameMode);
-					if(closerLinkAfter != null) {
-						linkIdList.add(closerLinkAfter);
-						nPulled++;
-					}
+			// look for a closer link before the route's start
+			// only use links with closer fromNodes
+			Set<Link> inlinksWithSameMode = NetworkTools.filterLinkSetExactlyByModes(linkList.get(0).getFromNode().getInLinks().values(), linkList.get(0).getAllowedModes());
+			double firstDist = CoordUtils.calcEuclideanDistance(currentStop.getStopFacility().getCoord(), linkList.get(0).getFromNode().getCoord());
+			for(Link l : new HashSet<>(inlinksWithSameMode)) {
+				if(CoordUtils.calcEuclideanDistance(l.getFromNode().getCoord(), currentStop.getStopFacility().getCoord()) > firstDist) {
+					inlinksWithSameMode.remove(l);
+				}
+			}
+			Id<Link> closerLinkBefore = useCloserRefLinkForChildStopFacility(network, transitRoute, currentStop.getStopFacility(), inlinksWithSameMode, childStopFacilities);
+			if(closerLinkBefore != null) {
+				linkIdList.add(0, closerLinkBefore);
+				nPulled++;
+			}
+			currentStop = stopsIterator.next();
 
-					// set the new link list
-					transitRoute.setRoute(RouteUtils.createNetworkRoute(linkIdList));
+			// optimize referenced links between start and end
+			for(int i = 1; i < linkList.size() - 1; i++) {
+				if(linkList.get(i).getId().equals(currentStop.getStopFacility().getLinkId())) {
+					Set<Link> testSet = new HashSet<>();
+					if(!(linkList.get(i) instanceof ArtificialLinkImpl)) testSet.add(linkList.get(i));
+					if(!(linkList.get(i - 1) instanceof ArtificialLinkImpl)) testSet.add(linkList.get(i - 1));
+					if(!(linkList.get(i + 1) instanceof ArtificialLinkImpl)) testSet.add(linkList.get(i + 1));
+
+					Id<Link> check = useCloserRefLinkForChildStopFacility(network, transitRoute, currentStop.getStopFacility(), testSet, childStopFacilities);
+
+					if(check != null) nPulled++;
+
+					if(stopsIterator.hasNext()) {
+						currentStop = stopsIterator.next();
+					}
 				}
 			}
+
+			// look for a closer link after the route's end
+			currentStop = routeStops.get(routeStops.size() - 1);
+			Set<Link> outlinksWithSameMode = NetworkTools.filterLinkSetExactlyByModes(linkList.get(linkList.size() - 1).getToNode().getOutLinks().values(), linkList.get(linkList.size() - 1).getAllowedModes());
+			Id<Link> closerLinkAfter = useCloserRefLinkForChildStopFacility(network, transitRoute, currentStop.getStopFacility(), outlinksWithSameMode, childStopFacilities);
+			if(closerLinkAfter != null) {
+				linkIdList.add(closerLinkAfter);
+				nPulled++;
+			}
+
+			// set the new link list
+			transitRoute.setRoute(RouteUtils.createNetworkRoute(linkIdList));
 		}
 		return nPulled;
 	}
@@ -176,7 +256,7 @@ public final class PTMapperTools {
 	 * @return The id of the new closest link or <tt>null</tt> if the existing ref link
 	 * was used.
 	 */
-	private static Id<Link> useCloserRefLinkForChildStopFacility(TransitSchedule schedule, Network network, TransitRoute transitRoute, TransitStopFacility stopFacility, Collection<? extends Link> comparingLinks) {
+	private static Id<Link> useCloserRefLinkForChildStopFacility(Network network, TransitRoute transitRoute, TransitStopFacility stopFacility, Collection<? extends Link> comparingLinks, BiFunction<TransitStopFacility, Link, TransitStopFacility> childStopFacilities) {
 		// check if previous link is closer to stop facility
 		double minDist = CoordTools.distanceStopFacilityToLink(stopFacility, network.getLinks().get(stopFacility.getLinkId()));
 		Link minLink = null;
@@ -190,18 +270,7 @@ public final class PTMapperTools {
 		}
 
 		if(minLink != null) {
-			TransitStopFacility newChildStopFacility;
-			Id<TransitStopFacility> parentId = ScheduleTools.createParentStopFacilityId(stopFacility);
-			Id<TransitStopFacility> newChildStopFacilityId = ScheduleTools.createChildStopFacilityId(parentId, minLink.getId());
-			if(schedule.getFacilities().containsKey(newChildStopFacilityId)) {
-				newChildStopFacility = schedule.getFacilities().get(newChildStopFacilityId);
-			} else {
-				newChildStopFacility = schedule.getFactory().createTransitStopFacility(newChildStopFacilityId, stopFacility.getCoord(), false);
-				newChildStopFacility.setName(stopFacility.getName());
-				newChildStopFacility.setStopAreaId(stopFacility.getStopAreaId());
-				newChildStopFacility.setLinkId(minLink.getId());
-				schedule.addStopFacility(newChildStopFacility);
-			}
+			TransitStopFacility newChildStopFacility = childStopFacilities.apply(stopFacility, minLink);
 			transitRoute.getStop(stopFacility).setStopFacility(newChildStopFacility);
 			return minLink.getId();
 		} else {
@@ -209,6 +278,25 @@ public final class PTMapperTools {
 		}
 	}
 
+	private static TransitStopFacility getOrCreateChildStopFacility(TransitSchedule schedule, TransitStopFacility stopFacility, Link link) {
+		Id<TransitStopFacility> parentId = ScheduleTools.createParentStopFacilityId(stopFacility);
+		Id<TransitStopFacility> newChildStopFacilityId = ScheduleTools.createChildStopFacilityId(parentId, link.getId());
+		TransitStopFacility newChildStopFacility = schedule.getFacilities().get(newChildStopFacilityId);
+		if(newChildStopFacility == null) {
+			newChildStopFacility = createChildStopFacility(schedule, newChildStopFacilityId, stopFacility, link);
+			schedule.addStopFacility(newChildStopFacility);
+		}
+		return newChildStopFacility;
+	}
+
+	private static TransitStopFacility createChildStopFacility(TransitSchedule schedule, Id<TransitStopFacility> childId, TransitStopFacility stopFacility, Link link) {
+		TransitStopFacility newChildStopFacility = schedule.getFactory().createTransitStopFacility(childId, stopFacility.getCoord(), false);
+		newChildStopFacility.setName(stopFacility.getName());
+		newChildStopFacility.setStopAreaId(stopFacility.getStopAreaId());
+		newChildStopFacility.setLinkId(link.getId());
+		return newChildStopFacility;
+	}
+
 	public static void setLogLevels() {
 		Configurator.setLevel(LogManager.getLogger(org.matsim.core.router.Dijkstra.class).getName(), Level.ERROR); // suppress no route found warnings
 		Configurator.setLevel(LogManager.getLogger(Network.class).getName(), Level.WARN);
@@ -289,6 +377,22 @@ public final class PTMapperTools {
 	 * Adds transfers for all child stop facilities
 	 */
 	public static void addTransfersForChildStopFacilities(TransitSchedule schedule) {
+		addTransfersForChildStopFacilities(schedule, PublicTransitMappingConfigGroup.ChildStopTransfers.allPairs);
+	}
+
+	/**
+	 * Adds transfers between the child stop facilities of each parent stop.
+	 * <ul>
+	 *     <li>{@link PublicTransitMappingConfigGroup.ChildStopTransfers#allPairs allPairs}: a minimal transfer time of 0
+	 *     for every ordered pair of child stop facilities</li>
+	 *     <li>{@link PublicTransitMappingConfigGroup.ChildStopTransfers#stopArea stopArea}: child stop facilities served
+	 *     by a transit route without a stop area are assigned to the stop area with the parent stop's id. No minimal
+	 *     transfer times are added, the size is linear in the number of child stop facilities.</li>
+	 * </ul>
+	 *
+	 * @return the number of minimal transfer time entries added
+	 */
+	public static int addTransfersForChildStopFacilities(TransitSchedule schedule, PublicTransitMappingConfigGroup.ChildStopTransfers childStopTransfers) {
 		Map<Id<TransitStopFacility>, Set<TransitStopFacility>> parentChilds = new HashMap<>();
 
 		for(TransitStopFacility transitStopFacility : schedule.getFacilities().values()) {
@@ -296,15 +400,48 @@ public final class PTMapperTools {
 			childSet.add(transitStopFacility);
 		}
 
-		MinimalTransferTimes mininmalTransferTimes = schedule.getMinimalTransferTimes();
+		long nAllPairs = 0;
 		for(Set<TransitStopFacility> entry : parentChilds.values()) {
-			for(TransitStopFacility from : entry) {
-				for(TransitStopFacility to : entry) {
-					if(!from.equals(to)) {
-						mininmalTransferTimes.set(from.getId(), to.getId(), 0);
+			nAllPairs += (long) entry.size() * (entry.size() - 1);
+		}
+
+		int nEntries = 0;
+		if(childStopTransfers == PublicTransitMappingConfigGroup.ChildStopTransfers.stopArea) {
+			Set<TransitStopFacility> served = new HashSet<>();
+			for(TransitLine transitLine : schedule.getTransitLines().values()) {
+				for(TransitRoute transitRoute : transitLine.getRoutes().values()) {
+					for(TransitRouteStop routeStop : transitRoute.getStops()) {
+						served.add(routeStop.getStopFacility());
+					}
+				}
+			}
+			int nAssigned = 0;
+			for(Map.Entry<Id<TransitStopFacility>, Set<TransitStopFacility>> entry : parentChilds.entrySet()) {
+				if(entry.getValue().size() > 1) {
+					Id<TransitStopArea> stopAreaId = Id.create(entry.getKey(), TransitStopArea.class);
+					for(TransitStopFacility child : entry.getValue()) {
+						if(served.contains(child) && child.getStopAreaId() == null) {
+							child.setStopAreaId(stopAreaId);
+							nAssigned++;
+						}
+					}
+				}
+			}
+			log.info(nAssigned + " child stop facilities assigned to the stop area of their parent stop");
+		} else {
+			MinimalTransferTimes mininmalTransferTimes = schedule.getMinimalTransferTimes();
+			for(Set<TransitStopFacility> entry : parentChilds.values()) {
+				for(TransitStopFacility from : entry) {
+					for(TransitStopFacility to : entry) {
+						if(!from.equals(to)) {
+							mininmalTransferTimes.set(from.getId(), to.getId(), 0);
+							nEntries++;
+						}
 					}
 				}
 			}
 		}
+		log.info(String.format("Child stop transfers (%s): %d minimal transfer time entries added, %d saved compared to all pairs", childStopTransfers, nEntries, nAllPairs - nEntries));
+		return nEntries;
 	}
-}
\ No newline at end of file
+}
@@ -28,7 +28,6 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.Node;
-import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.utils.geometry.CoordUtils;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
 import org.matsim.core.utils.geometry.geotools.MGC;
@@ -41,6 +40,7 @@ import org.matsim.pt2matsim.gtfs.lib.GtfsDefinitions;
 import org.matsim.pt2matsim.gtfs.lib.GtfsShape;
 import org.matsim.pt2matsim.gtfs.lib.Route;
 import org.matsim.pt2matsim.gtfs.lib.Trip;
+import org.matsim.pt2matsim.tools.lib.NetworkNodeIndex;
 import org.matsim.pt2matsim.tools.lib.RouteShape;
 
 import java.io.FileNotFoundException;
@@ -59,18 +59,11 @@ public final class ShapeTools {
 
 	/**
 	 * Calculates the minimal distance from a point to a given routeShape
+	 *
+	 * @see RouteShape#getSegmentIndex()
 	 */
 	public static double calcMinDistanceToShape(Coord point, RouteShape shape) {
-		List<Coord> shapePoints = new ArrayList<>(shape.getCoordsSorted().values());
-		double minDist = Double.MAX_VALUE;
-		// look for the minimal distance between the current point and all pairs of shape points
-		for(int i = 0; i < shapePoints.size() - 1; i++) {
-			double dist = CoordUtils.distancePointLinesegment(shapePoints.get(i), shapePoints.get(i + 1), point);
-			if(dist < minDist) {
-				minDist = dist;
-			}
-		}
-		return minDist;
+		return shape.getSegmentIndex().getMinDistance(point);
 	}
 
 	/**
@@ -78,15 +71,7 @@ public final class ShapeTools {
 	 * average distance of the the two link nodes and the center of the link.
 	 */
 	public static double calcMinDistanceToShape(Link link, RouteShape shape) {
-		Coord c1 = link.getFromNode().getCoord();
-		Coord c2 = link.getToNode().getCoord();
-		Coord c3 = CoordUtils.getCenter(c1, c2);
-
-		double dist1 = ShapeTools.calcMinDistanceToShape(c1, shape);
-		double dist2 = ShapeTools.calcMinDistanceToShape(c2, shape);
-		double dist3 = ShapeTools.calcMinDistanceToShape(c3, shape);
-
-		return (dist1 + dist2 + dist3) / 3.0;
+		return shape.getSegmentIndex().getMinDistance(link);
 	}
 
 	/**
@@ -119,32 +104,19 @@ public final class ShapeTools {
 	}
 
 	/**
-	 * @return all nodes within a buffer distance from the shape
+	 * @return all nodes within a buffer distance from the shape. Creates a {@link NetworkNodeIndex}
+	 * of the network, use {@link NetworkNodeIndex#getNodesWithinBuffer} directly for repeated queries.
 	 */
 	public static Collection<Node> getNodesWithinBuffer(Network network, RouteShape shape, double buffer) {
-		Set<Node> nodesWithinBuffer = new HashSet<>();
-
-		List<Coord> coords = shape.getCoords();
-
-		for(int i = 0; i < coords.size() - 1; i++) {
-			Coord current = coords.get(i);
-			Coord next = coords.get(i + 1);
-
-			double dist = 0;
-			double delta = buffer / 2;
-			double maxDist = CoordUtils.calcEuclideanDistance(current, next);
-			double az = CoordTools.getAzimuth(current, next);
-			do {
-				nodesWithinBuffer.addAll(NetworkUtils.getNearestNodes(network, CoordTools.calcNewPoint(current, az, dist), buffer));
-				dist += delta;
-			} while(dist < maxDist);
+		NetworkNodeIndex nodeIndex = new NetworkNodeIndex(network);
+		BitSet nodeIndices = nodeIndex.getNodesWithinBuffer(shape.getCoords(), buffer);
+		List<Node> nodesWithinBuffer = new ArrayList<>(nodeIndices.cardinality());
+		for(int i = nodeIndices.nextSetBit(0); i >= 0; i = nodeIndices.nextSetBit(i + 1)) {
+			nodesWithinBuffer.add(nodeIndex.getNode(i));
 		}
-		nodesWithinBuffer.addAll(NetworkUtils.getNearestNodes(network, coords.get(coords.size() - 1), buffer));
-
 		return nodesWithinBuffer;
 	}
 
-
 	/**
 	 * @return the length of a shape (sum of all its segment lengths)
 	 */
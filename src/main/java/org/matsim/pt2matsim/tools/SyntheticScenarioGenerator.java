@@ -0,0 +1,497 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.tools;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.pt2matsim.gtfs.lib.GtfsShape;
+import org.matsim.pt2matsim.tools.lib.RouteShape;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates a synthetic network and an unmapped transit schedule to test and benchmark
+ * the mapping at scales the fixtures do not reach. The output only depends on the
+ * parameters and the seed.
+ * <p>
+ * The network is a grid of streets (car) where every n-th row and column is an arterial
+ * (car, bus) and every m-th row and column has rail tracks. The {@link Layout#organic}
+ * layout displaces the nodes and removes some of the local streets. Transit lines are
+ * random walks along the arterials or rail tracks with stops placed at a mean spacing.
+ * Stop coordinates are distorted by GPS noise. Each line has a route in both directions,
+ * shapes of the routes (without noise) can be created as well.
+ */
+public class SyntheticScenarioGenerator {
+
+	protected static Logger log = LogManager.getLogger(SyntheticScenarioGenerator.class);
+
+	public enum Layout {grid, organic}
+
+	/** grid size and number of lines of {@link #createScaled(double, long)} with factor 1 */
+	private static final int BASE_GRID_SIZE = 30;
+	private static final int BASE_N_LINES = 10;
+
+	private static final String BUS = "bus";
+	private static final String RAIL = "rail";
+
+	private static final int EAST = 0;
+	private static final int NORTH = 1;
+	private static final int WEST = 2;
+	private static final int SOUTH = 3;
+
+	private long seed = 4711;
+	private Layout layout = Layout.grid;
+	private int gridSize = BASE_GRID_SIZE;
+	private double linkLength = 200;
+	private int arterialInterval = 5;
+	private int railInterval = 10;
+	private double nodeDisplacement = 0.3;
+	private double localStreetRemoval = 0.1;
+
+	private int nLines = BASE_N_LINES;
+	private double railLineShare = 0.2;
+	private double stopSpacing = 400;
+	private double gpsNoise = 10;
+	private double turnProbability = 0.2;
+	private double meanRouteStops = 15;
+	private double routeStopsStdDev = 5;
+	private int departuresPerRoute = 3;
+	private boolean createShapes = false;
+
+	private Network network;
+	private TransitSchedule schedule;
+	private Map<Id<RouteShape>, RouteShape> shapes;
+
+	// grid state while generating
+	private Random random;
+	private double[] nodeX;
+	private double[] nodeY;
+	private Node[] nodes;
+
+	/**
+	 * @return a generator whose network has about <tt>factor</tt> times the links and
+	 * whose schedule has <tt>factor</tt> times the lines of the base scenario
+	 * (a grid with 30x30 nodes and 10 lines).
+	 */
+	public static SyntheticScenarioGenerator createScaled(double factor, long seed) {
+		SyntheticScenarioGenerator generator = new SyntheticScenarioGenerator();
+		generator.setSeed(seed);
+		generator.setGridSize((int) Math.max(2, Math.round(BASE_GRID_SIZE * Math.sqrt(factor))));
+		generator.setNumberOfLines((int) Math.max(1, Math.round(BASE_N_LINES * factor)));
+		return generator;
+	}
+
+	/**
+	 * Generates network, schedule and shapes.
+	 */
+	public void generate() {
+		random = new Random(seed);
+		network = NetworkTools.createNetwork();
+		schedule = ScheduleTools.createSchedule();
+		shapes = new HashMap<>();
+
+		createNetwork();
+		createSchedule();
+
+		// only the network and schedule are kept
+		nodeX = null;
+		nodeY = null;
+		nodes = null;
+
+		log.info("Synthetic scenario: " + network.getNodes().size() + " nodes, " + network.getLinks().size() + " links, "
+				+ schedule.getTransitLines().size() + " transit lines, " + schedule.getFacilities().size() + " stop facilities");
+	}
+
+	private void createNetwork() {
+		int n = gridSize;
+		nodeX = new double[n * n];
+		nodeY = new double[n * n];
+		nodes = new Node[n * n];
+
+		NetworkFactory fac = network.getFactory();
+		double maxDisplacement = layout == Layout.organic ? nodeDisplacement * linkLength : 0;
+		for(int row = 0; row < n; row++) {
+			for(int col = 0; col < n; col++) {
+				int k = row * n + col;
+				nodeX[k] = col * linkLength + (2 * random.nextDouble() - 1) * maxDisplacement;
+				nodeY[k] = row * linkLength + (2 * random.nextDouble() - 1) * maxDisplacement;
+				nodes[k] = fac.createNode(Id.createNodeId(k), new Coord(nodeX[k], nodeY[k]));
+				network.addNode(nodes[k]);
+			}
+		}
+
+		Set<String> carModes = Set.of(TransportMode.car);
+		Set<String> arterialModes = Set.of(TransportMode.car, BUS);
+		Set<String> railModes = Set.of(RAIL);
+		for(int row = 0; row < n; row++) {
+			for(int col = 0; col < n; col++) {
+				int k = row * n + col;
+				if(col < n - 1) {
+					boolean arterial = isOnLine(row, arterialInterval);
+					if(arterial || !removeLocalStreet()) {
+						addStreet(k, k + 1, arterial ? arterialModes : carModes, arterial);
+					}
+					if(isOnLine(row, railInterval)) {
+						addRailTrack(k, k + 1, railModes);
+					}
+				}
+				if(row < n - 1) {
+					boolean arterial = isOnLine(col, arterialInterval);
+					if(arterial || !removeLocalStreet()) {
+						addStreet(k, k + n, arterial ? arterialModes : carModes, arterial);
+					}
+					if(isOnLine(col, railInterval)) {
+						addRailTrack(k, k + n, railModes);
+					}
+				}
+			}
+		}
+	}
+
+	private boolean removeLocalStreet() {
+		return layout == Layout.organic && random.nextDouble() < localStreetRemoval;
+	}
+
+	private static boolean isOnLine(int index, int interval) {
+		return interval > 0 && index % interval == 0;
+	}
+
+	private void addStreet(int a, int b, Set<String> modes, boolean arterial) {
+		double freespeed = arterial ? 50 / 3.6 : 30 / 3.6;
+		double capacity = arterial ? 1200 : 600;
+		double lanes = arterial ? 2 : 1;
+		addLink(Id.createLinkId(a + "_" + b), a, b, modes, freespeed, capacity, lanes);
+		addLink(Id.createLinkId(b + "_" + a), b, a, modes, freespeed, capacity, lanes);
+	}
+
+	private void addRailTrack(int a, int b, Set<String> modes) {
+		addLink(Id.createLinkId("rail_" + a + "_" + b), a, b, modes, 80 / 3.6, 9999, 1);
+		addLink(Id.createLinkId("rail_" + b + "_" + a), b, a, modes, 80 / 3.6, 9999, 1);
+	}
+
+	private void addLink(Id<Link> id, int from, int to, Set<String> modes, double freespeed, double capacity, double lanes) {
+		Link link = network.getFactory().createLink(id, nodes[from], nodes[to]);
+		link.setLength(CoordUtils.calcEuclideanDistance(nodes[from].getCoord(), nodes[to].getCoord()));
+		link.setAllowedModes(modes);
+		link.setFreespeed(freespeed);
+		link.setCapacity(capacity);
+		link.setNumberOfLanes(lanes);
+		network.addLink(link);
+	}
+
+	private void createSchedule() {
+		TransitScheduleFactory fac = schedule.getFactory();
+		for(int l = 0; l < nLines; l++) {
+			boolean rail = railInterval > 0 && random.nextDouble() < railLineShare;
+			String mode = rail ? RAIL : BUS;
+			int interval = rail ? railInterval : arterialInterval;
+			double speed = rail ? 60 / 3.6 : 25 / 3.6;
+
+			List<Coord> path = createPath(interval, sampleRouteStops());
+			List<Coord> stopCoords = placeStops(path);
+
+			TransitLine line = fac.createTransitLine(Id.create("line" + l, TransitLine.class));
+			line.addRoute(createRoute(line, "H", path, stopCoords, mode, speed));
+			line.addRoute(createRoute(line, "R", path.reversed(), stopCoords.reversed(), mode, speed));
+			schedule.addTransitLine(line);
+		}
+	}
+
+	/**
+	 * Samples the number of stops from a log-normal distribution with the given mean and standard deviation.
+	 */
+	private int sampleRouteStops() {
+		double variance = routeStopsStdDev * routeStopsStdDev;
+		double sigma2 = Math.log(1 + variance / (meanRouteStops * meanRouteStops));
+		double mu = Math.log(meanRouteStops) - sigma2 / 2;
+		return (int) Math.max(2, Math.round(Math.exp(mu + Math.sqrt(sigma2) * random.nextGaussian())));
+	}
+
+	/**
+	 * Random walk along the grid lines with the given interval (arterials or rail tracks) until the path is long
+	 * enough for the given number of stops. Walks go straight unless they turn at an intersection or reach the
+	 * border of the grid.
+	 *
+	 * @return the coordinates of the path's nodes
+	 */
+	private List<Coord> createPath(int interval, int nStops) {
+		int n = gridSize;
+		int nGridLines = (n - 1) / interval + 1;
+		int current;
+		int direction;
+		if(random.nextBoolean()) {
+			current = interval * random.nextInt(nGridLines) * n + random.nextInt(n);
+			direction = random.nextBoolean() ? EAST : WEST;
+		} else {
+			current = random.nextInt(n) * n + interval * random.nextInt(nGridLines);
+			direction = random.nextBoolean() ? NORTH : SOUTH;
+		}
+
+		List<Coord> path = new ArrayList<>();
+		path.add(new Coord(nodeX[current], nodeY[current]));
+		double length = 0;
+		double targetLength = (nStops - 1) * stopSpacing;
+		while(length < targetLength) {
+			direction = chooseDirection(current, direction, interval);
+			int next = getNeighbour(current, direction);
+			length += CoordUtils.calcEuclideanDistance(path.getLast(), new Coord(nodeX[next], nodeY[next]));
+			path.add(new Coord(nodeX[next], nodeY[next]));
+			current = next;
+		}
+		return path;
+	}
+
+	private int chooseDirection(int node, int direction, int interval) {
+		boolean straight = canMove(node, direction, interval);
+		if(straight && random.nextDouble() >= turnProbability) {
+			return direction;
+		}
+		List<Integer> turns = new ArrayList<>(2);
+		for(int turn : new int[]{(direction + 1) % 4, (direction + 3) % 4}) {
+			if(canMove(node, turn, interval)) {
+				turns.add(turn);
+			}
+		}
+		if(!turns.isEmpty()) {
+			return turns.get(random.nextInt(turns.size()));
+		}
+		return straight ? direction : (direction + 2) % 4;
+	}
+
+	private boolean canMove(int node, int direction, int interval) {
+		int row = node / gridSize;
+		int col = node % gridSize;
+		return switch(direction) {
+			case EAST -> col < gridSize - 1 && isOnLine(row, interval);
+			case WEST -> col > 0 && isOnLine(row, interval);
+			case NORTH -> row < gridSize - 1 && isOnLine(col, interval);
+			default -> row > 0 && isOnLine(col, interval);
+		};
+	}
+
+	private int getNeighbour(int node, int direction) {
+		return switch(direction) {
+			case EAST -> node + 1;
+			case WEST -> node - 1;
+			case NORTH -> node + gridSize;
+			default -> node - gridSize;
+		};
+	}
+
+	/**
+	 * Places stops along the path with a spacing drawn from [0.5, 1.5] x stopSpacing. The first and the
+	 * last stop are at the ends of the path. The stop coordinates are not yet distorted.
+	 */
+	private List<Coord> placeStops(List<Coord> path) {
+		List<Coord> stops = new ArrayList<>();
+		stops.add(path.getFirst());
+		double nextStop = sampleStopSpacing();
+		double pos = 0;
+		for(int i = 0; i < path.size() - 1; i++) {
+			Coord a = path.get(i);
+			Coord b = path.get(i + 1);
+			double segmentLength = CoordUtils.calcEuclideanDistance(a, b);
+			while(pos + segmentLength >= nextStop) {
+				double share = (nextStop - pos) / segmentLength;
+				stops.add(new Coord(a.getX() + share * (b.getX() - a.getX()), a.getY() + share * (b.getY() - a.getY())));
+				nextStop += sampleStopSpacing();
+			}
+			pos += segmentLength;
+		}
+		// the last stop is moved to the end of the path if it is closer than half the spacing
+		Coord end = path.getLast();
+		if(stops.size() > 1 && CoordUtils.calcEuclideanDistance(stops.getLast(), end) < stopSpacing / 2) {
+			stops.removeLast();
+		}
+		stops.add(end);
+		return stops;
+	}
+
+	private double sampleStopSpacing() {
+		return stopSpacing * (0.5 + random.nextDouble());
+	}
+
+	private TransitRoute createRoute(TransitLine line, String direction, List<Coord> path, List<Coord> stopCoords, String mode, double speed) {
+		TransitScheduleFactory fac = schedule.getFactory();
+		String routeId = line.getId() + "_" + direction;
+
+		List<TransitRouteStop> routeStops = new ArrayList<>();
+		double offset = 0;
+		Coord previous = null;
+		for(int i = 0; i < stopCoords.size(); i++) {
+			Coord c = stopCoords.get(i);
+			if(previous != null) {
+				offset += Math.round(CoordUtils.calcEuclideanDistance(previous, c) / speed) + 20;
+			}
+			Coord noisy = new Coord(c.getX() + random.nextGaussian() * gpsNoise, c.getY() + random.nextGaussian() * gpsNoise);
+			TransitStopFacility facility = fac.createTransitStopFacility(Id.create(routeId + "_" + i, TransitStopFacility.class), noisy, false);
+			schedule.addStopFacility(facility);
+			routeStops.add(fac.createTransitRouteStop(facility, offset, offset));
+			previous = c;
+		}
+
+		TransitRoute route = fac.createTransitRoute(Id.create(routeId, TransitRoute.class), null, routeStops, mode);
+		for(int d = 0; d < departuresPerRoute; d++) {
+			route.addDeparture(fac.createDeparture(Id.create(routeId + "_" + d, Departure.class), 6 * 3600 + d * 600));
+		}
+
+		if(createShapes) {
+			RouteShape shape = new GtfsShape(routeId);
+			for(int i = 0; i < path.size(); i++) {
+				shape.addPoint(path.get(i), i + 1);
+			}
+			shapes.put(shape.getId(), shape);
+			ScheduleTools.setShapeId(route, shape.getId());
+		}
+		return route;
+	}
+
+	public Network getNetwork() {
+		return network;
+	}
+
+	/**
+	 * @return the unmapped schedule, routes have no link sequence
+	 */
+	public TransitSchedule getSchedule() {
+		return schedule;
+	}
+
+	/**
+	 * @return the shapes of the transit routes, empty if shapes are not created
+	 */
+	public Map<Id<RouteShape>, RouteShape> getShapes() {
+		return shapes;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public void setLayout(Layout layout) {
+		this.layout = layout;
+	}
+
+	/**
+	 * Number of nodes per row and column. The network has about 4 * gridSize^2 links (plus rail tracks).
+	 */
+	public void setGridSize(int gridSize) {
+		this.gridSize = gridSize;
+	}
+
+	/**
+	 * Distance between two neighbouring grid nodes (before displacement) in meter.
+	 */
+	public void setLinkLength(double linkLength) {
+		this.linkLength = linkLength;
+	}
+
+	/**
+	 * Every n-th row and column is an arterial where buses are allowed.
+	 */
+	public void setArterialInterval(int arterialInterval) {
+		this.arterialInterval = arterialInterval;
+	}
+
+	/**
+	 * Every n-th row and column has rail tracks. 0 creates no rail tracks and no rail lines.
+	 */
+	public void setRailInterval(int railInterval) {
+		this.railInterval = railInterval;
+	}
+
+	/**
+	 * Maximal displacement of the nodes as share of the link length, organic layout only.
+	 */
+	public void setNodeDisplacement(double nodeDisplacement) {
+		this.nodeDisplacement = nodeDisplacement;
+	}
+
+	/**
+	 * Share of local streets that are removed, organic layout only.
+	 */
+	public void setLocalStreetRemoval(double localStreetRemoval) {
+		this.localStreetRemoval = localStreetRemoval;
+	}
+
+	public void setNumberOfLines(int nLines) {
+		this.nLines = nLines;
+	}
+
+	public void setRailLineShare(double railLineShare) {
+		this.railLineShare = railLineShare;
+	}
+
+	/**
+	 * Mean distance between two stops along the route in meter.
+	 */
+	public void setStopSpacing(double stopSpacing) {
+		this.stopSpacing = stopSpacing;
+	}
+
+	/**
+	 * Standard deviation of the stop coordinates' distortion in meter.
+	 */
+	public void setGpsNoise(double gpsNoise) {
+		this.gpsNoise = gpsNoise;
+	}
+
+	/**
+	 * Probability that a route turns at an intersection.
+	 */
+	public void setTurnProbability(double turnProbability) {
+		this.turnProbability = turnProbability;
+	}
+
+	/**
+	 * Mean and standard deviation of the log-normal distributed number of stops per route.
+	 */
+	public void setRouteStops(double meanRouteStops, double routeStopsStdDev) {
+		this.meanRouteStops = meanRouteStops;
+		this.routeStopsStdDev = routeStopsStdDev;
+	}
+
+	public void setDeparturesPerRoute(int departuresPerRoute) {
+		this.departuresPerRoute = departuresPerRoute;
+	}
+
+	public void setCreateShapes(boolean createShapes) {
+		this.createShapes = createShapes;
+	}
+}
@@ -0,0 +1,236 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.tools.lib;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.utils.collections.MapUtils;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.pt2matsim.tools.MiscUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Uniform grid index over the line segments of network links. Each link is stored in
+ * all cells its segment passes through, so links are found by their distance to a
+ * coordinate regardless of the position of their nodes.
+ * <p>
+ * The index is immutable and can be queried concurrently. Links added to the network
+ * after the index has been created are not contained.
+ */
+public class LinkSegmentIndex {
+
+	private final Link[] links;
+	private final double minX;
+	private final double minY;
+	private final double maxX;
+	private final double maxY;
+	private final double cellSize;
+	private final int nx;
+	private final int ny;
+
+	// link indices of each cell (compressed rows: links of cell c are cellLinks[cellStart[c]..cellStart[c+1]])
+	private final int[] cellStart;
+	private final int[] cellLinks;
+
+	/**
+	 * Creates an index of all links that share at least one transport mode with <tt>transportModes</tt>.
+	 * The cell size is chosen so that there is about one link per cell.
+	 *
+	 * @param transportModes all links are indexed if <tt>null</tt>
+	 */
+	public static LinkSegmentIndex create(Network network, Set<String> transportModes) {
+		return new LinkSegmentIndex(network, transportModes, 0);
+	}
+
+	/**
+	 * @param transportModes all links are indexed if <tt>null</tt>
+	 * @param cellSize edge length of the grid cells, the cell size is chosen automatically if <tt>0</tt>
+	 */
+	public LinkSegmentIndex(Network network, Set<String> transportModes, double cellSize) {
+		List<Link> indexLinks = new ArrayList<>();
+		double x0 = Double.POSITIVE_INFINITY;
+		double y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY;
+		double y1 = Double.NEGATIVE_INFINITY;
+		for(Link link : network.getLinks().values()) {
+			if(transportModes == null || MiscUtils.collectionsShareMinOneStringEntry(link.getAllowedModes(), transportModes)) {
+				indexLinks.add(link);
+				for(Coord c : new Coord[]{link.getFromNode().getCoord(), link.getToNode().getCoord()}) {
+					x0 = Math.min(x0, c.getX());
+					y0 = Math.min(y0, c.getY());
+					x1 = Math.max(x1, c.getX());
+					y1 = Math.max(y1, c.getY());
+				}
+			}
+		}
+		this.links = indexLinks.toArray(new Link[0]);
+		if(links.length == 0) {
+			x0 = y0 = x1 = y1 = 0;
+		}
+		this.minX = x0;
+		this.minY = y0;
+		this.maxX = x1;
+		this.maxY = y1;
+
+		if(cellSize <= 0) {
+			double area = Math.max(maxX - minX, 1.0) * Math.max(maxY - minY, 1.0);
+			cellSize = Math.max(Math.sqrt(area / Math.max(links.length, 1)), 1.0);
+		}
+		this.cellSize = cellSize;
+		this.nx = (int) ((maxX - minX) / cellSize) + 1;
+		this.ny = (int) ((maxY - minY) / cellSize) + 1;
+
+		// count the links per cell, then fill the cells
+		this.cellStart = new int[nx * ny + 1];
+		for(Link link : links) {
+			forEachCell(link, cell -> cellStart[cell + 1]++);
+		}
+		for(int c = 0; c < nx * ny; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		this.cellLinks = new int[cellStart[nx * ny]];
+		int[] fill = new int[nx * ny];
+		for(int i = 0; i < links.length; i++) {
+			int linkIndex = i;
+			forEachCell(links[i], cell -> cellLinks[cellStart[cell] + fill[cell]++] = linkIndex);
+		}
+	}
+
+	/**
+	 * Calls the consumer for every cell the link's segment passes through (i.e. every cell in the
+	 * segment's bounding box whose center is within half a cell diagonal of the segment).
+	 */
+	private void forEachCell(Link link, IntConsumer consumer) {
+		Coord from = link.getFromNode().getCoord();
+		Coord to = link.getToNode().getCoord();
+		int cx0 = cellX(Math.min(from.getX(), to.getX()));
+		int cx1 = cellX(Math.max(from.getX(), to.getX()));
+		int cy0 = cellY(Math.min(from.getY(), to.getY()));
+		int cy1 = cellY(Math.max(from.getY(), to.getY()));
+		double halfDiagonal = cellSize * Math.sqrt(0.5);
+		for(int cx = cx0; cx <= cx1; cx++) {
+			for(int cy = cy0; cy <= cy1; cy++) {
+				if(cx0 == cx1 || cy0 == cy1 || CoordUtils.distancePointLinesegment(from, to, cellCenter(cx, cy)) <= halfDiagonal) {
+					consumer.accept(cy * nx + cx);
+				}
+			}
+		}
+	}
+
+	private int cellX(double x) {
+		return Math.clamp((long) Math.floor((x - minX) / cellSize), 0, nx - 1);
+	}
+
+	private int cellY(double y) {
+		return Math.clamp((long) Math.floor((y - minY) / cellSize), 0, ny - 1);
+	}
+
+	private Coord cellCenter(int cx, int cy) {
+		return new Coord(minX + (cx + 0.5) * cellSize, minY + (cy + 0.5) * cellSize);
+	}
+
+	/**
+	 * Returns all links whose segment is within <tt>maxDistance</tt> of <tt>coord</tt>, in the format of
+	 * {@link org.matsim.pt2matsim.tools.NetworkTools#findClosestLinks}: the distance is the key, links with the
+	 * same distance (i.e. opposite links) are stored in the same set. Distances are calculated with
+	 * {@link CoordUtils#distancePointLinesegment}.
+	 */
+	public SortedMap<Double, Set<Link>> getLinksWithinDistance(Coord coord, double maxDistance) {
+		SortedMap<Double, Set<Link>> linksByDistance = new TreeMap<>();
+		if(links.length == 0 || coord.getX() + maxDistance < minX || coord.getX() - maxDistance > maxX
+				|| coord.getY() + maxDistance < minY || coord.getY() - maxDistance > maxY) {
+			return linksByDistance;
+		}
+		int cx0 = cellX(coord.getX() - maxDistance);
+		int cx1 = cellX(coord.getX() + maxDistance);
+		int cy0 = cellY(coord.getY() - maxDistance);
+		int cy1 = cellY(coord.getY() + maxDistance);
+		for(int cy = cy0; cy <= cy1; cy++) {
+			for(int cx = cx0; cx <= cx1; cx++) {
+				int cell = cy * nx + cx;
+				for(int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+					Link link = links[cellLinks[i]];
+					double distance = CoordUtils.distancePointLinesegment(link.getFromNode().getCoord(), link.getToNode().getCoord(), coord);
+					if(distance <= maxDistance) {
+						// links stored in several cells end up in the same set
+						MapUtils.getSet(distance, linksByDistance).add(link);
+					}
+				}
+			}
+		}
+		return linksByDistance;
+	}
+
+	/**
+	 * Returns the <tt>k</tt> links closest to <tt>coord</tt>, sorted ascending by distance. Fewer links are
+	 * returned if the index contains less than <tt>k</tt> links. The search radius starts with one cell and is
+	 * doubled until enough links are found.
+	 */
+	public List<Link> getNearestLinks(Coord coord, int k) {
+		List<Link> nearest = new ArrayList<>(k);
+		if(links.length == 0 || k <= 0) {
+			return nearest;
+		}
+		// distance to the farthest corner of the index, a search with this radius contains all links
+		double maxRadius = Math.hypot(Math.max(Math.abs(coord.getX() - minX), Math.abs(coord.getX() - maxX)),
+				Math.max(Math.abs(coord.getY() - minY), Math.abs(coord.getY() - maxY)));
+		double radius = cellSize;
+		while(true) {
+			SortedMap<Double, Set<Link>> linksByDistance = getLinksWithinDistance(coord, radius);
+			int n = 0;
+			for(Set<Link> set : linksByDistance.values()) {
+				n += set.size();
+			}
+			if(n >= k || radius >= maxRadius) {
+				for(Set<Link> set : linksByDistance.values()) {
+					for(Link link : set) {
+						if(nearest.size() == k) {
+							return nearest;
+						}
+						nearest.add(link);
+					}
+				}
+				return nearest;
+			}
+			radius *= 2;
+		}
+	}
+
+	/**
+	 * @return the link closest to <tt>coord</tt>, <tt>null</tt> if the index is empty
+	 */
+	public Link getNearestLink(Coord coord) {
+		List<Link> nearest = getNearestLinks(coord, 1);
+		return nearest.isEmpty() ? null : nearest.get(0);
+	}
+
+	/**
+	 * @return the number of indexed links
+	 */
+	public int size() {
+		return links.length;
+	}
+}
@@ -0,0 +1,174 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.tools.lib;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.utils.geometry.CoordUtils;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Uniform grid index over the nodes of a network, used to find all nodes within a
+ * buffer around a polyline (i.e. a shape corridor). Nodes are identified by the
+ * index of their id ({@link org.matsim.api.core.v01.Id#index()}).
+ * <p>
+ * The index is immutable and can be queried concurrently. Nodes added to the network
+ * after the index has been created are not contained.
+ */
+public class NetworkNodeIndex {
+
+	private final Node[] nodesByIdIndex;
+	private final double[] xs;
+	private final double[] ys;
+	private final double minX;
+	private final double minY;
+	private final double cellSize;
+	private final int nx;
+	private final int ny;
+
+	// node id indices of each cell (compressed rows: nodes of cell c are cellNodes[cellStart[c]..cellStart[c+1]])
+	private final int[] cellStart;
+	private final int[] cellNodes;
+
+	/**
+	 * Creates an index of all nodes of the network. The cell size is chosen so that
+	 * there is about one node per cell.
+	 */
+	public NetworkNodeIndex(Network network) {
+		int maxIdIndex = -1;
+		double x0 = Double.POSITIVE_INFINITY;
+		double y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY;
+		double y1 = Double.NEGATIVE_INFINITY;
+		for(Node node : network.getNodes().values()) {
+			maxIdIndex = Math.max(maxIdIndex, node.getId().index());
+			x0 = Math.min(x0, node.getCoord().getX());
+			y0 = Math.min(y0, node.getCoord().getY());
+			x1 = Math.max(x1, node.getCoord().getX());
+			y1 = Math.max(y1, node.getCoord().getY());
+		}
+		int nNodes = network.getNodes().size();
+		if(nNodes == 0) {
+			x0 = y0 = x1 = y1 = 0;
+		}
+		this.minX = x0;
+		this.minY = y0;
+
+		double area = Math.max(x1 - x0, 1.0) * Math.max(y1 - y0, 1.0);
+		this.cellSize = Math.max(Math.sqrt(area / Math.max(nNodes, 1)), 1.0);
+		this.nx = (int) ((x1 - x0) / cellSize) + 1;
+		this.ny = (int) ((y1 - y0) / cellSize) + 1;
+
+		this.nodesByIdIndex = new Node[maxIdIndex + 1];
+		this.xs = new double[maxIdIndex + 1];
+		this.ys = new double[maxIdIndex + 1];
+
+		// count the nodes per cell, then fill the cells
+		this.cellStart = new int[nx * ny + 1];
+		for(Node node : network.getNodes().values()) {
+			int i = node.getId().index();
+			nodesByIdIndex[i] = node;
+			xs[i] = node.getCoord().getX();
+			ys[i] = node.getCoord().getY();
+			cellStart[cell(xs[i], ys[i]) + 1]++;
+		}
+		for(int c = 0; c < nx * ny; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		this.cellNodes = new int[nNodes];
+		int[] fill = new int[nx * ny];
+		for(Node node : network.getNodes().values()) {
+			int i = node.getId().index();
+			int cell = cell(xs[i], ys[i]);
+			cellNodes[cellStart[cell] + fill[cell]++] = i;
+		}
+	}
+
+	private int cellX(double x) {
+		return Math.clamp((long) Math.floor((x - minX) / cellSize), 0, nx - 1);
+	}
+
+	private int cellY(double y) {
+		return Math.clamp((long) Math.floor((y - minY) / cellSize), 0, ny - 1);
+	}
+
+	private int cell(double x, double y) {
+		return cellY(y) * nx + cellX(x);
+	}
+
+	/**
+	 * Returns the id indices of all nodes within <tt>buffer</tt> of the polyline, i.e. whose
+	 * {@link CoordUtils#distancePointLinesegment} to at least one segment is <= buffer. For each
+	 * segment, only the nodes in the cells of the segment's bounding box (extended by the buffer)
+	 * are tested, nodes already within the buffer of a previous segment are skipped.
+	 *
+	 * @return a set of {@link org.matsim.api.core.v01.Id#index()} of the nodes, use {@link #getNode}
+	 * to get the node of an index
+	 */
+	public BitSet getNodesWithinBuffer(List<Coord> polyline, double buffer) {
+		BitSet nodes = new BitSet(nodesByIdIndex.length);
+		if(cellNodes.length == 0 || polyline.isEmpty()) {
+			return nodes;
+		}
+		for(int s = 0; s < Math.max(polyline.size() - 1, 1); s++) {
+			Coord from = polyline.get(s);
+			Coord to = polyline.get(Math.min(s + 1, polyline.size() - 1));
+			double bx0 = Math.min(from.getX(), to.getX()) - buffer;
+			double bx1 = Math.max(from.getX(), to.getX()) + buffer;
+			double by0 = Math.min(from.getY(), to.getY()) - buffer;
+			double by1 = Math.max(from.getY(), to.getY()) + buffer;
+			int cx0 = cellX(bx0);
+			int cx1 = cellX(bx1);
+			int cy0 = cellY(by0);
+			int cy1 = cellY(by1);
+			for(int cy = cy0; cy <= cy1; cy++) {
+				for(int cx = cx0; cx <= cx1; cx++) {
+					int cell = cy * nx + cx;
+					for(int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+						int n = cellNodes[i];
+						if(nodes.get(n) || xs[n] < bx0 || xs[n] > bx1 || ys[n] < by0 || ys[n] > by1) {
+							continue;
+						}
+						if(CoordUtils.distancePointLinesegment(from, to, nodesByIdIndex[n].getCoord()) <= buffer) {
+							nodes.set(n);
+						}
+					}
+				}
+			}
+		}
+		return nodes;
+	}
+
+	/**
+	 * @return the node with the given id index, <tt>null</tt> if the node is not part of the index
+	 */
+	public Node getNode(int idIndex) {
+		return idIndex < nodesByIdIndex.length ? nodesByIdIndex[idIndex] : null;
+	}
+
+	/**
+	 * @return the number of indexed nodes
+	 */
+	public int size() {
+		return cellNodes.length;
+	}
+}
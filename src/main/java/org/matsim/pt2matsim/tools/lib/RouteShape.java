@@ -43,4 +43,12 @@ public interface RouteShape extends Identifiable {
 	List<Coord> getCoords();
 
 	Coord[] getExtent();
+
+	/**
+	 * @return an index of the shape's segments for distance queries. Implementations
+	 * should cache the index as long as the shape's points do not change.
+	 */
+	default ShapeSegmentIndex getSegmentIndex() {
+		return new ShapeSegmentIndex(getCoordsSorted().values());
+	}
 }
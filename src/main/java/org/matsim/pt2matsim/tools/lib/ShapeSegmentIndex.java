@@ -0,0 +1,188 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.tools.lib;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.utils.geometry.CoordUtils;
+
+import java.util.Collection;
+import java.util.function.IntConsumer;
+
+/**
+ * Uniform grid index over the segments of a shape (polyline). Each segment is stored in
+ * all cells it passes through, the distance of a coordinate to the shape is calculated
+ * with the segments of the cells around the coordinate only.
+ * <p>
+ * The index is immutable and can be queried concurrently.
+ */
+public class ShapeSegmentIndex {
+
+	private final Coord[] points;
+	private final double minX;
+	private final double minY;
+	private final double maxX;
+	private final double maxY;
+	private final double cellSize;
+	private final int nx;
+	private final int ny;
+
+	// segment indices of each cell (compressed rows: segments of cell c are cellSegments[cellStart[c]..cellStart[c+1]]),
+	// segment i connects points i and i+1
+	private final int[] cellStart;
+	private final int[] cellSegments;
+
+	/**
+	 * Creates an index of the segments between consecutive points. The cell size is
+	 * chosen so that there is about one segment per cell.
+	 */
+	public ShapeSegmentIndex(Collection<Coord> points) {
+		this.points = points.toArray(new Coord[0]);
+		double x0 = Double.POSITIVE_INFINITY;
+		double y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY;
+		double y1 = Double.NEGATIVE_INFINITY;
+		for(Coord c : this.points) {
+			x0 = Math.min(x0, c.getX());
+			y0 = Math.min(y0, c.getY());
+			x1 = Math.max(x1, c.getX());
+			y1 = Math.max(y1, c.getY());
+		}
+		if(this.points.length == 0) {
+			x0 = y0 = x1 = y1 = 0;
+		}
+		this.minX = x0;
+		this.minY = y0;
+		this.maxX = x1;
+		this.maxY = y1;
+
+		int nSegments = Math.max(this.points.length - 1, 0);
+		double area = Math.max(maxX - minX, 1.0) * Math.max(maxY - minY, 1.0);
+		this.cellSize = Math.max(Math.sqrt(area / Math.max(nSegments, 1)), 1.0);
+		this.nx = (int) ((maxX - minX) / cellSize) + 1;
+		this.ny = (int) ((maxY - minY) / cellSize) + 1;
+
+		// count the segments per cell, then fill the cells
+		this.cellStart = new int[nx * ny + 1];
+		for(int s = 0; s < nSegments; s++) {
+			forEachCell(s, cell -> cellStart[cell + 1]++);
+		}
+		for(int c = 0; c < nx * ny; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		this.cellSegments = new int[cellStart[nx * ny]];
+		int[] fill = new int[nx * ny];
+		for(int s = 0; s < nSegments; s++) {
+			int segment = s;
+			forEachCell(s, cell -> cellSegments[cellStart[cell] + fill[cell]++] = segment);
+		}
+	}
+
+	/**
+	 * Calls the consumer for every cell the segment passes through (i.e. every cell in the
+	 * segment's bounding box whose center is within half a cell diagonal of the segment).
+	 */
+	private void forEachCell(int segment, IntConsumer consumer) {
+		Coord from = points[segment];
+		Coord to = points[segment + 1];
+		int cx0 = cellX(Math.min(from.getX(), to.getX()));
+		int cx1 = cellX(Math.max(from.getX(), to.getX()));
+		int cy0 = cellY(Math.min(from.getY(), to.getY()));
+		int cy1 = cellY(Math.max(from.getY(), to.getY()));
+		double halfDiagonal = cellSize * Math.sqrt(0.5);
+		for(int cx = cx0; cx <= cx1; cx++) {
+			for(int cy = cy0; cy <= cy1; cy++) {
+				if(cx0 == cx1 || cy0 == cy1 || CoordUtils.distancePointLinesegment(from, to, cellCenter(cx, cy)) <= halfDiagonal) {
+					consumer.accept(cy * nx + cx);
+				}
+			}
+		}
+	}
+
+	private int cellX(double x) {
+		return Math.clamp((long) Math.floor((x - minX) / cellSize), 0, nx - 1);
+	}
+
+	private int cellY(double y) {
+		return Math.clamp((long) Math.floor((y - minY) / cellSize), 0, ny - 1);
+	}
+
+	private Coord cellCenter(int cx, int cy) {
+		return new Coord(minX + (cx + 0.5) * cellSize, minY + (cy + 0.5) * cellSize);
+	}
+
+	/**
+	 * Calculates the minimal distance from a point to the shape, equal to the minimum of
+	 * {@link CoordUtils#distancePointLinesegment} over all segments. The search radius starts
+	 * with one cell and is doubled until a segment within the radius is found.
+	 *
+	 * @return {@link Double#MAX_VALUE} if the shape has less than two points
+	 */
+	public double getMinDistance(Coord coord) {
+		if(points.length < 2) {
+			return Double.MAX_VALUE;
+		}
+		// distance to the farthest corner of the index, a search with this radius contains all segments
+		double maxRadius = Math.hypot(Math.max(Math.abs(coord.getX() - minX), Math.abs(coord.getX() - maxX)),
+				Math.max(Math.abs(coord.getY() - minY), Math.abs(coord.getY() - maxY)));
+		double radius = cellSize;
+		while(true) {
+			double minDist = Double.MAX_VALUE;
+			int cx0 = cellX(coord.getX() - radius);
+			int cx1 = cellX(coord.getX() + radius);
+			int cy0 = cellY(coord.getY() - radius);
+			int cy1 = cellY(coord.getY() + radius);
+			for(int cy = cy0; cy <= cy1; cy++) {
+				for(int cx = cx0; cx <= cx1; cx++) {
+					int cell = cy * nx + cx;
+					for(int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+						int s = cellSegments[i];
+						double dist = CoordUtils.distancePointLinesegment(points[s], points[s + 1], coord);
+						if(dist < minDist) {
+							minDist = dist;
+						}
+					}
+				}
+			}
+			// a segment closer than the radius passes through one of the searched cells
+			if(minDist <= radius || radius >= maxRadius) {
+				return minDist;
+			}
+			radius *= 2;
+		}
+	}
+
+	/**
+	 * Calculates the minimal distance from a link to the shape as average distance of
+	 * the two link nodes and the center of the link.
+	 */
+	public double getMinDistance(Link link) {
+		Coord c1 = link.getFromNode().getCoord();
+		Coord c2 = link.getToNode().getCoord();
+		Coord c3 = CoordUtils.getCenter(c1, c2);
+		return (getMinDistance(c1) + getMinDistance(c2) + getMinDistance(c3)) / 3.0;
+	}
+
+	/**
+	 * @return the number of indexed segments
+	 */
+	public int size() {
+		return Math.max(points.length - 1, 0);
+	}
+}
@@ -14,6 +14,7 @@ import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
 import org.matsim.pt2matsim.config.PublicTransitMappingStrings;
 import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRoutersFactory;
 import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRoutersGtfsShapes;
+import org.matsim.pt2matsim.mapping.networkRouter.ScheduleRoutersStandard;
 import org.matsim.pt2matsim.tools.NetworkToolsTest;
 import org.matsim.pt2matsim.tools.ScheduleTools;
 import org.matsim.pt2matsim.tools.ScheduleToolsTest;
@@ -115,4 +116,43 @@ class PTMapperShapesTest {
 		}
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Checkpoints must not be resumed with another router or other shapes.
+	 */
+	@Test
+	void checkpointFingerprint() {
+		TransitSchedule unmappedSchedule = ScheduleToolsTest.initUnmappedSchedule();
+		Network unmappedNetwork = NetworkToolsTest.initNetwork();
+		Map<Id<RouteShape>, RouteShape> shapes = ShapeToolsTest.initShapes();
+
+		String standard = PseudoRoutingCheckpoint.createFingerprint(unmappedNetwork, unmappedSchedule, ptmConfig,
+				new ScheduleRoutersStandard.Factory(unmappedSchedule, unmappedNetwork, ptmConfig));
+		String withShapes = PseudoRoutingCheckpoint.createFingerprint(unmappedNetwork, unmappedSchedule, ptmConfig,
+				new ScheduleRoutersGtfsShapes.Factory(unmappedSchedule, unmappedNetwork, shapes, ptmConfig.getTransportModeAssignment(), PublicTransitMappingConfigGroup.TravelCostType.linkLength, 10.0, 99));
+		Assertions.assertNotEquals(standard, withShapes);
+
+		shapes.remove(Id.create("B", RouteShape.class));
+		String otherShapes = PseudoRoutingCheckpoint.createFingerprint(unmappedNetwork, unmappedSchedule, ptmConfig,
+				new ScheduleRoutersGtfsShapes.Factory(unmappedSchedule, unmappedNetwork, shapes, ptmConfig.getTransportModeAssignment(), PublicTransitMappingConfigGroup.TravelCostType.linkLength, 10.0, 99));
+		Assertions.assertNotEquals(withShapes, otherShapes);
+	}
+
+	/**
+	 * Corridors that were dropped from the factory's cache are rebuilt on demand and
+	 * must give the same result.
+	 */
+	@Test
+	void singleCorridorCache() throws InterruptedException, ExecutionException {
+		TransitSchedule scheduleEvicted = ScheduleToolsTest.initUnmappedSchedule();
+		Network networkEvicted = NetworkToolsTest.initNetwork();
+		ScheduleRoutersGtfsShapes.Factory factoryEvicted = new ScheduleRoutersGtfsShapes.Factory(scheduleEvicted,
+				networkEvicted, ShapeToolsTest.initShapes(), ptmConfig.getTransportModeAssignment(),
+				PublicTransitMappingConfigGroup.TravelCostType.linkLength, 10.0, 99, 1);
+
+		new PTMapper(scheduleEvicted, networkEvicted).run(initPTMConfig(), null, factoryEvicted);
+
+		Assertions.assertTrue(factoryEvicted.getCorridorStats().evictionCount() > 0);
+		PTMapperTest.assertSameRouteLinks(schedule, scheduleEvicted);
+	}
+
+}
@@ -2,25 +2,38 @@ package org.matsim.pt2matsim.mapping;
 
 import static org.matsim.pt2matsim.tools.ScheduleToolsTest.ROUTE_B;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.pt.transitSchedule.api.Departure;
 import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitRoute;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 import org.matsim.pt.utils.TransitScheduleValidator;
 import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
 import org.matsim.pt2matsim.config.PublicTransitMappingStrings;
 import org.matsim.pt2matsim.config.TransportModeParameterSet;
+import org.matsim.pt2matsim.mapping.pseudoRouter.ArtificialLinkImpl;
 import org.matsim.pt2matsim.run.CreateDefaultPTMapperConfig;
 import org.matsim.pt2matsim.tools.NetworkToolsTest;
+import org.matsim.pt2matsim.tools.PTMapperTools;
 import org.matsim.pt2matsim.tools.ScheduleTools;
 import org.matsim.pt2matsim.tools.ScheduleToolsTest;
 
@@ -170,6 +183,37 @@ public class PTMapperTest {
 		CreateDefaultPTMapperConfig.main(new String[]{"doc/defaultPTMapperConfig.xml"});
 	}
 
+	/**
+	 * Asserts that both schedules contain the same transit routes with the same link sequences.
+	 */
+	static void assertSameRouteLinks(TransitSchedule expected, TransitSchedule actual) {
+		Assertions.assertEquals(expected.getTransitLines().keySet(), actual.getTransitLines().keySet());
+		for (TransitLine line : expected.getTransitLines().values()) {
+			TransitLine actualLine = actual.getTransitLines().get(line.getId());
+			Assertions.assertEquals(line.getRoutes().keySet(), actualLine.getRoutes().keySet());
+			for (TransitRoute route : line.getRoutes().values()) {
+				Assertions.assertEquals(ScheduleTools.getTransitRouteLinkIds(route),
+						ScheduleTools.getTransitRouteLinkIds(actualLine.getRoutes().get(route.getId())),
+						"link sequence differs for line=" + line.getId() + " route=" + route.getId());
+			}
+		}
+	}
+
+	/**
+	 * Like {@link #assertSameRouteLinks}, the routes must also serve the same child stop facilities.
+	 */
+	static void assertSameRouteLinksAndStops(TransitSchedule expected, TransitSchedule actual) {
+		assertSameRouteLinks(expected, actual);
+		for (TransitLine line : expected.getTransitLines().values()) {
+			for (TransitRoute route : line.getRoutes().values()) {
+				TransitRoute actualRoute = actual.getTransitLines().get(line.getId()).getRoutes().get(route.getId());
+				for (int i = 0; i < route.getStops().size(); i++) {
+					Assertions.assertEquals(route.getStops().get(i).getStopFacility().getId(), actualRoute.getStops().get(i).getStopFacility().getId());
+				}
+			}
+		}
+	}
+
 	/**
 	 * Equivalence test: mapping the same scenario with {@code boundedSearch=true} and
 	 * {@code boundedSearch=false} must produce identical link sequences for every transit
@@ -211,4 +255,414 @@ public class PTMapperTest {
 		}
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Routes that only differ in their departures are pseudo routed once, the copies must
+	 * still get the same link sequence and child stop facilities.
+	 */
+	@Test
+	void identicalStopSequences() throws InterruptedException, ExecutionException {
+		TransitSchedule schedule2 = ScheduleToolsTest.initUnmappedSchedule();
+		Network network2 = NetworkToolsTest.initNetwork();
+
+		TransitScheduleFactory factory = schedule2.getFactory();
+		TransitLine lineA = schedule2.getTransitLines().get(ScheduleToolsTest.LINE_A);
+		TransitRoute routeA1 = lineA.getRoutes().get(ScheduleToolsTest.ROUTE_A1);
+		Id<TransitRoute> copyId = Id.create("routeA1copy", TransitRoute.class);
+		TransitRoute copy = factory.createTransitRoute(copyId, null, new ArrayList<>(routeA1.getStops()), routeA1.getTransportMode());
+		copy.addDeparture(factory.createDeparture(Id.create("copyDep", Departure.class), 12 * 3600.0));
+		lineA.addRoute(copy);
+
+		PTMapper ptMapper2 = new PTMapper(schedule2, network2);
+		ptMapper2.run(initPTMConfig());
+
+		TransitRoute mappedA1 = lineA.getRoutes().get(ScheduleToolsTest.ROUTE_A1);
+		TransitRoute mappedCopy = lineA.getRoutes().get(copyId);
+		Assertions.assertEquals(ScheduleTools.getTransitRouteLinkIds(mappedA1), ScheduleTools.getTransitRouteLinkIds(mappedCopy));
+		for(int i = 0; i < mappedA1.getStops().size(); i++) {
+			Assertions.assertEquals(mappedA1.getStops().get(i).getStopFacility().getId(), mappedCopy.getStops().get(i).getStopFacility().getId());
+		}
+		Assertions.assertEquals(1, mappedCopy.getDepartures().size());
+		Assertions.assertEquals(ScheduleTools.getTransitRouteLinkIds(lineA.getRoutes().get(ScheduleToolsTest.ROUTE_A1)),
+				ScheduleTools.getTransitRouteLinkIds(schedule.getTransitLines().get(ScheduleToolsTest.LINE_A).getRoutes().get(ScheduleToolsTest.ROUTE_A1)));
+
+		// the copy has not been pseudo routed, the same candidate pairs are evaluated as without it
+		PTMapper ptMapper1 = new PTMapper(ScheduleToolsTest.initUnmappedSchedule(), NetworkToolsTest.initNetwork());
+		ptMapper1.run(initPTMConfig());
+		Assertions.assertEquals(ptMapper1.getRouteCostModel().getRecordedCandidatePairs("bus"),
+				ptMapper2.getRouteCostModel().getRecordedCandidatePairs("bus"));
+	}
+
+	/**
+	 * The route cost model is created on the first run, read again on the next one and
+	 * updated with its timings. The mapping result must not change.
+	 */
+	@Test
+	void routeCostModelFile(@TempDir Path tempDir) throws InterruptedException, ExecutionException {
+		String costModelFile = tempDir.resolve("routeCostModel.csv").toString();
+		PublicTransitMappingConfigGroup config = initPTMConfig();
+		config.setRouteCostModelFile(costModelFile);
+
+		new PTMapper(ScheduleToolsTest.initUnmappedSchedule(), NetworkToolsTest.initNetwork()).run(config);
+		Assertions.assertTrue(Files.exists(Path.of(costModelFile)));
+		RouteCostModel firstModel = RouteCostModel.read(costModelFile);
+		Assertions.assertTrue(firstModel.getNanosPerPair("bus") > 0);
+		long firstPairs = firstModel.getRecordedCandidatePairs("bus");
+		Assertions.assertTrue(firstPairs > 0);
+
+		TransitSchedule schedule2 = ScheduleToolsTest.initUnmappedSchedule();
+		PTMapper ptMapper2 = new PTMapper(schedule2, NetworkToolsTest.initNetwork());
+		ptMapper2.run(config);
+		// the second run started from the stored model and added the same candidate pairs again
+		Assertions.assertEquals(2 * firstPairs, ptMapper2.getRouteCostModel().getRecordedCandidatePairs("bus"));
+		Assertions.assertEquals(2 * firstPairs, RouteCostModel.read(costModelFile).getRecordedCandidatePairs("bus"));
+		assertSameRouteLinks(schedule, schedule2);
+	}
+
+	/**
+	 * Splitting routes into parallel segments of stop pairs must not change the result.
+	 */
+	@Test
+	void splitRoutesEquivalence() throws InterruptedException, ExecutionException {
+		PublicTransitMappingConfigGroup config = initPTMConfig();
+		config.setSplitRouteStopThreshold(2);
+
+		TransitSchedule scheduleSplit = ScheduleToolsTest.initUnmappedSchedule();
+		PTMapper ptMapper = new PTMapper(scheduleSplit, NetworkToolsTest.initNetwork());
+		ptMapper.run(config);
+		Assertions.assertTrue(ptMapper.getRoutesSplit() > 0);
+		assertSameRouteLinks(schedule, scheduleSplit);
+	}
+
+	/**
+	 * Mapping the unchanged schedule incrementally against the previous mapping must
+	 * result in the same link sequences and stop facilities.
+	 */
+	@Test
+	void incrementalMapping() throws InterruptedException, ExecutionException {
+		TransitSchedule schedule2 = ScheduleToolsTest.initUnmappedSchedule();
+		Network network2 = NetworkToolsTest.initNetwork();
+		PTMapper ptMapper = new PTMapper(schedule2, network2);
+		ptMapper.setPreviousMapping(new PreviousMapping(schedule, network));
+		ptMapper.run(initPTMConfig());
+
+		assertSameRouteLinksAndStops(schedule, schedule2);
+		// all routes are reused, none has been pseudo routed
+		Assertions.assertEquals(0, ptMapper.getRouteCostModel().getRecordedCandidatePairs("bus"));
+	}
+
+	/**
+	 * Artificial links copied from the previous mapping must be recreated as the ones of pseudo
+	 * routing, child stop facilities are not pulled onto them.
+	 */
+	@Test
+	void incrementalMappingArtificialLinks() throws InterruptedException, ExecutionException {
+		PublicTransitMappingConfigGroup config = initPTMConfig();
+		config.setMaxLinkCandidateDistance(3);
+
+		TransitSchedule schedule1 = ScheduleToolsTest.initUnmappedSchedule();
+		Network network1 = NetworkToolsTest.initNetwork();
+		new PTMapper(schedule1, network1).run(config);
+		List<Id<Link>> artificialLinkIds = new ArrayList<>();
+		for (Link link : network1.getLinks().values()) {
+			if (link instanceof ArtificialLinkImpl) {
+				artificialLinkIds.add(link.getId());
+			}
+		}
+		Assertions.assertFalse(artificialLinkIds.isEmpty());
+
+		TransitSchedule schedule2 = ScheduleToolsTest.initUnmappedSchedule();
+		Network network2 = NetworkToolsTest.initNetwork();
+		PTMapper ptMapper = new PTMapper(schedule2, network2);
+		ptMapper.setPreviousMapping(new PreviousMapping(schedule1, network1));
+		ptMapper.run(config);
+		Assertions.assertEquals(0, ptMapper.getRouteCostModel().getRecordedCandidatePairs("bus"));
+
+		for (Id<Link> linkId : artificialLinkIds) {
+			Assertions.assertInstanceOf(ArtificialLinkImpl.class, network2.getLinks().get(linkId));
+		}
+		assertSameRouteLinksAndStops(schedule1, schedule2);
+	}
+
+	@Test
+	void checkpointResume(@TempDir Path tempDir) throws InterruptedException, ExecutionException {
+		String checkpointFile = tempDir.resolve("checkpoint.txt").toString();
+		PublicTransitMappingConfigGroup config = initPTMConfig();
+		config.setCheckpointFile(checkpointFile);
+
+		TransitSchedule schedule1 = ScheduleToolsTest.initUnmappedSchedule();
+		PTMapper ptMapper1 = new PTMapper(schedule1, NetworkToolsTest.initNetwork());
+		ptMapper1.run(config);
+		Assertions.assertTrue(Files.exists(tempDir.resolve("checkpoint.txt")));
+		Assertions.assertTrue(ptMapper1.getRouteCostModel().getRecordedCandidatePairs("bus") > 0);
+
+		// all routes are resumed from the checkpoint
+		TransitSchedule schedule2 = ScheduleToolsTest.initUnmappedSchedule();
+		PTMapper ptMapper2 = new PTMapper(schedule2, NetworkToolsTest.initNetwork());
+		ptMapper2.run(config);
+		Assertions.assertEquals(0, ptMapper2.getRouteCostModel().getRecordedCandidatePairs("bus"));
+
+		assertSameRouteLinksAndStops(schedule1, schedule2);
+	}
+
+	/**
+	 * Lazy link candidates create loop links during pseudo routing, a resumed run has to
+	 * recreate them from the checkpoint to load the routes using them.
+	 */
+	@Test
+	void checkpointResumeLazyLoopLinks(@TempDir Path tempDir) throws InterruptedException, ExecutionException, IOException {
+		Path checkpointFile = tempDir.resolve("checkpoint.txt");
+		PublicTransitMappingConfigGroup config = initPTMConfig();
+		config.setMaxLinkCandidateDistance(3);
+		config.setLazyLinkCandidates(true);
+		config.setCheckpointFile(checkpointFile.toString());
+
+		TransitSchedule schedule1 = ScheduleToolsTest.initUnmappedSchedule();
+		new PTMapper(schedule1, NetworkToolsTest.initNetwork()).run(config);
+		String content = Files.readString(checkpointFile);
+		Assertions.assertTrue(content.contains("\nL\t"));
+
+		// all routes are loaded, nothing is routed and appended again
+		TransitSchedule schedule2 = ScheduleToolsTest.initUnmappedSchedule();
+		PTMapper ptMapper2 = new PTMapper(schedule2, NetworkToolsTest.initNetwork());
+		ptMapper2.run(config);
+		Assertions.assertEquals(content, Files.readString(checkpointFile));
+		Assertions.assertEquals(0, ptMapper2.getRouteCostModel().getRecordedCandidatePairs("bus"));
+
+		assertSameRouteLinks(schedule1, schedule2);
+	}
+
+	/**
+	 * Artificial links loaded from a checkpoint must be recreated as the ones of pseudo routing,
+	 * child stop facilities are not pulled onto them.
+	 */
+	@Test
+	void checkpointResumeArtificialLinks(@TempDir Path tempDir) throws InterruptedException, ExecutionException, IOException {
+		Path checkpointFile = tempDir.resolve("checkpoint.txt");
+		PublicTransitMappingConfigGroup config = initPTMConfig();
+		config.setMaxLinkCandidateDistance(3);
+
+		TransitSchedule schedule1 = ScheduleToolsTest.initUnmappedSchedule();
+		Network network1 = NetworkToolsTest.initNetwork();
+		new PTMapper(schedule1, network1).run(config);
+		List<Id<Link>> artificialLinkIds = new ArrayList<>();
+		for (Link link : network1.getLinks().values()) {
+			if (link instanceof ArtificialLinkImpl) {
+				artificialLinkIds.add(link.getId());
+			}
+		}
+		Assertions.assertFalse(artificialLinkIds.isEmpty());
+
+		config.setCheckpointFile(checkpointFile.toString());
+		new PTMapper(ScheduleToolsTest.initUnmappedSchedule(), NetworkToolsTest.initNetwork()).run(config);
+		Assertions.assertTrue(Files.readString(checkpointFile).contains("\nA\t"));
+
+		TransitSchedule schedule2 = ScheduleToolsTest.initUnmappedSchedule();
+		Network network2 = NetworkToolsTest.initNetwork();
+		PTMapper ptMapper2 = new PTMapper(schedule2, network2);
+		ptMapper2.run(config);
+		Assertions.assertEquals(0, ptMapper2.getRouteCostModel().getRecordedCandidatePairs("bus"));
+
+		for (Id<Link> linkId : artificialLinkIds) {
+			Assertions.assertInstanceOf(ArtificialLinkImpl.class, network2.getLinks().get(linkId));
+		}
+		assertSameRouteLinksAndStops(schedule1, schedule2);
+		Assertions.assertEquals(schedule1.getFacilities().keySet(), schedule2.getFacilities().keySet());
+	}
+
+	/**
+	 * A route record cut at a field boundary must not be loaded as a shorter route and the
+	 * resumed run must not append to the unterminated line.
+	 */
+	@Test
+	void checkpointTruncatedRecord(@TempDir Path tempDir) throws InterruptedException, ExecutionException, IOException {
+		Path checkpointFile = tempDir.resolve("checkpoint.txt");
+		PublicTransitMappingConfigGroup config = initPTMConfig();
+		config.setCheckpointFile(checkpointFile.toString());
+		PTMapper ptMapper1 = new PTMapper(ScheduleToolsTest.initUnmappedSchedule(), NetworkToolsTest.initNetwork());
+		ptMapper1.run(config);
+
+		String content = Files.readString(checkpointFile);
+		int lastRecord = content.lastIndexOf("\nR\t") + 1;
+		int lastField = content.lastIndexOf('\t');
+		Assertions.assertTrue(lastRecord > 0 && lastField > lastRecord);
+		Files.writeString(checkpointFile, content.substring(0, lastField));
+
+		TransitSchedule schedule2 = ScheduleToolsTest.initUnmappedSchedule();
+		PTMapper ptMapper2 = new PTMapper(schedule2, NetworkToolsTest.initNetwork());
+		ptMapper2.run(config);
+		assertSameRouteLinks(schedule, schedule2);
+
+		// only the route of the truncated record is pseudo routed again
+		long resumedPairs = ptMapper2.getRouteCostModel().getRecordedCandidatePairs("bus");
+		Assertions.assertTrue(resumedPairs > 0);
+		Assertions.assertTrue(resumedPairs < ptMapper1.getRouteCostModel().getRecordedCandidatePairs("bus"));
+
+		Assertions.assertTrue(Files.readString(checkpointFile).startsWith(content.substring(0, lastRecord)));
+		List<String> lines = Files.readAllLines(checkpointFile);
+		for (String record : lines.subList(1, lines.size())) {
+			String[] fields = record.split("\t", -1);
+			if (fields[0].equals("R")) {
+				Assertions.assertEquals(5 + Integer.parseInt(fields[3]) + Integer.parseInt(fields[4]), fields.length);
+			} else if (fields[0].equals("L")) {
+				Assertions.assertEquals(2, fields.length);
+			} else {
+				Assertions.assertEquals(6, fields.length);
+			}
+		}
+	}
+
+	@Test
+	void shardedMapping(@TempDir Path tempDir) throws InterruptedException, ExecutionException {
+		PublicTransitMappingConfigGroup config = initPTMConfig();
+		List<List<Id<TransitLine>>> shards = ShardedPTMapper.createShards(ScheduleToolsTest.initUnmappedSchedule(), 2);
+		Assertions.assertEquals(2, shards.size());
+
+		List<String> shardFiles = new ArrayList<>();
+		for (int i = 0; i < shards.size(); i++) {
+			String shardFile = tempDir.resolve("shard-" + i + ".pseudo").toString();
+			ShardedPTMapper.runWorker(config, ScheduleToolsTest.initUnmappedSchedule(), NetworkToolsTest.initNetwork(), shards.get(i), shardFile);
+			shardFiles.add(shardFile);
+		}
+
+		TransitSchedule schedule2 = ScheduleToolsTest.initUnmappedSchedule();
+		PTMapper coordinator = ShardedPTMapper.mapShards(config, schedule2, NetworkToolsTest.initNetwork(), shardFiles);
+
+		assertSameRouteLinks(schedule, schedule2);
+		// all routes are taken from the shards, the coordinator only merges the timings of the workers
+		PTMapper ptMapper1 = new PTMapper(ScheduleToolsTest.initUnmappedSchedule(), NetworkToolsTest.initNetwork());
+		ptMapper1.run(initPTMConfig());
+		Assertions.assertEquals(ptMapper1.getRouteCostModel().getRecordedCandidatePairs("bus"),
+				coordinator.getRouteCostModel().getRecordedCandidatePairs("bus"));
+	}
+
+	/**
+	 * Artificial links loaded from the shards must be recreated as the ones of pseudo routing,
+	 * child stop facilities are not pulled onto them.
+	 */
+	@Test
+	void shardedMappingArtificialLinks(@TempDir Path tempDir) throws InterruptedException, ExecutionException {
+		PublicTransitMappingConfigGroup config = initPTMConfig();
+		config.setMaxLinkCandidateDistance(3);
+
+		TransitSchedule schedule1 = ScheduleToolsTest.initUnmappedSchedule();
+		Network network1 = NetworkToolsTest.initNetwork();
+		new PTMapper(schedule1, network1).run(config);
+		List<Id<Link>> artificialLinkIds = new ArrayList<>();
+		for (Link link : network1.getLinks().values()) {
+			if (link instanceof ArtificialLinkImpl) {
+				artificialLinkIds.add(link.getId());
+			}
+		}
+		Assertions.assertFalse(artificialLinkIds.isEmpty());
+
+		List<String> shardFiles = new ArrayList<>();
+		List<List<Id<TransitLine>>> shards = ShardedPTMapper.createShards(ScheduleToolsTest.initUnmappedSchedule(), 2);
+		for (int i = 0; i < shards.size(); i++) {
+			String shardFile = tempDir.resolve("shard-" + i + ".pseudo").toString();
+			ShardedPTMapper.runWorker(config, ScheduleToolsTest.initUnmappedSchedule(), NetworkToolsTest.initNetwork(), shards.get(i), shardFile);
+			shardFiles.add(shardFile);
+		}
+
+		TransitSchedule schedule2 = ScheduleToolsTest.initUnmappedSchedule();
+		Network network2 = NetworkToolsTest.initNetwork();
+		ShardedPTMapper.mapShards(config, schedule2, network2, shardFiles);
+
+		for (Id<Link> linkId : artificialLinkIds) {
+			Assertions.assertInstanceOf(ArtificialLinkImpl.class, network2.getLinks().get(linkId));
+		}
+		assertSameRouteLinksAndStops(schedule1, schedule2);
+		Assertions.assertEquals(schedule1.getFacilities().keySet(), schedule2.getFacilities().keySet());
+	}
+
+	@Test
+	void childStopTransferTimes() throws InterruptedException, ExecutionException {
+		TransitSchedule schedule2 = ScheduleToolsTest.initUnmappedSchedule();
+		TransitRoute route = schedule2.getTransitLines().get(ScheduleToolsTest.LINE_A).getRoutes().get(ScheduleToolsTest.ROUTE_A1);
+		Id<TransitStopFacility> fromParent = route.getStops().get(0).getStopFacility().getId();
+		Id<TransitStopFacility> toParent = route.getStops().get(1).getStopFacility().getId();
+		schedule2.getMinimalTransferTimes().set(fromParent, toParent, 120);
+
+		new PTMapper(schedule2, NetworkToolsTest.initNetwork()).run(initPTMConfig());
+
+		int nChildTransfers = 0;
+		for (TransitStopFacility from : schedule2.getFacilities().values()) {
+			for (TransitStopFacility to : schedule2.getFacilities().values()) {
+				if (ScheduleTools.createParentStopFacilityId(from).equals(fromParent) && ScheduleTools.createParentStopFacilityId(to).equals(toParent)) {
+					Assertions.assertEquals(120, schedule2.getMinimalTransferTimes().get(from.getId(), to.getId()), 0.0);
+					nChildTransfers++;
+				}
+			}
+		}
+		Assertions.assertTrue(nChildTransfers > 0);
+	}
+
+	/**
+	 * The worklist passes must reach the same fixpoint as full schedule passes.
+	 */
+	@Test
+	void pullChildStopFacilitiesFixpoint() throws InterruptedException, ExecutionException {
+		Assertions.assertEquals(0, PTMapperTools.pullChildStopFacilitiesTogether(schedule, network));
+
+		TransitSchedule schedule1 = ScheduleToolsTest.initUnmappedSchedule();
+		Network network1 = NetworkToolsTest.initNetwork();
+		PTMapper ptMapper1 = new PTMapper(schedule1, network1);
+		ptMapper1.setPullChildStopFacilities(false);
+		ptMapper1.run(initPTMConfig());
+
+		TransitSchedule schedule2 = ScheduleToolsTest.initUnmappedSchedule();
+		Network network2 = NetworkToolsTest.initNetwork();
+		PTMapper ptMapper2 = new PTMapper(schedule2, network2);
+		ptMapper2.setPullChildStopFacilities(false);
+		ptMapper2.run(initPTMConfig());
+
+		int fullPasses = 0;
+		int nPulled = 1;
+		while (nPulled != 0) {
+			nPulled = PTMapperTools.pullChildStopFacilitiesTogether(schedule1, network1);
+			fullPasses++;
+		}
+		int worklistPasses = PTMapperTools.pullChildStopFacilitiesToFixpoint(schedule2, network2, 2);
+
+		Assertions.assertEquals(fullPasses, worklistPasses);
+		Assertions.assertEquals(new ArrayList<>(schedule1.getFacilities().keySet()), new ArrayList<>(schedule2.getFacilities().keySet()));
+		assertSameRouteLinksAndStops(schedule1, schedule2);
+	}
+
+	@Test
+	void childStopTransfersStopArea() throws InterruptedException, ExecutionException {
+		TransitSchedule schedule2 = ScheduleToolsTest.initUnmappedSchedule();
+		PublicTransitMappingConfigGroup config = initPTMConfig();
+		config.setChildStopTransfers(PublicTransitMappingConfigGroup.ChildStopTransfers.stopArea);
+		new PTMapper(schedule2, NetworkToolsTest.initNetwork()).run(config);
+
+		Assertions.assertFalse(schedule2.getMinimalTransferTimes().iterator().hasNext());
+		for (TransitStopFacility from : schedule2.getFacilities().values()) {
+			for (TransitStopFacility to : schedule2.getFacilities().values()) {
+				if (!from.equals(to) && ScheduleTools.createParentStopFacilityId(from).equals(ScheduleTools.createParentStopFacilityId(to))) {
+					Assertions.assertNotNull(from.getStopAreaId());
+					Assertions.assertEquals(from.getStopAreaId(), to.getStopAreaId());
+				}
+			}
+		}
+	}
+
+	@Test
+	void flightRecorderEvents(@TempDir Path tempDir) throws Exception {
+		Path recordingFile = tempDir.resolve("mapping.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("pt2matsim.MappingPhase");
+			recording.enable("pt2matsim.PseudoRoute");
+			recording.enable("pt2matsim.LinkCandidateCreation");
+			recording.start();
+			new PTMapper(ScheduleToolsTest.initUnmappedSchedule(), NetworkToolsTest.initNetwork()).run(initPTMConfig());
+			recording.stop();
+			recording.dump(recordingFile);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+		Assertions.assertEquals(8, events.stream().filter(e -> e.getEventType().getName().equals("pt2matsim.MappingPhase")).count());
+		Assertions.assertEquals(1, events.stream().filter(e -> e.getEventType().getName().equals("pt2matsim.LinkCandidateCreation")).count());
+		Assertions.assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("pt2matsim.PseudoRoute") && e.getInt("stops") > 1));
+	}
+
+}
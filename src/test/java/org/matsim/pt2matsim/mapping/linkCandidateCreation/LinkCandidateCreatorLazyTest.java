@@ -0,0 +1,126 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.mapping.linkCandidateCreation;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.mapping.PTMapper;
+import org.matsim.pt2matsim.tools.SyntheticScenarioGenerator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.concurrent.ExecutionException;
+
+class LinkCandidateCreatorLazyTest {
+
+	@Test
+	void sameAsStandard() {
+		SyntheticScenarioGenerator standardScenario = createScenario();
+		SyntheticScenarioGenerator lazyScenario = createScenario();
+
+		LinkCandidateCreator standard = new LinkCandidateCreatorStandard(standardScenario.getSchedule(), standardScenario.getNetwork(), createConfig());
+		LinkCandidateCreator lazy = new LinkCandidateCreatorLazy(lazyScenario.getSchedule(), lazyScenario.getNetwork(), createConfig());
+
+		List<TransitRoute> routes = new ArrayList<>();
+		lazyScenario.getSchedule().getTransitLines().values().forEach(l -> routes.addAll(l.getRoutes().values()));
+
+		// all stops are requested concurrently
+		routes.parallelStream().forEach(route -> {
+			TransitLine line = getLine(lazyScenario, route);
+			for(TransitRouteStop routeStop : route.getStops()) {
+				lazy.getLinkCandidates(routeStop, line, route);
+			}
+		});
+
+		for(TransitRoute route : routes) {
+			TransitLine line = getLine(lazyScenario, route);
+			TransitLine standardLine = standardScenario.getSchedule().getTransitLines().get(line.getId());
+			TransitRoute standardRoute = standardLine.getRoutes().get(route.getId());
+			for(int i = 0; i < route.getStops().size(); i++) {
+				SortedSet<LinkCandidate> expected = standard.getLinkCandidates(standardRoute.getStops().get(i), standardLine, standardRoute);
+				Assertions.assertEquals(toStrings(expected), toStrings(lazy.getLinkCandidates(route.getStops().get(i), line, route)));
+				Assertions.assertEquals(expected.size(), lazy.getNumberOfLinkCandidates(route.getStops().get(i), line, route));
+			}
+
+			// candidates are created again once released
+			lazy.releaseLinkCandidates(line, route);
+			SortedSet<LinkCandidate> expected = standard.getLinkCandidates(standardRoute.getStops().get(0), standardLine, standardRoute);
+			Assertions.assertEquals(toStrings(expected), toStrings(lazy.getLinkCandidates(route.getStops().get(0), line, route)));
+		}
+		Assertions.assertEquals(standardScenario.getNetwork().getLinks().keySet(), lazyScenario.getNetwork().getLinks().keySet());
+	}
+
+	@Test
+	void mapLazy() throws InterruptedException, ExecutionException {
+		SyntheticScenarioGenerator standardScenario = createScenario();
+		SyntheticScenarioGenerator lazyScenario = createScenario();
+
+		new PTMapper(standardScenario.getSchedule(), standardScenario.getNetwork()).run(createConfig());
+		PublicTransitMappingConfigGroup lazyConfig = createConfig();
+		lazyConfig.setLazyLinkCandidates(true);
+		new PTMapper(lazyScenario.getSchedule(), lazyScenario.getNetwork()).run(lazyConfig);
+
+		for(TransitLine line : standardScenario.getSchedule().getTransitLines().values()) {
+			for(TransitRoute route : line.getRoutes().values()) {
+				TransitRoute lazyRoute = lazyScenario.getSchedule().getTransitLines().get(line.getId()).getRoutes().get(route.getId());
+				Assertions.assertEquals(route.getRoute().getLinkIds(), lazyRoute.getRoute().getLinkIds());
+			}
+		}
+	}
+
+	private static TransitLine getLine(SyntheticScenarioGenerator scenario, TransitRoute route) {
+		for(TransitLine line : scenario.getSchedule().getTransitLines().values()) {
+			if(line.getRoutes().get(route.getId()) == route) {
+				return line;
+			}
+		}
+		return null;
+	}
+
+	private static SyntheticScenarioGenerator createScenario() {
+		SyntheticScenarioGenerator generator = SyntheticScenarioGenerator.createScaled(1, 23);
+		generator.setLayout(SyntheticScenarioGenerator.Layout.organic);
+		generator.generate();
+		return generator;
+	}
+
+	private static PublicTransitMappingConfigGroup createConfig() {
+		PublicTransitMappingConfigGroup config = PublicTransitMappingConfigGroup.createDefaultConfig();
+		config.setNumOfThreads(4);
+		return config;
+	}
+
+	private static List<String> toStrings(SortedSet<LinkCandidate> linkCandidates) {
+		List<String> list = new ArrayList<>();
+		if(linkCandidates != null) {
+			for(LinkCandidate linkCandidate : linkCandidates) {
+				list.add(linkCandidate.getLink().getId() + ":" + linkCandidate.getPriority());
+			}
+		}
+		// the order of candidates with the same priority depends on the order the links are found
+		Collections.sort(list);
+		return list;
+	}
+}
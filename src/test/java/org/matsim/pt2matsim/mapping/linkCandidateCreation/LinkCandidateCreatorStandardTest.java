@@ -0,0 +1,124 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt2matsim.mapping.linkCandidateCreation;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.tools.SyntheticScenarioGenerator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+
+class LinkCandidateCreatorStandardTest {
+
+	@Test
+	void parallelEqualsSequential() {
+		SyntheticScenarioGenerator sequentialScenario = createScenario();
+		SyntheticScenarioGenerator parallelScenario = createScenario();
+
+		LinkCandidateCreator sequential = new LinkCandidateCreatorStandard(sequentialScenario.getSchedule(), sequentialScenario.getNetwork(), createConfig(1));
+		LinkCandidateCreator parallel = new LinkCandidateCreatorStandard(parallelScenario.getSchedule(), parallelScenario.getNetwork(), createConfig(4));
+
+		Assertions.assertEquals(sequentialScenario.getNetwork().getLinks().keySet(), parallelScenario.getNetwork().getLinks().keySet());
+
+		for(TransitLine transitLine : sequentialScenario.getSchedule().getTransitLines().values()) {
+			for(TransitRoute transitRoute : transitLine.getRoutes().values()) {
+				TransitLine parallelLine = parallelScenario.getSchedule().getTransitLines().get(transitLine.getId());
+				TransitRoute parallelRoute = parallelLine.getRoutes().get(transitRoute.getId());
+				for(int i = 0; i < transitRoute.getStops().size(); i++) {
+					TransitRouteStop routeStop = transitRoute.getStops().get(i);
+					SortedSet<LinkCandidate> expected = sequential.getLinkCandidates(routeStop, transitLine, transitRoute);
+					SortedSet<LinkCandidate> actual = parallel.getLinkCandidates(parallelRoute.getStops().get(i), parallelLine, parallelRoute);
+					Assertions.assertEquals(toStrings(expected), toStrings(actual));
+				}
+			}
+		}
+	}
+
+	@Test
+	void sharedPools() {
+		SyntheticScenarioGenerator scenario = createScenario();
+		TransitSchedule schedule = scenario.getSchedule();
+		LinkCandidateSearch search = new LinkCandidateSearch(schedule, scenario.getNetwork(), createConfig(1));
+
+		Map<TransitStopFacility, LinkCandidatePool> pools = new HashMap<>();
+		int nStops = 0;
+		for(TransitLine transitLine : schedule.getTransitLines().values()) {
+			for(TransitRoute transitRoute : transitLine.getRoutes().values()) {
+				LinkCandidateSearch.RouteLinks routeLinks = search.getRouteLinks(transitLine, transitRoute);
+				for(Map.Entry<Id<PublicTransitStop>, Set<Link>> c : routeLinks.candidates().entrySet()) {
+					if(c.getValue().isEmpty()) {
+						continue;
+					}
+					PublicTransitStop stop = routeLinks.stops().get(c.getKey());
+					StopLinkCandidates stopCandidates = search.createStopLinkCandidates(stop, c.getValue());
+					nStops++;
+
+					// all routes of the same mode use the same pool for a stop facility
+					if(transitRoute.getTransportMode().equals("bus")) {
+						LinkCandidatePool pool = pools.computeIfAbsent(stop.getStopFacility(), f -> stopCandidates.pool());
+						Assertions.assertSame(pool, stopCandidates.pool());
+					}
+					for(LinkCandidate linkCandidate : stopCandidates.createLinkCandidates()) {
+						Assertions.assertEquals(new LinkCandidateImpl(linkCandidate.getLink(), stop).getStopFacilityDistance(), linkCandidate.getStopFacilityDistance(), 0.0);
+					}
+				}
+			}
+		}
+		Assertions.assertTrue(search.getNumberOfPools() < nStops);
+	}
+
+	private static SyntheticScenarioGenerator createScenario() {
+		SyntheticScenarioGenerator generator = SyntheticScenarioGenerator.createScaled(2, 11);
+		generator.setLayout(SyntheticScenarioGenerator.Layout.organic);
+		generator.generate();
+		return generator;
+	}
+
+	private static PublicTransitMappingConfigGroup createConfig(int numThreads) {
+		PublicTransitMappingConfigGroup config = PublicTransitMappingConfigGroup.createDefaultConfig();
+		config.setNumOfThreads(numThreads);
+		return config;
+	}
+
+	private static List<String> toStrings(SortedSet<LinkCandidate> linkCandidates) {
+		List<String> list = new ArrayList<>();
+		if(linkCandidates != null) {
+			for(LinkCandidate linkCandidate : linkCandidates) {
+				list.add(linkCandidate.getLink().getId() + ":" + linkCandidate.getPriority());
+			}
+		}
+		// the order of candidates with the same priority depends on the order the links are found
+		Collections.sort(list);
+		return list;
+	}
+}
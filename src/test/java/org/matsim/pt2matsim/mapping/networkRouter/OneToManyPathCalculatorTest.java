@@ -0,0 +1,103 @@
+package org.matsim.pt2matsim.mapping.networkRouter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.speedy.SpeedyALTFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidate;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidateImpl;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.PublicTransitStopImpl;
+import org.matsim.pt2matsim.tools.NetworkToolsTest;
+import org.matsim.pt2matsim.tools.ScheduleToolsTest;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class OneToManyPathCalculatorTest {
+
+	private Network network;
+	private List<LinkCandidate> candidates;
+	private LengthRouter router;
+
+	@BeforeEach
+	void prepare() {
+		network = NetworkToolsTest.initNetwork();
+		TransitSchedule schedule = ScheduleToolsTest.initUnmappedSchedule();
+		TransitLine line = schedule.getTransitLines().get(ScheduleToolsTest.LINE_A);
+		TransitRoute route = line.getRoutes().get(ScheduleToolsTest.ROUTE_A1);
+
+		candidates = new ArrayList<>();
+		for(Link link : network.getLinks().values()) {
+			candidates.add(new LinkCandidateImpl(link, new PublicTransitStopImpl(line, route, route.getStops().get(0))));
+		}
+		router = new LengthRouter();
+	}
+
+	@Test
+	void sameCostAsPairwiseRouting() {
+		LeastCostPathCalculator pairwise = new SpeedyALTFactory().createPathCalculator(network, router, router);
+		OneToManyPathCalculator oneToMany = new OneToManyPathCalculator(network, router, router);
+
+		for(LinkCandidate from : candidates) {
+			Map<LinkCandidate, LeastCostPathCalculator.Path> paths = oneToMany.calcPaths(from, candidates, Double.POSITIVE_INFINITY);
+			for(LinkCandidate to : candidates) {
+				LeastCostPathCalculator.Path expected = pairwise.calcLeastCostPath(from.getLink(), to.getLink(), 0, null, null);
+				LeastCostPathCalculator.Path actual = paths.get(to);
+				if(expected == null) {
+					Assertions.assertNull(actual);
+				} else {
+					Assertions.assertNotNull(actual);
+					Assertions.assertEquals(expected.travelCost, actual.travelCost, 1e-9);
+				}
+			}
+		}
+	}
+
+	@Test
+	void boundedSearch() {
+		OneToManyPathCalculator oneToMany = new OneToManyPathCalculator(network, router, router);
+		double maxCost = 15;
+
+		for(LinkCandidate from : candidates) {
+			Map<LinkCandidate, LeastCostPathCalculator.Path> unbounded = oneToMany.calcPaths(from, candidates, Double.POSITIVE_INFINITY);
+			Map<LinkCandidate, LeastCostPathCalculator.Path> bounded = oneToMany.calcPaths(from, candidates, maxCost);
+			for(LinkCandidate to : candidates) {
+				LeastCostPathCalculator.Path path = unbounded.get(to);
+				if(path != null && path.travelCost <= maxCost) {
+					Assertions.assertEquals(path.travelCost, bounded.get(to).travelCost, 1e-9);
+				} else {
+					Assertions.assertNull(bounded.get(to));
+				}
+			}
+		}
+	}
+
+	private static class LengthRouter implements TravelDisutility, TravelTime {
+
+		@Override
+		public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+			return link.getLength();
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(Link link) {
+			return link.getLength();
+		}
+
+		@Override
+		public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+			return link.getLength() / link.getFreespeed();
+		}
+	}
+}
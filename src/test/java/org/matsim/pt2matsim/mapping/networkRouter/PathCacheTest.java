@@ -0,0 +1,78 @@
+package org.matsim.pt2matsim.mapping.networkRouter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.tools.NetworkToolsTest;
+
+import java.util.Arrays;
+import java.util.List;
+
+class PathCacheTest {
+
+	private static final PublicTransitMappingConfigGroup.TravelCostType COST_TYPE = PublicTransitMappingConfigGroup.TravelCostType.linkLength;
+
+	@Test
+	void pathRoundTrip() {
+		Network network = NetworkToolsTest.initNetwork();
+		Link fromLink = link(network, "AB");
+		Link toLink = link(network, "DE");
+		List<Link> links = Arrays.asList(link(network, "BC"), link(network, "CD"));
+		LeastCostPathCalculator.Path path = new LeastCostPathCalculator.Path(
+				Arrays.asList(fromLink.getToNode(), links.get(0).getToNode(), links.get(1).getToNode()), links, 10, 20);
+
+		PathCache cache = new PathCache(100_000);
+		PathCache.Key key = new PathCache.Key(network, COST_TYPE, fromLink, toLink);
+		Assertions.assertNull(cache.get(key, Double.POSITIVE_INFINITY));
+		cache.putPath(key, path);
+
+		PathCache.Entry entry = cache.get(key, 5);
+		Assertions.assertNotNull(entry);
+		Assertions.assertTrue(entry.hasPath());
+		LeastCostPathCalculator.Path cached = entry.toPath(network, fromLink);
+		Assertions.assertEquals(path.links, cached.links);
+		Assertions.assertEquals(path.nodes, cached.nodes);
+		Assertions.assertEquals(path.travelCost, cached.travelCost);
+		Assertions.assertEquals(1, cache.getHits());
+		Assertions.assertEquals(1, cache.getMisses());
+
+		// other network instances do not share entries
+		Assertions.assertNull(cache.get(new PathCache.Key(NetworkToolsTest.initNetwork(), COST_TYPE, fromLink, toLink), 5));
+	}
+
+	@Test
+	void noPathAnswersSmallerBounds() {
+		Network network = NetworkToolsTest.initNetwork();
+		PathCache cache = new PathCache(100_000);
+		PathCache.Key key = new PathCache.Key(network, COST_TYPE, link(network, "AB"), link(network, "DE"));
+
+		cache.putNoPath(key, 50);
+		Assertions.assertFalse(cache.get(key, 50).hasPath());
+		Assertions.assertFalse(cache.get(key, 10).hasPath());
+		Assertions.assertNull(cache.get(key, 100));
+
+		// a smaller bound does not replace a larger one
+		cache.putNoPath(key, 10);
+		Assertions.assertNotNull(cache.get(key, 50));
+	}
+
+	@Test
+	void boundedByEstimatedMemory() {
+		Network network = NetworkToolsTest.initNetwork();
+		PathCache cache = new PathCache(10L * PathCache.ENTRY_BYTES);
+		Link fromLink = link(network, "AB");
+		for(Link toLink : network.getLinks().values()) {
+			cache.putNoPath(new PathCache.Key(network, COST_TYPE, fromLink, toLink), 10);
+		}
+		Assertions.assertTrue(network.getLinks().size() > 11);
+		Assertions.assertTrue(cache.size() <= 11, "cache holds " + cache.size() + " entries");
+	}
+
+	private static Link link(Network network, String id) {
+		return network.getLinks().get(Id.createLinkId(id));
+	}
+}
@@ -0,0 +1,60 @@
+package org.matsim.pt2matsim.mapping.networkRouter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.groups.ControllerConfigGroup.RoutingAlgorithmType;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.utils.TransitScheduleValidator;
+import org.matsim.pt2matsim.config.OsmConverterConfigGroup;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.mapping.PTMapper;
+import org.matsim.pt2matsim.mapping.PTMapperTest;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidateImpl;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.PublicTransitStopImpl;
+import org.matsim.pt2matsim.tools.NetworkToolsTest;
+import org.matsim.pt2matsim.tools.ScheduleToolsTest;
+
+import java.util.concurrent.ExecutionException;
+
+class ScheduleRoutersOsmAttributesTest {
+
+	@Test
+	void osmRouteCostFactor() {
+		Network network = NetworkToolsTest.initNetwork();
+		Link osmRouteLink = network.getLinks().get(Id.createLinkId("AB"));
+		Link otherLink = network.getLinks().get(Id.createLinkId("BA"));
+		osmRouteLink.getAttributes().putAttribute(OsmConverterConfigGroup.LINK_ATTRIBUTE_RELATION_ROUTE, "bus");
+
+		TransitSchedule schedule = ScheduleToolsTest.initUnmappedSchedule();
+		TransitLine line = schedule.getTransitLines().get(ScheduleToolsTest.LINE_A);
+		TransitRoute route = line.getRoutes().get(ScheduleToolsTest.ROUTE_A1);
+		PublicTransitMappingConfigGroup config = PTMapperTest.initPTMConfig();
+
+		for(RoutingAlgorithmType routerType : new RoutingAlgorithmType[]{RoutingAlgorithmType.SpeedyALT, RoutingAlgorithmType.CHRouter}) {
+			ScheduleRoutersOsmAttributes.Factory factory = new ScheduleRoutersOsmAttributes.Factory(schedule, network,
+					config.getTransportModeAssignment(), PublicTransitMappingConfigGroup.TravelCostType.linkLength, 0.5, routerType, 2);
+			ScheduleRouters routers = factory.createInstance();
+			Assertions.assertNotSame(routers, factory.createInstance());
+
+			PublicTransitStopImpl stop = new PublicTransitStopImpl(line, route, route.getStops().get(0));
+			Assertions.assertEquals(0.5 * osmRouteLink.getLength(), routers.getLinkCandidateTravelCost(new LinkCandidateImpl(osmRouteLink, stop)), 1e-9);
+			Assertions.assertEquals(otherLink.getLength(), routers.getLinkCandidateTravelCost(new LinkCandidateImpl(otherLink, stop)), 1e-9);
+		}
+	}
+
+	@Test
+	void mapWithFactory() throws InterruptedException, ExecutionException {
+		Network network = NetworkToolsTest.initNetwork();
+		TransitSchedule schedule = ScheduleToolsTest.initUnmappedSchedule();
+		PublicTransitMappingConfigGroup config = PTMapperTest.initPTMConfig();
+
+		new PTMapper(schedule, network).run(config, null, new ScheduleRoutersOsmAttributes.Factory(schedule, network, config, 0.5));
+
+		Assertions.assertTrue(TransitScheduleValidator.validateAll(schedule, network).isValid());
+	}
+}
@@ -0,0 +1,58 @@
+package org.matsim.pt2matsim.mapping.networkRouter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.mapping.PTMapperTest;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidate;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidateImpl;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.PublicTransitStopImpl;
+import org.matsim.pt2matsim.tools.NetworkToolsTest;
+import org.matsim.pt2matsim.tools.ScheduleToolsTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class ScheduleRoutersStandardTest {
+
+	/**
+	 * The beeline lower bound must never exceed the cost of the least cost path.
+	 */
+	@Test
+	void lowerBoundIsAdmissible() {
+		for(PublicTransitMappingConfigGroup.TravelCostType costType : PublicTransitMappingConfigGroup.TravelCostType.values()) {
+			Network network = NetworkToolsTest.initNetwork();
+			TransitSchedule schedule = ScheduleToolsTest.initUnmappedSchedule();
+			TransitLine line = schedule.getTransitLines().get(ScheduleToolsTest.LINE_A);
+			TransitRoute route = line.getRoutes().get(ScheduleToolsTest.ROUTE_A1);
+
+			PublicTransitMappingConfigGroup config = PTMapperTest.initPTMConfig();
+			config.setTravelCostType(costType);
+			ScheduleRouters routers = new ScheduleRoutersStandard.Factory(schedule, network, config).createInstance();
+
+			List<LinkCandidate> candidates = new ArrayList<>();
+			for(Link link : network.getLinks().values()) {
+				candidates.add(new LinkCandidateImpl(link, new PublicTransitStopImpl(line, route, route.getStops().get(0))));
+			}
+
+			int nBounds = 0;
+			for(LinkCandidate from : candidates) {
+				for(LinkCandidate to : candidates) {
+					double lowerBound = routers.getLowerBoundTravelCost(from, to, line, route);
+					LeastCostPathCalculator.Path path = routers.calcLeastCostPath(from, to, line, route);
+					if(path != null) {
+						Assertions.assertTrue(lowerBound <= path.travelCost + 1e-9, costType + " " + from + " -> " + to);
+					}
+					if(lowerBound > 0) nBounds++;
+				}
+			}
+			Assertions.assertTrue(nBounds > 0);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package org.matsim.pt2matsim.mapping.pseudoRouter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidate;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.LinkCandidateImpl;
+import org.matsim.pt2matsim.mapping.linkCandidateCreation.PublicTransitStopImpl;
+import org.matsim.pt2matsim.tools.NetworkToolsTest;
+import org.matsim.pt2matsim.tools.ScheduleToolsTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+class PseudoGraphLayeredTest {
+
+	/**
+	 * Both pseudo graph implementations must find the same stop sequence and links
+	 * on graphs without equal cost alternatives.
+	 */
+	@Test
+	void sameResultAsDijkstra() {
+		Network network = NetworkToolsTest.initNetwork();
+		TransitSchedule schedule = ScheduleToolsTest.initUnmappedSchedule();
+		TransitLine line = schedule.getTransitLines().get(ScheduleToolsTest.LINE_A);
+		TransitRoute route = line.getRoutes().get(ScheduleToolsTest.ROUTE_A1);
+		List<TransitRouteStop> routeStops = route.getStops();
+		List<Link> links = new ArrayList<>(network.getLinks().values());
+		PseudoGraphLayered reused = new PseudoGraphLayered();
+
+		for(int seed = 0; seed < 20; seed++) {
+			Random random = new Random(seed);
+
+			List<List<LinkCandidate>> candidates = new ArrayList<>();
+			for(TransitRouteStop routeStop : routeStops) {
+				List<Link> shuffled = new ArrayList<>(links);
+				Collections.shuffle(shuffled, random);
+				List<LinkCandidate> stopCandidates = new ArrayList<>();
+				for(Link link : shuffled.subList(0, 3)) {
+					stopCandidates.add(new LinkCandidateImpl(link, new PublicTransitStopImpl(line, route, routeStop)));
+				}
+				candidates.add(stopCandidates);
+			}
+
+			PseudoGraph dijkstra = new PseudoGraphImpl();
+			PseudoGraph layered = new PseudoGraphLayered();
+			// the reused graph is filled by candidate index
+			reused.reset();
+			for(int i = 0; i < routeStops.size(); i++) {
+				reused.setLinkCandidates(i, routeStops.get(i), candidates.get(i));
+			}
+			for(int i = 0; i < routeStops.size() - 1; i++) {
+				for(int f = 0; f < candidates.get(i).size(); f++) {
+					LinkCandidate from = candidates.get(i).get(f);
+					for(int t = 0; t < candidates.get(i + 1).size(); t++) {
+						LinkCandidate to = candidates.get(i + 1).get(t);
+						double cost = random.nextDouble() * 100;
+						List<Link> pathLinks = random.nextBoolean() ? null : Collections.singletonList(links.get(random.nextInt(links.size())));
+						dijkstra.addEdge(i, routeStops.get(i), from, routeStops.get(i + 1), to, cost, pathLinks);
+						layered.addEdge(i, routeStops.get(i), from, routeStops.get(i + 1), to, cost, pathLinks);
+						reused.addEdge(i, f, t, cost, pathLinks);
+					}
+				}
+			}
+			dijkstra.addDummyEdges(routeStops, candidates.get(0), candidates.get(routeStops.size() - 1));
+			layered.addDummyEdges(routeStops, candidates.get(0), candidates.get(routeStops.size() - 1));
+			reused.addDummyEdges(routeStops, candidates.get(0), candidates.get(routeStops.size() - 1));
+
+			List<Id<Link>> expectedStopLinks = new ArrayList<>();
+			for(PseudoRouteStop pseudoRouteStop : dijkstra.getLeastCostStopSequence()) {
+				expectedStopLinks.add(pseudoRouteStop.getLinkId());
+			}
+			List<Id<Link>> actualStopLinks = new ArrayList<>();
+			for(PseudoRouteStop pseudoRouteStop : layered.getLeastCostStopSequence()) {
+				actualStopLinks.add(pseudoRouteStop.getLinkId());
+			}
+			Assertions.assertEquals(expectedStopLinks, actualStopLinks);
+			Assertions.assertEquals(dijkstra.getNetworkLinkIds(), layered.getNetworkLinkIds());
+			Assertions.assertEquals(dijkstra.getNetworkLinkIds(), reused.getNetworkLinkIds());
+			Assertions.assertEquals(dijkstra.getLeastCostStopSequence(), reused.getLeastCostStopSequence());
+			Assertions.assertEquals(dijkstra.getArtificialNetworkLinks().size(), layered.getArtificialNetworkLinks().size());
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package org.matsim.pt2matsim.tools;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.pt.utils.TransitScheduleValidator;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.mapping.PTMapper;
+
+import java.util.concurrent.ExecutionException;
+
+class SyntheticScenarioGeneratorTest {
+
+	@Test
+	void deterministic() {
+		SyntheticScenarioGenerator generatorA = SyntheticScenarioGenerator.createScaled(2, 42);
+		generatorA.setLayout(SyntheticScenarioGenerator.Layout.organic);
+		generatorA.setCreateShapes(true);
+		generatorA.generate();
+
+		SyntheticScenarioGenerator generatorB = SyntheticScenarioGenerator.createScaled(2, 42);
+		generatorB.setLayout(SyntheticScenarioGenerator.Layout.organic);
+		generatorB.setCreateShapes(true);
+		generatorB.generate();
+
+		Assertions.assertEquals(generatorA.getNetwork().getLinks().keySet(), generatorB.getNetwork().getLinks().keySet());
+		Assertions.assertEquals(generatorA.getSchedule().getFacilities().keySet(), generatorB.getSchedule().getFacilities().keySet());
+		for(TransitStopFacility facility : generatorA.getSchedule().getFacilities().values()) {
+			Assertions.assertEquals(facility.getCoord(), generatorB.getSchedule().getFacilities().get(facility.getId()).getCoord());
+		}
+		Assertions.assertEquals(generatorA.getShapes().keySet(), generatorB.getShapes().keySet());
+	}
+
+	@Test
+	void scale() {
+		SyntheticScenarioGenerator base = SyntheticScenarioGenerator.createScaled(1, 1);
+		base.generate();
+		SyntheticScenarioGenerator scaled = SyntheticScenarioGenerator.createScaled(10, 1);
+		scaled.generate();
+
+		Assertions.assertEquals(10, base.getSchedule().getTransitLines().size());
+		Assertions.assertEquals(100, scaled.getSchedule().getTransitLines().size());
+		double linkRatio = scaled.getNetwork().getLinks().size() / (double) base.getNetwork().getLinks().size();
+		Assertions.assertEquals(10, linkRatio, 1.0);
+
+		for(TransitLine transitLine : scaled.getSchedule().getTransitLines().values()) {
+			Assertions.assertEquals(2, transitLine.getRoutes().size());
+			for(TransitRoute transitRoute : transitLine.getRoutes().values()) {
+				Assertions.assertTrue(transitRoute.getStops().size() >= 2);
+				Assertions.assertNull(transitRoute.getRoute());
+			}
+		}
+		for(Link link : scaled.getNetwork().getLinks().values()) {
+			Assertions.assertFalse(link.getAllowedModes().isEmpty());
+		}
+	}
+
+	@Test
+	void mapGeneratedScenario() throws InterruptedException, ExecutionException {
+		SyntheticScenarioGenerator generator = SyntheticScenarioGenerator.createScaled(1, 7);
+		generator.setLayout(SyntheticScenarioGenerator.Layout.organic);
+		generator.generate();
+
+		PublicTransitMappingConfigGroup config = PublicTransitMappingConfigGroup.createDefaultConfig();
+		config.setNumOfThreads(2);
+		new PTMapper(generator.getSchedule(), generator.getNetwork()).run(config);
+
+		Assertions.assertTrue(TransitScheduleValidator.validateAll(generator.getSchedule(), generator.getNetwork()).isValid());
+	}
+}
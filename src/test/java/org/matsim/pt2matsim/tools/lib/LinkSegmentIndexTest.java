@@ -0,0 +1,68 @@
+package org.matsim.pt2matsim.tools.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.pt2matsim.tools.NetworkTools;
+import org.matsim.pt2matsim.tools.NetworkToolsTest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.matsim.pt2matsim.tools.CoordToolsTest.*;
+
+class LinkSegmentIndexTest {
+
+	private final Network network = NetworkToolsTest.initNetwork();
+
+	@Test
+	void withinDistanceEqualsNodeSearch() {
+		Set<String> modes = Set.of("car");
+		for(double cellSize : new double[]{0, 1, 7, 100}) {
+			LinkSegmentIndex index = new LinkSegmentIndex(network, modes, cellSize);
+			for(Coord coord : new Coord[]{coordA, coordX, coordW, new Coord(2600035, 1200032)}) {
+				for(double distance : new double[]{0, 5, 12, 30}) {
+					SortedMap<Double, Set<Link>> expected = new TreeMap<>(new TreeMap<>(NetworkTools.findClosestLinks(network, coord, 1000, modes)).headMap(distance, true));
+					Assertions.assertEquals(expected, index.getLinksWithinDistance(coord, distance));
+				}
+			}
+		}
+	}
+
+	@Test
+	void longLinks() {
+		// the nodes of a long link are far away from the coordinate, the link is found nonetheless
+		Node from = network.getNodes().get(Id.createNodeId("E"));
+		Node to = network.getNodes().get(Id.createNodeId("I"));
+		Link longLink = network.getFactory().createLink(Id.createLinkId("EI"), from, to);
+		longLink.setAllowedModes(Set.of("rail"));
+		network.addLink(longLink);
+
+		LinkSegmentIndex index = LinkSegmentIndex.create(network, Set.of("rail"));
+		Coord center = new Coord(2600040, 1200040);
+		Map<Double, Set<Link>> links = index.getLinksWithinDistance(center, 1);
+		Assertions.assertEquals(1, index.size());
+		Assertions.assertEquals(Set.of(longLink), links.values().iterator().next());
+		Assertions.assertEquals(longLink, index.getNearestLink(new Coord(2600000, 1200000)));
+	}
+
+	@Test
+	void nearestLinks() {
+		LinkSegmentIndex index = LinkSegmentIndex.create(network, null);
+		Coord coord = new Coord(2600050, 1200041);
+		Set<Link> expected = Set.of(network.getLinks().get(Id.createLinkId("AB")), network.getLinks().get(Id.createLinkId("BA")));
+
+		List<Link> nearest = index.getNearestLinks(coord, 4);
+		Assertions.assertEquals(4, nearest.size());
+		Assertions.assertEquals(expected, Set.copyOf(nearest.subList(0, 2)));
+		Assertions.assertEquals(network.getLinks().size(), index.getNearestLinks(coordX, 10000).size());
+		Assertions.assertTrue(LinkSegmentIndex.create(network, Set.of("none")).getNearestLinks(coordX, 1).isEmpty());
+	}
+}
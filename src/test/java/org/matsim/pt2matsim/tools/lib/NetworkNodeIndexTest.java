@@ -0,0 +1,54 @@
+package org.matsim.pt2matsim.tools.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.pt2matsim.tools.NetworkToolsTest;
+import org.matsim.pt2matsim.tools.ShapeToolsTest;
+
+import java.util.BitSet;
+import java.util.List;
+
+class NetworkNodeIndexTest {
+
+	private final Network network = NetworkToolsTest.initNetwork();
+
+	private BitSet bruteForce(List<Coord> polyline, double buffer) {
+		BitSet nodes = new BitSet();
+		for(Node node : network.getNodes().values()) {
+			for(int i = 0; i < Math.max(polyline.size() - 1, 1); i++) {
+				Coord to = polyline.get(Math.min(i + 1, polyline.size() - 1));
+				if(CoordUtils.distancePointLinesegment(polyline.get(i), to, node.getCoord()) <= buffer) {
+					nodes.set(node.getId().index());
+				}
+			}
+		}
+		return nodes;
+	}
+
+	@Test
+	void equalsBruteForce() {
+		NetworkNodeIndex index = new NetworkNodeIndex(network);
+		Assertions.assertEquals(network.getNodes().size(), index.size());
+		for(RouteShape shape : ShapeToolsTest.initShapes().values()) {
+			for(double buffer : new double[]{0, 1, 5, 12, 40}) {
+				BitSet nodes = index.getNodesWithinBuffer(shape.getCoords(), buffer);
+				Assertions.assertEquals(bruteForce(shape.getCoords(), buffer), nodes);
+				for(int n = nodes.nextSetBit(0); n >= 0; n = nodes.nextSetBit(n + 1)) {
+					Assertions.assertEquals(n, index.getNode(n).getId().index());
+				}
+			}
+		}
+	}
+
+	@Test
+	void singlePoint() {
+		NetworkNodeIndex index = new NetworkNodeIndex(network);
+		List<Coord> point = List.of(new Coord(2600040.0, 1200041.0));
+		Assertions.assertEquals(1, index.getNodesWithinBuffer(point, 2).cardinality());
+		Assertions.assertTrue(index.getNodesWithinBuffer(List.of(), 2).isEmpty());
+	}
+}
@@ -0,0 +1,68 @@
+package org.matsim.pt2matsim.tools.lib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.pt2matsim.gtfs.lib.GtfsShape;
+import org.matsim.pt2matsim.tools.ShapeToolsTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class ShapeSegmentIndexTest {
+
+	private static double bruteForce(List<Coord> points, Coord coord) {
+		double minDist = Double.MAX_VALUE;
+		for(int i = 0; i < points.size() - 1; i++) {
+			minDist = Math.min(minDist, CoordUtils.distancePointLinesegment(points.get(i), points.get(i + 1), coord));
+		}
+		return minDist;
+	}
+
+	@Test
+	void equalsBruteForce() {
+		Random random = new Random(42);
+		List<Coord> points = new ArrayList<>();
+		double x = 2600000;
+		double y = 1200000;
+		for(int i = 0; i < 500; i++) {
+			x += random.nextDouble() * 40 - 10;
+			y += random.nextDouble() * 40 - 20;
+			points.add(new Coord(x, y));
+		}
+		ShapeSegmentIndex index = new ShapeSegmentIndex(points);
+		Assertions.assertEquals(499, index.size());
+
+		for(int i = 0; i < 2000; i++) {
+			Coord coord = new Coord(2599000 + random.nextDouble() * 18000, 1195000 + random.nextDouble() * 10000);
+			Assertions.assertEquals(bruteForce(points, coord), index.getMinDistance(coord));
+		}
+		for(Coord point : points) {
+			Assertions.assertEquals(0.0, index.getMinDistance(point));
+		}
+	}
+
+	@Test
+	void shapes() {
+		for(RouteShape shape : ShapeToolsTest.initShapes().values()) {
+			ShapeSegmentIndex index = shape.getSegmentIndex();
+			Assertions.assertSame(index, shape.getSegmentIndex());
+			for(Coord coord : new Coord[]{new Coord(2600040, 1200040), new Coord(2600000, 1200000), new Coord(2599000, 1201000)}) {
+				Assertions.assertEquals(bruteForce(shape.getCoords(), coord), index.getMinDistance(coord));
+			}
+		}
+	}
+
+	@Test
+	void changedShape() {
+		GtfsShape shape = new GtfsShape("s");
+		Assertions.assertEquals(Double.MAX_VALUE, shape.getSegmentIndex().getMinDistance(new Coord(0, 0)));
+		shape.addPoint(new Coord(0, 10), 1);
+		shape.addPoint(new Coord(10, 10), 2);
+		Assertions.assertEquals(10.0, shape.getSegmentIndex().getMinDistance(new Coord(5, 0)));
+		shape.addPoint(new Coord(10, 0), 3);
+		Assertions.assertEquals(5.0, shape.getSegmentIndex().getMinDistance(new Coord(5, 0)));
+	}
+}